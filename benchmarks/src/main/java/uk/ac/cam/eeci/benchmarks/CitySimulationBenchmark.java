@@ -0,0 +1,78 @@
+package uk.ac.cam.eeci.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.cam.eeci.energyagents.CitySimulation;
+import uk.ac.cam.eeci.energyagents.ScenarioBuilder;
+import uk.ac.cam.eeci.framework.EndSimulationException;
+import uk.ac.cam.eeci.framework.SimulationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single time steps of a complete synthetic city.
+ * <br><br>
+ * The number of agents comprises dwellings and people, with two people per dwelling. Logging is
+ * switched off. Each iteration runs on a fresh simulation with its own context, which is shut down
+ * after the iteration; a simulation that runs out of time steps during an iteration is renewed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CitySimulationBenchmark {
+
+    private final static int NUMBER_TIME_STEPS = 30 * 144;
+    private final static int NUMBER_WORKERS = 4;
+
+    @Param({"1000", "10000", "100000"})
+    public int numberAgents;
+
+    @Param({"false", "true"})
+    public boolean eventDriven;
+
+    private File scenario;
+    private File output;
+    private SimulationContext context;
+    private CitySimulation simulation;
+    private int remainingSteps;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int numberDwellings = this.numberAgents / (1 + SyntheticScenario.PEOPLE_PER_DWELLING);
+        this.scenario = new SyntheticScenario(numberDwellings, NUMBER_TIME_STEPS, false, 42)
+                .writeToTemporaryFile();
+        this.output = File.createTempFile("synthetic-output-", ".db");
+        this.output.deleteOnExit();
+    }
+
+    @Setup(Level.Iteration)
+    public void createSimulation() throws IOException {
+        this.context = new SimulationContext(NUMBER_WORKERS);
+        this.context.enterMain();
+        this.simulation = ScenarioBuilder.readScenario(this.scenario.getCanonicalPath(),
+                this.output.getCanonicalPath(), this.context);
+        this.simulation.setEventDriven(this.eventDriven);
+        this.remainingSteps = NUMBER_TIME_STEPS;
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopSimulation() {
+        this.simulation.stop();
+        this.context.shutdown();
+    }
+
+    @Benchmark
+    public void step() throws InterruptedException, ExecutionException, EndSimulationException, IOException {
+        if (this.remainingSteps == 0) { // rare, as the scenario is longer than most iterations
+            this.stopSimulation();
+            this.createSimulation();
+        }
+        this.simulation.step();
+        this.remainingSteps -= 1;
+    }
+}
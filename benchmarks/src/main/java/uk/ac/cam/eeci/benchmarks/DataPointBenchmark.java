@@ -0,0 +1,66 @@
+package uk.ac.cam.eeci.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.cam.eeci.energyagents.DataPoint;
+import uk.ac.cam.eeci.energyagents.DoubleDataPoint;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging of one time step of many data point sources, with boxed and with primitive storage.
+ * <br><br>
+ * The record is drained regularly, as it is when results are streamed to the output database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataPointBenchmark {
+
+    private final static ZonedDateTime INITIAL_TIME = ZonedDateTime.of(2015, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private final static Duration TIME_STEP_SIZE = Duration.ofMinutes(10);
+    private final static int DRAIN_INTERVAL = 144;
+
+    @Param({"1000"})
+    public int numberSources;
+
+    @Param({"false", "true"})
+    public boolean primitive;
+
+    private DataPoint<Double, Double> dataPoint;
+    private ZonedDateTime currentTime;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<Integer, Double> sources = new HashMap<>();
+        for (int i = 0; i < this.numberSources; i++) {
+            sources.put(i, (double) i);
+        }
+        if (this.primitive) {
+            this.dataPoint = new DoubleDataPoint<>("benchmark", sources, CompletableFuture::completedFuture);
+        } else {
+            this.dataPoint = new DataPoint<>("benchmark", sources, CompletableFuture::completedFuture);
+        }
+        this.currentTime = INITIAL_TIME;
+        this.step = 0;
+    }
+
+    @Benchmark
+    public void step() {
+        this.dataPoint.step(this.currentTime).join();
+        this.currentTime = this.currentTime.plus(TIME_STEP_SIZE);
+        this.step += 1;
+        if (this.step % DRAIN_INTERVAL == 0) {
+            this.dataPoint.drainRecord();
+        }
+    }
+}
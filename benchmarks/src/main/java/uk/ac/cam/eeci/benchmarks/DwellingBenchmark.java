@@ -0,0 +1,86 @@
+package uk.ac.cam.eeci.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.cam.eeci.energyagents.*;
+import uk.ac.cam.eeci.energyagents.strategy.NoHeatingStrategy;
+import uk.ac.cam.eeci.framework.SimulationContext;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thermal stepping of dwellings, one object at a time and as a batch.
+ * <br><br>
+ * Environment and heating control strategy are stubbed with already completed futures, so that
+ * only the dwelling model itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DwellingBenchmark {
+
+    private final static ZonedDateTime INITIAL_TIME = ZonedDateTime.of(2015, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private final static Duration TIME_STEP_SIZE = Duration.ofMinutes(10);
+    private final static double EXTERNAL_TEMPERATURE = 5.0;
+    private final static double SET_POINT = 21.0;
+
+    @Param({"1000"})
+    public int numberDwellings;
+
+    private List<Dwelling> dwellings;
+    private DwellingBatch batch;
+    private double[] metabolicHeatGains;
+    private double[] heatingSetPoints;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimulationContext.getDefault().enterMain();
+        Random random = new Random(42);
+        TimeSeries<Double> temperature = new TimeSeries<>();
+        temperature.add(INITIAL_TIME, EXTERNAL_TEMPERATURE);
+        temperature.add(INITIAL_TIME.plus(TIME_STEP_SIZE), EXTERNAL_TEMPERATURE);
+        EnvironmentReference environment = new EnvironmentReference(new Environment(temperature, TIME_STEP_SIZE)) {
+            @Override
+            public CompletableFuture<Double> getCurrentTemperature() {
+                return CompletableFuture.completedFuture(EXTERNAL_TEMPERATURE);
+            }
+        };
+        HeatingControlStrategyReference strategy = new HeatingControlStrategyReference(new NoHeatingStrategy()) {
+            @Override
+            public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp,
+                                                                       Occupancy occupancy) {
+                return CompletableFuture.completedFuture(Optional.of(SET_POINT));
+            }
+        };
+        this.dwellings = new ArrayList<>();
+        for (int i = 0; i < this.numberDwellings; i++) {
+            double floorArea = 60 + random.nextInt(90);
+            this.dwellings.add(new Dwelling(165000 * floorArea, 2.5 * floorArea, floorArea, 2.5, 0.19, 0.26,
+                    0.12, 0.24, 1.95, 0.91, 0.65, 100 * floorArea, 15 + 5 * random.nextDouble(), INITIAL_TIME,
+                    TIME_STEP_SIZE, strategy, environment));
+        }
+        this.batch = new DwellingBatch(this.dwellings);
+        this.metabolicHeatGains = new double[this.numberDwellings];
+        this.heatingSetPoints = new double[this.numberDwellings];
+        Arrays.fill(this.heatingSetPoints, SET_POINT);
+    }
+
+    @Benchmark
+    public void stepObjects() {
+        for (Dwelling dwelling : this.dwellings) {
+            dwelling.step().join();
+        }
+    }
+
+    @Benchmark
+    public void stepBatch() {
+        this.batch.step(EXTERNAL_TEMPERATURE, this.metabolicHeatGains, this.heatingSetPoints);
+    }
+}
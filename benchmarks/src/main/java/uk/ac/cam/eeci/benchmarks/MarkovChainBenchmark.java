@@ -0,0 +1,84 @@
+package uk.ac.cam.eeci.benchmarks;
+
+import org.javatuples.Pair;
+import org.openjdk.jmh.annotations.*;
+import uk.ac.cam.eeci.energyagents.HeterogeneousMarkovChain;
+import uk.ac.cam.eeci.energyagents.HeterogeneousMarkovChain.MarkovChain;
+import uk.ac.cam.eeci.energyagents.Person.Activity;
+import uk.ac.cam.eeci.energyagents.RandomNumberGenerator;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * State transitions of a heterogeneous markov chain with ten minute time slots.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkovChainBenchmark {
+
+    private final static ZonedDateTime INITIAL_TIME = ZonedDateTime.of(2015, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private final static Duration TIME_STEP_SIZE = Duration.ofMinutes(10);
+    private final static int NUMBER_TIME_STEPS = 7 * 144;
+
+    private HeterogeneousMarkovChain<Activity> markovChain;
+    private ZonedDateTime[] timeStamps;
+    private Random random;
+    private RandomNumberGenerator randomNumberGenerator;
+    private Activity currentActivity;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.random = new Random(42);
+        this.randomNumberGenerator = this.random::nextDouble;
+        this.markovChain = new HeterogeneousMarkovChain<>(this.randomDayChain(), this.randomDayChain(),
+                ZoneOffset.UTC);
+        this.timeStamps = new ZonedDateTime[NUMBER_TIME_STEPS];
+        for (int i = 0; i < NUMBER_TIME_STEPS; i++) {
+            this.timeStamps[i] = INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(i));
+        }
+        this.currentActivity = Activity.HOME;
+        this.step = 0;
+    }
+
+    private Map<LocalTime, MarkovChain<Activity>> randomDayChain() {
+        Map<LocalTime, MarkovChain<Activity>> dayChain = new HashMap<>();
+        LocalTime time = LocalTime.MIDNIGHT;
+        do {
+            Map<Pair<Activity, Activity>, Double> probabilities = new HashMap<>();
+            for (Activity from : Activity.values()) {
+                double[] weights = new double[Activity.values().length];
+                double sum = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = this.random.nextDouble();
+                    sum += weights[i];
+                }
+                for (Activity to : Activity.values()) {
+                    probabilities.put(new Pair<>(from, to), weights[to.ordinal()] / sum);
+                }
+            }
+            dayChain.put(time, new MarkovChain<>(probabilities));
+            time = time.plus(TIME_STEP_SIZE);
+        } while (!time.equals(LocalTime.MIDNIGHT));
+        return dayChain;
+    }
+
+    @Benchmark
+    public Activity move() {
+        this.currentActivity = this.markovChain.move(this.currentActivity, this.timeStamps[this.step],
+                this.randomNumberGenerator);
+        this.step = (this.step + 1) % NUMBER_TIME_STEPS;
+        return this.currentActivity;
+    }
+}
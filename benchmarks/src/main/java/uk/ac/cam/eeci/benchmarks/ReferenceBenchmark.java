@@ -0,0 +1,69 @@
+package uk.ac.cam.eeci.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips through {@link Reference}s: crossing from the main executor to the executor of
+ * the referent and back, and calling a referent that lives on the caller's own executor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReferenceBenchmark {
+
+    private final static int CALLS_PER_INVOCATION = 1000;
+
+    public static class Counter {
+
+        private long count = 0;
+
+        public long increment() {
+            this.count += 1;
+            return this.count;
+        }
+    }
+
+    public static class CounterReference extends Reference<Counter> {
+
+        public CounterReference(Counter referent) {
+            super(referent);
+        }
+
+        public CompletableFuture<Long> increment() {
+            return this.supply(this.referent::increment);
+        }
+    }
+
+    private CounterReference counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimulationContext.getDefault().enterMain();
+        this.counter = new CounterReference(new Counter());
+    }
+
+    @Benchmark
+    public long crossExecutor() {
+        return this.counter.increment().join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS_PER_INVOCATION)
+    public long sameExecutor() {
+        return CompletableFuture.supplyAsync(() -> {
+            long count = 0;
+            for (int i = 0; i < CALLS_PER_INVOCATION; i++) {
+                count = this.counter.increment().join();
+            }
+            return count;
+        }, this.counter.executor).join();
+    }
+}
@@ -0,0 +1,44 @@
+package uk.ac.cam.eeci.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import uk.ac.cam.eeci.energyagents.CitySimulation;
+import uk.ac.cam.eeci.energyagents.ScenarioBuilder;
+import uk.ac.cam.eeci.framework.SimulationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of a complete synthetic scenario from its database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ScenarioBuilderBenchmark {
+
+    private final static int NUMBER_TIME_STEPS = 144;
+
+    @Param({"1000", "10000"})
+    public int numberDwellings;
+
+    private File scenario;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SimulationContext.getDefault().enterMain();
+        this.scenario = new SyntheticScenario(this.numberDwellings, NUMBER_TIME_STEPS, false, 42)
+                .writeToTemporaryFile();
+        this.output = File.createTempFile("synthetic-output-", ".db");
+        this.output.deleteOnExit();
+    }
+
+    @Benchmark
+    public CitySimulation readScenario() throws IOException {
+        return ScenarioBuilder.readScenario(this.scenario.getCanonicalPath(), this.output.getCanonicalPath());
+    }
+}
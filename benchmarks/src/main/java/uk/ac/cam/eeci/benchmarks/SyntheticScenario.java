@@ -0,0 +1,270 @@
+package uk.ac.cam.eeci.benchmarks;
+
+import uk.ac.cam.eeci.energyagents.Person;
+import uk.ac.cam.eeci.energyagents.strategy.HeatingControlStrategyFactory.ControlStrategyType;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static uk.ac.cam.eeci.energyagents.ScenarioBuilder.*;
+
+/**
+ * Generates synthetic scenario databases of arbitrary size.
+ * <br><br>
+ * The scenarios follow the schema of the demo scenario. All parameters are drawn from a seeded
+ * random number generator, hence a scenario is fully determined by its size and seed and can be
+ * used to track performance between releases.
+ */
+public class SyntheticScenario {
+
+    public final static int PEOPLE_PER_DWELLING = 2;
+    public final static int DWELLINGS_PER_DISTRICT = 100;
+    public final static int NUMBER_MARKOV_CHAINS = 4;
+    public final static Duration TIME_STEP_SIZE = Duration.ofMinutes(10);
+    public final static LocalDateTime INITIAL_DATE_TIME = LocalDateTime.of(2015, 1, 1, 0, 0);
+
+    private final static DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+    private final static DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSS");
+    private final static String[] DAYS = {"weekday", "weekend"};
+    private final static ControlStrategyType[] STRATEGIES = {
+            ControlStrategyType.OFF, ControlStrategyType.FLAT,
+            ControlStrategyType.TIME_TRIGGERED, ControlStrategyType.PRESENCE_TRIGGERED
+    };
+
+    private final int numberDwellings;
+    private final int numberTimeSteps;
+    private final boolean logResults;
+    private final long seed;
+
+    /**
+     * @param numberDwellings the number of dwellings, each of which is home of two people
+     * @param numberTimeSteps the number of time steps of the simulation
+     * @param logResults true if temperature and activity shall be logged
+     * @param seed the seed of all random parameters
+     */
+    public SyntheticScenario(int numberDwellings, int numberTimeSteps, boolean logResults, long seed) {
+        this.numberDwellings = numberDwellings;
+        this.numberTimeSteps = numberTimeSteps;
+        this.logResults = logResults;
+        this.seed = seed;
+    }
+
+    /**
+     * Writes the scenario into a temporary database that is deleted on exit.
+     *
+     * @return the temporary database
+     * @throws IOException whenever writing the database fails
+     */
+    public File writeToTemporaryFile() throws IOException {
+        File file = File.createTempFile(String.format("synthetic-scenario-%d-", this.numberDwellings), ".db");
+        file.deleteOnExit();
+        this.write(file);
+        return file;
+    }
+
+    /**
+     * Writes the scenario into a database.
+     *
+     * @param file the database file, will be overwritten
+     * @throws IOException whenever writing the database fails
+     */
+    public void write(File file) throws IOException {
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", file.getCanonicalPath()))) {
+            conn.setAutoCommit(false);
+            Random random = new Random(this.seed);
+            this.writeParameters(conn);
+            this.writeEnvironment(conn, random);
+            this.writeMarkovChains(conn, random);
+            this.writeDwellings(conn, random);
+            this.writePeople(conn, random);
+            conn.commit();
+        } catch (SQLException e) {
+            throw new IOException("Failed to write synthetic scenario.", e);
+        }
+    }
+
+    private void writeParameters(Connection conn) throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate(String.format("drop table if exists %s;", SQL_TABLES_PARAMETERS));
+            stat.executeUpdate(String.format("create table %s (\"index\" BIGINT, %s TIME, %s TIME, %s DATETIME, " +
+                            "%s TIME, %s BOOLEAN, %s BOOLEAN, %s BOOLEAN, %s BOOLEAN, %s BIGINT, %s FLOAT, %s FLOAT, " +
+                            "%s FLOAT, %s TIME);",
+                    SQL_TABLES_PARAMETERS, SQL_COLUMNS_PAR_BED_TIME, SQL_COLUMNS_PAR_COME_HOME_TIME,
+                    SQL_COLUMNS_PAR_INITIAL_DATETIME, SQL_COLUMNS_PAR_LEAVE_HOME_TIME, SQL_COLUMNS_PAR_LOG_ACTIVITY,
+                    SQL_COLUMNS_PAR_LOG_AGGREGATED, SQL_COLUMNS_PAR_LOG_TEMPERATURE, SQL_COLUMNS_PAR_LOG_THERMAL_POWER,
+                    SQL_COLUMNS_PAR_NUMBER_TIME_STEPS, SQL_COLUMNS_PAR_SET_POINT_WHILE_ASLEEP,
+                    SQL_COLUMNS_PAR_SET_POINT_WHILE_HOME, SQL_COLUMNS_PAR_TIME_STEP_SIZE, SQL_COLUMNS_PAR_WAKE_UP_TIME));
+        }
+        try (PreparedStatement prep = conn.prepareStatement(String.format(
+                "insert into %s values (1, '22:00:00.000000', '18:00:00.000000', ?, '09:00:00.000000', ?, 0, ?, 0, ?, " +
+                        "18.0, 21.0, ?, '07:00:00.000000');", SQL_TABLES_PARAMETERS))) {
+            prep.setString(1, INITIAL_DATE_TIME.format(DATE_TIME_FORMAT));
+            prep.setBoolean(2, this.logResults);
+            prep.setBoolean(3, this.logResults);
+            prep.setInt(4, this.numberTimeSteps);
+            prep.setDouble(5, TIME_STEP_SIZE.toMinutes());
+            prep.executeUpdate();
+        }
+    }
+
+    private void writeEnvironment(Connection conn, Random random) throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate(String.format("drop table if exists %s;", SQL_TABLES_ENVIRONMENT));
+            stat.executeUpdate(String.format("create table %s (\"index\" DATETIME, %s FLOAT);",
+                    SQL_TABLES_ENVIRONMENT, SQL_COLUMNS_ENV_TEMPERATURE));
+        }
+        try (PreparedStatement prep = conn.prepareStatement(String.format("insert into %s values (?, ?);",
+                SQL_TABLES_ENVIRONMENT))) {
+            LocalDateTime timeStamp = INITIAL_DATE_TIME;
+            for (int i = 0; i <= this.numberTimeSteps; i++) {
+                double dailyCycle = Math.sin(2 * Math.PI * timeStamp.toLocalTime().toSecondOfDay() / 86400.0);
+                prep.setString(1, timeStamp.format(DATE_TIME_FORMAT));
+                prep.setDouble(2, 5 + 5 * dailyCycle + random.nextGaussian());
+                prep.addBatch();
+                timeStamp = timeStamp.plus(TIME_STEP_SIZE);
+            }
+            prep.executeBatch();
+        }
+    }
+
+    private void writeMarkovChains(Connection conn, Random random) throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate(String.format("drop table if exists %s;", SQL_TABLES_MARKOV_CHAINS));
+            stat.executeUpdate(String.format("create table %s (\"index\" BIGINT, %s TEXT);",
+                    SQL_TABLES_MARKOV_CHAINS, SQL_COLUMNS_MARKOVS_TABLENAME));
+        }
+        for (int chain = 0; chain < NUMBER_MARKOV_CHAINS; chain++) {
+            String tableName = String.format("markov_chain%03d", chain);
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate(String.format("insert into %s values (%d, '%s');",
+                        SQL_TABLES_MARKOV_CHAINS, chain, tableName));
+                stat.executeUpdate(String.format("drop table if exists %s;", tableName));
+                stat.executeUpdate(String.format("create table %s (%s TEXT, %s TIME, %s TEXT, %s FLOAT, %s TEXT);",
+                        tableName, SQL_COLUMNS_MARKOV_DAY, SQL_COLUMNS_MARKOV_TIME_OF_DAY, SQL_COLUMNS_MARKOV_FROM,
+                        SQL_COLUMNS_MARKOV_PROBABILITY, SQL_COLUMNS_MARKOV_TO));
+            }
+            try (PreparedStatement prep = conn.prepareStatement(String.format("insert into %s values (?, ?, ?, ?, ?);",
+                    tableName))) {
+                for (String day : DAYS) {
+                    LocalTime time = LocalTime.MIDNIGHT;
+                    do {
+                        for (Person.Activity from : Person.Activity.values()) {
+                            double[] probabilities = randomProbabilities(random, Person.Activity.values().length);
+                            for (Person.Activity to : Person.Activity.values()) {
+                                prep.setString(1, day);
+                                prep.setString(2, time.format(TIME_FORMAT));
+                                prep.setString(3, from.toString());
+                                prep.setDouble(4, probabilities[to.ordinal()]);
+                                prep.setString(5, to.toString());
+                                prep.addBatch();
+                            }
+                        }
+                        time = time.plus(TIME_STEP_SIZE);
+                    } while (!time.equals(LocalTime.MIDNIGHT));
+                }
+                prep.executeBatch();
+            }
+        }
+    }
+
+    private static double[] randomProbabilities(Random random, int numberStates) {
+        double[] probabilities = new double[numberStates];
+        double sum = 0;
+        for (int i = 0; i < numberStates; i++) {
+            probabilities[i] = random.nextDouble() + (i == 0 ? numberStates : 0); // prefer the first state
+            sum += probabilities[i];
+        }
+        for (int i = 0; i < numberStates; i++) {
+            probabilities[i] /= sum;
+        }
+        return probabilities;
+    }
+
+    private void writeDwellings(Connection conn, Random random) throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate(String.format("drop table if exists %s;", SQL_TABLES_DWELLINGS));
+            stat.executeUpdate(String.format("create table %s (\"index\" BIGINT, %s BIGINT, %s BIGINT, %s TEXT, " +
+                            "%s FLOAT, %s BIGINT, %s FLOAT, %s FLOAT, %s FLOAT, %s FLOAT, %s FLOAT, %s FLOAT, %s FLOAT, " +
+                            "%s FLOAT, %s FLOAT, %s FLOAT);",
+                    SQL_TABLES_DWELLINGS, SQL_COLUMNS_DW_DISTRICT_ID, SQL_COLUMNS_DW_FLOOR_AREA,
+                    SQL_COLUMNS_DW_HEATING_CONTROL_STRATEGY, SQL_COLUMNS_DW_INITIAL_TEMPERATURE,
+                    SQL_COLUMNS_DW_MAX_HEATING_POWER, SQL_COLUMNS_DW_NATURAL_VENTILATION_RATE,
+                    SQL_COLUMNS_DW_ROOM_HEIGHT, SQL_COLUMNS_DW_THERMAL_MASS_AREA,
+                    SQL_COLUMNS_DW_THERMAL_MASS_CAPACITY, SQL_COLUMNS_DW_TR_ADJ_GROUND, SQL_COLUMNS_DW_U_VALUE_FLOOR,
+                    SQL_COLUMNS_DW_U_VALUE_ROOF, SQL_COLUMNS_DW_U_VALUE_WALL, SQL_COLUMNS_DW_U_VALUE_WINDOW,
+                    SQL_COLUMNS_DW_WINDOW_TO_WALL_RATIO));
+        }
+        try (PreparedStatement prep = conn.prepareStatement(String.format(
+                "insert into %s values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);", SQL_TABLES_DWELLINGS))) {
+            for (int i = 0; i < this.numberDwellings; i++) {
+                double floorArea = 60 + random.nextInt(90);
+                prep.setInt(1, i);
+                prep.setInt(2, i / DWELLINGS_PER_DISTRICT);
+                prep.setDouble(3, floorArea);
+                prep.setString(4, STRATEGIES[random.nextInt(STRATEGIES.length)].toString());
+                prep.setDouble(5, 15 + 5 * random.nextDouble());
+                prep.setDouble(6, 100 * floorArea);
+                prep.setDouble(7, 0.5 + 0.3 * random.nextDouble());
+                prep.setDouble(8, 2.4 + 0.6 * random.nextDouble());
+                prep.setDouble(9, 2.5 * floorArea);
+                prep.setDouble(10, (110000 + 110000 * random.nextDouble()) * floorArea);
+                prep.setDouble(11, 0.9 + 0.1 * random.nextDouble());
+                prep.setDouble(12, 0.2 + 0.3 * random.nextDouble());
+                prep.setDouble(13, 0.1 + 0.1 * random.nextDouble());
+                prep.setDouble(14, 0.2 + 0.2 * random.nextDouble());
+                prep.setDouble(15, 1.4 + 1.0 * random.nextDouble());
+                prep.setDouble(16, 0.15 + 0.1 * random.nextDouble());
+                prep.addBatch();
+            }
+            prep.executeBatch();
+        }
+    }
+
+    private void writePeople(Connection conn, Random random) throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate(String.format("drop table if exists %s;", SQL_TABLES_PEOPLE));
+            stat.executeUpdate(String.format("create table %s (\"index\" BIGINT, %s FLOAT, %s BIGINT, %s TEXT, " +
+                            "%s BIGINT, %s FLOAT, %s BIGINT);",
+                    SQL_TABLES_PEOPLE, SQL_COLUMNS_PPL_ACTIVE_METABOLIC_RATE, SQL_COLUMNS_PPL_DWELLING_ID,
+                    SQL_COLUMNS_PPL_INITIAL_ACTIVITY, SQL_COLUMNS_PPL_MARKOV_ID,
+                    SQL_COLUMNS_PPL_PASSIVE_METABOLIC_RATE, SQL_COLUMNS_PPL_RANDOM_SEED));
+        }
+        try (PreparedStatement prep = conn.prepareStatement(String.format(
+                "insert into %s values (?, ?, ?, ?, ?, ?, ?);", SQL_TABLES_PEOPLE))) {
+            Person.Activity[] activities = Person.Activity.values();
+            for (int i = 0; i < this.numberDwellings * PEOPLE_PER_DWELLING; i++) {
+                prep.setInt(1, i);
+                prep.setDouble(2, 100.0);
+                prep.setInt(3, i / PEOPLE_PER_DWELLING);
+                prep.setString(4, activities[random.nextInt(activities.length)].toString());
+                prep.setInt(5, random.nextInt(NUMBER_MARKOV_CHAINS));
+                prep.setDouble(6, 50.0);
+                prep.setInt(7, random.nextInt());
+                prep.addBatch();
+            }
+            prep.executeBatch();
+        }
+    }
+
+    /**
+     * Writes a synthetic scenario to disk.
+     *
+     * @param args the output path, the number of dwellings, the number of time steps, and optionally the seed
+     * @throws IOException whenever writing the database fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("usage: SyntheticScenario <output path> <number dwellings> <number time steps> [seed]");
+            System.exit(1);
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        new SyntheticScenario(Integer.parseInt(args[1]), Integer.parseInt(args[2]), true, seed)
+                .write(new File(args[0]));
+    }
+}
@@ -0,0 +1,195 @@
+package uk.ac.cam.eeci.energyagents;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.cam.eeci.framework.Conductor;
+import uk.ac.cam.eeci.framework.SimulationContext;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs a batch of scenarios within one JVM.
+ * <br><br>
+ * All scenarios share the simulation context and hence its worker pool, warmed up code, and the compiled markov chains and temperature
+ * time series of their inputs. Scenarios are run back to back, or a given number of them concurrently.
+ */
+public class BatchRunner {
+
+    private final static Logger LOGGER = LogManager.getLogger(BatchRunner.class.getName());
+    private final static String MANIFEST_COMMENT = "#";
+    private final static String MANIFEST_SEPARATOR = ",";
+
+    /**
+     * A single scenario of the batch.
+     */
+    public static class Run {
+
+        private final String inputPath;
+        private final String outputPath;
+
+        /**
+         * @param inputPath the path to the input database
+         * @param outputPath the path to the database to which results shall be written
+         */
+        public Run(String inputPath, String outputPath) {
+            this.inputPath = inputPath;
+            this.outputPath = outputPath;
+        }
+
+        public String getInputPath() {
+            return this.inputPath;
+        }
+
+        public String getOutputPath() {
+            return this.outputPath;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s -> %s", this.inputPath, this.outputPath);
+        }
+    }
+
+    private final List<Run> runs;
+    private final int numberConcurrentRuns;
+    private final SimulationContext context;
+    private final Consumer<CitySimulation> configuration;
+
+    /**
+     * Creates a batch within the default context, see {@link SimulationContext#getDefault()}.
+     *
+     * @param runs the scenarios to run
+     * @param numberConcurrentRuns the number of scenarios to run at the same time
+     * @param configuration applied to each simulation before it is run, e.g. to choose its execution mode
+     */
+    public BatchRunner(List<Run> runs, int numberConcurrentRuns, Consumer<CitySimulation> configuration) {
+        this(runs, numberConcurrentRuns, SimulationContext.getDefault(), configuration);
+    }
+
+    /**
+     * @param runs the scenarios to run
+     * @param numberConcurrentRuns the number of scenarios to run at the same time
+     * @param context the context shared by all scenarios; it is not shut down by the batch
+     * @param configuration applied to each simulation before it is run, e.g. to choose its execution mode
+     */
+    public BatchRunner(List<Run> runs, int numberConcurrentRuns, SimulationContext context,
+                       Consumer<CitySimulation> configuration) {
+        if (numberConcurrentRuns < 1) {
+            throw new IllegalArgumentException(String.format("Number of concurrent runs must be positive, was %d.",
+                    numberConcurrentRuns));
+        }
+        this.runs = new ArrayList<>(runs);
+        this.numberConcurrentRuns = numberConcurrentRuns;
+        this.context = context;
+        this.configuration = configuration;
+    }
+
+    /**
+     * Reads the scenarios of a batch from a manifest.
+     * <br><br>
+     * Each line of the manifest contains the path to an input database and the path to the output
+     * database, separated by a comma. Relative paths are relative to the manifest. Empty lines and
+     * lines starting with # are ignored.
+     *
+     * @param manifest the manifest file
+     * @return the scenarios of the batch
+     * @throws IOException whenever reading the manifest fails or a line is malformed
+     */
+    public static List<Run> readManifest(File manifest) throws IOException {
+        File directory = manifest.getAbsoluteFile().getParentFile();
+        List<Run> runs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(manifest.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber += 1;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith(MANIFEST_COMMENT)) {
+                    continue;
+                }
+                String[] paths = line.split(MANIFEST_SEPARATOR);
+                if (paths.length != 2 || paths[0].trim().isEmpty() || paths[1].trim().isEmpty()) {
+                    String msg = String.format("Line %d of manifest %s must contain an input and an output path.",
+                            lineNumber, manifest);
+                    throw new IOException(msg);
+                }
+                runs.add(new Run(resolve(directory, paths[0].trim()), resolve(directory, paths[1].trim())));
+            }
+        }
+        return runs;
+    }
+
+    private static String resolve(File directory, String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file.getPath() : new File(directory, path).getPath();
+    }
+
+    /**
+     * Runs all scenarios of the batch. A failing scenario does not abort the others.
+     *
+     * @return the scenarios that failed
+     * @throws InterruptedException when interrupted while waiting for the scenarios
+     */
+    public List<Run> run() throws InterruptedException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(this.numberConcurrentRuns, runnable -> {
+            Thread thread = new Thread(runnable, String.format("batch-runner-%d", threadNumber.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Optional<Run>>> results = new ArrayList<>();
+            for (Run run : this.runs) {
+                results.add(executor.submit(() -> this.run(run)));
+            }
+            List<Run> failedRuns = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get().ifPresent(failedRuns::add);
+                } catch (ExecutionException e) {
+                    LOGGER.error(String.format("Run %s failed.", this.runs.get(i)), e.getCause());
+                    failedRuns.add(this.runs.get(i));
+                }
+            }
+            LOGGER.info(String.format("Finished %d of %d runs successfully.", this.runs.size() - failedRuns.size(),
+                    this.runs.size()));
+            return Collections.unmodifiableList(failedRuns);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Optional<Run> run(Run run) {
+        this.context.enterMain();
+        LOGGER.info(String.format("Starting run %s.", run));
+        try {
+            CitySimulation citySimulation = ScenarioBuilder.readScenario(run.inputPath, run.outputPath, this.context);
+            this.configuration.accept(citySimulation);
+            Conductor conductor = new Conductor(citySimulation, this.context, false); // the context is shared between runs
+            conductor.run();
+            if (conductor.getFailure().isPresent()) {
+                LOGGER.error(String.format("Run %s failed.", run), conductor.getFailure().get());
+                return Optional.of(run);
+            }
+        } catch (IOException|RuntimeException e) {
+            LOGGER.error(String.format("Run %s failed.", run), e);
+            return Optional.of(run);
+        }
+        LOGGER.info(String.format("Finished run %s.", run));
+        return Optional.empty();
+    }
+}
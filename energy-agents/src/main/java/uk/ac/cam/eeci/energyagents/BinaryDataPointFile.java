@@ -0,0 +1,297 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * A compact, columnar file holding the values of one double data point.
+ * <br><br>
+ * The file starts with a small header holding the name of the data point, the ids of its sources,
+ * the time stamp of the first time step, and the constant time step size. It is followed by one
+ * block of doubles per time step, holding the values of all sources in the order of their ids in
+ * the header. All numbers are little endian; time stamps are stored as epoch milliseconds.
+ * <br><br>
+ * The file is written and read through memory mapped regions of the file, each holding a whole
+ * number of time steps. The number of time steps in the header is updated with each appended time
+ * step, so that a file of an aborted run is readable up to its last complete time step.
+ */
+public class BinaryDataPointFile implements Closeable {
+
+    private final static int MAGIC = 0x50444145; // "EADP"
+    private final static int VERSION = 1;
+    private final static int REGION_BYTES = 8 * 1024 * 1024;
+    private final static int POSITION_DATA_OFFSET = 8;
+    private final static int POSITION_NUMBER_SOURCES = 12;
+    private final static int POSITION_NUMBER_TIME_STEPS = 16;
+    private final static int POSITION_START = 24;
+    private final static int POSITION_TIME_STEP_SIZE = 32;
+    private final static int POSITION_NAME = 40;
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final MappedByteBuffer header;
+    private final String name;
+    private final int[] ids;
+    private final int dataOffset;
+    private final int rowBytes;
+    private final int numberTimeStepsPerRegion;
+    private MappedByteBuffer region;
+    private int indexOfRegion;
+    private int numberTimeSteps;
+    private long startMillis;
+    private long timeStepSizeMillis;
+
+    private BinaryDataPointFile(FileChannel channel, FileChannel.MapMode mode, MappedByteBuffer header,
+                                String name, int[] ids, int dataOffset, int numberTimeSteps,
+                                long startMillis, long timeStepSizeMillis) {
+        this.channel = channel;
+        this.mode = mode;
+        this.header = header;
+        this.name = name;
+        this.ids = ids;
+        this.dataOffset = dataOffset;
+        this.rowBytes = Double.BYTES * ids.length;
+        this.numberTimeStepsPerRegion = Math.max(1, REGION_BYTES / this.rowBytes);
+        this.region = null;
+        this.indexOfRegion = -1;
+        this.numberTimeSteps = numberTimeSteps;
+        this.startMillis = startMillis;
+        this.timeStepSizeMillis = timeStepSizeMillis;
+    }
+
+    /**
+     * Creates a new, empty file for writing, replacing an existing file.
+     *
+     * @param path the path of the file
+     * @param name the name of the data point
+     * @param ids the ids of the data point sources, in the order in which their values are appended
+     * @return the file, open for appending time steps
+     * @throws IOException whenever the file cannot be created
+     */
+    public static BinaryDataPointFile create(Path path, String name, int[] ids) throws IOException {
+        if (ids.length == 0) {
+            throw new IllegalArgumentException("A binary data point file needs at least one data point source.");
+        }
+        byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+        int headerBytes = POSITION_NAME + Integer.BYTES + encodedName.length + Integer.BYTES * ids.length;
+        int dataOffset = (headerBytes + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataOffset);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(POSITION_DATA_OFFSET, dataOffset);
+        header.putInt(POSITION_NUMBER_SOURCES, ids.length);
+        header.putLong(POSITION_NUMBER_TIME_STEPS, 0);
+        header.putLong(POSITION_START, 0);
+        header.putLong(POSITION_TIME_STEP_SIZE, 0);
+        header.position(POSITION_NAME);
+        header.putInt(encodedName.length);
+        header.put(encodedName);
+        for (int id : ids) {
+            header.putInt(id);
+        }
+        return new BinaryDataPointFile(channel, FileChannel.MapMode.READ_WRITE, header, name, ids.clone(),
+                dataOffset, 0, 0, 0);
+    }
+
+    /**
+     * Opens an existing file for reading.
+     *
+     * @param path the path of the file
+     * @return the file, open for reading
+     * @throws IOException whenever the file cannot be read or is not a binary data point file
+     */
+    public static BinaryDataPointFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < POSITION_NAME + Integer.BYTES) {
+                throw new IOException(String.format("%s is not a binary data point file.", path));
+            }
+            ByteBuffer fixedHeader = channel.map(FileChannel.MapMode.READ_ONLY, 0, POSITION_NAME)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (fixedHeader.getInt(0) != MAGIC || fixedHeader.getInt(4) != VERSION) {
+                throw new IOException(String.format("%s is not a binary data point file of version %d.",
+                        path, VERSION));
+            }
+            int dataOffset = fixedHeader.getInt(POSITION_DATA_OFFSET);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, dataOffset);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.position(POSITION_NAME);
+            byte[] encodedName = new byte[header.getInt()];
+            header.get(encodedName);
+            int[] ids = new int[header.getInt(POSITION_NUMBER_SOURCES)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = header.getInt();
+            }
+            long numberCompleteTimeSteps = (channel.size() - dataOffset) / (Double.BYTES * ids.length);
+            int numberTimeSteps = (int) Math.min(header.getLong(POSITION_NUMBER_TIME_STEPS), numberCompleteTimeSteps);
+            return new BinaryDataPointFile(channel, FileChannel.MapMode.READ_ONLY, header,
+                    new String(encodedName, StandardCharsets.UTF_8), ids, dataOffset, numberTimeSteps,
+                    header.getLong(POSITION_START), header.getLong(POSITION_TIME_STEP_SIZE));
+        } catch (IOException|RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Appends the values of all data point sources of one time step. The time step size is defined
+     * by the first two time steps and must stay constant thereafter.
+     *
+     * @param timeStamp the time stamp of the values
+     * @param values the values of the data point sources, in the order of their ids
+     * @throws IOException whenever the file cannot be extended
+     */
+    public void append(ZonedDateTime timeStamp, double[] values) throws IOException {
+        if (this.mode != FileChannel.MapMode.READ_WRITE) {
+            throw new IllegalStateException("Binary data point file is open for reading only.");
+        }
+        if (values.length != this.ids.length) {
+            String msg = String.format("Expected %d values, but got %d.", this.ids.length, values.length);
+            throw new IllegalArgumentException(msg);
+        }
+        long millis = timeStamp.toInstant().toEpochMilli();
+        if (this.numberTimeSteps == 0) {
+            this.startMillis = millis;
+            this.header.putLong(POSITION_START, millis);
+        } else if (this.numberTimeSteps == 1) {
+            if (millis <= this.startMillis) {
+                String msg = String.format("Time stamp %s does not follow the previous time step.", timeStamp);
+                throw new IllegalArgumentException(msg);
+            }
+            this.timeStepSizeMillis = millis - this.startMillis;
+            this.header.putLong(POSITION_TIME_STEP_SIZE, this.timeStepSizeMillis);
+        } else if (millis != this.startMillis + this.numberTimeSteps * this.timeStepSizeMillis) {
+            String msg = String.format("Time stamp %s does not follow the constant time step size of %s.",
+                    timeStamp, this.getTimeStepSize());
+            throw new IllegalArgumentException(msg);
+        }
+        ByteBuffer region = this.regionOf(this.numberTimeSteps);
+        int position = this.positionInRegion(this.numberTimeSteps);
+        for (double value : values) {
+            region.putDouble(position, value);
+            position += Double.BYTES;
+        }
+        this.numberTimeSteps += 1;
+        this.header.putLong(POSITION_NUMBER_TIME_STEPS, this.numberTimeSteps);
+    }
+
+    /**
+     * Reads the values of consecutive time steps.
+     *
+     * @param firstTimeStep the index of the first time step to read
+     * @param numberTimeSteps the number of time steps to read
+     * @param buffer the buffer to which the values are written; the values of one time step follow
+     *               the values of the previous time step, each in the order of the ids
+     * @throws IOException whenever the file cannot be read
+     */
+    public void read(int firstTimeStep, int numberTimeSteps, double[] buffer) throws IOException {
+        if (firstTimeStep < 0 || numberTimeSteps < 0 || firstTimeStep + numberTimeSteps > this.numberTimeSteps) {
+            String msg = String.format("Time steps %d to %d are out of bounds of %d time steps.",
+                    firstTimeStep, firstTimeStep + numberTimeSteps, this.numberTimeSteps);
+            throw new IndexOutOfBoundsException(msg);
+        }
+        int index = 0;
+        for (int timeStep = firstTimeStep; timeStep < firstTimeStep + numberTimeSteps; timeStep++) {
+            ByteBuffer region = this.regionOf(timeStep);
+            int position = this.positionInRegion(timeStep);
+            for (int source = 0; source < this.ids.length; source++) {
+                buffer[index] = region.getDouble(position);
+                position += Double.BYTES;
+                index += 1;
+            }
+        }
+    }
+
+    /**
+     * @param timeStep the index of the time step
+     * @param source the position of the data point source in the ids
+     * @return the value of the data point source in the time step
+     * @throws IOException whenever the file cannot be read
+     */
+    public double getValue(int timeStep, int source) throws IOException {
+        if (timeStep < 0 || timeStep >= this.numberTimeSteps || source < 0 || source >= this.ids.length) {
+            String msg = String.format("Value (%d, %d) is out of bounds of %d time steps and %d sources.",
+                    timeStep, source, this.numberTimeSteps, this.ids.length);
+            throw new IndexOutOfBoundsException(msg);
+        }
+        return this.regionOf(timeStep).getDouble(this.positionInRegion(timeStep) + Double.BYTES * source);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the ids of the data point sources in the order in which their values are stored
+     */
+    public int[] getIds() {
+        return this.ids.clone();
+    }
+
+    public int getNumberTimeSteps() {
+        return this.numberTimeSteps;
+    }
+
+    /**
+     * @param timeStep the index of the time step
+     * @return the time stamp of the time step, in UTC
+     */
+    public ZonedDateTime getTimeStamp(int timeStep) {
+        return Instant.ofEpochMilli(this.startMillis + timeStep * this.timeStepSizeMillis).atZone(ZoneOffset.UTC);
+    }
+
+    /**
+     * @return the constant time step size, or zero if there are less than two time steps
+     */
+    public Duration getTimeStepSize() {
+        return Duration.ofMillis(this.timeStepSizeMillis);
+    }
+
+    /**
+     * Closes the file. A file open for writing is cut to its last time step.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.mode == FileChannel.MapMode.READ_WRITE) {
+                this.channel.truncate(this.dataOffset + (long) this.numberTimeSteps * this.rowBytes);
+            }
+        } finally {
+            this.region = null;
+            this.channel.close();
+        }
+    }
+
+    private ByteBuffer regionOf(int timeStep) throws IOException {
+        int indexOfRegion = timeStep / this.numberTimeStepsPerRegion;
+        if (indexOfRegion != this.indexOfRegion) {
+            long position = this.dataOffset + (long) indexOfRegion * this.numberTimeStepsPerRegion * this.rowBytes;
+            long size = (long) this.numberTimeStepsPerRegion * this.rowBytes;
+            if (this.mode == FileChannel.MapMode.READ_ONLY) {
+                size = Math.min(size, this.channel.size() - position);
+            }
+            this.region = this.channel.map(this.mode, position, size);
+            this.region.order(ByteOrder.LITTLE_ENDIAN);
+            this.indexOfRegion = indexOfRegion;
+        }
+        return this.region;
+    }
+
+    private int positionInRegion(int timeStep) {
+        return (timeStep % this.numberTimeStepsPerRegion) * this.rowBytes;
+    }
+}
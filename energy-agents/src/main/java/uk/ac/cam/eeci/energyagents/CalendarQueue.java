@@ -0,0 +1,111 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A priority queue of events scheduled for discrete time steps.
+ * <br><br>
+ * Events are held in a fixed number of buckets, each covering one time step of a calendar "year".
+ * Adding an event and polling all events of a time step costs constant time per event, as long as
+ * most events are scheduled less than one year ahead. Events further ahead stay in their bucket
+ * until their year has come.
+ * <br><br>
+ * Time steps must be polled in increasing order and events can only be scheduled for time steps
+ * that have not been polled yet.
+ *
+ * @param <E> The type of the events.
+ */
+public class CalendarQueue<E> {
+
+    private final List<List<Entry<E>>> buckets;
+    private long lastPolledStep;
+    private int size;
+
+    /**
+     * @param numberBuckets the number of time steps covered by one calendar year
+     */
+    public CalendarQueue(int numberBuckets) {
+        if (numberBuckets < 1) {
+            throw new IllegalArgumentException(String.format("Number of buckets must be positive, was %d.",
+                    numberBuckets));
+        }
+        this.buckets = new ArrayList<>(numberBuckets);
+        for (int i = 0; i < numberBuckets; i++) {
+            this.buckets.add(new ArrayList<>());
+        }
+        this.lastPolledStep = Long.MIN_VALUE;
+        this.size = 0;
+    }
+
+    /**
+     * @param step the time step at which the event is due
+     * @param event the event
+     * @throws IllegalArgumentException if the time step has already been polled
+     */
+    public void add(long step, E event) {
+        if (step <= this.lastPolledStep) {
+            String msg = String.format("Time step %d has already been polled.", step);
+            throw new IllegalArgumentException(msg);
+        }
+        this.bucketOf(step).add(new Entry<>(step, event));
+        this.size += 1;
+    }
+
+    /**
+     * Removes all events due at the given time step.
+     *
+     * @param step the time step; must be later than all time steps polled before
+     * @return all events due at the given time step in the order in which they have been added
+     */
+    public List<E> pollDue(long step) {
+        if (step <= this.lastPolledStep) {
+            String msg = String.format("Time step %d has already been polled.", step);
+            throw new IllegalArgumentException(msg);
+        }
+        this.lastPolledStep = step;
+        List<Entry<E>> bucket = this.bucketOf(step);
+        List<E> dueEvents = new ArrayList<>();
+        int numberRemaining = 0;
+        for (Entry<E> entry : bucket) {
+            if (entry.step == step) {
+                dueEvents.add(entry.event);
+            } else {
+                bucket.set(numberRemaining, entry);
+                numberRemaining += 1;
+            }
+        }
+        bucket.subList(numberRemaining, bucket.size()).clear();
+        this.size -= dueEvents.size();
+        return dueEvents;
+    }
+
+    /**
+     * @return the number of events in the queue
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return true if there are no events in the queue
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    private List<Entry<E>> bucketOf(long step) {
+        return this.buckets.get((int) Math.floorMod(step, (long) this.buckets.size()));
+    }
+
+    private static class Entry<E> {
+
+        private final long step;
+        private final E event;
+
+        private Entry(long step, E event) {
+            this.step = step;
+            this.event = event;
+        }
+    }
+}
@@ -2,6 +2,10 @@ package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.EndSimulationException;
 import uk.ac.cam.eeci.framework.ISimulation;
+import uk.ac.cam.eeci.framework.LoadBalancer;
+import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
+import uk.ac.cam.eeci.framework.WorkerPool;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -15,13 +19,32 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Defines an entire simulation run.
  */
 public class CitySimulation implements ISimulation {
 
+    /**
+     * The ways in which people and dwellings are stepped.
+     */
+    public enum ExecutionMode {
+        /**
+         * Each person and each dwelling is stepped on its own executor and steps are joined through futures.
+         */
+        FUTURES,
+        /**
+         * Households are partitioned into contiguous shards. Each shard is stepped directly by one worker
+         * thread and the phases of a time step are separated by a barrier. Results are the same as with
+         * {@link #FUTURES}.
+         */
+        BARRIER
+    }
+
     private final static Logger logger = LogManager.getLogger(CitySimulation.class.getName());
 
     public final static String METADATA_KEY_SIM_START = "startOfSimulation";
@@ -36,10 +59,24 @@ public class CitySimulation implements ISimulation {
     private final Set<PersonReference> people;
     private final EnvironmentReference environment;
     private final DataLoggerReference dataLoggerReference;
+    private final SimulationContext context;
     private final Duration timeStepSize;
+    private final int numberSteps;
     private ZonedDateTime currentTime;
+    private int currentStep;
     private int remainingSteps;
     private LocalDateTime simulationStartTime = LocalDateTime.MIN;
+    private ExecutionMode executionMode = ExecutionMode.FUTURES;
+    private int numberShards = 1;
+    private boolean eventDriven = false;
+    private boolean batchedDwellings = false;
+    private CalendarQueue<ScheduledChange<PersonReference>> scheduledChanges;
+    private Phaser phaser;
+    private volatile boolean terminated = false;
+    private final AtomicReference<Throwable> shardFailure = new AtomicReference<>();
+    private SimulationMetrics metrics = null;
+    private int numberProfilingSteps = 0;
+    private LoadBalancer loadBalancer;
 
     /**
      * @param dwellings The set of all dwellings in the city.
@@ -48,19 +85,136 @@ public class CitySimulation implements ISimulation {
     public CitySimulation(Collection<DwellingReference> dwellings, Collection<PersonReference> people,
                           EnvironmentReference environment, DataLoggerReference dataLoggerReference,
                           ZonedDateTime startTime, Duration timeStepSize, int numberSteps) {
+        this(dwellings, people, environment, dataLoggerReference, startTime, timeStepSize, numberSteps,
+                SimulationContext.getDefault());
+    }
+
+    /**
+     * @param dwellings The set of all dwellings in the city.
+     * @param people The set of all people in the city.
+     * @param context The context of all references of the city.
+     */
+    public CitySimulation(Collection<DwellingReference> dwellings, Collection<PersonReference> people,
+                          EnvironmentReference environment, DataLoggerReference dataLoggerReference,
+                          ZonedDateTime startTime, Duration timeStepSize, int numberSteps,
+                          SimulationContext context) {
+        this.context = context;
         this.dwellings = new HashSet<>(dwellings);
         this.people = new HashSet<>(people);
         this.environment = environment;
         this.dataLoggerReference = dataLoggerReference;
         this.currentTime = startTime;
         this.timeStepSize = timeStepSize;
+        this.numberSteps = numberSteps;
+        this.currentStep = 0;
         this.remainingSteps = numberSteps;
     }
 
+    /**
+     * Chooses the way in which people and dwellings are stepped. Must be chosen before the first step.
+     *
+     * @param executionMode the way in which people and dwellings are stepped
+     * @param numberShards the number of shards and worker threads in {@link ExecutionMode#BARRIER} mode
+     */
+    public void setExecutionMode(ExecutionMode executionMode, int numberShards) {
+        if (this.simulationStartTime != LocalDateTime.MIN) {
+            throw new IllegalStateException("Execution mode cannot be changed after the start of the simulation.");
+        }
+        if (numberShards < 1) {
+            throw new IllegalArgumentException(String.format("Number of shards must be positive, was %d.",
+                    numberShards));
+        }
+        this.executionMode = executionMode;
+        this.numberShards = numberShards;
+    }
+
+    /**
+     * Chooses whether people are stepped in every time step or only in time steps in which their activity
+     * changes. Must be chosen before the first step.
+     * <br><br>
+     * In event driven mode, the time of the next change of activity is sampled for each person and people
+     * are stepped only when their change is due. Results are statistically equivalent to stepping each
+     * person in every time step and reproducible for a given seed, but not identical to the results of
+     * stepping each person in every time step.
+     *
+     * @param eventDriven true if people shall be stepped only when their activity changes
+     */
+    public void setEventDriven(boolean eventDriven) {
+        if (this.simulationStartTime != LocalDateTime.MIN) {
+            throw new IllegalStateException("Event driven mode cannot be changed after the start of the simulation.");
+        }
+        this.eventDriven = eventDriven;
+    }
+
+    /**
+     * Chooses whether the dwellings of each shard are stepped together as one {@link DwellingBatch}. Must be
+     * chosen before the first step.
+     * <br><br>
+     * The thermal model of all dwellings of a shard is then stepped in one loop over flat arrays, after their
+     * inputs have been gathered. Dwellings never become dormant in this case. Applies to
+     * {@link ExecutionMode#BARRIER} only; results are identical.
+     *
+     * @param batchedDwellings true if the dwellings of each shard shall be stepped as one batch
+     */
+    public void setBatchedDwellings(boolean batchedDwellings) {
+        if (this.simulationStartTime != LocalDateTime.MIN) {
+            throw new IllegalStateException("Batched dwellings cannot be changed after the start of the simulation.");
+        }
+        this.batchedDwellings = batchedDwellings;
+    }
+
+    /**
+     * Chooses whether people and dwellings are migrated between workers to even out their load. Must be
+     * chosen before the first step.
+     * <br><br>
+     * The time each dwelling, its heating control strategy, and its residents keep their worker busy is
+     * measured during the first time steps. At the end of these, dwellings are migrated together with their
+     * strategy and residents, see {@link LoadBalancer}. Applies to {@link ExecutionMode#FUTURES} with the
+     * sharded scheduler only; results are unaffected.
+     *
+     * @param numberProfilingSteps the number of time steps after which to rebalance, or 0 to never rebalance
+     */
+    public void setRebalancing(int numberProfilingSteps) {
+        if (this.simulationStartTime != LocalDateTime.MIN) {
+            throw new IllegalStateException("Rebalancing cannot be changed after the start of the simulation.");
+        }
+        if (numberProfilingSteps < 0) {
+            throw new IllegalArgumentException(String.format("Number of profiling steps must not be negative, was %d.",
+                    numberProfilingSteps));
+        }
+        this.numberProfilingSteps = numberProfilingSteps;
+    }
+
+    /**
+     * Chooses whether performance metrics are collected. Must be chosen before the first step.
+     * <br><br>
+     * Collected metrics are exposed over JMX while the simulation runs and written to the output
+     * at the end of the simulation, see {@link SimulationMetrics}.
+     *
+     * @param metricsEnabled true if performance metrics shall be collected
+     */
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        if (this.simulationStartTime != LocalDateTime.MIN) {
+            throw new IllegalStateException("Metrics cannot be enabled after the start of the simulation.");
+        }
+        this.metrics = metricsEnabled ? new SimulationMetrics(this.context) : null;
+    }
+
+    /**
+     * @return the performance metrics of the simulation, if they are collected
+     */
+    public Optional<SimulationMetrics> getMetrics() {
+        return Optional.ofNullable(this.metrics);
+    }
+
     @Override
     public void step() throws InterruptedException, ExecutionException, EndSimulationException {
-        if (simulationStartTime == LocalDateTime.MIN) // FIXME should be done in a currently non-existing startup hook
+        if (simulationStartTime == LocalDateTime.MIN) { // FIXME should be done in a currently non-existing startup hook
             this.simulationStartTime = LocalDateTime.now();
+            if (this.metrics != null) {
+                this.metrics.start();
+            }
+        }
         if (this.remainingSteps > 0) {
             this.performStep();
             this.remainingSteps -= 1;
@@ -71,39 +225,315 @@ public class CitySimulation implements ISimulation {
 
     private void performStep() throws ExecutionException, InterruptedException, EndSimulationException {
         logger.debug(String.format("Simulating step at time %s.", this.currentTime));
+        if (this.currentStep == 0) {
+            this.startProfiling();
+        }
+        if (this.executionMode == ExecutionMode.BARRIER) {
+            this.stepPeopleAndDwellingsInShards();
+        } else {
+            this.stepPeopleAndDwellings();
+        }
+        long startOfPhase = this.startPhase();
+        this.environment.step().get();
+        this.endPhase(SimulationMetrics.Phase.ENVIRONMENT, startOfPhase);
+        this.currentTime = this.currentTime.plus(this.timeStepSize);
+        this.currentStep += 1;
+        if (this.dataLoggerReference != null) {
+            startOfPhase = this.startPhase();
+            this.dataLoggerReference.step(this.currentTime).get();
+            this.endPhase(SimulationMetrics.Phase.LOGGING, startOfPhase);
+        }
+        if (this.metrics != null) {
+            this.metrics.completeStep();
+        }
+        if (this.loadBalancer != null && this.currentStep == this.numberProfilingSteps) {
+            this.rebalance();
+        }
+    }
+
+    private void startProfiling() throws ExecutionException, InterruptedException {
+        boolean sharded = this.context.getPool().getScheduler() == WorkerPool.Scheduler.SHARDED;
+        if (this.numberProfilingSteps == 0 || this.executionMode != ExecutionMode.FUTURES || !sharded) {
+            return;
+        }
+        List<Reference<?>> references = new ArrayList<>();
+        for (DwellingReference dwelling : this.dwellings) {
+            references.add(dwelling);
+            references.add(dwelling.referent.getHeatingControlStrategy());
+        }
+        references.addAll(this.people);
+        this.context.awaitQuiescence(); // people have entered their homes asynchronously when they were created
+        this.loadBalancer = new LoadBalancer(this.context, references);
+        this.loadBalancer.startProfiling();
+    }
+
+    private void rebalance() throws ExecutionException, InterruptedException {
+        this.context.awaitQuiescence();
+        LoadBalancer.Report report = this.loadBalancer.rebalance();
+        logger.info(String.format("Rebalanced workers after %d steps: %s.", this.currentStep, report));
+        this.loadBalancer = null;
+    }
+
+    private long startPhase() {
+        return this.metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @return the end of the phase, which is the start of the next one
+     */
+    private long endPhase(SimulationMetrics.Phase phase, long startOfPhase) {
+        if (this.metrics == null) {
+            return 0;
+        }
+        long endOfPhase = System.nanoTime();
+        this.metrics.record(phase, endOfPhase - startOfPhase);
+        return endOfPhase;
+    }
+
+    private void stepPeopleAndDwellings() throws ExecutionException, InterruptedException {
+        long startOfPhase = this.startPhase();
+        if (this.eventDriven) {
+            this.stepPeopleOnChange();
+        } else {
+            this.stepPeople();
+        }
+        startOfPhase = this.endPhase(SimulationMetrics.Phase.PEOPLE, startOfPhase);
+
+        List<CompletableFuture<Void>> dwellingSteps = new ArrayList<>();
+        for (DwellingReference dwelling : this.dwellings) {
+            dwellingSteps.add(dwelling.step());
+        }
+        if (this.metrics != null) {
+            this.metrics.sampleQueueDepths();
+        }
+        CompletableFuture<Void>[] dStepsArray = new CompletableFuture[dwellingSteps.size()];
+        dStepsArray = dwellingSteps.toArray(dStepsArray);
+        CompletableFuture.allOf(dStepsArray).get();
+        this.endPhase(SimulationMetrics.Phase.DWELLINGS, startOfPhase);
+    }
+
+    private void stepPeople() throws ExecutionException, InterruptedException {
         List<CompletableFuture<Void>> peopleSteps = new ArrayList<>();
         for (PersonReference person : this.people) {
             peopleSteps.add(person.step());
         }
+        if (this.metrics != null) {
+            this.metrics.sampleQueueDepths();
+        }
         CompletableFuture<Void>[] array = new CompletableFuture[peopleSteps.size()];
         array = peopleSteps.toArray(array);
 
         CompletableFuture.allOf(array).get();
+    }
 
-        List<CompletableFuture<Void>> dwellingSteps = new ArrayList<>();
+    private void stepPeopleOnChange() throws ExecutionException, InterruptedException {
+        if (this.scheduledChanges == null) {
+            this.scheduledChanges = new CalendarQueue<>(this.calendarLength());
+            List<CompletableFuture<ScheduledChange<PersonReference>>> changes = new ArrayList<>();
+            for (PersonReference person : this.people) {
+                changes.add(this.scheduleChange(person, this.currentStep));
+            }
+            this.enqueue(this.scheduledChanges, changes);
+        }
+        List<CompletableFuture<ScheduledChange<PersonReference>>> changes = new ArrayList<>();
+        for (ScheduledChange<PersonReference> change : this.scheduledChanges.pollDue(this.currentStep)) {
+            changes.add(change.person.stepWithChange(change.unchangedSteps())
+                    .thenCompose(v -> this.scheduleChange(change.person, change.changeStep + 1)));
+        }
+        this.enqueue(this.scheduledChanges, changes);
+    }
+
+    private CompletableFuture<ScheduledChange<PersonReference>> scheduleChange(PersonReference person, int fromStep) {
+        return person.sampleStepsUntilChange(this.numberSteps - fromStep)
+                .thenApply(unchangedSteps -> new ScheduledChange<>(person, fromStep, fromStep + unchangedSteps));
+    }
+
+    private <P> void enqueue(CalendarQueue<ScheduledChange<P>> queue,
+                             List<CompletableFuture<ScheduledChange<P>>> changes)
+            throws ExecutionException, InterruptedException {
+        for (CompletableFuture<ScheduledChange<P>> change : changes) {
+            this.enqueue(queue, change.get());
+        }
+    }
+
+    private <P> void enqueue(CalendarQueue<ScheduledChange<P>> queue, ScheduledChange<P> change) {
+        if (change.changeStep < this.numberSteps) { // otherwise no change until the end of the simulation
+            queue.add(change.changeStep, change);
+        }
+    }
+
+    private int calendarLength() {
+        // one day of time steps, as most people change their activity at least daily
+        long stepsPerDay = Duration.ofDays(1).toNanos() / Math.max(1, this.timeStepSize.toNanos());
+        return (int) Math.max(1, Math.min(stepsPerDay, Math.max(1, this.numberSteps)));
+    }
+
+    private void stepPeopleAndDwellingsInShards() throws ExecutionException, InterruptedException {
+        if (this.phaser == null) {
+            this.startShards();
+        }
+        this.phaser.arriveAndAwaitAdvance(); // start of step
+        long startOfPhase = this.startPhase();
+        this.phaser.arriveAndAwaitAdvance(); // people stepped
+        startOfPhase = this.endPhase(SimulationMetrics.Phase.PEOPLE, startOfPhase);
+        this.phaser.arriveAndAwaitAdvance(); // dwellings stepped
+        this.endPhase(SimulationMetrics.Phase.DWELLINGS, startOfPhase);
+        Throwable failure = this.shardFailure.get();
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+    }
+
+    private void startShards() throws ExecutionException, InterruptedException {
+        // people have entered their homes asynchronously when they were created
+        this.context.awaitQuiescence();
+        List<Shard> shards = new ArrayList<>();
+        Map<Dwelling, Shard> shardOfDwelling = new IdentityHashMap<>();
+        int numberShards = Math.max(1, Math.min(this.numberShards, this.dwellings.size()));
+        int dwellingsPerShard = (this.dwellings.size() + numberShards - 1) / numberShards;
         for (DwellingReference dwelling : this.dwellings) {
-            dwellingSteps.add(dwelling.step());
+            if (shards.isEmpty() || shards.get(shards.size() - 1).dwellings.size() >= dwellingsPerShard) {
+                shards.add(new Shard());
+            }
+            Shard shard = shards.get(shards.size() - 1);
+            shard.dwellings.add(dwelling.referent);
+            shardOfDwelling.put(dwelling.referent, shard);
         }
-        CompletableFuture<Void>[] dStepsArray = new CompletableFuture[dwellingSteps.size()];
-        dStepsArray = dwellingSteps.toArray(dStepsArray);
-        CompletableFuture.allOf(dStepsArray).get();
+        if (shards.isEmpty()) {
+            shards.add(new Shard());
+        }
+        for (PersonReference person : this.people) {
+            // people are stepped together with their home, as they enter and leave it
+            Shard shard = shardOfDwelling.getOrDefault(person.referent.getHome().referent, shards.get(0));
+            shard.people.add(person.referent);
+        }
+        this.phaser = new Phaser(1 + shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            Thread worker = new Thread(() -> this.runShard(shard), String.format("city-simulation-shard-%d", i));
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
 
-        this.environment.step().get();
-        this.currentTime = this.currentTime.plus(this.timeStepSize);
-        if (this.dataLoggerReference != null) {
-            this.dataLoggerReference.step(this.currentTime).get();
+    private void runShard(Shard shard) {
+        this.context.enterDirect();
+        while (true) {
+            this.phaser.arriveAndAwaitAdvance(); // start of step
+            if (this.terminated) {
+                this.phaser.arriveAndDeregister();
+                return;
+            }
+            try {
+                if (this.eventDriven) {
+                    this.stepPeopleOnChange(shard);
+                } else {
+                    shard.people.forEach(Person::step);
+                }
+            } catch (Throwable e) {
+                this.shardFailure.compareAndSet(null, e);
+            }
+            this.phaser.arriveAndAwaitAdvance(); // people stepped
+            try {
+                if (this.batchedDwellings) {
+                    this.stepDwellingsInBatch(shard);
+                } else {
+                    for (Dwelling dwelling : shard.dwellings) {
+                        dwelling.step().join();
+                    }
+                }
+            } catch (CompletionException e) {
+                this.shardFailure.compareAndSet(null, e.getCause());
+            } catch (Throwable e) {
+                this.shardFailure.compareAndSet(null, e);
+            }
+            this.phaser.arriveAndAwaitAdvance(); // dwellings stepped
+        }
+    }
+
+    private void stepDwellingsInBatch(Shard shard) {
+        if (shard.batch == null) {
+            shard.batch = new DwellingBatch(shard.dwellings);
+        }
+        shard.batch.stepDwellings();
+    }
+
+    private void stepPeopleOnChange(Shard shard) {
+        if (shard.scheduledChanges == null) {
+            shard.scheduledChanges = new CalendarQueue<>(this.calendarLength());
+            for (Person person : shard.people) {
+                this.enqueue(shard.scheduledChanges, this.scheduleChange(person, this.currentStep));
+            }
+        }
+        for (ScheduledChange<Person> change : shard.scheduledChanges.pollDue(this.currentStep)) {
+            change.person.stepWithChange(change.unchangedSteps());
+            this.enqueue(shard.scheduledChanges, this.scheduleChange(change.person, change.changeStep + 1));
         }
     }
 
+    private ScheduledChange<Person> scheduleChange(Person person, int fromStep) {
+        int unchangedSteps = person.sampleStepsUntilChange(this.numberSteps - fromStep);
+        return new ScheduledChange<>(person, fromStep, fromStep + unchangedSteps);
+    }
+
+    private void stopShards() {
+        if (this.phaser != null && !this.terminated) {
+            this.terminated = true;
+            this.phaser.arriveAndDeregister();
+        }
+    }
+
+    private static class Shard {
+        private final List<Person> people = new ArrayList<>();
+        private final List<Dwelling> dwellings = new ArrayList<>();
+        private DwellingBatch batch;
+        private CalendarQueue<ScheduledChange<Person>> scheduledChanges;
+    }
+
+    /**
+     * The next change of activity of a person, sampled at the beginning of time step fromStep.
+     */
+    private static class ScheduledChange<P> {
+        private final P person;
+        private final int fromStep;
+        private final int changeStep;
+
+        private ScheduledChange(P person, int fromStep, int changeStep) {
+            this.person = person;
+            this.fromStep = fromStep;
+            this.changeStep = changeStep;
+        }
+
+        private int unchangedSteps() {
+            return this.changeStep - this.fromStep;
+        }
+    }
+
+    /**
+     * Stops the simulation and writes its results.
+     *
+     * @throws IllegalStateException if the results could not be written
+     */
     @Override
     public void stop() {
+        this.stopShards();
+        if (this.metrics != null) {
+            this.metrics.stop();
+        }
         if (this.dataLoggerReference != null) {
             try {
                 logger.info("Attempting to write results to disk.");
-                this.dataLoggerReference.write(this.collectMetadata()).get();
-            } catch (InterruptedException|ExecutionException e) {
-                logger.error("Failed to write results.");
-                e.printStackTrace();
+                if (this.metrics != null) {
+                    this.dataLoggerReference.write(this.collectMetadata(), this.metrics.getSummary()).get();
+                } else {
+                    this.dataLoggerReference.write(this.collectMetadata()).get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while writing results.", e);
+            } catch (ExecutionException e) {
+                logger.error("Failed to write results.", e.getCause());
+                throw new IllegalStateException("Failed to write results.", e.getCause());
             }
         }
     }
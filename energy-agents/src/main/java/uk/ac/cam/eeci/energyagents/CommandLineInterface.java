@@ -1,7 +1,7 @@
 package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.Conductor;
-import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 import uk.ac.cam.eeci.framework.WorkerPool;
 import org.apache.commons.cli.*;
 import org.apache.logging.log4j.LogManager;
@@ -10,7 +10,10 @@ import org.apache.logging.log4j.core.appender.FileAppender;
 import org.apache.logging.log4j.core.config.Configuration;
 import org.apache.logging.log4j.core.LoggerContext;
 
+import java.io.File;
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
 
 
 /**
@@ -25,23 +28,72 @@ public class CommandLineInterface {
     private String inputFilePath;
     private String outputFilePath;
     private int numberWorkers;
+    private WorkerPool.Scheduler scheduler;
+    private CitySimulation.ExecutionMode executionMode;
+    private boolean eventDriven;
+    private boolean batchedDwellings;
+    private boolean metrics;
+    private int rebalanceAfter;
+    private String manifestFilePath;
+    private int numberConcurrentRuns;
 
     public static void main(String ... args) {
 
         Options options = new Options();
 
         Option input = new Option("i", "input", true, "file path to scenario db");
-        input.setRequired(true);
+        input.setRequired(false);
         options.addOption(input);
 
         Option output = new Option("o", "output", true, "file path for output db");
-        output.setRequired(true);
+        output.setRequired(false);
         options.addOption(output);
 
+        Option batch = new Option("b", "batch", true,
+                "file path to a manifest with one comma separated pair of scenario db and output db per line");
+        batch.setRequired(false);
+        options.addOption(batch);
+
+        Option concurrentRuns = new Option("c", "concurrentRuns", true, "number of scenarios run at the same time in batch mode");
+        concurrentRuns.setRequired(false);
+        options.addOption(concurrentRuns);
+
         Option nWorker = new Option("w", "nWorker", true, "number of workers");
         nWorker.setRequired(false);
         options.addOption(nWorker);
 
+        Option scheduler = new Option("s", "scheduler", true, "scheduler of the workers: SHARDED or WORK_STEALING");
+        scheduler.setRequired(false);
+        options.addOption(scheduler);
+
+        Option mode = new Option("m", "mode", true, "execution mode of the simulation: FUTURES or BARRIER");
+        mode.setRequired(false);
+        options.addOption(mode);
+
+        Option eventDriven = new Option("e", "eventDriven", false, "step people only when their activity changes");
+        eventDriven.setRequired(false);
+        options.addOption(eventDriven);
+
+        Option batchedDwellings = new Option("d", "batchedDwellings", false,
+                "step the dwellings of each shard as one batch in BARRIER mode");
+        batchedDwellings.setRequired(false);
+        options.addOption(batchedDwellings);
+
+        Option metrics = new Option("p", "performanceMetrics", false,
+                "collect performance metrics, expose them over JMX, and write them to the output");
+        metrics.setRequired(false);
+        options.addOption(metrics);
+
+        Option rebalanceAfter = new Option("r", "rebalanceAfter", true,
+                "number of time steps after which agents are migrated between workers to even out their load");
+        rebalanceAfter.setRequired(false);
+        options.addOption(rebalanceAfter);
+
+        Option convert = new Option("x", "convert", true,
+                "file path to a binary output file to be converted into a table of the output db");
+        convert.setRequired(false);
+        options.addOption(convert);
+
         CommandLineParser parser = new DefaultParser();
         HelpFormatter formatter = new HelpFormatter();
         CommandLine cmd;
@@ -56,30 +108,142 @@ public class CommandLineInterface {
             return;
         }
 
+        if (cmd.hasOption("convert")) {
+            if (!cmd.hasOption("output")) {
+                System.out.println("Converting a binary output file requires an output db.");
+                formatter.printHelp(TOOL_NAME, options);
+
+                System.exit(1);
+                return;
+            }
+            if (!convert(cmd.getOptionValue("convert"), cmd.getOptionValue("output"))) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (!cmd.hasOption("batch") && !(cmd.hasOption("input") && cmd.hasOption("output"))) {
+            System.out.println("Either input and output or a batch manifest are required.");
+            formatter.printHelp(TOOL_NAME, options);
+
+            System.exit(1);
+            return;
+        }
+
         CommandLineInterface cli = new CommandLineInterface();
         cli.inputFilePath = cmd.getOptionValue("input");
         cli.outputFilePath = cmd.getOptionValue("output");
+        cli.manifestFilePath = cmd.getOptionValue("batch");
+        cli.numberConcurrentRuns = Integer.valueOf(cmd.getOptionValue("concurrentRuns", "1"));
         cli.numberWorkers = Integer.valueOf(cmd.getOptionValue("nWorker", "4"));
-        cli.run();
+        try {
+            cli.scheduler = WorkerPool.Scheduler.valueOf(cmd.getOptionValue("scheduler", "SHARDED"));
+        } catch (IllegalArgumentException e) {
+            System.out.println(String.format("Unknown scheduler %s.", cmd.getOptionValue("scheduler")));
+            formatter.printHelp(TOOL_NAME, options);
+
+            System.exit(1);
+            return;
+        }
+        try {
+            cli.executionMode = CitySimulation.ExecutionMode.valueOf(cmd.getOptionValue("mode", "FUTURES"));
+        } catch (IllegalArgumentException e) {
+            System.out.println(String.format("Unknown execution mode %s.", cmd.getOptionValue("mode")));
+            formatter.printHelp(TOOL_NAME, options);
+
+            System.exit(1);
+            return;
+        }
+        cli.eventDriven = cmd.hasOption("eventDriven");
+        cli.batchedDwellings = cmd.hasOption("batchedDwellings");
+        cli.metrics = cmd.hasOption("performanceMetrics");
+        cli.rebalanceAfter = Integer.valueOf(cmd.getOptionValue("rebalanceAfter", "0"));
+        if (!cli.run()) {
+            System.exit(1); // the exit code is all a script driving many runs can check
+        }
     }
 
-    private void run() {
+    /**
+     * @return whether the simulation, or all runs of the batch, succeeded
+     */
+    private boolean run() {
         logger.info(String.format("Hi there. This is %s version %s.", TOOL_NAME, CitySimulation.inferModelVersion()));
         logTempFileName();
-        Reference.pool.shutdown();
-        Reference.pool = new WorkerPool(this.numberWorkers);
-        Reference.pool.setCurrentExecutor(Reference.pool.main); // FIXME shouldnt be here
+        SimulationContext context = new SimulationContext(this.numberWorkers, this.scheduler);
+        SimulationContext.setDefault(context); // no other pool shall keep the process alive
+        context.enterMain();
+        if (this.manifestFilePath != null) {
+            return this.runBatch(context);
+        }
         logger.info(String.format("Attempting to read scenario description from file %s.", this.inputFilePath));
         CitySimulation citySimulation;
         try {
-            citySimulation = ScenarioBuilder.readScenario(this.inputFilePath, this.outputFilePath);
+            citySimulation = ScenarioBuilder.readScenario(this.inputFilePath, this.outputFilePath, context);
+            citySimulation.setExecutionMode(this.executionMode, this.numberWorkers);
+            citySimulation.setEventDriven(this.eventDriven);
+            citySimulation.setBatchedDwellings(this.batchedDwellings);
+            citySimulation.setMetricsEnabled(this.metrics);
+            citySimulation.setRebalancing(this.rebalanceAfter);
             logger.info("Start of the simulation.");
-            new Conductor(citySimulation).run();
+            Conductor conductor = new Conductor(citySimulation, context, true);
+            conductor.run();
+            if (conductor.getFailure().isPresent()) {
+                logger.error("Simulation failed.", conductor.getFailure().get());
+                return false;
+            }
             logger.info("Simulation terminated gracefully.");
+            return true;
         }
         catch (IOException ioe) {
-            logger.info("Simulation failed.");
-            Reference.pool.shutdown();
+            logger.error("Simulation failed.", ioe);
+            context.shutdown();
+            return false;
+        }
+    }
+
+    private boolean runBatch(SimulationContext context) {
+        logger.info(String.format("Attempting to read batch manifest from file %s.", this.manifestFilePath));
+        try {
+            BatchRunner batchRunner = new BatchRunner(
+                    BatchRunner.readManifest(new File(this.manifestFilePath)),
+                    this.numberConcurrentRuns,
+                    context,
+                    citySimulation -> {
+                        citySimulation.setExecutionMode(this.executionMode, this.numberWorkers);
+                        citySimulation.setEventDriven(this.eventDriven);
+                        citySimulation.setBatchedDwellings(this.batchedDwellings);
+                        citySimulation.setMetricsEnabled(this.metrics);
+                        citySimulation.setRebalancing(this.rebalanceAfter);
+                    }
+            );
+            List<BatchRunner.Run> failedRuns = batchRunner.run();
+            if (failedRuns.isEmpty()) {
+                logger.info("Batch terminated gracefully.");
+                return true;
+            }
+            logger.error(String.format("%d runs of the batch failed: %s", failedRuns.size(), failedRuns));
+            return false;
+        }
+        catch (IOException|InterruptedException e) {
+            logger.error("Batch failed.", e);
+            return false;
+        }
+        finally {
+            context.shutdown();
+        }
+    }
+
+    private static boolean convert(String binaryFilePath, String outputFilePath) {
+        logger.info(String.format("Attempting to convert binary output file %s into %s.", binaryFilePath,
+                outputFilePath));
+        try {
+            DataLogger.convertBinaryOutput(binaryFilePath, outputFilePath);
+            logger.info("Conversion terminated gracefully.");
+            return true;
+        }
+        catch (IOException|SQLException e) {
+            logger.error("Conversion failed.", e);
+            return false;
         }
     }
 
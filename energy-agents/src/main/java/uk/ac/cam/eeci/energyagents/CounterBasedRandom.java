@@ -0,0 +1,63 @@
+package uk.ac.cam.eeci.energyagents;
+
+/**
+ * A counter based random number generator for a single agent.
+ * <br><br>
+ * The n-th random number of an agent is a SplitMix64 hash of the n-th position of a stream that is
+ * keyed by the random seed and the id of the agent. Numbers are hence determined by (seed, agent, n)
+ * only and do not depend on the order in which agents are stepped, nor on the threads stepping them.
+ * <br><br>
+ * Unlike {@link java.util.Random}, drawing a number does not synchronise, so instances must not be
+ * shared between threads. Streams differ from the ones of {@link java.util.Random} with the same seed.
+ * An instance holds no more than its key and its counter.
+ */
+public class CounterBasedRandom implements RandomNumberGenerator {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final long key;
+    private long counter;
+
+    /**
+     * @param seed the random seed
+     * @param agentId the id of the agent using the generator
+     */
+    public CounterBasedRandom(long seed, long agentId) {
+        this.key = mix64(seed + mix64(agentId * GOLDEN_GAMMA));
+        this.counter = 0;
+    }
+
+    /**
+     * @param seed the random seed, with an agent id of 0
+     */
+    public CounterBasedRandom(long seed) {
+        this(seed, 0L);
+    }
+
+    /**
+     * @return the number of random numbers drawn from the stream so far
+     */
+    public long getCounter() {
+        return this.counter;
+    }
+
+    /**
+     * @return the next random number, uniformly distributed over all long values
+     */
+    public long nextLong() {
+        this.counter += 1;
+        return mix64(this.key + this.counter * GOLDEN_GAMMA);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (this.nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
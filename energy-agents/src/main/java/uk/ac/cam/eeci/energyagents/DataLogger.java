@@ -1,21 +1,65 @@
 package uk.ac.cam.eeci.energyagents;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.cam.eeci.framework.WorkerPool;
+
 import java.io.IOException;
 import java.nio.file.*;
 import java.sql.*;
 import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 /**
  * DataLogger logs data points during the simulation at each time step.
+ * <br><br>
+ * By default, all logged data is kept in memory and written to the output at the end of the
+ * simulation. With a flush interval, the DataLogger instead streams chunks of data to the output
+ * while the simulation runs, using a background writer thread. The memory footprint is then
+ * bounded by the chunk size: the simulation waits for the writer whenever it falls behind by
+ * more than one chunk. Once a chunk fails to be written, all further steps and the final write fail.
+ * <br><br>
+ * Without a flush interval, the records of the data points are written by a dedicated writer thread
+ * once the input has been copied. The writer requests the records of the next data points while it
+ * inserts the current one, holding at most a few records in memory at a time.
+ * <br><br>
+ * The output is written in bulk: through one connection per chunk, within one transaction, using
+ * multi-row inserts and without waiting for the disk. Tables are indexed once all data is written.
+ * <br><br>
+ * With binary output, data points of doubles are not written to the output database but each to a
+ * {@link BinaryDataPointFile} next to it, see {@link #binaryFilename(String, String)}. All other data,
+ * the copied input, and the metadata still go to the output database. Binary files can be converted
+ * into tables of the output database on demand, see {@link #convertBinaryOutput(String, String)}.
+ * Binary output always streams: binary files are extended at each flush, and without a flush interval
+ * the data is flushed every {@link #DEFAULT_BINARY_FLUSH_INTERVAL} time steps. Hence the binary files
+ * of an aborted run hold the time steps logged so far.
  */
 public class DataLogger {
 
     public final static String METADATA_TABLE_NAME = "metadata";
+    public final static String PERFORMANCE_TABLE_NAME = "performance";
+    public final static int DEFAULT_BINARY_FLUSH_INTERVAL = 100; // time steps
+    private final static int ROWS_PER_INSERT = 333; // SQLite allows at most 999 parameters per statement
+    private final static int CACHE_SIZE_KIB = 256 * 1024;
+    private final static int RECORDS_IN_FLIGHT = 2;
+    private final static int VALUES_PER_CONVERSION_CHUNK = 1024 * 1024;
+    private final static Logger LOGGER = LogManager.getLogger(DataLogger.class.getName());
     private final Set<DataPointReference> dataPoints;
     private final String inputFilename;
     private final String outputFilename;
+    private final int flushInterval;
+    private final boolean binaryOutput;
+    private final ExecutorService writer;
+    private final Set<String> createdTables;
+    private final Map<String, BinaryDataPointFile> binaryFiles;
+    private CompletableFuture<Void> pendingFlush;
+    private int stepsSinceFlush;
 
 
     /**
@@ -25,9 +69,54 @@ public class DataLogger {
      * @param outputFilename The output file name where data gets logged to.
      */
     public DataLogger(Collection<DataPointReference> dataPoints, String inputFilename, String outputFilename) {
+        this(dataPoints, inputFilename, outputFilename, 0);
+    }
+
+    /**
+     *
+     * @param dataPoints The DataPoints to be logged.
+     * @param inputFilename The input file which is copied to the output.
+     * @param outputFilename The output file name where data gets logged to.
+     * @param flushInterval The number of time steps after which logged data is written to the output,
+     *                      or 0 to keep all data in memory until the end of the simulation.
+     */
+    public DataLogger(Collection<DataPointReference> dataPoints, String inputFilename, String outputFilename,
+                      int flushInterval) {
+        this(dataPoints, inputFilename, outputFilename, flushInterval, false);
+    }
+
+    /**
+     *
+     * @param dataPoints The DataPoints to be logged.
+     * @param inputFilename The input file which is copied to the output.
+     * @param outputFilename The output file name where data gets logged to.
+     * @param flushInterval The number of time steps after which logged data is written to the output,
+     *                      or 0 to keep all data in memory until the end of the simulation.
+     * @param binaryOutput Whether data points of doubles are written to binary files instead of the output.
+     *                     The files are extended with each flush; a flush interval of 0 is replaced
+     *                     by {@link #DEFAULT_BINARY_FLUSH_INTERVAL}.
+     */
+    public DataLogger(Collection<DataPointReference> dataPoints, String inputFilename, String outputFilename,
+                      int flushInterval, boolean binaryOutput) {
+        if (flushInterval < 0) {
+            String msg = String.format("Flush interval must not be negative, but is %d.", flushInterval);
+            throw new IllegalArgumentException(msg);
+        }
         this.dataPoints = new HashSet<>(dataPoints);
         this.inputFilename = inputFilename;
         this.outputFilename = outputFilename;
+        this.flushInterval = binaryOutput && flushInterval == 0 ? DEFAULT_BINARY_FLUSH_INTERVAL : flushInterval;
+        this.binaryOutput = binaryOutput;
+        this.createdTables = new HashSet<>();
+        this.binaryFiles = new HashMap<>();
+        this.stepsSinceFlush = 0;
+        if (this.isStreaming()) {
+            this.writer = newWriter();
+            this.pendingFlush = CompletableFuture.runAsync(this::copyInput, this.writer);
+        } else {
+            this.writer = null;
+            this.pendingFlush = CompletableFuture.completedFuture(null);
+        }
     }
 
     /**
@@ -41,7 +130,20 @@ public class DataLogger {
             steps[i] = dataPoint.step(currentTime);
             i++;
         }
-        return CompletableFuture.allOf(steps);
+        if (!this.isStreaming()) {
+            return CompletableFuture.allOf(steps);
+        }
+        return CompletableFuture.allOf(steps).thenCompose(unused -> {
+            if (this.pendingFlush.isCompletedExceptionally()) {
+                return this.pendingFlush; // a chunk could not be written, the output is incomplete
+            }
+            this.stepsSinceFlush += 1;
+            if (this.stepsSinceFlush < this.flushInterval) {
+                return CompletableFuture.completedFuture(null);
+            }
+            this.stepsSinceFlush = 0;
+            return this.flush();
+        });
     }
 
     /**
@@ -49,17 +151,256 @@ public class DataLogger {
      * @param metaData meta data to be written to the output.
      */
     public CompletableFuture<Void> write(HashMap<String, String> metaData) {
-        CompletableFuture<Void> steps = CompletableFuture.completedFuture(null);
-        steps.thenRun(this::copyInput);
+        return this.write(metaData, Collections.emptyMap());
+    }
+
+    /**
+     * Writes all logged data to the previously specified file.
+     * @param metaData meta data to be written to the output.
+     * @param performance performance metrics to be written to the output; no table is written if empty.
+     */
+    public CompletableFuture<Void> write(HashMap<String, String> metaData, Map<String, Double> performance) {
+        if (this.isStreaming()) {
+            this.flush();
+            return this.pendingFlush
+                    .thenRunAsync(() -> this.writeOutput(Collections.emptyList(), WorkerPool.DIRECT, metaData,
+                            performance), this.writer)
+                    .whenComplete((unused, ex) -> {
+                        this.closeBinaryFiles(); // in case the output has not been written
+                        this.writer.shutdown();
+                    });
+        }
+        List<DataPointReference> dataPoints = new ArrayList<>(this.dataPoints);
+        Executor caller = dataPoints.isEmpty() ?
+                WorkerPool.DIRECT : dataPoints.get(0).context.getPool().currentExecutor();
+        ExecutorService writer = newWriter();
+        return CompletableFuture
+                .runAsync(() -> {
+                    this.copyInput();
+                    this.writeOutput(dataPoints, caller, metaData, performance);
+                }, writer)
+                .whenComplete((unused, ex) -> writer.shutdown());
+    }
+
+    /**
+     * @param outputFilename the output file name of a DataLogger
+     * @param dataPointName the name of a data point
+     * @return the name of the binary file to which the data point is written with binary output
+     */
+    public static String binaryFilename(String outputFilename, String dataPointName) {
+        return String.format("%s.%s.bin", outputFilename, dataPointName);
+    }
 
+    /**
+     * Converts a binary data point file into a table of a database, in the same layout in which the
+     * DataLogger writes data points to its output. An existing table of the same name is replaced.
+     *
+     * @param binaryFilename the binary data point file
+     * @param outputFilename the database to which the table is written, typically the output
+     * @throws IOException whenever the binary file cannot be read
+     * @throws SQLException whenever the table cannot be written
+     */
+    public static void convertBinaryOutput(String binaryFilename, String outputFilename)
+            throws IOException, SQLException {
+        try (BinaryDataPointFile file = BinaryDataPointFile.open(Paths.get(binaryFilename));
+             Connection conn = openOutput(outputFilename)) {
+            int[] ids = file.getIds();
+            createDataPointTable(conn, file.getName(), "DOUBLE PRECISION");
+            int numberTimeStepsPerChunk = Math.max(1, VALUES_PER_CONVERSION_CHUNK / ids.length);
+            double[] buffer = new double[Math.min(numberTimeStepsPerChunk, file.getNumberTimeSteps()) * ids.length];
+            for (int first = 0; first < file.getNumberTimeSteps(); first += numberTimeStepsPerChunk) {
+                int numberTimeSteps = Math.min(numberTimeStepsPerChunk, file.getNumberTimeSteps() - first);
+                file.read(first, numberTimeSteps, buffer);
+                Map<Integer, TimeSeries<Double>> values = new HashMap<>();
+                for (int source = 0; source < ids.length; source++) {
+                    values.put(ids[source], new DoubleTimeSeries(file.getTimeStamp(first), file.getTimeStepSize(),
+                            buffer, source, ids.length, numberTimeSteps));
+                }
+                insertDataPointValues(conn, new DataPointInternals(file.getName(), values));
+            }
+            finishOutput(conn, Collections.singleton(file.getName()));
+            LOGGER.info(String.format("Converted %s into table %s of %s.", binaryFilename, file.getName(),
+                    outputFilename));
+        }
+    }
+
+    private static ExecutorService newWriter() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "data-logger-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private boolean isStreaming() {
+        return this.flushInterval > 0;
+    }
+
+    /**
+     * Drains the data points and hands the chunk over to the writer. The returned future completes
+     * as soon as the previous chunk has been written, which keeps at most two chunks in memory.
+     */
+    private CompletableFuture<Void> flush() {
+        List<CompletableFuture<DataPointInternals>> drains = new ArrayList<>();
         for (DataPointReference dp : this.dataPoints) {
-            steps = steps
-                    .thenCompose(unused -> dp.getName())
-                    .thenCompose(name -> dp.getRecord().thenCompose(m -> CompletableFuture.completedFuture(new DataPointInternals(name, m))))
-                    .thenAccept(this::writeDataPoint);
+            drains.add(dp.getName().thenCombine(dp.drainRecord(), DataPointInternals::new));
+        }
+        CompletableFuture<List<DataPointInternals>> chunk = CompletableFuture
+                .allOf(drains.toArray(new CompletableFuture[drains.size()]))
+                .thenApply(unused -> drains.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+        CompletableFuture<Void> previousFlush = this.pendingFlush;
+        CompletableFuture<List<DataPointInternals>> chunkReadyToWrite = chunk.thenCombine(previousFlush, (c, unused) -> c);
+        this.pendingFlush = chunkReadyToWrite.thenAcceptAsync(this::writeChunk, this.writer);
+        return chunkReadyToWrite.thenApply(unused -> null);
+    }
+
+    private void writeChunk(List<DataPointInternals> chunk) {
+        try (Connection conn = openOutput(this.outputFilename)) {
+            this.writeDataPoints(conn, chunk);
+            conn.commit();
+            LOGGER.debug(String.format("Wrote chunk of %d data points.", chunk.size()));
+        } catch (SQLException|IOException ex) {
+            LOGGER.error("Failed to write chunk of data points.", ex);
+            throw new CompletionException(ex);
+        }
+    }
+
+    /**
+     * Writes the records of the data points, the metadata, and the performance metrics, closes all binary
+     * files, and indexes all data point tables. Leaves the output in the default journal mode, so that it is a single
+     * self-contained file.
+     *
+     * @param dataPoints the data points whose records are requested from the executor of the caller
+     * @param caller the executor on which the data points have been handed over
+     */
+    private void writeOutput(List<DataPointReference> dataPoints, Executor caller,
+                             HashMap<String, String> metadata, Map<String, Double> performance) {
+        if (caller == WorkerPool.DIRECT && !dataPoints.isEmpty()) {
+            dataPoints.get(0).context.enterDirect(); // the caller calls data points directly, so does the writer
+        }
+        try (Connection conn = openOutput(this.outputFilename)) {
+            Iterator<DataPointReference> remainingDataPoints = dataPoints.iterator();
+            Deque<CompletableFuture<DataPointInternals>> records = new ArrayDeque<>();
+            while (records.size() < RECORDS_IN_FLIGHT && remainingDataPoints.hasNext()) {
+                records.add(requestRecord(remainingDataPoints.next(), caller));
+            }
+            int numberWrittenDataPoints = 0;
+            while (!records.isEmpty()) {
+                DataPointInternals record = records.poll().join();
+                if (remainingDataPoints.hasNext()) {
+                    records.add(requestRecord(remainingDataPoints.next(), caller));
+                }
+                this.writeDataPoints(conn, Collections.singletonList(record));
+                numberWrittenDataPoints += 1;
+                LOGGER.info(String.format("Wrote data point %s (%d of %d).", record.dpName,
+                        numberWrittenDataPoints, dataPoints.size()));
+            }
+            this.closeBinaryFiles();
+            writeMetadata(conn, metadata);
+            if (!performance.isEmpty()) {
+                writePerformance(conn, performance);
+            }
+            finishOutput(conn, this.createdTables);
+        } catch (SQLException|IOException ex) {
+            LOGGER.error("Failed to write data points and metadata to database.", ex);
+            throw new CompletionException(ex);
+        } finally {
+            this.closeBinaryFiles();
+        }
+    }
+
+    /**
+     * Closes and thereby truncates all binary files. A file that fails to close is logged only, so that
+     * all other files are closed still.
+     */
+    private void closeBinaryFiles() {
+        for (BinaryDataPointFile file : this.binaryFiles.values()) {
+            try {
+                file.close();
+            } catch (IOException ex) {
+                LOGGER.error(String.format("Failed to close binary file of data point %s.", file.getName()), ex);
+            }
+        }
+        this.binaryFiles.clear();
+    }
+
+    private static CompletableFuture<DataPointInternals> requestRecord(DataPointReference dp, Executor caller) {
+        return CompletableFuture
+                .supplyAsync(() -> dp.getName().thenCombine(dp.getRecord(), DataPointInternals::new), caller)
+                .thenCompose(record -> record);
+    }
+
+    private static Connection openOutput(String outputFilename) throws SQLException {
+        Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", outputFilename));
+        try (Statement stat = conn.createStatement()) {
+            stat.execute("pragma journal_mode = WAL;");
+            stat.execute("pragma synchronous = OFF;");
+            stat.execute(String.format("pragma cache_size = -%d;", CACHE_SIZE_KIB));
+        }
+        conn.setAutoCommit(false);
+        return conn;
+    }
+
+    /**
+     * Commits, indexes the given tables, and leaves the output in the default journal mode.
+     */
+    private static void finishOutput(Connection conn, Collection<String> tableNames) throws SQLException {
+        conn.commit();
+        try (Statement stat = conn.createStatement()) {
+            for (String tableName : tableNames) {
+                stat.executeUpdate(String.format("create index if not exists %s_index on %s (id, timestamp);",
+                        tableName, tableName));
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+            stat.execute("pragma synchronous = FULL;");
+            stat.execute("pragma journal_mode = DELETE;");
+        }
+    }
+
+    private void writeDataPoints(Connection conn, List<DataPointInternals> dataPoints)
+            throws SQLException, IOException {
+        for (DataPointInternals dp : dataPoints) {
+            if (dp.values.isEmpty() || anyTimeSeries(dp.values).size() == 0) {
+                continue;
+            }
+            if (this.binaryOutput && dataPointContainsDoubles(dp.values)) {
+                this.appendToBinaryFile(dp);
+                continue;
+            }
+            if (!this.createdTables.contains(dp.dpName)) {
+                createDataPointTable(conn, dp);
+                this.createdTables.add(dp.dpName);
+            }
+            insertDataPointValues(conn, dp);
+        }
+    }
+
+    private void appendToBinaryFile(DataPointInternals dp) throws IOException {
+        BinaryDataPointFile file = this.binaryFiles.get(dp.dpName);
+        if (file == null) {
+            int[] ids = dp.values.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            file = BinaryDataPointFile.create(Paths.get(binaryFilename(this.outputFilename, dp.dpName)),
+                    dp.dpName, ids);
+            this.binaryFiles.put(dp.dpName, file);
+        }
+        int[] ids = file.getIds();
+        TimeSeries[] columns = new TimeSeries[ids.length]; // FIXME raw type
+        for (int j = 0; j < ids.length; j++) {
+            columns[j] = dp.values.get(ids[j]);
+        }
+        List<ZonedDateTime> timeIndex = anyTimeSeries(dp.values).getIndex();
+        double[] values = new double[ids.length];
+        for (int i = 0; i < timeIndex.size(); i++) {
+            for (int j = 0; j < ids.length; j++) {
+                if (columns[j] instanceof DoubleTimeSeries) {
+                    values[j] = ((DoubleTimeSeries) columns[j]).getDouble(i);
+                } else {
+                    values[j] = (Double) columns[j].getValues().get(i);
+                }
+            }
+            file.append(timeIndex.get(i), values);
         }
-        steps = steps.thenAccept(unused -> this.writeMetadata(metaData));
-        return steps;
     }
 
     private static class DataPointInternals {
@@ -72,52 +413,78 @@ public class DataLogger {
         }
     }
 
-    private void writeDataPoint(Object dpAsObject) { // FIXME raw type
-        DataPointInternals dp = (DataPointInternals) dpAsObject;
-        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", this.outputFilename))){
-            writeDataPointToDatabase(conn, dp);
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            System.out.println(String.format("Failed to write datapoint %s.", dp.dpName));
-        }
-    }
-
-    private static void writeDataPointToDatabase(Connection conn, DataPointInternals dp)
-            throws SQLException {
-        boolean dataPointContainsDoubles = dataPointContainsDoubles(dp.values);
+    private static void createDataPointTable(Connection conn, DataPointInternals dp) throws SQLException {
         String valueDataType;
-        if (dataPointContainsDoubles) {
+        if (dataPointContainsDoubles(dp.values)) {
             valueDataType = "DOUBLE PRECISION";
         } else {
             valueDataType = "VARCHAR(100)";
         }
+        createDataPointTable(conn, dp.dpName, valueDataType);
+    }
+
+    private static void createDataPointTable(Connection conn, String tableName, String valueDataType)
+            throws SQLException {
         try (Statement stat = conn.createStatement()) {
-            stat.executeUpdate(String.format("drop table if exists %s;", dp.dpName));
+            stat.executeUpdate(String.format("drop table if exists %s;", tableName));
             stat.executeUpdate(String.format(
-                    "create table %s (timestamp TIMESTAMP, id INTEGER, value %s);", dp.dpName, valueDataType));
-            PreparedStatement prep = conn.prepareStatement(
-                    String.format("insert into %s values (?, ?, ?);", dp.dpName));
-            int numberTimeSteps = anyTimeSeries(dp.values).getIndex().size();
+                    "create table %s (timestamp TIMESTAMP, id INTEGER, value %s);", tableName, valueDataType));
+        }
+    }
+
+    private static void insertDataPointValues(Connection conn, DataPointInternals dp) throws SQLException {
+        boolean dataPointContainsDoubles = dataPointContainsDoubles(dp.values);
+        int numberColumns = dp.values.size();
+        int[] ids = new int[numberColumns];
+        TimeSeries[] columns = new TimeSeries[numberColumns]; // FIXME raw type
+        int column = 0;
+        for (Map.Entry<Integer, TimeSeries<Object>> entry : dp.values.entrySet()) {
+            ids[column] = entry.getKey();
+            columns[column] = entry.getValue();
+            column++;
+        }
+        List<ZonedDateTime> timeIndex = anyTimeSeries(dp.values).getIndex();
+        int numberTimeSteps = timeIndex.size();
+        int numberRows = numberTimeSteps * numberColumns;
+        int numberBulkRows = numberRows - numberRows % ROWS_PER_INSERT;
+        try (PreparedStatement bulk = prepareInsert(conn, dp.dpName, ROWS_PER_INSERT);
+             PreparedStatement tail = prepareInsert(conn, dp.dpName, Math.max(1, numberRows - numberBulkRows))) {
+            int row = 0;
             for (int i = 0; i < numberTimeSteps; i++) {
-                for (Integer j : dp.values.keySet()) {
-                    prep.setTimestamp(1, Timestamp.from(dp.values.get(j).getIndex().get(i).toInstant()));
-                    prep.setInt(2, j);
-                    if (dataPointContainsDoubles) {
-                        Double value = (Double) dp.values.get(j).getValues().get(i);
-                        prep.setDouble(3, value);
+                Timestamp timestamp = Timestamp.from(timeIndex.get(i).toInstant());
+                for (int j = 0; j < numberColumns; j++) {
+                    PreparedStatement prep = row < numberBulkRows ? bulk : tail;
+                    int parameter = 3 * ((row < numberBulkRows ? row : row - numberBulkRows) % ROWS_PER_INSERT) + 1;
+                    TimeSeries timeSeries = columns[j];
+                    prep.setTimestamp(parameter, timestamp);
+                    prep.setInt(parameter + 1, ids[j]);
+                    if (timeSeries instanceof DoubleTimeSeries) {
+                        prep.setDouble(parameter + 2, ((DoubleTimeSeries) timeSeries).getDouble(i));
+                    } else if (dataPointContainsDoubles) {
+                        Double value = (Double) timeSeries.getValues().get(i);
+                        prep.setDouble(parameter + 2, value);
                     } else {
-                        String value = dp.values.get(j).getValues().get(i).toString();
-                        prep.setString(3, value);
+                        String value = timeSeries.getValues().get(i).toString();
+                        prep.setString(parameter + 2, value);
+                    }
+                    row++;
+                    if (row == numberRows || (row <= numberBulkRows && row % ROWS_PER_INSERT == 0)) {
+                        prep.executeUpdate();
                     }
-                    prep.addBatch();
                 }
-                conn.setAutoCommit(false);
-                prep.executeBatch();
-                conn.setAutoCommit(true);
             }
         }
     }
 
+    private static PreparedStatement prepareInsert(Connection conn, String tableName, int numberRows)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(String.format("insert into %s values (?, ?, ?)", tableName));
+        for (int i = 1; i < numberRows; i++) {
+            sql.append(", (?, ?, ?)");
+        }
+        return conn.prepareStatement(sql.append(";").toString());
+    }
+
     private static boolean dataPointContainsDoubles(Map<Integer, TimeSeries<Object>> dataPointValues) {
         try { // FIXME ugly duck typing
             Double value = (Double) anyTimeSeries(dataPointValues).getValues().get(0);
@@ -133,15 +500,6 @@ public class DataLogger {
 
     }
 
-    private void writeMetadata(HashMap<String, String> metadata) {
-        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", this.outputFilename))) {
-            writeMetadata(conn, metadata);
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            System.out.println("Failed to write metadata to database.");
-        }
-    }
-
     private void copyInput() {
         if (this.inputFilename == null) {
             return;
@@ -161,19 +519,34 @@ public class DataLogger {
             stat.executeUpdate(String.format("drop table if exists %s;", METADATA_TABLE_NAME));
             stat.executeUpdate(String.format(
                     "create table %s (key VARCHAR(100), value VARCHAR(100));", METADATA_TABLE_NAME));
-            PreparedStatement prep = conn.prepareStatement(
-                    String.format("insert into %s values (?, ?);", METADATA_TABLE_NAME));
-
+        }
+        try (PreparedStatement prep = conn.prepareStatement(
+                String.format("insert into %s values (?, ?);", METADATA_TABLE_NAME))) {
             for (Map.Entry<String, String> entry : metadata.entrySet()) {
                 prep.setString(1, entry.getKey());
                 prep.setString(2, entry.getValue());
                 prep.addBatch();
             }
-            conn.setAutoCommit(false);
             prep.executeBatch();
-            conn.setAutoCommit(true);
         }
 
     }
 
+    private static void writePerformance(Connection conn, Map<String, Double> performance) throws SQLException {
+        try (Statement stat = conn.createStatement()) {
+            stat.executeUpdate(String.format("drop table if exists %s;", PERFORMANCE_TABLE_NAME));
+            stat.executeUpdate(String.format(
+                    "create table %s (key VARCHAR(100), value DOUBLE PRECISION);", PERFORMANCE_TABLE_NAME));
+        }
+        try (PreparedStatement prep = conn.prepareStatement(
+                String.format("insert into %s values (?, ?);", PERFORMANCE_TABLE_NAME))) {
+            for (Map.Entry<String, Double> entry : performance.entrySet()) {
+                prep.setString(1, entry.getKey());
+                prep.setDouble(2, entry.getValue());
+                prep.addBatch();
+            }
+            prep.executeBatch();
+        }
+    }
+
 }
@@ -1,9 +1,11 @@
 package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.time.ZonedDateTime;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public class DataLoggerReference extends Reference<DataLogger> {
@@ -12,14 +14,20 @@ public class DataLoggerReference extends Reference<DataLogger> {
         super(dataLogger);
     }
 
+    public DataLoggerReference(DataLogger dataLogger, SimulationContext context) {
+        super(dataLogger, context);
+    }
+
     public CompletableFuture<Void> step(ZonedDateTime currentTime) {
-        return CompletableFuture.completedFuture(null).thenComposeAsync((p) -> this.referent.step(currentTime), this.executor)
-                .thenRunAsync(() ->{}, pool.currentExecutor());
+        return this.compose(() -> this.referent.step(currentTime));
     }
 
     public CompletableFuture<Void> write(HashMap<String, String> metadata) {
-        return CompletableFuture.completedFuture(null).thenComposeAsync((p) -> this.referent.write(metadata), this.executor)
-                .thenRunAsync(() ->{}, pool.currentExecutor());
+        return this.compose(() -> this.referent.write(metadata));
+    }
+
+    public CompletableFuture<Void> write(HashMap<String, String> metadata, Map<String, Double> performance) {
+        return this.compose(() -> this.referent.write(metadata, performance));
     }
 
 }
@@ -11,6 +11,9 @@ import java.util.stream.Collectors;
 
 /**
  * A data point defines a time varying data source to be logged.
+ * <br><br>
+ * A data point may log only once per interval of several time steps. It then samples its sources in
+ * the last time step of each interval only, and records their values with the time of that step.
  *
  * @param <K> The type from which data shall be logged.
  * @param <T> Data type to be logged.
@@ -23,6 +26,10 @@ public class DataPoint<K, T> {
     private final Map<K, Integer> indexOfDataPointSources;
     private final Function<K, CompletableFuture<T>> valueSupplier;
     private final String name;
+    private final int interval;
+    private int numberSteps;
+
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
 
     /**
      *
@@ -31,7 +38,25 @@ public class DataPoint<K, T> {
      * @param valueSupplier a function through which the current value of the data point can be accessed.
      */
     public DataPoint(String name, Map<Integer, K> dataPointSources, Function<K, CompletableFuture<T>> valueSupplier) {
+        this(name, dataPointSources, valueSupplier, 1);
+    }
+
+    /**
+     *
+     * @param name name of the data point
+     * @param dataPointSources the data point sources, a map from unique ids to data point sources
+     * @param valueSupplier a function through which the current value of the data point can be accessed.
+     * @param interval the number of time steps per logged value (>= 1)
+     */
+    public DataPoint(String name, Map<Integer, K> dataPointSources, Function<K, CompletableFuture<T>> valueSupplier,
+                     int interval) {
+        if (interval < 1) {
+            String msg = String.format("Interval of data point %s must be positive, but is %d.", name, interval);
+            throw new IllegalArgumentException(msg);
+        }
         this.name = name;
+        this.interval = interval;
+        this.numberSteps = 0;
         this.values = new ArrayList<>();
         this.index = new ArrayList<>();
         this.valueSupplier = valueSupplier;
@@ -46,6 +71,10 @@ public class DataPoint<K, T> {
     }
 
     public CompletableFuture<Void> step(ZonedDateTime currentTime) {
+        this.numberSteps += 1;
+        if (!this.isSampledInEveryStep() && this.getStepInInterval() < this.interval) {
+            return COMPLETED;
+        }
         Map<K, T> values = new ConcurrentHashMap<>();
         CompletableFuture<Void>[] updates = new CompletableFuture[this.dataPointSources.size()];
         for (int i = 0; i < this.dataPointSources.size(); ++i) {
@@ -53,8 +82,55 @@ public class DataPoint<K, T> {
                     .thenAccept(pair -> values.put(pair.getValue0(), pair.getValue1()));
         }
         return CompletableFuture.allOf(updates)
-                .thenRun(() -> this.values.addAll(this.mapToSortedList(values)))
-                .thenRun(() -> this.index.add(currentTime));
+                .thenRun(() -> this.record(currentTime, values));
+    }
+
+    /**
+     * Stores the values of all data point sources of one time step.
+     *
+     * @param currentTime the time of the values
+     * @param values the values of all data point sources
+     */
+    protected void record(ZonedDateTime currentTime, Map<K, T> values) {
+        this.values.addAll(this.mapToSortedList(values));
+        this.index.add(currentTime);
+    }
+
+    /**
+     * @return true if the sources are sampled in every time step rather than in the last time step of
+     *         each interval only
+     */
+    protected boolean isSampledInEveryStep() {
+        return false;
+    }
+
+    /**
+     * @return the number of time steps per logged value
+     */
+    protected int getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * @return the position of the current time step within its interval, from 1 to the interval
+     */
+    protected int getStepInInterval() {
+        return (this.numberSteps - 1) % this.interval + 1;
+    }
+
+    /**
+     * @return the data point sources in the order in which their values are recorded
+     */
+    protected List<K> getDataPointSources() {
+        return this.dataPointSources;
+    }
+
+    /**
+     * @param dataPointSource one of the data point sources
+     * @return the unique id of the data point source
+     */
+    protected int getIdOf(K dataPointSource) {
+        return this.indexOfDataPointSources.get(dataPointSource);
     }
 
     /**
@@ -72,14 +148,26 @@ public class DataPoint<K, T> {
             timeSeries.get(listIndex).add(this.index.get(timeStepIndex), this.values.get(i));
         }
         Map<Integer, TimeSeries<T>> timeSeriesMap = new HashMap<>();
-        for (K source : this.dataPointSources) {
-            int internalIndex = this.dataPointSources.indexOf(source);
-            int externalIndex = this.indexOfDataPointSources.get(source);
+        for (int internalIndex = 0; internalIndex < this.dataPointSources.size(); internalIndex++) {
+            int externalIndex = this.indexOfDataPointSources.get(this.dataPointSources.get(internalIndex));
             timeSeriesMap.put(externalIndex, timeSeries.get(internalIndex));
         }
         return timeSeriesMap;
     }
 
+    /**
+     * Hands over the record of values since the last call and removes it from the data point.
+     * Use this to keep the memory footprint of long running simulations bounded.
+     *
+     * @return the record of values since the last call
+     */
+    public Map<Integer, TimeSeries<T>> drainRecord() {
+        Map<Integer, TimeSeries<T>> record = this.getRecord();
+        this.values.clear();
+        this.index.clear();
+        return record;
+    }
+
     private CompletableFuture<Pair<K, T>> getValue(K dataPointSource) {
         return this.valueSupplier.apply(dataPointSource).thenApplyAsync(temp -> new Pair<>(dataPointSource, temp));
     }
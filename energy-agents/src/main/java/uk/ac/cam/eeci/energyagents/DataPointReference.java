@@ -1,6 +1,7 @@
 package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.time.ZonedDateTime;
 import java.util.Map;
@@ -12,18 +13,23 @@ public class DataPointReference<K, T> extends Reference<DataPoint<K, T>> {
         super(referent);
     }
 
+    public DataPointReference(DataPoint referent, SimulationContext context) {
+        super(referent, context);
+    }
+
     public CompletableFuture<String> getName() {
-        return CompletableFuture.supplyAsync(this.referent::getName, this.executor)
-                .thenApplyAsync(i -> i, pool.currentExecutor());
+        return this.supply(this.referent::getName);
     }
 
     public CompletableFuture<Void> step(ZonedDateTime currentTime) {
-        return CompletableFuture.completedFuture(null).thenComposeAsync((p) -> this.referent.step(currentTime), this.executor)
-                .thenRunAsync(() ->{}, pool.currentExecutor());
+        return this.compose(() -> this.referent.step(currentTime));
     }
 
     public CompletableFuture<Map<Integer, TimeSeries<T>>> getRecord() {
-        return CompletableFuture.supplyAsync(this.referent::getRecord, this.executor)
-                .thenApplyAsync(i -> i, pool.currentExecutor());
+        return this.supply(this.referent::getRecord);
+    }
+
+    public CompletableFuture<Map<Integer, TimeSeries<T>>> drainRecord() {
+        return this.supply(this.referent::drainRecord);
     }
 }
@@ -0,0 +1,119 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Collects the air temperatures and thermal powers of the dwellings of a district in one time step.
+ * <br><br>
+ * Dwellings report their new values at the end of each of their time steps, on their own executor.
+ * The first report of a new time step discards the statistics of the previous one. Reading the
+ * statistics hence costs constant time, independent of the number of dwellings in the district.
+ * <br><br>
+ * Instances are thread-safe.
+ */
+public class DistrictAccumulator {
+
+    /**
+     * The statistics of a quantity of all dwellings of a district.
+     */
+    public enum Statistic {
+        SUM("sum"),
+        MEAN("average"),
+        MIN("min"),
+        MAX("max"),
+        PERCENTILE_10("percentile10"),
+        MEDIAN("median"),
+        PERCENTILE_90("percentile90");
+
+        private final String prefix;
+
+        Statistic(String prefix) {
+            this.prefix = prefix;
+        }
+
+        /**
+         * @param quantity the name of a quantity, e.g. "temperature"
+         * @return the name of this statistic of the quantity, e.g. "averageTemperature"
+         */
+        public String nameOf(String quantity) {
+            return this.prefix + Character.toUpperCase(quantity.charAt(0)) + quantity.substring(1);
+        }
+
+        private double of(StreamingStatistics statistics) {
+            switch (this) {
+                case SUM:
+                    return statistics.getSum();
+                case MEAN:
+                    return statistics.getMean();
+                case MIN:
+                    return statistics.getMin();
+                case MAX:
+                    return statistics.getMax();
+                case PERCENTILE_10:
+                    return statistics.getQuantile(0.1);
+                case MEDIAN:
+                    return statistics.getQuantile(0.5);
+                case PERCENTILE_90:
+                    return statistics.getQuantile(0.9);
+                default:
+                    throw new IllegalStateException(String.format("Unknown statistic %s.", this));
+            }
+        }
+    }
+
+    private final StreamingStatistics airTemperatures = new StreamingStatistics(0.1, 0.5, 0.9);
+    private final StreamingStatistics thermalPowers = new StreamingStatistics(0.1, 0.5, 0.9);
+    private int numberHeated = 0;
+    private ZonedDateTime currentTime = null;
+
+    /**
+     * Reports the state of a dwelling at the end of a time step.
+     *
+     * @param time the time of the dwelling after its time step
+     * @param airTemperature the air temperature of the dwelling
+     * @param thermalPower the thermal power of the dwelling
+     */
+    public synchronized void record(ZonedDateTime time, double airTemperature, double thermalPower) {
+        if (!time.equals(this.currentTime)) {
+            this.airTemperatures.reset();
+            this.thermalPowers.reset();
+            this.numberHeated = 0;
+            this.currentTime = time;
+        }
+        this.airTemperatures.add(airTemperature);
+        this.thermalPowers.add(thermalPower);
+        if (thermalPower > 0) {
+            this.numberHeated += 1;
+        }
+    }
+
+    /**
+     * @param statistic the statistic to return
+     * @return the statistic of the air temperatures of the last time step
+     */
+    public synchronized double getAirTemperature(Statistic statistic) {
+        return statistic.of(this.airTemperatures);
+    }
+
+    /**
+     * @param statistic the statistic to return
+     * @return the statistic of the thermal powers of the last time step
+     */
+    public synchronized double getThermalPower(Statistic statistic) {
+        return statistic.of(this.thermalPowers);
+    }
+
+    /**
+     * @return the number of dwellings with positive thermal power in the last time step
+     */
+    public synchronized int getNumberHeated() {
+        return this.numberHeated;
+    }
+
+    /**
+     * @return the number of dwellings that have reported in the last time step
+     */
+    public synchronized long getNumberDwellings() {
+        return this.airTemperatures.getCount();
+    }
+}
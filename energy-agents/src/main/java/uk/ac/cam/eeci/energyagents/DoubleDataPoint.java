@@ -0,0 +1,177 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A data point of double values logged with a constant time step size.
+ * <br><br>
+ * Instead of boxed values and a time stamp per entry, the data point stores the time of the first
+ * entry, the time step size, and all values in one growable array of primitive doubles. Records
+ * are views onto that array and hence do not copy any values.
+ * <br><br>
+ * With an interval of several time steps, the values of each interval are reduced online: the sources
+ * are sampled in every time step and their values are reduced in place into the next entry of the array,
+ * which is recorded with the time of the last time step of the interval. An incomplete last interval
+ * is not recorded.
+ *
+ * @param <K> The type from which data shall be logged.
+ */
+public class DoubleDataPoint<K> extends DataPoint<K, Double> {
+
+    /**
+     * The ways in which the values of the time steps of an interval are reduced to one value.
+     */
+    public enum Reduction {
+        MEAN, MAX, LAST, SUM
+    }
+
+    private final static int INITIAL_NUMBER_OF_TIME_STEPS = 64;
+
+    private final Reduction reduction;
+    private final int numberOfSources;
+    private double[] buffer;
+    private int numberOfTimeSteps;
+    private ZonedDateTime start;
+    private Duration timeStepSize;
+
+    /**
+     *
+     * @param name name of the data point
+     * @param dataPointSources the data point sources, a map from unique ids to data point sources
+     * @param valueSupplier a function through which the current value of the data point can be accessed.
+     */
+    public DoubleDataPoint(String name, Map<Integer, K> dataPointSources,
+                           Function<K, CompletableFuture<Double>> valueSupplier) {
+        this(name, dataPointSources, valueSupplier, 1, Reduction.LAST);
+    }
+
+    /**
+     *
+     * @param name name of the data point
+     * @param dataPointSources the data point sources, a map from unique ids to data point sources
+     * @param valueSupplier a function through which the current value of the data point can be accessed.
+     * @param interval the number of time steps per logged value (>= 1)
+     * @param reduction the way in which the values of the time steps of an interval are reduced
+     */
+    public DoubleDataPoint(String name, Map<Integer, K> dataPointSources,
+                           Function<K, CompletableFuture<Double>> valueSupplier, int interval, Reduction reduction) {
+        super(name, dataPointSources, valueSupplier, interval);
+        this.reduction = reduction;
+        this.numberOfSources = dataPointSources.size();
+        this.buffer = new double[this.numberOfSources * INITIAL_NUMBER_OF_TIME_STEPS];
+        this.numberOfTimeSteps = 0;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the time step size is not constant
+     */
+    @Override
+    protected void record(ZonedDateTime currentTime, Map<K, Double> values) {
+        int stepInInterval = this.getStepInInterval();
+        boolean endOfInterval = stepInInterval == this.getInterval();
+        if (endOfInterval) {
+            this.recordTime(currentTime);
+        }
+        int position = this.numberOfTimeSteps * this.numberOfSources;
+        if (position + this.numberOfSources > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length + (this.buffer.length >> 1),
+                    position + this.numberOfSources));
+        }
+        List<K> sources = this.getDataPointSources();
+        if (this.reduction == Reduction.LAST || stepInInterval == 1) {
+            for (int i = 0; i < this.numberOfSources; i++) {
+                this.buffer[position + i] = values.get(sources.get(i));
+            }
+        } else {
+            for (int i = 0; i < this.numberOfSources; i++) {
+                this.buffer[position + i] = this.reduce(this.buffer[position + i], values.get(sources.get(i)));
+            }
+        }
+        if (endOfInterval) {
+            if (this.reduction == Reduction.MEAN && this.getInterval() > 1) {
+                for (int i = 0; i < this.numberOfSources; i++) {
+                    this.buffer[position + i] /= this.getInterval();
+                }
+            }
+            this.numberOfTimeSteps += 1;
+        }
+    }
+
+    private double reduce(double reduced, double value) {
+        switch (this.reduction) {
+            case MEAN:
+            case SUM:
+                return reduced + value;
+            case MAX:
+                return Math.max(reduced, value);
+            default:
+                return value;
+        }
+    }
+
+    @Override
+    protected boolean isSampledInEveryStep() {
+        return this.reduction != Reduction.LAST;
+    }
+
+    private void recordTime(ZonedDateTime currentTime) {
+        if (this.numberOfTimeSteps == 0) {
+            if (this.start != null && this.timeStepSize == null) {
+                this.timeStepSize = Duration.between(this.start, currentTime);
+            }
+            this.start = currentTime;
+            return;
+        }
+        if (this.timeStepSize == null) {
+            this.timeStepSize = Duration.between(this.start, currentTime);
+        }
+        ZonedDateTime expectedTime = this.start.plus(this.timeStepSize.multipliedBy(this.numberOfTimeSteps));
+        if (!expectedTime.toInstant().equals(currentTime.toInstant())) {
+            String msg = String.format("Data point %s requires constant time steps, but %s follows %s.",
+                    this.getName(), currentTime, this.start.plus(this.timeStepSize.multipliedBy(this.numberOfTimeSteps - 1)));
+            throw new IllegalArgumentException(msg);
+        }
+    }
+
+    /**
+     *
+     * @return the complete record of historic values of the data point, as views onto the data point
+     */
+    @Override
+    public Map<Integer, TimeSeries<Double>> getRecord() {
+        Map<Integer, TimeSeries<Double>> timeSeriesMap = new HashMap<>();
+        List<K> sources = this.getDataPointSources();
+        for (int i = 0; i < this.numberOfSources; i++) {
+            timeSeriesMap.put(this.getIdOf(sources.get(i)), new DoubleTimeSeries(this.start, this.timeStepSize,
+                    this.buffer, i, this.numberOfSources, this.numberOfTimeSteps));
+        }
+        return timeSeriesMap;
+    }
+
+    /**
+     * Hands over the record of values since the last call and removes it from the data point. The
+     * returned views keep the values they refer to, as the data point continues with a fresh buffer,
+     * into which the reduction of an incomplete interval is carried over.
+     *
+     * @return the record of values since the last call
+     */
+    @Override
+    public Map<Integer, TimeSeries<Double>> drainRecord() {
+        Map<Integer, TimeSeries<Double>> record = this.getRecord();
+        double[] buffer = new double[this.buffer.length];
+        int position = this.numberOfTimeSteps * this.numberOfSources;
+        if (position + this.numberOfSources <= this.buffer.length) {
+            System.arraycopy(this.buffer, position, buffer, 0, this.numberOfSources);
+        }
+        this.buffer = buffer;
+        this.numberOfTimeSteps = 0;
+        return record;
+    }
+}
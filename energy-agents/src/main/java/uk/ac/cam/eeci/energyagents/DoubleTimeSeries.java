@@ -0,0 +1,138 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.Optional;
+
+/**
+ * A time series of primitive doubles with a constant time step size.
+ * <br><br>
+ * The time series is a read-only view onto a buffer shared with other time series: its values
+ * are found at a fixed offset and stride within the buffer. Neither values nor time stamps are
+ * stored as objects; they are created on access only.
+ */
+public class DoubleTimeSeries extends TimeSeries<Double> {
+
+    private final ZonedDateTime start;
+    private final Duration timeStepSize;
+    private final double[] buffer;
+    private final int offset;
+    private final int stride;
+    private final int size;
+
+    /**
+     * @param start the time stamp of the first value
+     * @param timeStepSize the constant time step size between values
+     * @param buffer the buffer holding the values
+     * @param offset the position of the first value within the buffer
+     * @param stride the distance between two consecutive values within the buffer
+     * @param size the number of values
+     */
+    DoubleTimeSeries(ZonedDateTime start, Duration timeStepSize, double[] buffer, int offset, int stride, int size) {
+        this(new IndexView(start, timeStepSize, size), new ValueView(buffer, offset, stride, size),
+                start, timeStepSize, buffer, offset, stride, size);
+    }
+
+    private DoubleTimeSeries(IndexView index, ValueView values, ZonedDateTime start, Duration timeStepSize,
+                             double[] buffer, int offset, int stride, int size) {
+        super(index, values);
+        this.start = start;
+        this.timeStepSize = timeStepSize;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.stride = stride;
+        this.size = size;
+    }
+
+    /**
+     * Time series views cannot be extended.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void add(ZonedDateTime timeStamp, Double value) {
+        throw new UnsupportedOperationException("DoubleTimeSeries is a read-only view.");
+    }
+
+    /**
+     * @param position the position within the time series
+     * @return the value at the given position without boxing
+     */
+    public double getDouble(int position) {
+        if (position < 0 || position >= this.size) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", position, this.size));
+        }
+        return this.buffer[this.offset + position * this.stride];
+    }
+
+    @Override
+    public Optional<Duration> getConstantTimeStepSize() {
+        if (this.size < 2) {
+            return super.getConstantTimeStepSize();
+        }
+        return Optional.of(this.timeStepSize);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    private static class IndexView extends AbstractList<ZonedDateTime> {
+
+        private final ZonedDateTime start;
+        private final Duration timeStepSize;
+        private final int size;
+
+        private IndexView(ZonedDateTime start, Duration timeStepSize, int size) {
+            this.start = start;
+            this.timeStepSize = timeStepSize;
+            this.size = size;
+        }
+
+        @Override
+        public ZonedDateTime get(int position) {
+            if (position < 0 || position >= this.size) {
+                throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", position, this.size));
+            }
+            if (position == 0) {
+                return this.start;
+            }
+            return this.start.plus(this.timeStepSize.multipliedBy(position));
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+    }
+
+    private static class ValueView extends AbstractList<Double> {
+
+        private final double[] buffer;
+        private final int offset;
+        private final int stride;
+        private final int size;
+
+        private ValueView(double[] buffer, int offset, int stride, int size) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.stride = stride;
+            this.size = size;
+        }
+
+        @Override
+        public Double get(int position) {
+            if (position < 0 || position >= this.size) {
+                throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", position, this.size));
+            }
+            return this.buffer[this.offset + position * this.stride];
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+    }
+}
@@ -2,12 +2,8 @@ package uk.ac.cam.eeci.energyagents;
 
 import java.time.Duration;
 import java.time.ZonedDateTime;
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Function;
 
 /**
  * A simple energy model of a dwelling.
@@ -19,6 +15,14 @@ import java.util.function.Function;
  * supposed to be heated. The dwelling consists of only one storey. Ventilation and infiltration
  * is limited to constant natural ventilation, and heat gains are limited to metabolic heat
  * gains.
+ * <br><br>
+ * While a dwelling is empty and its heating control strategy guarantees the heating to stay off,
+ * the dwelling is dormant: its time steps only count, and the temperatures are fast-forwarded
+ * through the skipped steps with precomputed coefficients of the then linear model once they are
+ * needed.
+ * <br><br>
+ * A dwelling may report its state at the end of each time step to the accumulator of its district,
+ * see {@link DistrictAccumulator}. Dormant dwellings then fast-forward one time step at a time.
  */
 public class Dwelling {
 
@@ -30,12 +34,15 @@ public class Dwelling {
     private static final double SURFACE_TO_FLOOR_RATIO = 4.5; // ISO 13790 [-]
     private static final double HEAT_CAPACITY_AIR = 1200; // ISO 13790 [J/(m3·K)]
     private static final double TIME_FRACTION_NATURAL_VENTILATION = 1; // constant natural ventilation
-    private static final double SOLAR_HEAT_GAIN = 0.0; // solar gain currently not considered
+    static final double SOLAR_HEAT_GAIN = 0.0; // solar gain currently not considered
+    private static final int MAXIMUM_DORMANT_STEPS = 288; // bounds the external temperatures held while dormant
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
 
     private final HeatingControlStrategyReference heatingControlStrategy;
     private final EnvironmentReference environmentReference;
-    private final Set<PersonReference> peopleInDwelling;
+    private final Occupancy occupancy;
     private final Duration timeStepSize;
+    private final ZonedDateTime initialTime;
 
     private final double A_f;
     private final double A_t;
@@ -50,12 +57,36 @@ public class Dwelling {
     private final double H_tr_2;
     private final double H_tr_3;
     private final double maximumHeatingPower;
+    // The model is affine: the next mass temperature and the air temperature are linear combinations of
+    // the current mass temperature, the external temperature, the heat gains on mass, surface, and air node,
+    // and the thermal power, which is supplied to the air node just like the air node heat gain.
+    private final double massGainShare;
+    private final double surfaceGainShare;
+    private final double massPerMass;
+    private final double massPerExternal;
+    private final double massPerMassGain;
+    private final double massPerSurfaceGain;
+    private final double massPerAirGain;
+    private final double airPerMass;
+    private final double airPerExternal;
+    private final double airPerSurfaceGain;
+    private final double airPerAirGain;
+    private final double nextAirPerPower;
 
     private double currentMassTemperature;
     private double currentAirTemperature;
     private double currentMetabolicHeatGain;
     private double currentThermalPower;
-    private ZonedDateTime currentTime;
+    private long currentTimeStep; // number of time steps since the initial time
+    private ZonedDateTime currentTime; // built on demand, see currentTime()
+    private long timeStepOfCurrentTime;
+
+    private double[] dormantExternalTemperatures; // of the time steps after becoming dormant, null when awake
+    private long dormantUntilTimeStep;
+    private int numberAppliedDormantSteps;
+    private int numberPendingDormantSteps;
+
+    private DistrictAccumulator districtAccumulator = null;
 
     /**
      *
@@ -95,8 +126,11 @@ public class Dwelling {
         this.currentThermalPower = 0;
         this.heatingControlStrategy = controlStrategyReference;
         this.timeStepSize = timeStepSize;
+        this.initialTime = initialTime;
+        this.currentTimeStep = 0;
         this.currentTime = initialTime;
-        this.peopleInDwelling = new HashSet<>();
+        this.timeStepOfCurrentTime = 0;
+        this.occupancy = new Occupancy();
         this.environmentReference = environmentReference;
         this.maximumHeatingPower = maximumHeatingPower;
 
@@ -120,135 +154,263 @@ public class Dwelling {
         this.H_tr_1 = 1 / ((1/this.H_tr_ve) + (1/this.H_tr_is));
         this.H_tr_2 = H_tr_1 + this.H_tr_w;
         this.H_tr_3 = 1 / ((1/H_tr_2) + (1/this.H_tr_ms));
+
+
+        this.massGainShare = this.A_m / this.A_t;
+        this.surfaceGainShare = 1 - this.A_m / this.A_t
+                - this.H_tr_w / (HEAT_TRANSMISSION_COEFFICIENT_MASS_TO_SURFACE * this.A_t);
+        double Cm_by_dt = this.C_m / (this.timeStepSize.toMillis() / 1000.0);
+        double theta_m_denom = Cm_by_dt + 0.5 * (this.H_tr_3 + this.H_tr_em);
+        this.massPerMass = (Cm_by_dt - 0.5 * (this.H_tr_3 + this.H_tr_em)) / theta_m_denom;
+        this.massPerExternal = (this.H_tr_em + this.H_tr_3 / this.H_tr_2 * (this.H_tr_w + this.H_tr_1)) / theta_m_denom;
+        this.massPerMassGain = 1 / theta_m_denom;
+        this.massPerSurfaceGain = this.H_tr_3 / this.H_tr_2 / theta_m_denom;
+        this.massPerAirGain = this.H_tr_3 / this.H_tr_2 * this.H_tr_1 / this.H_tr_ve / theta_m_denom;
+        double theta_s_denom = this.H_tr_ms + this.H_tr_w + this.H_tr_1;
+        double theta_a_denom = this.H_tr_is + this.H_tr_ve;
+        this.airPerMass = this.H_tr_is * this.H_tr_ms / theta_s_denom / theta_a_denom;
+        this.airPerExternal = (this.H_tr_is * (this.H_tr_w + this.H_tr_1) / theta_s_denom + this.H_tr_ve) / theta_a_denom;
+        this.airPerSurfaceGain = this.H_tr_is / theta_s_denom / theta_a_denom;
+        this.airPerAirGain = (this.H_tr_is * this.H_tr_1 / this.H_tr_ve / theta_s_denom + 1) / theta_a_denom;
+        this.nextAirPerPower = this.airPerMass * this.massPerAirGain + this.airPerAirGain;
     }
 
     /**
      * Performs dwelling simulation for the next time step.
      */
     public CompletableFuture<Void> step() {
-        CompletableFuture<Double>[] steps = new CompletableFuture[this.peopleInDwelling.size()];
-        int i = 0;
-        for (PersonReference person : this.peopleInDwelling) {
-            steps[i] = person.getCurrentMetabolicRate();
-            i++;
+        if (this.isDormant()) {
+            this.numberPendingDormantSteps += 1;
+            this.currentTimeStep += 1;
+            if (this.districtAccumulator != null) {
+                this.catchUp();
+                this.report();
+            }
+            return COMPLETED;
+        }
+        this.wakeUp();
+        this.currentMetabolicHeatGain = this.occupancy.getMetabolicHeatGain();
+        return this.environmentReference.getCurrentTemperature()
+                .thenCombine(this.heatingControlStrategy.heatingSetPoint(this.currentTime(), this.occupancy),
+                (temp, setPoint) -> {
+                    this.step(setPoint, temp);
+                    return setPoint;
+                })
+                .thenCompose(this::becomeDormantWhenUnheated);
+    }
+
+    private boolean isDormant() {
+        return this.dormantExternalTemperatures != null
+                && this.occupancy.isEmpty()
+                && this.currentTimeStep < this.dormantUntilTimeStep
+                && this.numberAppliedDormantSteps + this.numberPendingDormantSteps < this.dormantExternalTemperatures.length;
+    }
+
+    private CompletableFuture<Void> becomeDormantWhenUnheated(Optional<Double> heatingSetPoint) {
+        if (heatingSetPoint.isPresent() || !this.occupancy.isEmpty()) {
+            return COMPLETED;
+        }
+        return this.heatingControlStrategy.heatingOffUntil(this.currentTime(), this.occupancy)
+                .thenAcceptBoth(this.environmentReference.getUpcomingTemperatures(MAXIMUM_DORMANT_STEPS),
+                (heatingOffUntil, externalTemperatures) -> {
+                    if (heatingOffUntil.isPresent() && externalTemperatures.length > 0) {
+                        this.dormantUntilTimeStep = this.firstTimeStepNotBefore(heatingOffUntil.get());
+                        this.dormantExternalTemperatures = externalTemperatures;
+                        this.numberAppliedDormantSteps = 0;
+                        this.numberPendingDormantSteps = 0;
+                    }
+                });
+    }
+
+    /**
+     * The time is advanced by counting time steps. The time stamp is built from the count only
+     * when the control strategy or the district accumulator needs it, and at most once per time step.
+     *
+     * @return the time at the beginning of the next time step
+     */
+    private ZonedDateTime currentTime() {
+        if (this.timeStepOfCurrentTime != this.currentTimeStep) {
+            this.currentTime = this.initialTime.plus(this.timeStepSize.multipliedBy(this.currentTimeStep));
+            this.timeStepOfCurrentTime = this.currentTimeStep;
         }
-        return CompletableFuture.allOf(steps).thenAccept(v ->
-                    this.currentMetabolicHeatGain = Arrays.stream(steps)
-                            .map(CompletableFuture::join)
-                            .mapToDouble(Double::doubleValue).sum())
-                .thenCombine(this.environmentReference.getCurrentTemperature(), (v, temp) -> temp)
-                .thenAcceptBoth(this.heatingControlStrategy.heatingSetPoint(this.currentTime, this.peopleInDwelling),
-                (temp, setPoint) -> this.step(setPoint, temp));
+        return this.currentTime;
+    }
+
+    /**
+     * @return the number of the first time step whose time is not before the given time
+     */
+    private long firstTimeStepNotBefore(ZonedDateTime time) {
+        Duration sinceInitialTime = Duration.between(this.initialTime.toInstant(), time.toInstant());
+        if (sinceInitialTime.getSeconds() >= Long.MAX_VALUE / 1_000_000_000L) {
+            return Long.MAX_VALUE; // e.g. FOREVER
+        }
+        return -Math.floorDiv(-sinceInitialTime.toNanos(), this.timeStepSize.toNanos());
+    }
+
+    /**
+     * Applies all time steps that have been skipped while being dormant. Without heating and heat gains,
+     * the model is linear in mass and external temperature.
+     */
+    private void catchUp() {
+        if (this.numberPendingDormantSteps == 0) {
+            return;
+        }
+        double massTemperature = this.currentMassTemperature;
+        double externalTemperature = 0;
+        int end = this.numberAppliedDormantSteps + this.numberPendingDormantSteps;
+        for (int i = this.numberAppliedDormantSteps; i < end; i++) {
+            externalTemperature = this.dormantExternalTemperatures[i];
+            massTemperature = this.massPerMass * massTemperature + this.massPerExternal * externalTemperature;
+        }
+        this.currentMassTemperature = massTemperature;
+        this.currentAirTemperature = this.airPerMass * massTemperature + this.airPerExternal * externalTemperature;
+        this.currentThermalPower = 0;
+        this.currentMetabolicHeatGain = 0;
+        this.numberAppliedDormantSteps = end;
+        this.numberPendingDormantSteps = 0;
+    }
+
+    private void wakeUp() {
+        this.catchUp();
+        this.dormantExternalTemperatures = null;
+        this.dormantUntilTimeStep = 0;
+        this.numberAppliedDormantSteps = 0;
     }
 
     private void step(Optional<Double> heatingSetPoint, double externalTemperature) {
         double internalHeatGain = this.currentMetabolicHeatGain;
-        double solarHeatGain = SOLAR_HEAT_GAIN;
-        Function<Double, Double> nextMassTemperature = thermalPower ->
-                this.nextTemperature(externalTemperature, thermalPower, internalHeatGain, solarHeatGain);
-        double noPower = 0.0;
-        double nextMassTemperatureNoPower = nextMassTemperature.apply(noPower);
-        double nextAirTemperatureNoPower = this.massToAirTemperature(nextMassTemperatureNoPower, externalTemperature,
-                noPower, internalHeatGain, solarHeatGain);
-        if (!heatingSetPoint.isPresent() || nextAirTemperatureNoPower >= heatingSetPoint.get()) {
-            this.currentMassTemperature = nextMassTemperatureNoPower;
-            this.currentThermalPower = noPower;
-            this.currentAirTemperature = nextAirTemperatureNoPower;
-        }
-        else {
-            double tenWattPowerSquareMeterPower = 10 * this.A_f;
-            double nextMassTemperaturePower10 = nextMassTemperature.apply(tenWattPowerSquareMeterPower);
-            double nextAirTemperaturePower10 = this.massToAirTemperature(nextMassTemperaturePower10, externalTemperature,
-                    tenWattPowerSquareMeterPower, internalHeatGain, solarHeatGain);
-            double unrestrictedPower = (tenWattPowerSquareMeterPower *
-                    (heatingSetPoint.get() - nextAirTemperatureNoPower) /
-                    (nextAirTemperaturePower10 - nextAirTemperatureNoPower));
-            double thermalPower;
+        double phi_ia = 0.5 * internalHeatGain;
+        double phi_st = this.surfaceGainShare * (0.5 * internalHeatGain + SOLAR_HEAT_GAIN);
+        double phi_m = this.massGainShare * (0.5 * internalHeatGain + SOLAR_HEAT_GAIN);
+        double nextMassTemperatureNoPower = this.massPerMass * this.currentMassTemperature
+                + this.massPerExternal * externalTemperature + this.massPerMassGain * phi_m
+                + this.massPerSurfaceGain * phi_st + this.massPerAirGain * phi_ia;
+        double nextAirTemperatureNoPower = this.airPerMass * nextMassTemperatureNoPower
+                + this.airPerExternal * externalTemperature + this.airPerSurfaceGain * phi_st
+                + this.airPerAirGain * phi_ia;
+        double thermalPower = 0.0;
+        if (heatingSetPoint.isPresent() && nextAirTemperatureNoPower < heatingSetPoint.get()) {
+            double unrestrictedPower = (heatingSetPoint.get() - nextAirTemperatureNoPower) / this.nextAirPerPower;
             if (Math.abs(unrestrictedPower) <= Math.abs(this.maximumHeatingPower)) {
                 thermalPower = unrestrictedPower;
             }
             else {
                 thermalPower = this.maximumHeatingPower;
             }
-            this.currentMassTemperature = nextMassTemperature.apply(thermalPower);
-            this.currentThermalPower = thermalPower;
-            this.currentAirTemperature = this.massToAirTemperature(this.currentMassTemperature, externalTemperature,
-                    thermalPower, internalHeatGain, solarHeatGain);
         }
-        this.currentTime = this.currentTime.plus(this.timeStepSize);
+        this.currentMassTemperature = nextMassTemperatureNoPower + this.massPerAirGain * thermalPower;
+        this.currentThermalPower = thermalPower;
+        this.currentAirTemperature = nextAirTemperatureNoPower + this.nextAirPerPower * thermalPower;
+        this.currentTimeStep += 1;
+        this.report();
     }
 
-    public double getCurrentAirTemperature() {
-        return this.currentAirTemperature;
-    }
-
-    public double getCurrentThermalPower(){
-        return this.currentThermalPower;
+    private void report() {
+        if (this.districtAccumulator != null) {
+            this.districtAccumulator.record(this.currentTime(), this.currentAirTemperature, this.currentThermalPower);
+        }
     }
 
     /**
-     * Whenever a person wants to enter the dwelling.
+     * Reports the state of this dwelling to the given accumulator at the end of each time step from now on.
      *
-     * @param person the person to enter
+     * @param districtAccumulator the accumulator of the district of this dwelling
      */
-    public void enter(PersonReference person) {
-        this.peopleInDwelling.add(person);
+    void reportTo(DistrictAccumulator districtAccumulator) {
+        this.districtAccumulator = districtAccumulator;
     }
 
     /**
-     * Whenever a person wants to leave the dwelling.
-     *
-     * @param person the person to leave
+     * @return the metabolic heat gain of the current occupants, as an input of the next time step of a batch [W]
      */
-    public void leave(PersonReference person) {
-        this.peopleInDwelling.remove(person);
+    double takeMetabolicHeatGain() {
+        return this.occupancy.getMetabolicHeatGain();
     }
 
-    private double massToAirTemperature(double massTemperature, double externalTemperature,
-                                        double thermalPower, double internalGain, double solarGain) {
-        double phi_ia = heatGainOnAirNode(internalGain);
-        double phi_st = heatGainOnSurfaceNode(internalGain, solarGain);
-
-        double theta_m = massTemperature;
-        double theta_e = externalTemperature;
-        double theta_sup = externalTemperature;
-        double theta_s_nom = this.H_tr_ms * theta_m + phi_st + H_tr_w * theta_e + H_tr_1 * (theta_sup + (phi_ia + thermalPower) / this.H_tr_ve);
-        double theta_s_denom = this.H_tr_ms + this.H_tr_w + this.H_tr_1;
-        double theta_s = theta_s_nom / theta_s_denom;
-        double theta_a_nom = this.H_tr_is * theta_s + this.H_tr_ve * theta_sup + phi_ia + thermalPower;
-        double theta_a_denom = this.H_tr_is + this.H_tr_ve;
-        return theta_a_nom / theta_a_denom;
+    /**
+     * @return the heating set point of the next time step of a batch
+     */
+    CompletableFuture<Optional<Double>> requestHeatingSetPoint() {
+        return this.heatingControlStrategy.heatingSetPoint(this.currentTime(), this.occupancy);
     }
 
-    private double heatGainOnAirNode(double internalGain){
-        return 0.5 * internalGain;
+    /**
+     * @return the current external temperature, as an input of the next time step of a batch [℃]
+     */
+    CompletableFuture<Double> requestExternalTemperature() {
+        return this.environmentReference.getCurrentTemperature();
     }
 
-    private double heatGainOnSurfaceNode(double internalGain, double solarGain) {
-        return (1 - this.A_m / this.A_t - this.H_tr_w / (9.1 * this.A_t)) * (0.5 * internalGain + solarGain);
+    /**
+     * Copies parameters and current state of this dwelling into a slot of a batch.
+     */
+    void copyInto(DwellingBatch batch, int index) {
+        this.wakeUp();
+        batch.setParameters(index, this.massGainShare, this.surfaceGainShare,
+                this.massPerMass, this.massPerExternal, this.massPerMassGain, this.massPerSurfaceGain, this.massPerAirGain,
+                this.airPerMass, this.airPerExternal, this.airPerSurfaceGain, this.airPerAirGain, this.nextAirPerPower,
+                this.maximumHeatingPower);
+        batch.setState(index, this.currentMassTemperature, this.currentAirTemperature, this.currentThermalPower);
     }
 
-    private double heatGainOnMassNode(double internalGain, double solarGain) {
-        return this.A_m / this.A_t * (0.5 * internalGain + solarGain);
+    /**
+     * Takes over the state of a slot of a batch that has been stepped the given number of times.
+     */
+    void copyStateFrom(DwellingBatch batch, int index, int numberOfSteps) {
+        this.wakeUp();
+        this.currentMassTemperature = batch.getMassTemperature(index);
+        this.currentAirTemperature = batch.getAirTemperature(index);
+        this.currentThermalPower = batch.getThermalPower(index);
+        this.currentMetabolicHeatGain = batch.getMetabolicHeatGain(index);
+        this.currentTimeStep += numberOfSteps;
+        this.report();
     }
 
-    private double nextTemperature(double externalTemperature, double thermalPower,
-                                   double internalGain, double solarGain) {
-        double phi_ia = this.heatGainOnAirNode(internalGain);
-        double phi_st = this.heatGainOnSurfaceNode(internalGain, solarGain);
-        double phi_m = this.heatGainOnMassNode(internalGain, solarGain);
+    public double getCurrentAirTemperature() {
+        this.catchUp();
+        return this.currentAirTemperature;
+    }
 
-        double theta_e = externalTemperature;
-        double theta_sup = externalTemperature;
-        double phi_2_3 = phi_st + this.H_tr_w * theta_e + this.H_tr_1 * ((phi_ia + thermalPower) / this.H_tr_ve + theta_sup);
-        double phi_tot = phi_m + this.H_tr_em * theta_e + this.H_tr_3 / this.H_tr_2 * phi_2_3;
+    public double getCurrentThermalPower(){
+        this.catchUp();
+        return this.currentThermalPower;
+    }
 
-        double Cm_by_dt = this.C_m / (this.timeStepSize.toMillis() / 1000.0);
+    /**
+     * @return the heating control strategy of this dwelling
+     */
+    HeatingControlStrategyReference getHeatingControlStrategy() {
+        return this.heatingControlStrategy;
+    }
 
-        double theta_m_nom = this.currentMassTemperature * (Cm_by_dt - 0.5 * (this.H_tr_3 + this.H_tr_em)) + phi_tot;
-        double theta_m_denom = Cm_by_dt + 0.5 * (this.H_tr_3 + this.H_tr_em);
+    /**
+     * Whenever a person wants to enter the dwelling.
+     *
+     * @param person the person to enter
+     * @param activity the current activity of the person
+     * @param metabolicRate the current metabolic rate of the person [W]
+     */
+    public void enter(PersonReference person, Person.Activity activity, double metabolicRate) {
+        this.occupancy.enter(person, activity, metabolicRate);
+    }
 
-        return theta_m_nom / theta_m_denom;
+    /**
+     * Whenever a person in the dwelling changes its activity.
+     *
+     * @param person the person that changed its activity
+     * @param activity the new activity of the person
+     * @param metabolicRate the new metabolic rate of the person [W]
+     */
+    public void changeActivity(PersonReference person, Person.Activity activity, double metabolicRate) {
+        this.occupancy.changeActivity(person, activity, metabolicRate);
+    }
 
+    /**
+     * Whenever a person wants to leave the dwelling.
+     *
+     * @param person the person to leave
+     */
+    public void leave(PersonReference person) {
+        this.occupancy.leave(person);
     }
 }
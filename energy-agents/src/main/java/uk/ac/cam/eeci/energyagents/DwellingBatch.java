@@ -0,0 +1,204 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps the thermal model of many dwellings at once.
+ * <br><br>
+ * Parameters and state of all dwellings are held in flat arrays (structure of arrays), so that
+ * an entire time step is one tight loop over primitive doubles without any futures or boxing.
+ * The arithmetic is the same as in {@link Dwelling}, operation by operation, hence results are
+ * bit-identical to stepping each dwelling on its own.
+ * <br><br>
+ * The batch works on copies of the dwellings' states. Use {@link #writeBack()} to hand the
+ * states back to the dwellings, or {@link #stepDwellings()} to step the batch with the inputs
+ * the dwellings currently see and hand the states back right away.
+ */
+public class DwellingBatch {
+
+    private final List<Dwelling> dwellings;
+
+    // coefficients of the affine model, precomputed by each dwelling
+    private final double[] massGainShare;
+    private final double[] surfaceGainShare;
+    private final double[] massPerMass;
+    private final double[] massPerExternal;
+    private final double[] massPerMassGain;
+    private final double[] massPerSurfaceGain;
+    private final double[] massPerAirGain;
+    private final double[] airPerMass;
+    private final double[] airPerExternal;
+    private final double[] airPerSurfaceGain;
+    private final double[] airPerAirGain;
+    private final double[] nextAirPerPower;
+    private final double[] maximumHeatingPower;
+
+    // state
+    private final double[] massTemperature;
+    private final double[] airTemperature;
+    private final double[] thermalPower;
+    private final double[] metabolicHeatGain;
+    private int stepsSinceWriteBack;
+
+    // inputs gathered from the dwellings in stepDwellings
+    private final double[] inputHeatGains;
+    private final double[] inputSetPoints;
+
+    /**
+     * @param dwellings the dwellings of the batch; their order defines the index within the batch
+     */
+    public DwellingBatch(List<Dwelling> dwellings) {
+        int n = dwellings.size();
+        this.dwellings = new ArrayList<>(dwellings);
+        this.massGainShare = new double[n];
+        this.surfaceGainShare = new double[n];
+        this.massPerMass = new double[n];
+        this.massPerExternal = new double[n];
+        this.massPerMassGain = new double[n];
+        this.massPerSurfaceGain = new double[n];
+        this.massPerAirGain = new double[n];
+        this.airPerMass = new double[n];
+        this.airPerExternal = new double[n];
+        this.airPerSurfaceGain = new double[n];
+        this.airPerAirGain = new double[n];
+        this.nextAirPerPower = new double[n];
+        this.maximumHeatingPower = new double[n];
+        this.massTemperature = new double[n];
+        this.airTemperature = new double[n];
+        this.thermalPower = new double[n];
+        this.metabolicHeatGain = new double[n];
+        this.stepsSinceWriteBack = 0;
+        this.inputHeatGains = new double[n];
+        this.inputSetPoints = new double[n];
+        for (int i = 0; i < n; i++) {
+            dwellings.get(i).copyInto(this, i);
+        }
+    }
+
+    void setParameters(int i, double massGainShare, double surfaceGainShare,
+                       double massPerMass, double massPerExternal, double massPerMassGain,
+                       double massPerSurfaceGain, double massPerAirGain,
+                       double airPerMass, double airPerExternal, double airPerSurfaceGain,
+                       double airPerAirGain, double nextAirPerPower, double maximumHeatingPower) {
+        this.massGainShare[i] = massGainShare;
+        this.surfaceGainShare[i] = surfaceGainShare;
+        this.massPerMass[i] = massPerMass;
+        this.massPerExternal[i] = massPerExternal;
+        this.massPerMassGain[i] = massPerMassGain;
+        this.massPerSurfaceGain[i] = massPerSurfaceGain;
+        this.massPerAirGain[i] = massPerAirGain;
+        this.airPerMass[i] = airPerMass;
+        this.airPerExternal[i] = airPerExternal;
+        this.airPerSurfaceGain[i] = airPerSurfaceGain;
+        this.airPerAirGain[i] = airPerAirGain;
+        this.nextAirPerPower[i] = nextAirPerPower;
+        this.maximumHeatingPower[i] = maximumHeatingPower;
+    }
+
+    void setState(int i, double massTemperature, double airTemperature, double thermalPower) {
+        this.massTemperature[i] = massTemperature;
+        this.airTemperature[i] = airTemperature;
+        this.thermalPower[i] = thermalPower;
+    }
+
+    /**
+     * Performs the thermal simulation of all dwellings for the next time step.
+     *
+     * @param externalTemperature the city-wide external temperature [℃]
+     * @param metabolicHeatGains the metabolic heat gain of each dwelling [W]
+     * @param heatingSetPoints the heating set point of each dwelling [℃]; NaN if the heating
+     *                         system is switched off
+     */
+    public void step(double externalTemperature, double[] metabolicHeatGains, double[] heatingSetPoints) {
+        final int n = this.size();
+        if (metabolicHeatGains.length != n || heatingSetPoints.length != n) {
+            String msg = String.format("Expected inputs for %d dwellings, but received %d heat gains and %d set points.",
+                    n, metabolicHeatGains.length, heatingSetPoints.length);
+            throw new IllegalArgumentException(msg);
+        }
+        final double solarGain = Dwelling.SOLAR_HEAT_GAIN;
+        for (int i = 0; i < n; i++) {
+            double internalGain = metabolicHeatGains[i];
+            double phi_ia = 0.5 * internalGain;
+            double phi_st = this.surfaceGainShare[i] * (0.5 * internalGain + solarGain);
+            double phi_m = this.massGainShare[i] * (0.5 * internalGain + solarGain);
+            double theta_m_0 = this.massPerMass[i] * this.massTemperature[i]
+                    + this.massPerExternal[i] * externalTemperature + this.massPerMassGain[i] * phi_m
+                    + this.massPerSurfaceGain[i] * phi_st + this.massPerAirGain[i] * phi_ia;
+            double theta_a_0 = this.airPerMass[i] * theta_m_0
+                    + this.airPerExternal[i] * externalTemperature + this.airPerSurfaceGain[i] * phi_st
+                    + this.airPerAirGain[i] * phi_ia;
+
+            // set point power, switched off whenever there is no set point (NaN) or it is reached without heating
+            double heatingSetPoint = heatingSetPoints[i];
+            double unrestrictedPower = (heatingSetPoint - theta_a_0) / this.nextAirPerPower[i];
+            double restrictedPower = Math.abs(unrestrictedPower) <= Math.abs(this.maximumHeatingPower[i]) ?
+                    unrestrictedPower : this.maximumHeatingPower[i];
+            double power = theta_a_0 < heatingSetPoint ? restrictedPower : 0.0;
+
+            this.massTemperature[i] = theta_m_0 + this.massPerAirGain[i] * power;
+            this.thermalPower[i] = power;
+            this.airTemperature[i] = theta_a_0 + this.nextAirPerPower[i] * power;
+            this.metabolicHeatGain[i] = internalGain;
+        }
+        this.stepsSinceWriteBack++;
+    }
+
+    /**
+     * Performs the next time step of all dwellings with the metabolic heat gains of their occupants,
+     * the set points of their heating control strategies, and the external temperature, and hands the
+     * new states back to the dwellings. Results are the same as stepping each dwelling on its own.
+     * <br><br>
+     * Must be called by a thread that calls all references directly, see
+     * {@link uk.ac.cam.eeci.framework.WorkerPool#DIRECT}, and the dwellings must not be stepped
+     * on their own in between.
+     */
+    public void stepDwellings() {
+        if (this.size() == 0) {
+            return;
+        }
+        for (int i = 0; i < this.size(); i++) {
+            Dwelling dwelling = this.dwellings.get(i);
+            this.inputHeatGains[i] = dwelling.takeMetabolicHeatGain();
+            this.inputSetPoints[i] = dwelling.requestHeatingSetPoint().join().orElse(Double.NaN);
+        }
+        double externalTemperature = this.dwellings.get(0).requestExternalTemperature().join(); // city-wide
+        this.step(externalTemperature, this.inputHeatGains, this.inputSetPoints);
+        this.writeBack();
+    }
+
+    /**
+     * Hands the current states of the batch back to the dwellings, including the time steps
+     * performed since the last write back.
+     */
+    public void writeBack() {
+        for (int i = 0; i < this.size(); i++) {
+            this.dwellings.get(i).copyStateFrom(this, i, this.stepsSinceWriteBack);
+        }
+        this.stepsSinceWriteBack = 0;
+    }
+
+    /**
+     * @return the number of dwellings in the batch
+     */
+    public int size() {
+        return this.dwellings.size();
+    }
+
+    public double getMassTemperature(int index) {
+        return this.massTemperature[index];
+    }
+
+    public double getAirTemperature(int index) {
+        return this.airTemperature[index];
+    }
+
+    public double getThermalPower(int index) {
+        return this.thermalPower[index];
+    }
+
+    double getMetabolicHeatGain(int index) {
+        return this.metabolicHeatGain[index];
+    }
+}
@@ -8,16 +8,65 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * An urban district comprising of several dwellings.
+ * <br><br>
+ * The values of all dwellings can be requested from the dwellings in each time step. Once aggregation
+ * has been started, dwellings instead report their values to an accumulator of the district during
+ * their own time step, from which statistics of the district are read without contacting the dwellings.
  */
 public class DwellingDistrict {
 
     private final List<DwellingReference> dwellings;
+    private final DistrictAccumulator accumulator;
+    private boolean aggregating;
 
     public DwellingDistrict(Set<DwellingReference> dwellings) {
         this.dwellings = new ArrayList<>(dwellings);
         if (dwellings.size() == 0){
             throw new IllegalArgumentException("DwellingDistrict must contain at least one dwelling.");
         }
+        this.accumulator = new DistrictAccumulator();
+        this.aggregating = false;
+    }
+
+    /**
+     * Lets all dwellings report their values to the accumulator of the district at the end of each of their
+     * time steps. Must be started before the first time step.
+     */
+    public void startAggregation() {
+        for (DwellingReference dwelling : this.dwellings) {
+            dwelling.referent.reportTo(this.accumulator);
+        }
+        this.aggregating = true;
+    }
+
+    /**
+     * @param statistic the statistic to return
+     * @return the statistic of the air temperatures of all dwellings in the last time step
+     */
+    public double getAirTemperature(DistrictAccumulator.Statistic statistic) {
+        return this.getAccumulator().getAirTemperature(statistic);
+    }
+
+    /**
+     * @param statistic the statistic to return
+     * @return the statistic of the thermal powers of all dwellings in the last time step
+     */
+    public double getThermalPower(DistrictAccumulator.Statistic statistic) {
+        return this.getAccumulator().getThermalPower(statistic);
+    }
+
+    /**
+     * @return the number of dwellings with positive thermal power in the last time step
+     */
+    public int getNumberHeatedDwellings() {
+        return this.getAccumulator().getNumberHeated();
+    }
+
+    private DistrictAccumulator getAccumulator() {
+        if (!this.aggregating) {
+            throw new IllegalStateException("Aggregation has not been started.");
+        }
+        return this.accumulator;
     }
 
     public CompletableFuture<Map<DwellingReference, Double>> getAllCurrentAirTemperatures() {
@@ -1,6 +1,7 @@
 package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -11,14 +12,28 @@ public class DwellingDistrictReference extends Reference<DwellingDistrict> {
         super(referent);
     }
 
+    public DwellingDistrictReference(DwellingDistrict referent, SimulationContext context) {
+        super(referent, context);
+    }
+
     public CompletableFuture<Map<DwellingReference, Double>> getAllCurrentAirTemperatures() {
-        return this.referent.getAllCurrentAirTemperatures()
-                .thenApplyAsync((values) -> values, pool.currentExecutor());
+        return returnToCaller(this.referent.getAllCurrentAirTemperatures());
     }
 
     public CompletableFuture<Map<DwellingReference, Double>> getAllCurrentThermalPowers() {
-        return this.referent.getAllCurrentThermalPowers()
-                .thenApplyAsync((values) -> values, pool.currentExecutor());
+        return returnToCaller(this.referent.getAllCurrentThermalPowers());
+    }
+
+    public CompletableFuture<Double> getAirTemperature(DistrictAccumulator.Statistic statistic) {
+        return this.supply(() -> this.referent.getAirTemperature(statistic));
+    }
+
+    public CompletableFuture<Double> getThermalPower(DistrictAccumulator.Statistic statistic) {
+        return this.supply(() -> this.referent.getThermalPower(statistic));
+    }
+
+    public CompletableFuture<Integer> getNumberHeatedDwellings() {
+        return this.supply(this.referent::getNumberHeatedDwellings);
     }
 
 }
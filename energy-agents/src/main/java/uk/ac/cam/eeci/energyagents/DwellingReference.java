@@ -1,6 +1,7 @@
 package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -10,28 +11,36 @@ public class DwellingReference extends Reference<Dwelling> {
         super(referent);
     }
 
+    public DwellingReference(Dwelling referent, SimulationContext context) {
+        super(referent, context);
+    }
+
+    public DwellingReference(Dwelling referent, SimulationContext context, Object affinityKey) {
+        super(referent, context, affinityKey);
+    }
+
     public CompletableFuture<Void> step() {
-        return CompletableFuture.completedFuture(null).thenComposeAsync((p) -> this.referent.step(), this.executor)
-                .thenRunAsync(() ->{}, pool.currentExecutor());
+        return this.compose(() -> this.referent.step());
     }
 
     public CompletableFuture<Double> getCurrentAirTemperature() {
-        return CompletableFuture.supplyAsync(this.referent::getCurrentAirTemperature, this.executor)
-                .thenApplyAsync(i -> i, pool.currentExecutor());
+        return this.supply(this.referent::getCurrentAirTemperature);
     }
 
     public CompletableFuture<Double> getCurrentThermalPower() {
-        return CompletableFuture.supplyAsync(this.referent::getCurrentThermalPower, this.executor)
-                .thenApplyAsync(i -> i, pool.currentExecutor());
+        return this.supply(this.referent::getCurrentThermalPower);
+    }
+
+    public CompletableFuture<Void> enter(PersonReference person, Person.Activity activity, double metabolicRate) {
+        return this.run(() -> this.referent.enter(person, activity, metabolicRate));
     }
 
-    public CompletableFuture<Void> enter(PersonReference person) {
-        return CompletableFuture.runAsync(() -> this.referent.enter(person), this.executor)
-                .thenRunAsync(() ->{}, pool.currentExecutor());
+    public CompletableFuture<Void> changeActivity(PersonReference person, Person.Activity activity,
+                                                  double metabolicRate) {
+        return this.run(() -> this.referent.changeActivity(person, activity, metabolicRate));
     }
 
     public CompletableFuture<Void> leave(PersonReference person) {
-        return CompletableFuture.runAsync(() -> this.referent.leave(person), this.executor)
-                .thenRunAsync(() ->{}, pool.currentExecutor());
+        return this.run(() -> this.referent.leave(person));
     }
 }
@@ -1,6 +1,7 @@
 package uk.ac.cam.eeci.energyagents;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -46,4 +47,19 @@ public class Environment {
     public double getCurrentTemperature() {
         return this.currentTemperature;
     }
+
+    /**
+     * @param numberSteps the maximum number of upcoming time steps
+     * @return the city-wide temperatures of the time steps following the current one; fewer than
+     *         numberSteps at the end of the time series
+     */
+    public double[] getUpcomingTemperatures(int numberSteps) {
+        List<Double> values = this.temperatureTimeSeries.getValues();
+        int available = Math.max(0, Math.min(numberSteps, values.size() - this.index - 1));
+        double[] temperatures = new double[available];
+        for (int i = 0; i < available; i++) {
+            temperatures[i] = values.get(this.index + 1 + i);
+        }
+        return temperatures;
+    }
 }
@@ -1,6 +1,7 @@
 package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -10,13 +11,19 @@ public class EnvironmentReference extends Reference<Environment> {
         super(referent);
     }
 
+    public EnvironmentReference(Environment referent, SimulationContext context) {
+        super(referent, context);
+    }
+
     public CompletableFuture<Void> step() {
-        return CompletableFuture.runAsync(this.referent::step, this.executor)
-                .thenRunAsync(() ->{}, pool.currentExecutor());
+        return this.run(this.referent::step);
     }
 
     public CompletableFuture<Double> getCurrentTemperature() {
-        return CompletableFuture.supplyAsync(this.referent::getCurrentTemperature, this.executor)
-                .thenApplyAsync(i -> i, pool.currentExecutor());
+        return this.supply(this.referent::getCurrentTemperature);
+    }
+
+    public CompletableFuture<double[]> getUpcomingTemperatures(int numberSteps) {
+        return this.supply(() -> this.referent.getUpcomingTemperatures(numberSteps));
     }
 }
@@ -1,8 +1,9 @@
 package uk.ac.cam.eeci.energyagents;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -17,16 +18,40 @@ import java.util.concurrent.CompletableFuture;
 public abstract class HeatingControlStrategy {
     // should rather be an interface, but due to the reference mechanism must be an abstract class
 
+    /**
+     * A point in time after the end of any simulation.
+     */
+    public static final ZonedDateTime FOREVER = ZonedDateTime.of(LocalDateTime.MAX, ZoneOffset.UTC);
+
     /**
      * Determines the current heating set point for the heating system of a dwelling.
      *
      * @param timeStamp The current time stamp.
-     * @param peopleInDwelling The people that currently occupy the dwelling.
+     * @param occupancy The people that currently occupy the dwelling.
      * @return the heating set point for the heating system; can be empty in
      *         which case a switch off of the heating system is demanded,
      *         should it be turned on.
      */
     public abstract CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp,
-                                                                        Set<PersonReference> peopleInDwelling);
+                                                                        Occupancy occupancy);
+
+    /**
+     * Determines how long the heating system of a dwelling stays switched off at least, given the
+     * occupancy of the dwelling does not change.
+     * <br><br>
+     * Dwellings use this to skip asking for set points while they are empty and unheated. The default
+     * makes no promise; strategies may override it with any point in time before which
+     * {@link #heatingSetPoint(ZonedDateTime, Occupancy)} is empty for the given occupancy.
+     *
+     * @param timeStamp The current time stamp.
+     * @param occupancy The people that currently occupy the dwelling.
+     * @return a point in time until which -- exclusively -- the heating set point is empty for all
+     *         time stamps from the current one on; {@link #FOREVER} if it will always be empty, or
+     *         empty if no such point in time is known.
+     */
+    public CompletableFuture<Optional<ZonedDateTime>> heatingOffUntil(ZonedDateTime timeStamp,
+                                                                      Occupancy occupancy) {
+        return CompletableFuture.completedFuture(Optional.empty());
+    }
 
 }
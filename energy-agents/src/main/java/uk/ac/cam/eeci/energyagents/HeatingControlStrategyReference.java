@@ -1,10 +1,10 @@
 package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.time.ZonedDateTime;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 public class HeatingControlStrategyReference extends Reference<HeatingControlStrategy> {
@@ -13,8 +13,19 @@ public class HeatingControlStrategyReference extends Reference<HeatingControlStr
         super(referent);
     }
 
-    public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp, Set<PersonReference> peopleInDwelling) {
-        return this.referent.heatingSetPoint(timeStamp, peopleInDwelling)
-                .thenApplyAsync((setPoint) -> setPoint, pool.currentExecutor());
+    public HeatingControlStrategyReference(HeatingControlStrategy referent, SimulationContext context) {
+        super(referent, context);
+    }
+
+    public HeatingControlStrategyReference(HeatingControlStrategy referent, SimulationContext context, Object affinityKey) {
+        super(referent, context, affinityKey);
+    }
+
+    public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp, Occupancy occupancy) {
+        return returnToCaller(this.referent.heatingSetPoint(timeStamp, occupancy));
+    }
+
+    public CompletableFuture<Optional<ZonedDateTime>> heatingOffUntil(ZonedDateTime timeStamp, Occupancy occupancy) {
+        return returnToCaller(this.referent.heatingOffUntil(timeStamp, occupancy));
     }
 }
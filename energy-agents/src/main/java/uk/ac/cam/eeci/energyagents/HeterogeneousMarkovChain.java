@@ -2,21 +2,40 @@ package uk.ac.cam.eeci.energyagents;
 
 import org.javatuples.Pair;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.*;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
 
 /**
  * A time heterogeneous Markov chain for with different probabilities for one week.
+ * <br><br>
+ * The Markov chains of all times of the day are held in arrays indexed by time slot, so that
+ * finding the chain of a certain point in time is an array lookup.
+ * <br><br>
+ * Chains are immutable and can be shared between any number of users and threads. Their compiled
+ * transition tables can be written to and read from a plain binary format, see
+ * {@link #writeTo(DataOutput, ToIntFunction)}.
  *
  * @param <T> The type of the states of the Markov chain.
  */
 public class HeterogeneousMarkovChain<T> {
 
+    private static final long NANOS_PER_DAY = 24L * 60 * 60 * 1_000_000_000L;
+    private static final long MAX_NUMBER_OF_SLOTS = 24L * 60 * 60; // at most one slot per second
+    private static final long SECONDS_PER_DAY = 24L * 60 * 60;
+    private static final int DAY_OF_WEEK_OF_EPOCH = DayOfWeek.THURSDAY.ordinal(); // 1970-01-01
+    private static final int MAX_COUNT = 1 << 20; // sanity bound of all counts read from a binary format
+
     private final Map<LocalTime, MarkovChain<T>> weekdayChain;
     private final Map<LocalTime, MarkovChain<T>> weekendChain;
     private final ZoneId timeZone;
+    private final long slotSizeNanos;
+    private final MarkovChain<T>[] weekdaySlots;
+    private final MarkovChain<T>[] weekendSlots;
 
     /**
      *
@@ -30,6 +49,24 @@ public class HeterogeneousMarkovChain<T> {
         this.weekdayChain = weekdayChain;
         this.weekendChain = weekendChain;
         this.timeZone = timeZone;
+        long slotSize = NANOS_PER_DAY;
+        for (Map<LocalTime, MarkovChain<T>> dayChain : Arrays.asList(weekdayChain, weekendChain)) {
+            if (dayChain != null) {
+                for (LocalTime time : dayChain.keySet()) {
+                    slotSize = gcd(slotSize, time.toNanoOfDay());
+                }
+            }
+        }
+        if (NANOS_PER_DAY / slotSize <= MAX_NUMBER_OF_SLOTS) {
+            this.slotSizeNanos = slotSize;
+            this.weekdaySlots = this.toSlots(weekdayChain);
+            this.weekendSlots = this.toSlots(weekendChain);
+        }
+        else { // too fine grained to be held in arrays, fall back to the maps
+            this.slotSizeNanos = 0;
+            this.weekdaySlots = null;
+            this.weekendSlots = null;
+        }
     }
 
     /**
@@ -40,47 +77,193 @@ public class HeterogeneousMarkovChain<T> {
      * @param randomNumberGenerator an object that returns a random number between 0 and 1
      * @return the next state of the Markov chain
      */
-    public T move(T currentState, ZonedDateTime dateTime, Random randomNumberGenerator) {
-        Map<LocalTime, MarkovChain<T>> dayChain = null;
-        switch(dateTime.getDayOfWeek()) {
-            case MONDAY:
-            case TUESDAY:
-            case WEDNESDAY:
-            case THURSDAY:
-            case FRIDAY:
-                dayChain = this.weekdayChain;
-                break;
-            case SATURDAY:
-            case SUNDAY:
-                dayChain = this.weekendChain;
-                break;
-        }
-        T nextState = null;
+    public T move(T currentState, ZonedDateTime dateTime, RandomNumberGenerator randomNumberGenerator) {
+        return this.chainAt(dateTime).move(currentState, randomNumberGenerator);
+    }
+
+    /**
+     * @param currentState The current state of the Markov chain.
+     * @param dateTime the current time
+     * @return the probability to remain in the current state when moving at the given time
+     */
+    public double probabilityToStay(T currentState, ZonedDateTime dateTime) {
+        return this.chainAt(dateTime).probabilityToStay(currentState);
+    }
+
+    /**
+     * Move to the next Markov state given that the state changes.
+     *
+     * @param currentState The current state of the Markov chain.
+     * @param dateTime the current time
+     * @param randomNumberGenerator an object that returns a random number between 0 and 1
+     * @return the next state of the Markov chain, different from the current state
+     */
+    public T moveAway(T currentState, ZonedDateTime dateTime, RandomNumberGenerator randomNumberGenerator) {
+        return this.chainAt(dateTime).moveAway(currentState, randomNumberGenerator);
+    }
+
+    /**
+     * Writes the compiled transition tables of this chain.
+     *
+     * @param out the output to write to
+     * @param indexOfState the index by which each state is written
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out, ToIntFunction<T> indexOfState) throws IOException {
+        out.writeUTF(this.timeZone.getId());
+        writeDayChain(out, this.weekdayChain, indexOfState);
+        writeDayChain(out, this.weekendChain, indexOfState);
+    }
+
+    /**
+     * Reads a chain written by {@link #writeTo(DataOutput, ToIntFunction)}. The transition tables are
+     * taken over as they are, hence the chain moves exactly like the written one.
+     *
+     * @param in the input to read from
+     * @param stateOfIndex the state of each written index; throws an IllegalArgumentException for unknown indices
+     * @param <T> the type of the states
+     * @return the chain
+     * @throws IOException if reading fails or the input is malformed
+     */
+    public static <T> HeterogeneousMarkovChain<T> readFrom(DataInput in, IntFunction<T> stateOfIndex)
+            throws IOException {
+        ZoneId timeZone;
         try {
-            nextState = dayChain.get(dateTime.withZoneSameInstant(this.timeZone).toLocalTime())
-                    .move(currentState, randomNumberGenerator);
-        } catch (NullPointerException npe) {
+            timeZone = ZoneId.of(in.readUTF());
+        } catch (DateTimeException e) {
+            throw new IOException("Invalid time zone of markov chain.", e);
+        }
+        Map<LocalTime, MarkovChain<T>> weekdayChain = readDayChain(in, stateOfIndex);
+        Map<LocalTime, MarkovChain<T>> weekendChain = readDayChain(in, stateOfIndex);
+        return new HeterogeneousMarkovChain<>(weekdayChain, weekendChain, timeZone);
+    }
+
+    private static <T> void writeDayChain(DataOutput out, Map<LocalTime, MarkovChain<T>> dayChain,
+                                          ToIntFunction<T> indexOfState) throws IOException {
+        if (dayChain == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(dayChain.size());
+        for (Map.Entry<LocalTime, MarkovChain<T>> entry : dayChain.entrySet()) {
+            out.writeLong(entry.getKey().toNanoOfDay());
+            entry.getValue().writeTo(out, indexOfState);
+        }
+    }
+
+    private static <T> Map<LocalTime, MarkovChain<T>> readDayChain(DataInput in, IntFunction<T> stateOfIndex)
+            throws IOException {
+        int size = in.readInt();
+        if (size == -1) {
+            return null;
+        }
+        Map<LocalTime, MarkovChain<T>> dayChain = new HashMap<>();
+        for (int i = 0; i < checkCount(size); i++) {
+            LocalTime time;
+            try {
+                time = LocalTime.ofNanoOfDay(in.readLong());
+            } catch (DateTimeException e) {
+                throw new IOException("Invalid time of day of markov chain.", e);
+            }
+            dayChain.put(time, MarkovChain.readFrom(in, stateOfIndex));
+        }
+        return dayChain;
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException(String.format("Invalid count %d in markov chain.", count));
+        }
+        return count;
+    }
+
+    private MarkovChain<T> chainAt(ZonedDateTime dateTime) {
+        MarkovChain<T> chain = this.lookUp(dateTime);
+        if (chain == null) {
             String msg = String.format("%s is not a valid date time for this markov chain.", dateTime);
             throw new IllegalArgumentException(msg);
         }
-        return nextState;
+        return chain;
     }
 
+    private MarkovChain<T> lookUp(ZonedDateTime dateTime) {
+        // day and time of day are derived from the epoch seconds, without creating any date time objects
+        long epochSecond = dateTime.toEpochSecond();
+        long day = Math.floorDiv(epochSecond + dateTime.getOffset().getTotalSeconds(), SECONDS_PER_DAY);
+        int dayOfWeek = (int) Math.floorMod(day + DAY_OF_WEEK_OF_EPOCH, 7L);
+        boolean weekend = dayOfWeek == DayOfWeek.SATURDAY.ordinal() || dayOfWeek == DayOfWeek.SUNDAY.ordinal();
+        int offsetSeconds = dateTime.getZone().equals(this.timeZone) ? dateTime.getOffset().getTotalSeconds() :
+                this.timeZone.getRules().getOffset(dateTime.toInstant()).getTotalSeconds();
+        long nanoOfDay = Math.floorMod(epochSecond + offsetSeconds, SECONDS_PER_DAY) * 1_000_000_000L
+                + dateTime.getNano();
+        if (this.slotSizeNanos == 0) {
+            Map<LocalTime, MarkovChain<T>> dayChain = weekend ? this.weekendChain : this.weekdayChain;
+            return dayChain == null ? null : dayChain.get(LocalTime.ofNanoOfDay(nanoOfDay));
+        }
+        MarkovChain<T>[] slots = weekend ? this.weekendSlots : this.weekdaySlots;
+        if (slots == null || nanoOfDay % this.slotSizeNanos != 0) {
+            return null;
+        }
+        return slots[(int) (nanoOfDay / this.slotSizeNanos)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private MarkovChain<T>[] toSlots(Map<LocalTime, MarkovChain<T>> dayChain) {
+        if (dayChain == null) {
+            return null;
+        }
+        MarkovChain<T>[] slots = new MarkovChain[(int) (NANOS_PER_DAY / this.slotSizeNanos)];
+        for (Map.Entry<LocalTime, MarkovChain<T>> entry : dayChain.entrySet()) {
+            slots[(int) (entry.getKey().toNanoOfDay() / this.slotSizeNanos)] = entry.getValue();
+        }
+        return slots;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
 
     /**
      * A time invariant first order Markov chain.
+     * <br><br>
+     * The transition probabilities are compiled into one cumulative probability table per start
+     * state. For enum states, the tables are indexed by ordinal and the follow up states are ordered
+     * by ordinal, hence moving is an array lookup and a short scan without any allocation.
+     *
      * @param <T> The type of the states.
      */
     public static class MarkovChain<T> {
 
-        private final Map<Pair<T, T>, Double> probabilities;
+        private final Transitions[] transitionsByOrdinal;
+        private final Map<T, Transitions> transitionsByState;
 
         /**
          *
          * @param probabilities transition probabilities between states
          */
         public MarkovChain(Map<Pair<T, T>, Double> probabilities) {
-            this.probabilities = probabilities;
+            this(compileAll(probabilities));
+        }
+
+        private MarkovChain(IdentityHashMap<T, Transitions> transitionsByState) {
+            Transitions[] transitionsByOrdinal = null;
+            for (Map.Entry<T, Transitions> entry : transitionsByState.entrySet()) {
+                T fromState = entry.getKey();
+                if (fromState instanceof Enum) {
+                    if (transitionsByOrdinal == null) {
+                        int numberOfStates = ((Enum<?>) fromState).getDeclaringClass().getEnumConstants().length;
+                        transitionsByOrdinal = new Transitions[numberOfStates];
+                    }
+                    transitionsByOrdinal[((Enum<?>) fromState).ordinal()] = entry.getValue();
+                }
+            }
+            this.transitionsByOrdinal = transitionsByOrdinal;
+            this.transitionsByState = transitionsByState;
             this.validateChain();
         }
 
@@ -91,43 +274,163 @@ public class HeterogeneousMarkovChain<T> {
          * @param randomNumberGenerator an object that returns a random number between 0 and 1
          * @return the next state of the Markov chain
          */
-        public T move(T currentState, Random randomNumberGenerator) {
-            List<Pair<T, T>> possibleTransitions = this.possibleTransitions(currentState)
-                .collect(Collectors.toList());
+        @SuppressWarnings("unchecked")
+        public T move(T currentState, RandomNumberGenerator randomNumberGenerator) {
+            Transitions transitions = this.transitionsOf(currentState);
             double randomNumber = randomNumberGenerator.nextDouble();
-            T nextState = null;
-            double summedProbabilities = 0;
-            for (Pair<T, T> statePair : possibleTransitions) {
-                double thisProbability = this.probabilities.get(statePair);
-                if (randomNumber < summedProbabilities + thisProbability) {
-                    nextState = statePair.getValue1();
-                    break;
-                }
-                else {
-                    summedProbabilities += thisProbability;
+            if (transitions != null) {
+                double[] cumulativeProbabilities = transitions.cumulativeProbabilities;
+                for (int i = 0; i < cumulativeProbabilities.length; i++) {
+                    if (randomNumber < cumulativeProbabilities[i]) {
+                        return (T) transitions.nextStates[i];
+                    }
                 }
             }
-            if (nextState == null) {
+            throw new IllegalStateException("Could not determine next state. Markov chain is invalid.");
+        }
+
+        /**
+         * @param currentState the current state of the Markov chain
+         * @return the probability to remain in the current state
+         */
+        public double probabilityToStay(T currentState) {
+            Transitions transitions = this.transitionsOf(currentState);
+            if (transitions == null) {
                 throw new IllegalStateException("Could not determine next state. Markov chain is invalid.");
             }
-            return nextState;
+            double[] cumulativeProbabilities = transitions.cumulativeProbabilities;
+            for (int i = 0; i < cumulativeProbabilities.length; i++) {
+                if (transitions.nextStates[i] == currentState) {
+                    return cumulativeProbabilities[i] - (i == 0 ? 0.0 : cumulativeProbabilities[i - 1]);
+                }
+            }
+            return 0.0;
+        }
+
+        /**
+         * Move to the next state given that the state changes, i.e. with the transition probabilities
+         * to all other states renormalised.
+         *
+         * @param currentState the current state of the Markov chain
+         * @param randomNumberGenerator an object that returns a random number between 0 and 1
+         * @return the next state of the Markov chain, different from the current state
+         */
+        @SuppressWarnings("unchecked")
+        public T moveAway(T currentState, RandomNumberGenerator randomNumberGenerator) {
+            Transitions transitions = this.transitionsOf(currentState);
+            double probabilityToStay = this.probabilityToStay(currentState);
+            double[] cumulativeProbabilities = transitions.cumulativeProbabilities;
+            double probabilityToLeave = cumulativeProbabilities[cumulativeProbabilities.length - 1] - probabilityToStay;
+            if (probabilityToLeave <= 0.0) {
+                throw new IllegalStateException(String.format("State %s cannot be left.", currentState));
+            }
+            double randomNumber = randomNumberGenerator.nextDouble() * probabilityToLeave;
+            double summedProbabilities = 0.0;
+            Object lastOtherState = null;
+            for (int i = 0; i < cumulativeProbabilities.length; i++) {
+                if (transitions.nextStates[i] == currentState) {
+                    continue;
+                }
+                summedProbabilities += cumulativeProbabilities[i] - (i == 0 ? 0.0 : cumulativeProbabilities[i - 1]);
+                lastOtherState = transitions.nextStates[i];
+                if (randomNumber < summedProbabilities) {
+                    return (T) lastOtherState;
+                }
+            }
+            return (T) lastOtherState; // rounding errors only
+        }
+
+        private Transitions transitionsOf(T state) {
+            if (this.transitionsByOrdinal != null && state instanceof Enum) {
+                int ordinal = ((Enum<?>) state).ordinal();
+                if (ordinal < this.transitionsByOrdinal.length) {
+                    return this.transitionsByOrdinal[ordinal];
+                }
+            }
+            return this.transitionsByState.get(state);
+        }
+
+        private static <T> IdentityHashMap<T, Transitions> compileAll(Map<Pair<T, T>, Double> probabilities) {
+            Map<T, List<Pair<T, T>>> transitions = new IdentityHashMap<>();
+            for (Pair<T, T> statePair : probabilities.keySet()) {
+                transitions.computeIfAbsent(statePair.getValue0(), state -> new ArrayList<>()).add(statePair);
+            }
+            IdentityHashMap<T, Transitions> transitionsByState = new IdentityHashMap<>();
+            for (Map.Entry<T, List<Pair<T, T>>> entry : transitions.entrySet()) {
+                transitionsByState.put(entry.getKey(), compile(entry.getValue(), probabilities));
+            }
+            return transitionsByState;
+        }
+
+        private static <T> Transitions compile(List<Pair<T, T>> possibleTransitions,
+                                               Map<Pair<T, T>, Double> probabilities) {
+            if (possibleTransitions.stream().allMatch(statePair -> statePair.getValue1() instanceof Enum)) {
+                possibleTransitions.sort(Comparator.comparingInt(statePair -> ((Enum<?>) statePair.getValue1()).ordinal()));
+            }
+            Object[] nextStates = new Object[possibleTransitions.size()];
+            double[] cumulativeProbabilities = new double[possibleTransitions.size()];
+            double summedProbabilities = 0;
+            for (int i = 0; i < nextStates.length; i++) {
+                Pair<T, T> statePair = possibleTransitions.get(i);
+                double thisProbability = probabilities.get(statePair);
+                nextStates[i] = statePair.getValue1();
+                cumulativeProbabilities[i] = summedProbabilities + thisProbability;
+                summedProbabilities += thisProbability;
+            }
+            return new Transitions(nextStates, cumulativeProbabilities);
         }
 
-        private Stream<Pair<T, T>> possibleTransitions(T fromState) {
-            return probabilities.keySet().stream().filter(statePair -> statePair.getValue0() == fromState);
+        @SuppressWarnings("unchecked")
+        private void writeTo(DataOutput out, ToIntFunction<T> indexOfState) throws IOException {
+            out.writeInt(this.transitionsByState.size());
+            for (Map.Entry<T, Transitions> entry : this.transitionsByState.entrySet()) {
+                Transitions transitions = entry.getValue();
+                out.writeInt(indexOfState.applyAsInt(entry.getKey()));
+                out.writeInt(transitions.nextStates.length);
+                for (int i = 0; i < transitions.nextStates.length; i++) {
+                    out.writeInt(indexOfState.applyAsInt((T) transitions.nextStates[i]));
+                    out.writeDouble(transitions.cumulativeProbabilities[i]);
+                }
+            }
+        }
+
+        private static <T> MarkovChain<T> readFrom(DataInput in, IntFunction<T> stateOfIndex) throws IOException {
+            int numberOfStates = checkCount(in.readInt());
+            IdentityHashMap<T, Transitions> transitionsByState = new IdentityHashMap<>();
+            for (int i = 0; i < numberOfStates; i++) {
+                T fromState = stateOfIndex.apply(in.readInt());
+                int numberOfTransitions = checkCount(in.readInt());
+                if (numberOfTransitions == 0) {
+                    throw new IOException(String.format("State %s of markov chain has no transitions.", fromState));
+                }
+                Object[] nextStates = new Object[numberOfTransitions];
+                double[] cumulativeProbabilities = new double[numberOfTransitions];
+                for (int j = 0; j < numberOfTransitions; j++) {
+                    nextStates[j] = stateOfIndex.apply(in.readInt());
+                    cumulativeProbabilities[j] = in.readDouble();
+                }
+                transitionsByState.put(fromState, new Transitions(nextStates, cumulativeProbabilities));
+            }
+            return new MarkovChain<>(transitionsByState);
         }
 
         private void validateChain() {
-            Set<T> startStates = new HashSet<>();
-            for (Pair<T, T> statePair : this.probabilities.keySet()) {
-                startStates.add(statePair.getValue0());
-            }
-            for (T startState : startStates) {
-                double summedProbabilities = this.possibleTransitions(startState)
-                        .mapToDouble(this.probabilities::get)
-                        .sum();
+            for (Transitions transitions : this.transitionsByState.values()) {
+                double[] cumulativeProbabilities = transitions.cumulativeProbabilities;
+                double summedProbabilities = cumulativeProbabilities[cumulativeProbabilities.length - 1];
                 assert Math.abs(summedProbabilities - 1.0) < 0.001;
             }
         }
+
+        private static class Transitions {
+
+            private final Object[] nextStates;
+            private final double[] cumulativeProbabilities;
+
+            private Transitions(Object[] nextStates, double[] cumulativeProbabilities) {
+                this.nextStates = nextStates;
+                this.cumulativeProbabilities = cumulativeProbabilities;
+            }
+        }
     }
 }
@@ -0,0 +1,319 @@
+package uk.ac.cam.eeci.energyagents;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import uk.ac.cam.eeci.energyagents.Person.Activity;
+
+/**
+ * A cache of compiled {@link HeterogeneousMarkovChain}s of type {@link Person.Activity}, keyed by
+ * the content of their transition tables.
+ * <br><br>
+ * Transition tables with identical content are compiled only once and the resulting immutable
+ * chain is shared between all people and all scenarios read in the same JVM. Chains are held
+ * through soft references: they stay cached while they are in use or while memory suffices,
+ * but chains of earlier scenarios of a long sweep do not pile up.
+ * <br><br>
+ * Compiled chains of a scenario can further be persisted into a snapshot file next to the input
+ * database. Chains in the snapshot are keyed by the content digest of their tables just like in
+ * the cache, hence chains of tables that have changed since are never used. The snapshot is
+ * written in a plain binary format, see {@link HeterogeneousMarkovChain#writeTo}, and each chain
+ * carries a checksum of its bytes. A snapshot is read as a whole and is never added to the cache
+ * directly: a chain of the snapshot enters the cache only once a table of the current scenario has
+ * been read whose digest, computed from its entries, is the key of the chain.
+ */
+public class MarkovChainCache {
+
+    /**
+     * The cache shared by all scenarios read in this JVM.
+     */
+    public final static MarkovChainCache SHARED = new MarkovChainCache();
+    public final static String SNAPSHOT_FILE_SUFFIX = ".markov-chains";
+
+    private final static Logger LOGGER = LogManager.getLogger(MarkovChainCache.class.getName());
+    private final static int SNAPSHOT_MAGIC = 0x4d4b4348; // "MKCH"
+    private final static int SNAPSHOT_VERSION = 3;
+    private final static Activity[] STATES = Activity.values();
+    private final static int CHECKSUM_BYTES = 32; // SHA-256
+
+    private final Map<String, CachedChain> chains;
+    private final ReferenceQueue<HeterogeneousMarkovChain<Activity>> collectedChains;
+
+    public MarkovChainCache() {
+        this.chains = new ConcurrentHashMap<>();
+        this.collectedChains = new ReferenceQueue<>();
+    }
+
+    /**
+     * Returns the compiled chain of the given entries, compiling it only if no chain with the same
+     * content is cached.
+     *
+     * @param entries all entries of a markov chain table
+     * @param timeStepSize the time step size of the markov chain
+     * @param timeZone the time zone of the markov chain
+     * @return the compiled chain
+     */
+    HeterogeneousMarkovChain<Activity> get(List<MarkovChainReader.MarkovChainEntry> entries, Duration timeStepSize,
+                                           ZoneId timeZone) {
+        return this.get(entries, timeStepSize, timeZone, Collections.emptyMap());
+    }
+
+    /**
+     * Returns the compiled chain of the given entries, taking it from the snapshot if it is not cached,
+     * and compiling it only if it is in neither.
+     *
+     * @param entries all entries of a markov chain table
+     * @param timeStepSize the time step size of the markov chain
+     * @param timeZone the time zone of the markov chain
+     * @param snapshot compiled chains by digest, see {@link #readSnapshot(String)}
+     * @return the compiled chain
+     */
+    HeterogeneousMarkovChain<Activity> get(List<MarkovChainReader.MarkovChainEntry> entries, Duration timeStepSize,
+                                           ZoneId timeZone, Map<String, HeterogeneousMarkovChain<Activity>> snapshot) {
+        String digest = MarkovChainReader.digestOfEntries(entries, timeStepSize, timeZone);
+        HeterogeneousMarkovChain<Activity> chain = this.lookUp(digest);
+        if (chain != null) {
+            return chain;
+        }
+        chain = snapshot.get(digest);
+        if (chain != null) {
+            return this.share(digest, chain);
+        }
+        return this.share(digest, MarkovChainReader.buildMarkovChainFromEntries(entries, timeStepSize, timeZone));
+    }
+
+    /**
+     * Adds a chain to the cache unless a chain with the same digest is cached already.
+     *
+     * @return the cached chain with the given digest
+     */
+    HeterogeneousMarkovChain<Activity> share(String digest, HeterogeneousMarkovChain<Activity> chain) {
+        this.purgeCollectedChains();
+        while (true) {
+            CachedChain existing = this.chains.get(digest);
+            HeterogeneousMarkovChain<Activity> cached = existing != null ? existing.get() : null;
+            if (cached != null) {
+                return cached;
+            }
+            CachedChain added = new CachedChain(digest, chain, this.collectedChains);
+            if (existing == null ? this.chains.putIfAbsent(digest, added) == null :
+                    this.chains.replace(digest, existing, added)) {
+                return chain;
+            }
+        }
+    }
+
+    private HeterogeneousMarkovChain<Activity> lookUp(String digest) {
+        CachedChain cached = this.chains.get(digest);
+        return cached != null ? cached.get() : null;
+    }
+
+    /**
+     * @return the digest of the cached chain, or null if the chain is not cached
+     */
+    String digestOf(HeterogeneousMarkovChain<Activity> chain) {
+        for (Map.Entry<String, CachedChain> entry : this.chains.entrySet()) {
+            if (entry.getValue().get() == chain) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of distinct chains in the cache
+     */
+    public int size() {
+        this.purgeCollectedChains();
+        return (int) this.chains.values().stream().filter(cached -> cached.get() != null).count();
+    }
+
+    /**
+     * Removes all chains from the cache.
+     */
+    public void clear() {
+        this.chains.clear();
+    }
+
+    private void purgeCollectedChains() {
+        Object collected;
+        while ((collected = this.collectedChains.poll()) != null) {
+            CachedChain cachedChain = (CachedChain) collected;
+            this.chains.remove(cachedChain.digest, cachedChain);
+        }
+    }
+
+    /**
+     * @param databasePath the path to the input database
+     * @return the snapshot file belonging to the input database
+     */
+    public static File snapshotFileOf(String databasePath) {
+        return new File(databasePath + SNAPSHOT_FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the compiled chains of the snapshot of an input database. The snapshot is used only if it
+     * can be read as a whole and the checksums of all its chains match. The chains are not added to the
+     * cache, see {@link #get(List, Duration, ZoneId, Map)}.
+     *
+     * @param databasePath the path to the input database
+     * @return compiled chains by digest; empty if there is no valid snapshot
+     */
+    Map<String, HeterogeneousMarkovChain<Activity>> readSnapshot(String databasePath) {
+        Map<String, HeterogeneousMarkovChain<Activity>> chainsByDigest = new HashMap<>();
+        File snapshotFile = snapshotFileOf(databasePath);
+        if (!snapshotFile.isFile()) {
+            return chainsByDigest;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                LOGGER.info(String.format("Ignoring markov chain snapshot %s of unknown format.", snapshotFile));
+                return chainsByDigest;
+            }
+            Activity[] states = new Activity[in.readInt()];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = Activity.valueOf(in.readUTF());
+            }
+            int numberChains = in.readInt();
+            for (int i = 0; i < numberChains; i++) {
+                String digest = in.readUTF();
+                int numberBytes = in.readInt();
+                if (numberBytes < 0 || numberBytes > snapshotFile.length()) {
+                    throw new IOException(String.format("Invalid length %d of markov chain.", numberBytes));
+                }
+                byte[] bytes = new byte[numberBytes];
+                in.readFully(bytes);
+                byte[] checksum = new byte[CHECKSUM_BYTES];
+                in.readFully(checksum);
+                if (!Arrays.equals(checksum, checksumOf(bytes))) {
+                    throw new IOException(String.format("Checksum of markov chain %s does not match.", digest));
+                }
+                chainsByDigest.put(digest, readChain(bytes, states));
+            }
+            if (in.read() != -1) {
+                throw new IOException("Unexpected data after the last markov chain.");
+            }
+        } catch (IOException|IllegalArgumentException|NegativeArraySizeException e) {
+            LOGGER.warn(String.format("Failed to read markov chain snapshot %s.", snapshotFile), e);
+            chainsByDigest.clear();
+        }
+        return chainsByDigest;
+    }
+
+    private static HeterogeneousMarkovChain<Activity> readChain(byte[] bytes, Activity[] states) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            HeterogeneousMarkovChain<Activity> chain = HeterogeneousMarkovChain.readFrom(in,
+                    index -> stateOfIndex(states, index));
+            if (in.available() != 0) {
+                throw new IOException("Unexpected data after markov chain.");
+            }
+            return chain;
+        }
+    }
+
+    private static byte[] checksumOf(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform supports SHA-256
+        }
+    }
+
+    /**
+     * @param snapshot compiled chains by digest, see {@link #readSnapshot(String)}
+     * @param chains chains obtained through this cache
+     * @return true if the snapshot holds a chain of the digest of each of the chains
+     */
+    boolean isCoveredBySnapshot(Map<String, HeterogeneousMarkovChain<Activity>> snapshot,
+                                Collection<HeterogeneousMarkovChain<Activity>> chains) {
+        for (HeterogeneousMarkovChain<Activity> chain : chains) {
+            String digest = this.digestOf(chain);
+            if (digest == null || !snapshot.containsKey(digest)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Activity stateOfIndex(Activity[] states, int index) {
+        if (index < 0 || index >= states.length) {
+            throw new IllegalArgumentException(String.format("Invalid state index %d.", index));
+        }
+        return states[index];
+    }
+
+    /**
+     * Persists the compiled chains of all markov chain tables of an input database into its snapshot.
+     * The chains must have been obtained through this cache. Failures are logged only, as the snapshot
+     * is no more than an optimisation.
+     *
+     * @param databasePath the path to the input database
+     * @param chains compiled chains of all markov chain tables
+     */
+    void writeSnapshot(String databasePath, Collection<HeterogeneousMarkovChain<Activity>> chains) {
+        File snapshotFile = snapshotFileOf(databasePath);
+        Map<String, HeterogeneousMarkovChain<Activity>> chainsByDigest = new HashMap<>();
+        for (HeterogeneousMarkovChain<Activity> chain : chains) {
+            String digest = this.digestOf(chain);
+            if (digest == null) {
+                LOGGER.warn("Markov chain is not cached, not writing snapshot.");
+                return;
+            }
+            chainsByDigest.put(digest, chain);
+        }
+        try {
+            File tempFile = File.createTempFile(snapshotFile.getName(), ".tmp", snapshotFile.getAbsoluteFile().getParentFile());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(STATES.length);
+                for (Activity state : STATES) {
+                    out.writeUTF(state.name());
+                }
+                out.writeInt(chainsByDigest.size());
+                for (Map.Entry<String, HeterogeneousMarkovChain<Activity>> entry : chainsByDigest.entrySet()) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    try (DataOutputStream chainOut = new DataOutputStream(bytes)) {
+                        entry.getValue().writeTo(chainOut, Activity::ordinal);
+                    }
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(bytes.size());
+                    bytes.writeTo(out);
+                    out.write(checksumOf(bytes.toByteArray()));
+                }
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn(String.format("Failed to write markov chain snapshot %s.", snapshotFile), e);
+        }
+    }
+
+    private static class CachedChain extends SoftReference<HeterogeneousMarkovChain<Activity>> {
+
+        private final String digest;
+
+        private CachedChain(String digest, HeterogeneousMarkovChain<Activity> chain,
+                            ReferenceQueue<HeterogeneousMarkovChain<Activity>> queue) {
+            super(chain, queue);
+            this.digest = digest;
+        }
+    }
+}
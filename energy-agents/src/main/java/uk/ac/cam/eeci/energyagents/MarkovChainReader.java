@@ -7,8 +7,15 @@ import org.javatuples.Pair;
 
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -82,24 +89,62 @@ public abstract class MarkovChainReader {
     static HeterogeneousMarkovChain<Activity> buildMarkovChainFromEntries(List<MarkovChainEntry> entries,
                                                                           Duration timeStepSize,
                                                                           ZoneId timeZone) {
+        // group all entries by day and time of day in a single pass
+        Map<String, Map<LocalTime, Map<Pair<Activity, Activity>, Double>>> probabilitiesByDayAndTime = new HashMap<>();
+        for (MarkovChainEntry entry : entries) {
+            probabilitiesByDayAndTime
+                    .computeIfAbsent(entry.day, day -> new HashMap<>())
+                    .computeIfAbsent(entry.timeOfDay, time -> new HashMap<>())
+                    .put(new Pair<>(entry.fromActivity, entry.toActivity), entry.probability);
+        }
         Map<String, Map<LocalTime, MarkovChain<Activity>>> chain = new HashMap<>();
         String[] days = {"weekday", "weekend"};
         for (String day : days) {
+            Map<LocalTime, Map<Pair<Activity, Activity>, Double>> probabilitiesByTime =
+                    probabilitiesByDayAndTime.getOrDefault(day, Collections.emptyMap());
             Map<LocalTime, MarkovChain<Activity>> dayChain = new HashMap<>();
             for (LocalTime time : MarkovChainReader.allTimeStampsOfOneDay(timeStepSize)) {
-                Map<Pair<Activity, Activity>, Double> probabilities = new HashMap<>();
-                entries.stream()
-                        .filter(entry -> entry.day.equals(day))
-                        .filter(entry -> entry.timeOfDay.equals(time))
-                        .forEach(entry -> probabilities.put(new Pair<>(entry.fromActivity, entry.toActivity),
-                                entry.probability));
-                dayChain.put(time, new HeterogeneousMarkovChain.MarkovChain<>(probabilities));
+                Map<Pair<Activity, Activity>, Double> probabilities = probabilitiesByTime.get(time);
+                dayChain.put(time, new HeterogeneousMarkovChain.MarkovChain<>(
+                        probabilities != null ? probabilities : new HashMap<>()));
             }
             chain.put(day, dayChain);
         }
         return new HeterogeneousMarkovChain<>(chain.get("weekday"), chain.get("weekend"), timeZone);
     }
 
+    /**
+     * Creates a digest of the content of a markov chain table. Tables with the same content have the
+     * same digest, independent of the order of their entries.
+     */
+    static String digestOfEntries(List<MarkovChainEntry> entries, Duration timeStepSize, ZoneId timeZone) {
+        List<MarkovChainEntry> sortedEntries = new ArrayList<>(entries);
+        sortedEntries.sort(Comparator.<MarkovChainEntry, String>comparing(entry -> entry.day)
+                .thenComparing(entry -> entry.timeOfDay)
+                .thenComparing(entry -> entry.fromActivity)
+                .thenComparing(entry -> entry.toActivity)); // stable, hence duplicates keep their order
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every Java platform supports SHA-256
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        digest.update(String.format("%s|%s|", timeStepSize, timeZone.getId()).getBytes(StandardCharsets.UTF_8));
+        for (MarkovChainEntry entry : sortedEntries) {
+            digest.update(String.format("%s|%s|%s|%s|", entry.day, entry.timeOfDay, entry.fromActivity,
+                    entry.toActivity).getBytes(StandardCharsets.UTF_8));
+            buffer.clear();
+            buffer.putLong(Double.doubleToLongBits(entry.probability));
+            digest.update(buffer.array());
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
     private static MarkovChainEntry entryFromCSVRecord(CSVRecord record, int day, int time, int from, int to, int probability) {
         return new MarkovChainEntry(
                 record.get(day),
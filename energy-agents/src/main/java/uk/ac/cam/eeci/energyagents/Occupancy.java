@@ -0,0 +1,119 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import uk.ac.cam.eeci.energyagents.Person.Activity;
+
+/**
+ * The people currently present in a dwelling.
+ * <br><br>
+ * People report entering, leaving, and changing their activity, and the occupancy maintains
+ * the number of people per activity and their summed metabolic heat gain. Reading these is
+ * hence possible without asking each person.
+ */
+public class Occupancy {
+
+    private final Map<PersonReference, Occupant> occupants;
+    private final int[] numberOfPeoplePerActivity;
+    private double metabolicHeatGain;
+
+    public Occupancy() {
+        this.occupants = new LinkedHashMap<>();
+        this.numberOfPeoplePerActivity = new int[Activity.values().length];
+        this.metabolicHeatGain = 0.0;
+    }
+
+    /**
+     * Whenever a person enters.
+     *
+     * @param person the person to enter
+     * @param activity the current activity of the person
+     * @param metabolicRate the current metabolic rate of the person [W]
+     */
+    public void enter(PersonReference person, Activity activity, double metabolicRate) {
+        Occupant previous = this.occupants.put(person, new Occupant(activity, metabolicRate));
+        if (previous != null) {
+            this.numberOfPeoplePerActivity[previous.activity.ordinal()] -= 1;
+        }
+        this.numberOfPeoplePerActivity[activity.ordinal()] += 1;
+        this.updateMetabolicHeatGain();
+    }
+
+    /**
+     * Whenever a person that is present changes its activity.
+     *
+     * @param person the person that changed its activity
+     * @param activity the new activity of the person
+     * @param metabolicRate the new metabolic rate of the person [W]
+     * @throws IllegalStateException if the person is not present
+     */
+    public void changeActivity(PersonReference person, Activity activity, double metabolicRate) {
+        if (!this.occupants.containsKey(person)) {
+            throw new IllegalStateException("Only people that are present can change their activity.");
+        }
+        this.enter(person, activity, metabolicRate);
+    }
+
+    /**
+     * Whenever a person leaves.
+     *
+     * @param person the person to leave
+     */
+    public void leave(PersonReference person) {
+        Occupant previous = this.occupants.remove(person);
+        if (previous != null) {
+            this.numberOfPeoplePerActivity[previous.activity.ordinal()] -= 1;
+            this.updateMetabolicHeatGain();
+        }
+    }
+
+    private void updateMetabolicHeatGain() {
+        // summed anew instead of incrementally to not accumulate rounding errors
+        double metabolicHeatGain = 0.0;
+        for (Occupant occupant : this.occupants.values()) {
+            metabolicHeatGain += occupant.metabolicRate;
+        }
+        this.metabolicHeatGain = metabolicHeatGain;
+    }
+
+    /**
+     * @return the number of people present
+     */
+    public int getNumberOfPeoplePresent() {
+        return this.occupants.size();
+    }
+
+    /**
+     * @param activity an activity
+     * @return the number of people present that currently follow the given activity
+     */
+    public int getNumberOfPeople(Activity activity) {
+        return this.numberOfPeoplePerActivity[activity.ordinal()];
+    }
+
+    /**
+     * @return true if no one is present
+     */
+    public boolean isEmpty() {
+        return this.occupants.isEmpty();
+    }
+
+    /**
+     * @return the summed metabolic heat gain of all people present [W]
+     */
+    public double getMetabolicHeatGain() {
+        return this.metabolicHeatGain;
+    }
+
+    private static class Occupant {
+
+        private final Activity activity;
+        private final double metabolicRate;
+
+        private Occupant(Activity activity, double metabolicRate) {
+            this.activity = activity;
+            this.metabolicRate = metabolicRate;
+        }
+    }
+}
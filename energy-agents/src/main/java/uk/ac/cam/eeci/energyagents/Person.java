@@ -1,8 +1,9 @@
 package uk.ac.cam.eeci.energyagents;
 
+import uk.ac.cam.eeci.framework.SimulationContext;
+
 import java.time.*;
 import java.util.HashSet;
-import java.util.Random;
 import java.util.Set;
 
 /**
@@ -33,7 +34,7 @@ public class Person {
     private final HeterogeneousMarkovChain<Activity> markovChain;
     private final double activeMetabolicRate;
     private final double passiveMetabolicRate;
-    private final Random randomNumberGenerator;
+    private final RandomNumberGenerator randomNumberGenerator;
     private final Duration timeStepSize;
     private PersonReference reference;
     private final DwellingReference home;
@@ -51,23 +52,34 @@ public class Person {
      * @param timeStepSize The time step size for the simulation. Must be consistent with the time step size
      *                     of the markov chain.
      * @param home A {@link DwellingReference} to this person's home.
-     * @param randomNumberGenerator A {@link Random} instance that creates random numbers for this person.
+     * @param randomNumberGenerator A {@link RandomNumberGenerator} that creates random numbers for this person.
      *                              Important for reproducibility of results.
      */
     public Person(HeterogeneousMarkovChain<Activity> markovChain, double activeMetabolicRate, double passiveMetabolicRate,
                   Activity initialActivity, ZonedDateTime initialDateTime, Duration timeStepSize,
-                  DwellingReference home, Random randomNumberGenerator) {
+                  DwellingReference home, RandomNumberGenerator randomNumberGenerator) {
+        this(markovChain, activeMetabolicRate, passiveMetabolicRate, initialActivity, initialDateTime, timeStepSize,
+                home, randomNumberGenerator, SimulationContext.getDefault());
+    }
+
+    /**
+     * @param context The {@link SimulationContext} of this person's own reference, see other constructor
+     *                for all other parameters. The reference is placed next to the home of the person.
+     */
+    public Person(HeterogeneousMarkovChain<Activity> markovChain, double activeMetabolicRate, double passiveMetabolicRate,
+                  Activity initialActivity, ZonedDateTime initialDateTime, Duration timeStepSize,
+                  DwellingReference home, RandomNumberGenerator randomNumberGenerator, SimulationContext context) {
         this.markovChain = markovChain;
         this.activeMetabolicRate = activeMetabolicRate;
         this.passiveMetabolicRate = passiveMetabolicRate;
         this.currentActivity = initialActivity;
         this.currentTime = initialDateTime;
         this.timeStepSize = timeStepSize;
-        this.reference = new PersonReference(this);
+        this.reference = new PersonReference(this, context, home != null ? home.affinityKey : null);
         this.randomNumberGenerator = randomNumberGenerator;
         this.home = home;
         this.atHome = false;
-        this.updateLocation();
+        this.updateLocation(initialActivity);
     }
 
     /**
@@ -77,9 +89,51 @@ public class Person {
      * Updates internal time by time step.
      */
     public void step() {
+        Activity previousActivity = this.currentActivity;
         this.currentActivity = this.markovChain.move(this.currentActivity, this.currentTime,
                 this.randomNumberGenerator);
-        this.updateLocation();
+        this.updateLocation(previousActivity);
+        this.currentTime = this.currentTime.plus(this.timeStepSize);
+    }
+
+    /**
+     * Samples the number of time steps until the activity changes next, starting with the current step.
+     * <br><br>
+     * Samples from the same distribution as repeated calls of {@link #step()}, but with a single random
+     * number. Together with {@link #stepWithChange(int)} this allows to step a person only when its
+     * activity changes.
+     *
+     * @param maximumSteps the maximum number of steps to look ahead
+     * @return the number of steps without change before the step that changes the activity, or
+     *         maximumSteps if the activity does not change within the given number of steps
+     */
+    public int sampleStepsUntilChange(int maximumSteps) {
+        double randomNumber = 1.0 - this.randomNumberGenerator.nextDouble(); // in (0, 1]
+        double probabilityToStay = 1.0;
+        ZonedDateTime time = this.currentTime;
+        for (int step = 0; step < maximumSteps; step++) {
+            probabilityToStay *= this.markovChain.probabilityToStay(this.currentActivity, time);
+            if (probabilityToStay < randomNumber) {
+                return step;
+            }
+            time = time.plus(this.timeStepSize);
+        }
+        return maximumSteps;
+    }
+
+    /**
+     * Runs the simulation for a number of time steps without change of activity, followed by one time step
+     * in which the activity changes.
+     *
+     * @param unchangedSteps the number of time steps without change, as sampled by
+     *                       {@link #sampleStepsUntilChange(int)}
+     */
+    public void stepWithChange(int unchangedSteps) {
+        this.currentTime = this.currentTime.plus(this.timeStepSize.multipliedBy(unchangedSteps));
+        Activity previousActivity = this.currentActivity;
+        this.currentActivity = this.markovChain.moveAway(this.currentActivity, this.currentTime,
+                this.randomNumberGenerator);
+        this.updateLocation(previousActivity);
         this.currentTime = this.currentTime.plus(this.timeStepSize);
     }
 
@@ -103,13 +157,22 @@ public class Person {
         }
     }
 
-    private void updateLocation() {
+    /**
+     * @return the home of this person
+     */
+    DwellingReference getHome() {
+        return this.home;
+    }
+
+    private void updateLocation(Activity previousActivity) {
         if (this.atHome && !OWN_HOME_ACTIVITIES.contains(this.currentActivity)) {
             this.atHome = false;
             this.home.leave(this.reference);
         } else if (!this.atHome && OWN_HOME_ACTIVITIES.contains(this.currentActivity)) {
             this.atHome = true;
-            this.home.enter(this.reference);
+            this.home.enter(this.reference, this.currentActivity, this.getCurrentMetabolicRate());
+        } else if (this.atHome && this.currentActivity != previousActivity) {
+            this.home.changeActivity(this.reference, this.currentActivity, this.getCurrentMetabolicRate());
         }
 
     }
@@ -1,6 +1,7 @@
 package uk.ac.cam.eeci.energyagents;
 
 import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -10,18 +11,31 @@ public class PersonReference extends Reference<Person> {
         super(referent);
     }
 
+    public PersonReference(Person referent, SimulationContext context) {
+        super(referent, context);
+    }
+
+    public PersonReference(Person referent, SimulationContext context, Object affinityKey) {
+        super(referent, context, affinityKey);
+    }
+
     public CompletableFuture<Void> step() {
-        return CompletableFuture.runAsync(this.referent::step, this.executor)
-                .thenRunAsync(() ->{}, pool.currentExecutor());
+        return this.run(this.referent::step);
+    }
+
+    public CompletableFuture<Integer> sampleStepsUntilChange(int maximumSteps) {
+        return this.supply(() -> this.referent.sampleStepsUntilChange(maximumSteps));
+    }
+
+    public CompletableFuture<Void> stepWithChange(int unchangedSteps) {
+        return this.run(() -> this.referent.stepWithChange(unchangedSteps));
     }
 
     public CompletableFuture<Person.Activity> getCurrentActivity() {
-        return CompletableFuture.supplyAsync(this.referent::getCurrentActivity, this.executor)
-                .thenApplyAsync(i -> i, pool.currentExecutor());
+        return this.supply(this.referent::getCurrentActivity);
     }
 
     public CompletableFuture<Double> getCurrentMetabolicRate() {
-        return CompletableFuture.supplyAsync(this.referent::getCurrentMetabolicRate, this.executor)
-                .thenApplyAsync(i -> i, pool.currentExecutor());
+        return this.supply(this.referent::getCurrentMetabolicRate);
     }
 }
@@ -0,0 +1,17 @@
+package uk.ac.cam.eeci.energyagents;
+
+/**
+ * A source of the random numbers from which people draw their activities.
+ * <br><br>
+ * A {@link java.util.Random} can be used through its method reference {@code random::nextDouble};
+ * see {@link CounterBasedRandom} for a generator whose numbers do not depend on the order of draws
+ * of different people.
+ */
+@FunctionalInterface
+public interface RandomNumberGenerator {
+
+    /**
+     * @return the next random number, uniformly distributed in [0, 1)
+     */
+    double nextDouble();
+}
@@ -3,13 +3,20 @@ package uk.ac.cam.eeci.energyagents;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.cam.eeci.energyagents.strategy.HeatingControlStrategyFactory;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.sql.*;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -17,7 +24,33 @@ import java.util.stream.Collectors;
  */
 public class ScenarioBuilder {
 
+    /**
+     * The random number generators from which people can draw their activities.
+     */
+    public enum RandomNumberGeneratorType {
+        /**
+         * A {@link Random} seeded with the random seed of the person.
+         */
+        JAVA_UTIL,
+        /**
+         * A {@link CounterBasedRandom} keyed by the random seed and the id of the person.
+         */
+        COUNTER_BASED;
+
+        private RandomNumberGenerator create(int randomSeed, int personId) {
+            switch (this) {
+                case COUNTER_BASED:
+                    return new CounterBasedRandom(randomSeed, personId);
+                default:
+                    return new Random(randomSeed)::nextDouble;
+            }
+        }
+    }
+
     private final static Logger LOGGER = LogManager.getLogger(ScenarioBuilder.class.getName());
+    // identical temperature time series are shared between all scenarios read in this JVM
+    private final static Map<TimeSeries<Double>, WeakReference<TimeSeries<Double>>> TEMPERATURE_TIME_SERIES =
+            new WeakHashMap<>();
 
     public final static String SQL_TABLES_PARAMETERS = "parameters";
     public final static String SQL_TABLES_ENVIRONMENT = "environment";
@@ -32,6 +65,16 @@ public class ScenarioBuilder {
     public final static String SQL_COLUMNS_PAR_LOG_TEMPERATURE = "logTemperature";
     public final static String SQL_COLUMNS_PAR_LOG_ACTIVITY = "logActivity";
     public final static String SQL_COLUMNS_PAR_LOG_AGGREGATED = "logAggregated";
+    public final static String SQL_COLUMNS_PAR_LOG_TEMPERATURE_INTERVAL = "logTemperatureInterval"; // optional
+    public final static String SQL_COLUMNS_PAR_LOG_TEMPERATURE_REDUCTION = "logTemperatureReduction"; // optional
+    public final static String SQL_COLUMNS_PAR_LOG_THERMAL_POWER_INTERVAL = "logThermalPowerInterval"; // optional
+    public final static String SQL_COLUMNS_PAR_LOG_THERMAL_POWER_REDUCTION = "logThermalPowerReduction"; // optional
+    public final static String SQL_COLUMNS_PAR_LOG_ACTIVITY_INTERVAL = "logActivityInterval"; // optional
+    public final static String SQL_COLUMNS_PAR_LOG_AGGREGATED_STATISTICS = "logAggregatedStatistics"; // optional
+    public final static String SQL_COLUMNS_PAR_LOG_FLUSH_INTERVAL = "logFlushInterval"; // optional
+    public final static String SQL_COLUMNS_PAR_LOG_BINARY = "logBinary"; // optional
+    public final static String SQL_COLUMNS_PAR_MARKOV_CHAIN_SNAPSHOT = "markovChainSnapshot"; // optional
+    public final static String SQL_COLUMNS_PAR_RANDOM_NUMBER_GENERATOR = "randomNumberGenerator"; // optional
     public final static String SQL_COLUMNS_PAR_SET_POINT_WHILE_HOME = "setPointWhileHome";
     public final static String SQL_COLUMNS_PAR_SET_POINT_WHILE_ASLEEP = "setPointWhileAsleep";
     public final static String SQL_COLUMNS_PAR_WAKE_UP_TIME = "wakeUpTime";
@@ -76,6 +119,7 @@ public class ScenarioBuilder {
     public final static String ACTIVITY_DATA_POINT_NAME = "activity";
     public final static String THERMAL_POWER_DATA_POINT_NAME = "thermalPower";
     public final static String AVERAGE_THERMAL_POWER_DATA_POINT_NAME = "averageThermalPower";
+    public final static String NUMBER_HEATED_DWELLINGS_DATA_POINT_NAME = "numberHeatedDwellings";
 
     public final static ZoneOffset TIME_ZONE = ZoneOffset.UTC;
 
@@ -88,10 +132,28 @@ public class ScenarioBuilder {
         private final boolean logTemperature;
         private final boolean logActivity;
         private final boolean logAggregated;
+        private final int logTemperatureInterval;
+        private final DoubleDataPoint.Reduction logTemperatureReduction;
+        private final int logThermalPowerInterval;
+        private final DoubleDataPoint.Reduction logThermalPowerReduction;
+        private final int logActivityInterval;
+        private final List<DistrictAccumulator.Statistic> logAggregatedStatistics;
+        private final boolean logNumberHeatedDwellings;
+        private final int logFlushInterval;
+        private final boolean logBinary;
+        private final boolean markovChainSnapshot;
+        private final RandomNumberGeneratorType randomNumberGenerator;
 
         private SimulationParameter(ZonedDateTime initialTime, Duration timeStepSize, int numberTimeSteps,
                                     boolean logThermalPower, boolean logTemperature, boolean logActivity,
-                                    boolean logAggregated) {
+                                    boolean logAggregated,
+                                    int logTemperatureInterval, DoubleDataPoint.Reduction logTemperatureReduction,
+                                    int logThermalPowerInterval, DoubleDataPoint.Reduction logThermalPowerReduction,
+                                    int logActivityInterval,
+                                    List<DistrictAccumulator.Statistic> logAggregatedStatistics,
+                                    boolean logNumberHeatedDwellings,
+                                    int logFlushInterval, boolean logBinary,
+                                    boolean markovChainSnapshot, RandomNumberGeneratorType randomNumberGenerator) {
             this.initialTime = initialTime;
             this.timeStepSize = timeStepSize;
             this.numberTimeSteps = numberTimeSteps;
@@ -99,6 +161,17 @@ public class ScenarioBuilder {
             this.logTemperature = logTemperature;
             this.logActivity = logActivity;
             this.logAggregated = logAggregated;
+            this.logTemperatureInterval = logTemperatureInterval;
+            this.logTemperatureReduction = logTemperatureReduction;
+            this.logThermalPowerInterval = logThermalPowerInterval;
+            this.logThermalPowerReduction = logThermalPowerReduction;
+            this.logActivityInterval = logActivityInterval;
+            this.logAggregatedStatistics = logAggregatedStatistics;
+            this.logNumberHeatedDwellings = logNumberHeatedDwellings;
+            this.logFlushInterval = logFlushInterval;
+            this.logBinary = logBinary;
+            this.markovChainSnapshot = markovChainSnapshot;
+            this.randomNumberGenerator = randomNumberGenerator;
         }
     }
 
@@ -110,12 +183,26 @@ public class ScenarioBuilder {
      * @throws IOException whenever reading from input database fails
      */
     public static CitySimulation readScenario(String databasePath, String outputPath) throws IOException {
+        return readScenario(databasePath, outputPath, SimulationContext.getDefault());
+    }
+
+    /**
+     * Reads a scenario whose agents run on the worker pool of the given context.
+     *
+     * @param databasePath the path to the input database
+     * @param outputPath the path to the database to which results shall be written
+     * @param context the context of all references of the simulation
+     * @return a CitySimulation
+     * @throws IOException whenever reading from input database fails
+     */
+    public static CitySimulation readScenario(String databasePath, String outputPath, SimulationContext context)
+            throws IOException {
         CitySimulation simulation = null;
         Connection conn = null;
         try {
             Class.forName("org.sqlite.JDBC");
             conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", databasePath));
-            simulation = readScenario(conn, databasePath, outputPath);
+            simulation = readScenario(conn, databasePath, outputPath, context);
         } catch (ClassNotFoundException|SQLException|IOException ex) {
             LOGGER.error(String.format("Failed to read scenario from %s.", databasePath), ex);
             throw new IOException("Failed to read scenario");
@@ -131,26 +218,101 @@ public class ScenarioBuilder {
         return simulation;
     }
 
-    private static CitySimulation readScenario(Connection con, String inputPath, String outputPath)
-            throws SQLException, IOException {
+    private static CitySimulation readScenario(Connection con, String inputPath, String outputPath,
+                                               SimulationContext context) throws SQLException, IOException {
         SimulationParameter parameters = readSimulationParameters(con);
         HeatingControlStrategyFactory heatingControlStrategyFactory = readHeatingControlStrategyFactory(con);
-        EnvironmentReference environmentReference = readEnvironment(con, parameters.timeStepSize);
-        Map<Integer, DwellingReference> dwellingReferences = readDwellings(con, parameters, environmentReference,
-                heatingControlStrategyFactory);
-        Map<Integer, DwellingDistrictReference> districtReferences = readDistricts(con, dwellingReferences);
-        Map<Integer, PersonReference> peopleReferences = readPeople(con, dwellingReferences, parameters);
-        DataLoggerReference dataLoggerReference = createDataLogger(dwellingReferences, peopleReferences,
-                districtReferences, parameters, inputPath, outputPath);
-        return new CitySimulation(
-                dwellingReferences.values(),
-                peopleReferences.values(),
-                environmentReference,
-                dataLoggerReference,
-                parameters.initialTime,
-                parameters.timeStepSize,
-                parameters.numberTimeSteps
-        );
+        Map<Integer, String> markovChainTableNames = readMarkovChainTableNames(con);
+        // Environment, dwellings, and each markov chain are independent tables and are read in parallel,
+        // each through its own connection. People depend on all of them and are read last.
+        int numberLoaders = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                markovChainTableNames.size() + 2));
+        ExecutorService loader = Executors.newFixedThreadPool(numberLoaders, runnable -> {
+            Thread thread = new Thread(runnable, "scenario-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // the environment is submitted first, so that the dwellings can always wait for it
+            CompletableFuture<EnvironmentReference> environmentReference = CompletableFuture.supplyAsync(
+                    read(inputPath, conn -> readEnvironment(conn, parameters.timeStepSize, context)), loader);
+            // chains of the snapshot are used only for tables whose content digest they have been stored under
+            Map<String, HeterogeneousMarkovChain<Person.Activity>> snapshot = parameters.markovChainSnapshot ?
+                    MarkovChainCache.SHARED.readSnapshot(inputPath) : Collections.emptyMap();
+            Map<Integer, CompletableFuture<HeterogeneousMarkovChain<Person.Activity>>> markovChains = new HashMap<>();
+            for (Map.Entry<Integer, String> entry : markovChainTableNames.entrySet()) {
+                markovChains.put(entry.getKey(), CompletableFuture.supplyAsync(
+                        read(inputPath, conn -> readMarkovChain(conn, entry.getValue(), parameters, snapshot)),
+                        loader));
+            }
+            Map<Integer, List<Integer>> districtsToDwellingId = new HashMap<>();
+            CompletableFuture<Map<Integer, DwellingReference>> dwellings = CompletableFuture.supplyAsync(
+                    read(inputPath, conn -> readDwellings(conn, parameters, environmentReference.join(),
+                            heatingControlStrategyFactory, districtsToDwellingId, context)), loader);
+
+            Map<Integer, DwellingReference> dwellingReferences = await(dwellings);
+            Map<Integer, DwellingDistrictReference> districtReferences = createDistricts(districtsToDwellingId,
+                    dwellingReferences, context);
+            Map<Integer, HeterogeneousMarkovChain<Person.Activity>> markovChainsById = new HashMap<>();
+            for (Map.Entry<Integer, CompletableFuture<HeterogeneousMarkovChain<Person.Activity>>> entry :
+                    markovChains.entrySet()) {
+                markovChainsById.put(entry.getKey(), await(entry.getValue()));
+            }
+            if (parameters.markovChainSnapshot &&
+                    !MarkovChainCache.SHARED.isCoveredBySnapshot(snapshot, markovChainsById.values())) {
+                MarkovChainCache.SHARED.writeSnapshot(inputPath, markovChainsById.values());
+            }
+            Map<Integer, PersonReference> peopleReferences = readPeople(con, dwellingReferences, markovChainsById,
+                    parameters, context);
+            DataLoggerReference dataLoggerReference = createDataLogger(dwellingReferences, peopleReferences,
+                    districtReferences, parameters, inputPath, outputPath, context);
+            return new CitySimulation(
+                    dwellingReferences.values(),
+                    peopleReferences.values(),
+                    await(environmentReference),
+                    dataLoggerReference,
+                    parameters.initialTime,
+                    parameters.timeStepSize,
+                    parameters.numberTimeSteps,
+                    context
+            );
+        } finally {
+            loader.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface TableReader<T> {
+        T read(Connection conn) throws SQLException, IOException;
+    }
+
+    /**
+     * Wraps a table reader into a supplier that reads through its own connection to the database.
+     */
+    private static <T> Supplier<T> read(String databasePath, TableReader<T> tableReader) {
+        return () -> {
+            try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", databasePath))) {
+                return tableReader.read(conn);
+            } catch (SQLException|IOException e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws SQLException, IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
     }
 
     private static ZonedDateTime readTimeStamp(ResultSet rs, String columnName) throws SQLException {
@@ -159,6 +321,58 @@ public class ScenarioBuilder {
                 .atZone(TIME_ZONE);
     }
 
+    private static int readOptionalInt(ResultSet rs, String columnName, int defaultValue) throws SQLException {
+        if (!hasColumn(rs, columnName)) {
+            return defaultValue;
+        }
+        int value = rs.getInt(columnName);
+        return rs.wasNull() ? defaultValue : value;
+    }
+
+    private static boolean readOptionalBoolean(ResultSet rs, String columnName, boolean defaultValue)
+            throws SQLException {
+        if (!hasColumn(rs, columnName)) {
+            return defaultValue;
+        }
+        boolean value = rs.getBoolean(columnName);
+        return rs.wasNull() ? defaultValue : value;
+    }
+
+    private static String readOptionalString(ResultSet rs, String columnName, String defaultValue)
+            throws SQLException {
+        if (!hasColumn(rs, columnName)) {
+            return defaultValue;
+        }
+        String value = rs.getString(columnName);
+        return value == null ? defaultValue : value;
+    }
+
+    private static <E extends Enum<E>> E readOptionalEnum(ResultSet rs, String columnName, Class<E> enumType,
+                                                          E defaultValue) throws SQLException, IOException {
+        return parseEnum(enumType, columnName, readOptionalString(rs, columnName, defaultValue.name()));
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> enumType, String columnName, String value)
+            throws IOException {
+        try {
+            return Enum.valueOf(enumType, value);
+        } catch (IllegalArgumentException e) {
+            String msg = String.format("Unknown value '%s' in column %s, expected one of %s.", value, columnName,
+                    Arrays.toString(enumType.getEnumConstants()));
+            throw new IOException(msg, e);
+        }
+    }
+
+    private static boolean hasColumn(ResultSet rs, String columnName) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnName(i).equalsIgnoreCase(columnName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static LocalTime readLocalTime(ResultSet rs, String columnName) throws SQLException, IOException {
         try {
             return LocalTime.parse(rs.getString(columnName), DateTimeFormatter.ISO_LOCAL_TIME);
@@ -171,7 +385,8 @@ public class ScenarioBuilder {
         return HeatingControlStrategyFactory.ControlStrategyType.valueOf(rs.getString(columnName));
     }
 
-    private static EnvironmentReference readEnvironment(Connection conn, Duration timeStepSize) throws SQLException {
+    private static EnvironmentReference readEnvironment(Connection conn, Duration timeStepSize,
+                                                        SimulationContext context) throws SQLException {
         TimeSeries<Double> temperatureTimeSeries = new TimeSeries<>();
         Statement stat = conn.createStatement();
         ResultSet rs = stat.executeQuery(String.format("select * from %s;", SQL_TABLES_ENVIRONMENT));
@@ -181,20 +396,37 @@ public class ScenarioBuilder {
             temperatureTimeSeries.add(timeStamp, value);
         }
         rs.close();
-        Environment env = new Environment(temperatureTimeSeries, timeStepSize);
-        return new EnvironmentReference(env);
+        Environment env = new Environment(shareTemperatureTimeSeries(temperatureTimeSeries), timeStepSize);
+        return new EnvironmentReference(env, context);
+    }
+
+    private static TimeSeries<Double> shareTemperatureTimeSeries(TimeSeries<Double> temperatureTimeSeries) {
+        synchronized (TEMPERATURE_TIME_SERIES) {
+            WeakReference<TimeSeries<Double>> shared = TEMPERATURE_TIME_SERIES.get(temperatureTimeSeries);
+            TimeSeries<Double> sharedTimeSeries = shared == null ? null : shared.get();
+            if (sharedTimeSeries != null) {
+                return sharedTimeSeries;
+            }
+            TEMPERATURE_TIME_SERIES.put(temperatureTimeSeries, new WeakReference<>(temperatureTimeSeries));
+            return temperatureTimeSeries;
+        }
     }
 
     private static Map<Integer, DwellingReference> readDwellings(Connection conn, SimulationParameter parameters,
                                                                  EnvironmentReference env,
-                                                                 HeatingControlStrategyFactory controlStrategyFactory)
+                                                                 HeatingControlStrategyFactory controlStrategyFactory,
+                                                                 Map<Integer, List<Integer>> districtsToDwellingId,
+                                                                 SimulationContext context)
             throws SQLException {
         Map<Integer, DwellingReference> dwellings = new HashMap<>();
         Statement stat = conn.createStatement();
         ResultSet rs = stat.executeQuery(String.format("select * from %s;", SQL_TABLES_DWELLINGS));
         while (rs.next()) {
+            int dwellingId = rs.getInt(SQL_COLUMNS_DW_INDEX);
+            districtsToDwellingId.computeIfAbsent(rs.getInt(SQL_COLUMNS_DW_DISTRICT_ID), id -> new ArrayList<>())
+                    .add(dwellingId);
             dwellings.put(
-                    rs.getInt(SQL_COLUMNS_DW_INDEX),
+                    dwellingId,
                     new DwellingReference(new Dwelling(
                             rs.getDouble(SQL_COLUMNS_DW_THERMAL_MASS_CAPACITY),
                             rs.getDouble(SQL_COLUMNS_DW_THERMAL_MASS_AREA),
@@ -212,46 +444,36 @@ public class ScenarioBuilder {
                             parameters.initialTime,
                             parameters.timeStepSize,
                             new HeatingControlStrategyReference(controlStrategyFactory.build(
-                                readControlStrategyType(rs, SQL_COLUMNS_DW_HEATING_CONTROL_STRATEGY))
+                                readControlStrategyType(rs, SQL_COLUMNS_DW_HEATING_CONTROL_STRATEGY)),
+                                context,
+                                dwellingId
                             ),
                             env
-                    ))
+                    ), context, dwellingId) // dwelling, its strategy, and its residents share one worker
             );
         }
         rs.close();
         return dwellings;
     }
 
-    private static Map<Integer, DwellingDistrictReference> readDistricts(Connection conn,
-                                                                         Map<Integer, DwellingReference> dwellings)
-            throws SQLException {
-        Map<Integer, List<Integer>> districtsToDwellingId = new HashMap<>();
-        Statement stat = conn.createStatement();
-        ResultSet rs = stat.executeQuery(String.format("select * from %s;", SQL_TABLES_DWELLINGS));
-        while (rs.next()) {
-            int dwellingId = rs.getInt(SQL_COLUMNS_DW_INDEX);
-            int districtId = rs.getInt(SQL_COLUMNS_DW_DISTRICT_ID);
-            if(!districtsToDwellingId.keySet().contains(districtId)){
-                districtsToDwellingId.put(districtId, new LinkedList<>());
-            }
-            districtsToDwellingId.get(districtId).add(dwellingId);
-        }
-        rs.close();
-
+    private static Map<Integer, DwellingDistrictReference> createDistricts(Map<Integer, List<Integer>> districtsToDwellingId,
+                                                                           Map<Integer, DwellingReference> dwellings,
+                                                                           SimulationContext context) {
         Map<Integer, DwellingDistrictReference> districts = new HashMap<>();
         for(Map.Entry<Integer, List<Integer>> entry : districtsToDwellingId.entrySet()){
             List<DwellingReference> dwellingsInDistrict = new LinkedList<>();
             for(Integer i : entry.getValue()){
                 dwellingsInDistrict.add(dwellings.get(i));
             }
-            districts.put(entry.getKey(), new DwellingDistrictReference(new DwellingDistrict(new HashSet<>(dwellingsInDistrict))));
+            districts.put(entry.getKey(), new DwellingDistrictReference(new DwellingDistrict(new HashSet<>(dwellingsInDistrict)), context));
         }
         return districts;
     }
 
     private static Map<Integer, PersonReference> readPeople(Connection conn, Map<Integer, DwellingReference> dwellings,
-                                                    SimulationParameter parameters) throws SQLException, IOException {
-        Map<Integer, HeterogeneousMarkovChain<Person.Activity>> markovChains = readMarkovChains(conn, parameters);
+                                                    Map<Integer, HeterogeneousMarkovChain<Person.Activity>> markovChains,
+                                                    SimulationParameter parameters,
+                                                    SimulationContext context) throws SQLException {
         Map<Integer, Person> people = new HashMap<>();
         Statement stat = conn.createStatement();
         ResultSet rs = stat.executeQuery(String.format("select * from %s;", SQL_TABLES_PEOPLE));
@@ -273,22 +495,21 @@ public class ScenarioBuilder {
                         parameters.initialTime,
                         parameters.timeStepSize,
                         dwellings.get(homeId),
-                        new Random(randomSeed)
+                        parameters.randomNumberGenerator.create(randomSeed, personId),
+                        context
             ));
         }
         rs.close();
         Map<Integer, PersonReference> peopleReference = new HashMap<>();
         for (Map.Entry<Integer, Person> entry : people.entrySet()) {
             Person person = entry.getValue();
-            PersonReference ref = new PersonReference(person);
+            PersonReference ref = new PersonReference(person, context, person.getHome().affinityKey);
             peopleReference.put(entry.getKey(), ref);
         }
         return peopleReference;
     }
 
-    private static Map<Integer, HeterogeneousMarkovChain<Person.Activity>> readMarkovChains(Connection conn,
-                                                                                            SimulationParameter parameters)
-            throws SQLException, IOException {
+    private static Map<Integer, String> readMarkovChainTableNames(Connection conn) throws SQLException {
         Map<Integer, String> markovChainTableNames = new HashMap<>();
         Statement stat = conn.createStatement();
         ResultSet rs = stat.executeQuery(String.format("select * from %s;", SQL_TABLES_MARKOV_CHAINS));
@@ -298,20 +519,12 @@ public class ScenarioBuilder {
                     rs.getString(SQL_COLUMNS_MARKOVS_TABLENAME));
         }
         rs.close();
-        Map<Integer, HeterogeneousMarkovChain<Person.Activity>> markovChains = new HashMap<>();
-        for (Map.Entry<Integer, String> entry : markovChainTableNames.entrySet()) {
-            markovChains.put(
-                    entry.getKey(),
-                    readMarkovChain(conn, entry.getValue(), parameters
-                    )
-            );
-        }
-        return markovChains;
+        return markovChainTableNames;
     }
 
-    private static HeterogeneousMarkovChain<Person.Activity> readMarkovChain(Connection conn, String tablename,
-                                                                             SimulationParameter parameters)
-            throws SQLException, IOException {
+    private static HeterogeneousMarkovChain<Person.Activity> readMarkovChain(
+            Connection conn, String tablename, SimulationParameter parameters,
+            Map<String, HeterogeneousMarkovChain<Person.Activity>> snapshot) throws SQLException, IOException {
         List<MarkovChainReader.MarkovChainEntry> entries = new ArrayList<>();
         Statement stat = conn.createStatement();
         ResultSet rs = stat.executeQuery(String.format("select * from %s;", tablename));
@@ -325,11 +538,10 @@ public class ScenarioBuilder {
             ));
         }
         rs.close();
-        return MarkovChainReader.buildMarkovChainFromEntries(entries, parameters.timeStepSize,
-                TIME_ZONE);
+        return MarkovChainCache.SHARED.get(entries, parameters.timeStepSize, TIME_ZONE, snapshot);
     }
 
-    private static SimulationParameter readSimulationParameters(Connection conn) throws SQLException {
+    private static SimulationParameter readSimulationParameters(Connection conn) throws SQLException, IOException {
         List<SimulationParameter> parameters = new ArrayList<>();
         Statement stat = conn.createStatement();
         ResultSet rs = stat.executeQuery(String.format("select * from %s;", SQL_TABLES_PARAMETERS));
@@ -341,7 +553,23 @@ public class ScenarioBuilder {
                     rs.getBoolean(SQL_COLUMNS_PAR_LOG_THERMAL_POWER),
                     rs.getBoolean(SQL_COLUMNS_PAR_LOG_TEMPERATURE),
                     rs.getBoolean(SQL_COLUMNS_PAR_LOG_ACTIVITY),
-                    rs.getBoolean(SQL_COLUMNS_PAR_LOG_AGGREGATED)
+                    rs.getBoolean(SQL_COLUMNS_PAR_LOG_AGGREGATED),
+                    readOptionalInt(rs, SQL_COLUMNS_PAR_LOG_TEMPERATURE_INTERVAL, 1),
+                    readOptionalEnum(rs, SQL_COLUMNS_PAR_LOG_TEMPERATURE_REDUCTION, DoubleDataPoint.Reduction.class,
+                            DoubleDataPoint.Reduction.MEAN),
+                    readOptionalInt(rs, SQL_COLUMNS_PAR_LOG_THERMAL_POWER_INTERVAL, 1),
+                    readOptionalEnum(rs, SQL_COLUMNS_PAR_LOG_THERMAL_POWER_REDUCTION, DoubleDataPoint.Reduction.class,
+                            DoubleDataPoint.Reduction.MEAN),
+                    readOptionalInt(rs, SQL_COLUMNS_PAR_LOG_ACTIVITY_INTERVAL, 1),
+                    readStatistics(readOptionalString(rs, SQL_COLUMNS_PAR_LOG_AGGREGATED_STATISTICS,
+                            DistrictAccumulator.Statistic.MEAN.name())),
+                    // the number of heated dwellings is logged only when district statistics are demanded
+                    readOptionalString(rs, SQL_COLUMNS_PAR_LOG_AGGREGATED_STATISTICS, null) != null,
+                    readOptionalInt(rs, SQL_COLUMNS_PAR_LOG_FLUSH_INTERVAL, 0),
+                    readOptionalBoolean(rs, SQL_COLUMNS_PAR_LOG_BINARY, false),
+                    readOptionalBoolean(rs, SQL_COLUMNS_PAR_MARKOV_CHAIN_SNAPSHOT, false),
+                    readOptionalEnum(rs, SQL_COLUMNS_PAR_RANDOM_NUMBER_GENERATOR, RandomNumberGeneratorType.class,
+                            RandomNumberGeneratorType.JAVA_UTIL)
             ));
         }
         rs.close();
@@ -352,6 +580,21 @@ public class ScenarioBuilder {
         return parameters.get(0); // there could be more, but at the moment don't care
     }
 
+    private static List<DistrictAccumulator.Statistic> readStatistics(String statistics) throws IOException {
+        List<DistrictAccumulator.Statistic> parsedStatistics = new ArrayList<>();
+        for (String statistic : statistics.split(",")) {
+            if (statistic.trim().isEmpty()) {
+                continue;
+            }
+            DistrictAccumulator.Statistic parsedStatistic = parseEnum(DistrictAccumulator.Statistic.class,
+                    SQL_COLUMNS_PAR_LOG_AGGREGATED_STATISTICS, statistic.trim());
+            if (!parsedStatistics.contains(parsedStatistic)) {
+                parsedStatistics.add(parsedStatistic);
+            }
+        }
+        return parsedStatistics;
+    }
+
     private static HeatingControlStrategyFactory readHeatingControlStrategyFactory(Connection conn)
             throws SQLException, IOException {
         List<HeatingControlStrategyFactory> factories = new ArrayList<>();
@@ -380,39 +623,60 @@ public class ScenarioBuilder {
                                                         Map<Integer, PersonReference> people,
                                                         Map<Integer, DwellingDistrictReference> districts,
                                                         SimulationParameter parameters,
-                                                        String inputPath, String outputPath) {
+                                                        String inputPath, String outputPath,
+                                                        SimulationContext context) {
         Set<DataPoint> dataPoints = new HashSet<>();
+        if (parameters.logAggregated && (parameters.logTemperature || parameters.logThermalPower)) {
+            districts.values().forEach(district -> district.referent.startAggregation());
+        }
         if (parameters.logTemperature) {
             if (parameters.logAggregated) {
-                dataPoints.add(new DataPoint<>(
-                        AVERAGE_TEMPERATURE_DATA_POINT_NAME,
-                        districts,
-                        (district -> district.getAllCurrentAirTemperatures()
-                                .thenApply(Map::values)
-                                .thenApply(values -> values.stream().mapToDouble(Double::doubleValue).average().getAsDouble()))
-                ));
+                for (DistrictAccumulator.Statistic statistic : parameters.logAggregatedStatistics) {
+                    dataPoints.add(new DoubleDataPoint<>(
+                            statistic.nameOf(TEMPERATURE_DATA_POINT_NAME),
+                            districts,
+                            (district -> district.getAirTemperature(statistic)),
+                            parameters.logTemperatureInterval,
+                            parameters.logTemperatureReduction
+                    ));
+                }
             } else {
-                dataPoints.add(new DataPoint<>(
+                dataPoints.add(new DoubleDataPoint<>(
                         TEMPERATURE_DATA_POINT_NAME,
                         dwellings,
-                        (DwellingReference::getCurrentAirTemperature)
+                        (DwellingReference::getCurrentAirTemperature),
+                        parameters.logTemperatureInterval,
+                        parameters.logTemperatureReduction
                 ));
             }
         }
         if (parameters.logThermalPower) {
             if (parameters.logAggregated) {
-                dataPoints.add(new DataPoint<>(
-                        AVERAGE_THERMAL_POWER_DATA_POINT_NAME,
-                        districts,
-                        (district -> district.getAllCurrentThermalPowers()
-                                .thenApply(Map::values)
-                                .thenApply(values -> values.stream().mapToDouble(Double::doubleValue).average().getAsDouble()))
-                ));
+                for (DistrictAccumulator.Statistic statistic : parameters.logAggregatedStatistics) {
+                    dataPoints.add(new DoubleDataPoint<>(
+                            statistic.nameOf(THERMAL_POWER_DATA_POINT_NAME),
+                            districts,
+                            (district -> district.getThermalPower(statistic)),
+                            parameters.logThermalPowerInterval,
+                            parameters.logThermalPowerReduction
+                    ));
+                }
+                if (parameters.logNumberHeatedDwellings) {
+                    dataPoints.add(new DoubleDataPoint<>(
+                            NUMBER_HEATED_DWELLINGS_DATA_POINT_NAME,
+                            districts,
+                            (district -> district.getNumberHeatedDwellings().thenApply(Integer::doubleValue)),
+                            parameters.logThermalPowerInterval,
+                            parameters.logThermalPowerReduction
+                    ));
+                }
             } else {
-                dataPoints.add(new DataPoint<>(
+                dataPoints.add(new DoubleDataPoint<>(
                         THERMAL_POWER_DATA_POINT_NAME,
                         dwellings,
-                        (DwellingReference::getCurrentThermalPower)
+                        (DwellingReference::getCurrentThermalPower),
+                        parameters.logThermalPowerInterval,
+                        parameters.logThermalPowerReduction
                 ));
             }
         }
@@ -420,14 +684,17 @@ public class ScenarioBuilder {
             dataPoints.add(new DataPoint<>(
                     ACTIVITY_DATA_POINT_NAME,
                     people,
-                    (PersonReference::getCurrentActivity)
+                    (PersonReference::getCurrentActivity),
+                    parameters.logActivityInterval
             ));
         }
         DataLogger dataLogger = new DataLogger(
-                dataPoints.stream().map(DataPointReference::new).collect(Collectors.toSet()),
+                dataPoints.stream().map(dataPoint -> new DataPointReference(dataPoint, context)).collect(Collectors.toSet()),
                 inputPath,
-                outputPath
+                outputPath,
+                parameters.logFlushInterval,
+                parameters.logBinary
         );
-        return new DataLoggerReference(dataLogger);
+        return new DataLoggerReference(dataLogger, context);
     }
 }
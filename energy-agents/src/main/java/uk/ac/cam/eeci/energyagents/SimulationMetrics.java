@@ -0,0 +1,174 @@
+package uk.ac.cam.eeci.energyagents;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.cam.eeci.framework.LatencyHistogram;
+import uk.ac.cam.eeci.framework.SimulationContext;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performance metrics of a {@link CitySimulation}: latencies of each phase of a time step, the throughput
+ * of time steps, the number of asynchronous calls, and the queue depths of the worker pool.
+ * <br><br>
+ * While the simulation runs, the metrics are registered as an MXBean with the platform MBean server
+ * under the domain of this package.
+ * <br><br>
+ * Asynchronous calls are counted for the whole {@link SimulationContext}, hence they include the calls of
+ * all simulations sharing the context.
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+
+    /**
+     * The phases of a time step.
+     */
+    public enum Phase {
+        PEOPLE, DWELLINGS, ENVIRONMENT, LOGGING
+    }
+
+    private final static Logger LOGGER = LogManager.getLogger(SimulationMetrics.class.getName());
+    private final static String JMX_NAME = "uk.ac.cam.eeci.energyagents:type=SimulationMetrics,name=city-simulation-%d";
+    private final static AtomicInteger NUMBER_SIMULATIONS = new AtomicInteger();
+    private final static double NANOS_PER_SECOND = 1e9;
+
+    private final SimulationContext context;
+    private final Map<Phase, LatencyHistogram> latencies;
+    private final AtomicLong numberSteps;
+    private final int[] maxQueueDepths;
+    private volatile long startNanos;
+    private volatile long lastStepNanos;
+    private long asynchronousCallsAtStart;
+    private ObjectName objectName;
+
+    /**
+     * @param context the context of the simulation
+     */
+    public SimulationMetrics(SimulationContext context) {
+        this.context = context;
+        this.latencies = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            this.latencies.put(phase, new LatencyHistogram());
+        }
+        this.numberSteps = new AtomicLong();
+        this.maxQueueDepths = new int[context.getPool().getQueueDepths().length];
+    }
+
+    /**
+     * Starts measuring and registers the metrics with the platform MBean server. Failing to register
+     * does not abort the simulation.
+     */
+    public void start() {
+        this.context.startCountingCalls();
+        this.asynchronousCallsAtStart = this.context.getAsynchronousCalls();
+        this.startNanos = System.nanoTime();
+        this.lastStepNanos = this.startNanos;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(String.format(JMX_NAME, NUMBER_SIMULATIONS.getAndIncrement()));
+            server.registerMBean(this, name);
+            this.objectName = name;
+        } catch (JMException e) {
+            LOGGER.warn("Failed to register simulation metrics with JMX.", e);
+        }
+    }
+
+    /**
+     * Unregisters the metrics from the platform MBean server.
+     */
+    public void stop() {
+        if (this.objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException e) {
+            LOGGER.warn("Failed to unregister simulation metrics from JMX.", e);
+        }
+        this.objectName = null;
+    }
+
+    /**
+     * @param phase the phase of the time step
+     * @param nanos the duration of the phase [ns]
+     */
+    public void record(Phase phase, long nanos) {
+        this.latencies.get(phase).record(nanos);
+    }
+
+    /**
+     * Counts a completed time step.
+     */
+    public void completeStep() {
+        this.lastStepNanos = System.nanoTime();
+        this.numberSteps.incrementAndGet();
+    }
+
+    /**
+     * Updates the maximum queue depth of each worker with the current depths.
+     */
+    public synchronized void sampleQueueDepths() {
+        int[] depths = this.context.getPool().getQueueDepths();
+        for (int i = 0; i < depths.length && i < this.maxQueueDepths.length; i++) {
+            this.maxQueueDepths[i] = Math.max(this.maxQueueDepths[i], depths[i]);
+        }
+    }
+
+    /**
+     * @param phase the phase of the time step
+     * @return the latencies of the phase
+     */
+    public LatencyHistogram getLatencies(Phase phase) {
+        return this.latencies.get(phase);
+    }
+
+    @Override
+    public long getNumberSteps() {
+        return this.numberSteps.get();
+    }
+
+    @Override
+    public double getStepsPerSecond() {
+        double seconds = (this.lastStepNanos - this.startNanos) / NANOS_PER_SECOND;
+        return seconds > 0 ? this.numberSteps.get() / seconds : 0;
+    }
+
+    @Override
+    public double getAsynchronousCallsPerStep() {
+        long steps = this.numberSteps.get();
+        long calls = this.context.getAsynchronousCalls() - this.asynchronousCallsAtStart;
+        return steps > 0 ? (double) calls / steps : 0;
+    }
+
+    @Override
+    public int[] getQueueDepths() {
+        return this.context.getPool().getQueueDepths();
+    }
+
+    @Override
+    public synchronized Map<String, Double> getSummary() {
+        Map<String, Double> summary = new TreeMap<>();
+        summary.put("steps", (double) this.getNumberSteps());
+        summary.put("stepsPerSecond", this.getStepsPerSecond());
+        summary.put("asynchronousCallsPerStep", this.getAsynchronousCallsPerStep());
+        for (Map.Entry<Phase, LatencyHistogram> entry : this.latencies.entrySet()) {
+            String phase = entry.getKey().name().toLowerCase();
+            LatencyHistogram histogram = entry.getValue();
+            summary.put(String.format("%s.meanMillis", phase), histogram.getMeanMillis());
+            summary.put(String.format("%s.p50Millis", phase), histogram.getQuantileMillis(0.5));
+            summary.put(String.format("%s.p99Millis", phase), histogram.getQuantileMillis(0.99));
+            summary.put(String.format("%s.maxMillis", phase), histogram.getMaxMillis());
+        }
+        for (int i = 0; i < this.maxQueueDepths.length; i++) {
+            summary.put(String.format("worker%d.maxQueueDepth", i), (double) this.maxQueueDepths[i]);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,34 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.util.Map;
+
+/**
+ * The performance metrics of a running {@link CitySimulation}, as exposed over JMX.
+ */
+public interface SimulationMetricsMXBean {
+
+    /**
+     * @return the number of time steps simulated so far
+     */
+    long getNumberSteps();
+
+    /**
+     * @return the number of time steps simulated per second of wall clock time
+     */
+    double getStepsPerSecond();
+
+    /**
+     * @return the mean number of calls per time step that have been handed to another executor
+     */
+    double getAsynchronousCallsPerStep();
+
+    /**
+     * @return the current number of tasks waiting for each worker of the worker pool
+     */
+    int[] getQueueDepths();
+
+    /**
+     * @return all metrics by name, including latency statistics of each phase of a time step
+     */
+    Map<String, Double> getSummary();
+}
@@ -0,0 +1,224 @@
+package uk.ac.cam.eeci.energyagents;
+
+import java.util.Arrays;
+
+/**
+ * Summary statistics of a stream of values, updated in constant time and memory per value.
+ * <br><br>
+ * Count, sum, mean, minimum, and maximum are exact. Quantiles are estimated for a fixed set of
+ * probabilities with the P² algorithm of Jain and Chlamtac (1985), which keeps five markers per
+ * quantile instead of the values themselves. Quantiles of up to five values are exact.
+ * <br><br>
+ * Instances are not thread-safe.
+ */
+public class StreamingStatistics {
+
+    private final double[] probabilities;
+    private final QuantileEstimator[] estimators;
+    private long count;
+    private double sum;
+    private double min;
+    private double max;
+
+    /**
+     * @param probabilities the probabilities of the quantiles to be estimated, each in [0, 1]
+     */
+    public StreamingStatistics(double... probabilities) {
+        this.probabilities = probabilities.clone();
+        this.estimators = new QuantileEstimator[probabilities.length];
+        for (int i = 0; i < probabilities.length; i++) {
+            if (probabilities[i] < 0 || probabilities[i] > 1) {
+                String msg = String.format("Probability must be in [0, 1], but is %f.", probabilities[i]);
+                throw new IllegalArgumentException(msg);
+            }
+            this.estimators[i] = new QuantileEstimator(probabilities[i]);
+        }
+        this.reset();
+    }
+
+    /**
+     * Removes all values.
+     */
+    public void reset() {
+        this.count = 0;
+        this.sum = 0;
+        this.min = Double.NaN;
+        this.max = Double.NaN;
+        for (QuantileEstimator estimator : this.estimators) {
+            estimator.reset();
+        }
+    }
+
+    /**
+     * @param value the next value of the stream
+     */
+    public void add(double value) {
+        if (this.count == 0) {
+            this.min = value;
+            this.max = value;
+        } else {
+            this.min = Math.min(this.min, value);
+            this.max = Math.max(this.max, value);
+        }
+        this.count += 1;
+        this.sum += value;
+        for (QuantileEstimator estimator : this.estimators) {
+            estimator.add(value);
+        }
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getSum() {
+        return this.sum;
+    }
+
+    /**
+     * @return the mean of all values, or NaN if there are none
+     */
+    public double getMean() {
+        return this.count == 0 ? Double.NaN : this.sum / this.count;
+    }
+
+    /**
+     * @return the minimum of all values, or NaN if there are none
+     */
+    public double getMin() {
+        return this.min;
+    }
+
+    /**
+     * @return the maximum of all values, or NaN if there are none
+     */
+    public double getMax() {
+        return this.max;
+    }
+
+    /**
+     * @param probability one of the probabilities given at construction
+     * @return the estimated quantile of all values, or NaN if there are none
+     */
+    public double getQuantile(double probability) {
+        for (int i = 0; i < this.probabilities.length; i++) {
+            if (this.probabilities[i] == probability) {
+                return this.estimators[i].getQuantile();
+            }
+        }
+        String msg = String.format("Quantile %f is not estimated, only %s are.", probability,
+                Arrays.toString(this.probabilities));
+        throw new IllegalArgumentException(msg);
+    }
+
+    /**
+     * The P² estimate of one quantile. The five markers are the minimum, the quantile, the maximum, and
+     * the quantiles half way in between. Marker heights are adjusted with a piecewise parabolic, or
+     * otherwise linear, prediction whenever a marker position deviates from its desired position by more
+     * than one.
+     */
+    private static class QuantileEstimator {
+
+        private final static int NUMBER_MARKERS = 5;
+
+        private final double probability;
+        private final double[] heights = new double[NUMBER_MARKERS];
+        private final int[] positions = new int[NUMBER_MARKERS];
+        private final double[] desiredPositions = new double[NUMBER_MARKERS];
+        private final double[] desiredIncrements;
+        private int count;
+
+        private QuantileEstimator(double probability) {
+            this.probability = probability;
+            this.desiredIncrements = new double[]{0, probability / 2, probability, (1 + probability) / 2, 1};
+        }
+
+        private void reset() {
+            this.count = 0;
+        }
+
+        private void add(double value) {
+            if (this.count < NUMBER_MARKERS) {
+                this.heights[this.count] = value;
+                this.count += 1;
+                if (this.count == NUMBER_MARKERS) {
+                    Arrays.sort(this.heights);
+                    for (int i = 0; i < NUMBER_MARKERS; i++) {
+                        this.positions[i] = i + 1;
+                    }
+                    double p = this.probability;
+                    this.desiredPositions[0] = 1;
+                    this.desiredPositions[1] = 1 + 2 * p;
+                    this.desiredPositions[2] = 1 + 4 * p;
+                    this.desiredPositions[3] = 3 + 2 * p;
+                    this.desiredPositions[4] = 5;
+                }
+                return;
+            }
+            this.count += 1;
+            int cell;
+            if (value < this.heights[0]) {
+                this.heights[0] = value;
+                cell = 0;
+            } else if (value >= this.heights[4]) {
+                this.heights[4] = value;
+                cell = 3;
+            } else {
+                cell = 0;
+                while (value >= this.heights[cell + 1]) {
+                    cell += 1;
+                }
+            }
+            for (int i = cell + 1; i < NUMBER_MARKERS; i++) {
+                this.positions[i] += 1;
+            }
+            for (int i = 0; i < NUMBER_MARKERS; i++) {
+                this.desiredPositions[i] += this.desiredIncrements[i];
+            }
+            for (int i = 1; i < NUMBER_MARKERS - 1; i++) {
+                double deviation = this.desiredPositions[i] - this.positions[i];
+                if ((deviation >= 1 && this.positions[i + 1] - this.positions[i] > 1)
+                        || (deviation <= -1 && this.positions[i - 1] - this.positions[i] < -1)) {
+                    int direction = deviation > 0 ? 1 : -1;
+                    double height = this.parabolic(i, direction);
+                    if (this.heights[i - 1] < height && height < this.heights[i + 1]) {
+                        this.heights[i] = height;
+                    } else {
+                        this.heights[i] = this.linear(i, direction);
+                    }
+                    this.positions[i] += direction;
+                }
+            }
+        }
+
+        private double parabolic(int i, int d) {
+            double q = this.heights[i];
+            int n = this.positions[i];
+            int nBelow = this.positions[i - 1];
+            int nAbove = this.positions[i + 1];
+            return q + (double) d / (nAbove - nBelow)
+                    * ((n - nBelow + d) * (this.heights[i + 1] - q) / (nAbove - n)
+                    + (nAbove - n - d) * (q - this.heights[i - 1]) / (n - nBelow));
+        }
+
+        private double linear(int i, int d) {
+            return this.heights[i] + d * (this.heights[i + d] - this.heights[i])
+                    / (this.positions[i + d] - this.positions[i]);
+        }
+
+        private double getQuantile() {
+            if (this.count == 0) {
+                return Double.NaN;
+            }
+            if (this.count > NUMBER_MARKERS) {
+                return this.heights[2];
+            }
+            double[] values = Arrays.copyOf(this.heights, this.count);
+            Arrays.sort(values);
+            double rank = this.probability * (this.count - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = Math.min(lower + 1, this.count - 1);
+            return values[lower] + (rank - lower) * (values[upper] - values[lower]);
+        }
+    }
+}
@@ -16,8 +16,16 @@ public class TimeSeries<K> {
     private List<K> values;
 
     public TimeSeries() {
-        this.index = new ArrayList<>();
-        this.values = new ArrayList<>();
+        this(new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * @param index the time index of the time series
+     * @param values the values of the time series, one for each entry in the index
+     */
+    protected TimeSeries(List<ZonedDateTime> index, List<K> values) {
+        this.index = index;
+        this.values = values;
     }
 
     /**
@@ -82,11 +90,11 @@ public class TimeSeries<K> {
             return true;
 
         TimeSeries rhs = (TimeSeries) other;
-        return this.index.equals(rhs.index) & this.values.equals(rhs.values);
+        return this.getIndex().equals(rhs.getIndex()) & this.getValues().equals(rhs.getValues());
     }
 
     @Override
     public int hashCode() {
-        return this.index.hashCode() ^ this.values.hashCode();
+        return this.getIndex().hashCode() ^ this.getValues().hashCode();
     }
 }
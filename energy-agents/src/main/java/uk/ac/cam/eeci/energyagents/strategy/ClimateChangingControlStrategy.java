@@ -1,11 +1,10 @@
 package uk.ac.cam.eeci.energyagents.strategy;
 
 import uk.ac.cam.eeci.energyagents.HeatingControlStrategy;
-import uk.ac.cam.eeci.energyagents.PersonReference;
+import uk.ac.cam.eeci.energyagents.Occupancy;
 
 import java.time.ZonedDateTime;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -27,7 +26,7 @@ public class ClimateChangingControlStrategy extends HeatingControlStrategy {
 
     @Override
     public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp,
-                                                               Set<PersonReference> peopleInDwelling) {
+                                                               Occupancy occupancy) {
         return CompletableFuture.completedFuture(Optional.of(this.heatingSetPoint));
     }
 
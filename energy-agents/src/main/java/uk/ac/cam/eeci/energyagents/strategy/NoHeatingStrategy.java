@@ -1,11 +1,10 @@
 package uk.ac.cam.eeci.energyagents.strategy;
 
-import uk.ac.cam.eeci.energyagents.PersonReference;
+import uk.ac.cam.eeci.energyagents.Occupancy;
 import uk.ac.cam.eeci.energyagents.HeatingControlStrategy;
 
 import java.time.ZonedDateTime;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -18,7 +17,13 @@ public class NoHeatingStrategy extends HeatingControlStrategy {
 
     @Override
     public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp,
-                                                               Set<PersonReference> peopleInDwelling) {
+                                                               Occupancy occupancy) {
         return CompletableFuture.completedFuture(Optional.empty());
     }
+
+    @Override
+    public CompletableFuture<Optional<ZonedDateTime>> heatingOffUntil(ZonedDateTime timeStamp,
+                                                                      Occupancy occupancy) {
+        return CompletableFuture.completedFuture(Optional.of(FOREVER));
+    }
 }
@@ -1,16 +1,12 @@
 package uk.ac.cam.eeci.energyagents.strategy;
 
+import uk.ac.cam.eeci.energyagents.Occupancy;
 import uk.ac.cam.eeci.energyagents.Person;
-import uk.ac.cam.eeci.energyagents.PersonReference;
 import uk.ac.cam.eeci.energyagents.HeatingControlStrategy;
 
 import java.time.ZonedDateTime;
-import java.util.Collection;
-import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A HeatingControlStrategy that is solely based on people presence in a Dwelling.
@@ -36,30 +32,46 @@ public class PresenceBasedStrategy extends HeatingControlStrategy {
     }
 
     @Override
-    public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp, Set<PersonReference> peopleInDwelling) {
+    public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp, Occupancy occupancy) {
+        try {
+            return CompletableFuture.completedFuture(this.determineSetPoint(occupancy));
+        } catch (IllegalStateException e) {
+            CompletableFuture<Optional<Double>> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            return failure;
+        }
+    }
 
-        Map<PersonReference, Person.Activity> activities = new ConcurrentHashMap<>();
-        CompletableFuture<Void>[] updates = new CompletableFuture[peopleInDwelling.size()];
-        int i = 0;
-        for (PersonReference person : peopleInDwelling) {
-            updates[i] = person.getCurrentActivity()
-                    .thenAccept(activity -> activities.put(person, activity));
-            i++;
+    @Override
+    public CompletableFuture<Optional<ZonedDateTime>> heatingOffUntil(ZonedDateTime timeStamp,
+                                                                      Occupancy occupancy) {
+        if (occupancy.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.of(FOREVER));
+        }
+        else {
+            return CompletableFuture.completedFuture(Optional.empty());
         }
-        return CompletableFuture.allOf(updates)
-                .thenApply((a) -> this.determineSetPoint(activities.values()));
     }
 
-    private Optional<Double> determineSetPoint(Collection<Person.Activity> activities) {
-        boolean someOneNotAtHomeWhileBeingHome = activities.stream()
-                .anyMatch((act) -> !Person.HOME_ACTIVITIES.contains(act));
+    private Optional<Double> determineSetPoint(Occupancy occupancy) {
+        int numberOfPeopleAtHome = 0;
+        int numberOfPeopleAsleep = 0;
+        for (Person.Activity activity : Person.Activity.values()) {
+            if (Person.HOME_ACTIVITIES.contains(activity)) {
+                numberOfPeopleAtHome += occupancy.getNumberOfPeople(activity);
+            }
+            if (Person.SLEEP_ACTIVITIES.contains(activity)) {
+                numberOfPeopleAsleep += occupancy.getNumberOfPeople(activity);
+            }
+        }
+        boolean someOneNotAtHomeWhileBeingHome = numberOfPeopleAtHome < occupancy.getNumberOfPeoplePresent();
         if  (someOneNotAtHomeWhileBeingHome) {
             String msg = "At least one person was at a dwelling while being in a non-dwelling markov chain state. " +
                     "This should never happen.";
             throw new IllegalStateException(msg);
         }
-        boolean someOneHome = !activities.isEmpty();
-        boolean allAsleep = activities.stream().allMatch(Person.SLEEP_ACTIVITIES::contains);
+        boolean someOneHome = !occupancy.isEmpty();
+        boolean allAsleep = numberOfPeopleAsleep == occupancy.getNumberOfPeoplePresent();
         if (someOneHome && allAsleep)
             return Optional.of(this.setPointWhileSleepingAtHome);
         else if (someOneHome)
@@ -1,16 +1,17 @@
 package uk.ac.cam.eeci.energyagents.strategy;
 
-import uk.ac.cam.eeci.energyagents.PersonReference;
+import uk.ac.cam.eeci.energyagents.Occupancy;
 import uk.ac.cam.eeci.energyagents.HeatingControlStrategy;
 
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -113,7 +114,7 @@ public class TimeScheduleControlStrategy extends HeatingControlStrategy {
 
     @Override
     public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp,
-                                                               Set<PersonReference> peopleInDwelling) {
+                                                               Occupancy occupancy) {
         Optional<TimeSlot> currentTimeSlot = this.chooseCurrentTimeSlot(timeStamp);
         if (currentTimeSlot.isPresent()) {
             return CompletableFuture.completedFuture(Optional.of(currentTimeSlot.get().heatingSetPoint));
@@ -123,6 +124,33 @@ public class TimeScheduleControlStrategy extends HeatingControlStrategy {
         }
     }
 
+    /**
+     * Outside of time slots, the heating stays switched off until the next start of a time slot, or until the next
+     * change of the day type, whatever comes first.
+     */
+    @Override
+    public CompletableFuture<Optional<ZonedDateTime>> heatingOffUntil(ZonedDateTime timeStamp,
+                                                                      Occupancy occupancy) {
+        if (this.timeSlots.isEmpty()) {
+            return CompletableFuture.completedFuture(Optional.of(FOREVER));
+        }
+        if (this.chooseCurrentTimeSlot(timeStamp).isPresent()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        // day types are determined in the time zone of the time stamp, see DayType#fromTimeZone
+        ZonedDateTime heatingOffUntil = timeStamp.toLocalDate().plusDays(1).atStartOfDay(timeStamp.getZone());
+        LocalDate localDate = timeStamp.withZoneSameInstant(this.zoneId).toLocalDate();
+        for (LocalDate date : Arrays.asList(localDate, localDate.plusDays(1))) {
+            for (TimeSlot timeSlot : this.timeSlots) {
+                ZonedDateTime startOfTimeSlot = date.atTime(timeSlot.startTime).atZone(this.zoneId);
+                if (!startOfTimeSlot.isBefore(timeStamp) && startOfTimeSlot.isBefore(heatingOffUntil)) {
+                    heatingOffUntil = startOfTimeSlot;
+                }
+            }
+        }
+        return CompletableFuture.completedFuture(Optional.of(heatingOffUntil));
+    }
+
     private Optional<TimeSlot> chooseCurrentTimeSlot(ZonedDateTime currentTime) {
         DayType dayType = DayType.fromTimeZone(currentTime);
         LocalTime currentLocalTime = currentTime.withZoneSameInstant(this.zoneId).toLocalTime();
@@ -0,0 +1,128 @@
+package uk.ac.cam.eeci.energyagents.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.energyagents.BinaryDataPointFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TestBinaryDataPointFile {
+
+    private final static ZonedDateTime INITIAL_TIME = ZonedDateTime.of(2017, 2, 21, 10, 10, 0, 0, ZoneOffset.UTC);
+    private final static Duration TIME_STEP_SIZE = Duration.ofMinutes(10);
+    private final static int[] IDS = new int[]{7, 3, 12};
+
+    private Path path;
+
+    @Before
+    public void setUp() throws IOException {
+        File file = File.createTempFile("energy-agents-binary", ".bin");
+        file.deleteOnExit();
+        this.path = file.toPath();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.path);
+    }
+
+    private static double valueOf(int timeStep, int source) {
+        return timeStep * 1000 + source + 0.25;
+    }
+
+    private void writeTimeSteps(int[] ids, int numberTimeSteps) throws IOException {
+        try (BinaryDataPointFile file = BinaryDataPointFile.create(this.path, "temperature", ids)) {
+            double[] values = new double[ids.length];
+            for (int timeStep = 0; timeStep < numberTimeSteps; timeStep++) {
+                for (int source = 0; source < ids.length; source++) {
+                    values[source] = valueOf(timeStep, source);
+                }
+                file.append(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(timeStep)), values);
+            }
+        }
+    }
+
+    @Test
+    public void readsHeaderOfWrittenFile() throws IOException {
+        this.writeTimeSteps(IDS, 4);
+
+        try (BinaryDataPointFile file = BinaryDataPointFile.open(this.path)) {
+            assertThat(file.getName(), is(equalTo("temperature")));
+            assertThat(file.getIds(), is(equalTo(IDS)));
+            assertThat(file.getNumberTimeSteps(), is(equalTo(4)));
+            assertThat(file.getTimeStamp(0), is(equalTo(INITIAL_TIME)));
+            assertThat(file.getTimeStamp(3), is(equalTo(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(3)))));
+            assertThat(file.getTimeStepSize(), is(equalTo(TIME_STEP_SIZE)));
+        }
+    }
+
+    @Test
+    public void readsValuesOfWrittenFile() throws IOException {
+        this.writeTimeSteps(IDS, 4);
+
+        try (BinaryDataPointFile file = BinaryDataPointFile.open(this.path)) {
+            assertThat(file.getValue(2, 1), is(equalTo(valueOf(2, 1))));
+            double[] buffer = new double[2 * IDS.length];
+            file.read(1, 2, buffer);
+            assertThat(buffer[0], is(equalTo(valueOf(1, 0))));
+            assertThat(buffer[IDS.length + 2], is(equalTo(valueOf(2, 2))));
+        }
+    }
+
+    @Test
+    public void isCutToItsLastTimeStep() throws IOException {
+        this.writeTimeSteps(IDS, 4);
+
+        try (BinaryDataPointFile file = BinaryDataPointFile.open(this.path)) {
+            long dataBytes = 4L * IDS.length * Double.BYTES;
+            assertThat(Files.size(this.path), is(both(greaterThan(dataBytes)).and(lessThan(dataBytes + 128))));
+        }
+    }
+
+    @Test
+    public void readsValuesAcrossMappedRegions() throws IOException {
+        int[] ids = new int[50_000]; // 400 KB per time step, 20 time steps per region
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        int numberTimeSteps = 45;
+        this.writeTimeSteps(ids, numberTimeSteps);
+
+        try (BinaryDataPointFile file = BinaryDataPointFile.open(this.path)) {
+            assertThat(file.getNumberTimeSteps(), is(equalTo(numberTimeSteps)));
+            for (int timeStep = 0; timeStep < numberTimeSteps; timeStep++) {
+                assertThat(file.getValue(timeStep, ids.length - 1), is(equalTo(valueOf(timeStep, ids.length - 1))));
+            }
+            double[] buffer = new double[3 * ids.length];
+            file.read(19, 3, buffer); // spans the first two regions
+            assertThat(buffer[0], is(equalTo(valueOf(19, 0))));
+            assertThat(buffer[2 * ids.length + 5], is(equalTo(valueOf(21, 5))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsVaryingTimeStepSize() throws IOException {
+        try (BinaryDataPointFile file = BinaryDataPointFile.create(this.path, "temperature", IDS)) {
+            double[] values = new double[IDS.length];
+            file.append(INITIAL_TIME, values);
+            file.append(INITIAL_TIME.plus(TIME_STEP_SIZE), values);
+            file.append(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(3)), values);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        Files.write(this.path, new byte[100]);
+        BinaryDataPointFile.open(this.path);
+    }
+}
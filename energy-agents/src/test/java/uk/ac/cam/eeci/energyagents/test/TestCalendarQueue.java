@@ -0,0 +1,63 @@
+package uk.ac.cam.eeci.energyagents.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.energyagents.CalendarQueue;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TestCalendarQueue {
+
+    private final static int NUMBER_BUCKETS = 4;
+    private CalendarQueue<String> queue;
+
+    @Before
+    public void setUp() {
+        this.queue = new CalendarQueue<>(NUMBER_BUCKETS);
+    }
+
+    @Test
+    public void pollsEventsDueAtStep() {
+        this.queue.add(1, "a");
+        this.queue.add(2, "b");
+        this.queue.add(1, "c");
+        assertThat(this.queue.pollDue(0), is(empty()));
+        assertThat(this.queue.pollDue(1), contains("a", "c"));
+        assertThat(this.queue.pollDue(2), contains("b"));
+        assertThat(this.queue.isEmpty(), is(true));
+    }
+
+    @Test
+    public void keepsEventsOfLaterYears() {
+        this.queue.add(1, "now");
+        this.queue.add(1 + NUMBER_BUCKETS, "next year");
+        this.queue.add(1 + 3 * NUMBER_BUCKETS, "in three years");
+        assertThat(this.queue.pollDue(1), contains("now"));
+        assertThat(this.queue.size(), is(equalTo(2)));
+        assertThat(this.queue.pollDue(1 + NUMBER_BUCKETS), contains("next year"));
+        assertThat(this.queue.pollDue(1 + 2 * NUMBER_BUCKETS), is(empty()));
+        assertThat(this.queue.pollDue(1 + 3 * NUMBER_BUCKETS), contains("in three years"));
+    }
+
+    @Test
+    public void acceptsEventsWhilePolling() {
+        this.queue.add(0, "a");
+        this.queue.pollDue(0);
+        this.queue.add(1, "b");
+        assertThat(this.queue.pollDue(1), contains("b"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEventsOfPolledSteps() {
+        this.queue.pollDue(5);
+        this.queue.add(5, "too late");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPollingBackwards() {
+        this.queue.pollDue(5);
+        this.queue.pollDue(4);
+    }
+
+}
@@ -1,7 +1,7 @@
 package uk.ac.cam.eeci.energyagents.test;
 
 import uk.ac.cam.eeci.framework.EndSimulationException;
-import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -41,7 +41,7 @@ public class TestCitySimulation {
                 INITIAL_DATETIME,
                 TIME_STEP_SIZE,
                 100);
-        Reference.pool.setCurrentExecutor(Reference.pool.main);
+        SimulationContext.getDefault().enterMain();
     }
 
     @Test
@@ -76,6 +76,15 @@ public class TestCitySimulation {
         verify(this.dataLogger, times(1)).write(any());
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void failsToStopWhenResultsCannotBeWritten() throws InterruptedException, ExecutionException, EndSimulationException {
+        CompletableFuture<Void> failedWrite = new CompletableFuture<>();
+        failedWrite.completeExceptionally(new RuntimeException("output not writable"));
+        when(this.dataLogger.write(any())).thenReturn(failedWrite);
+        this.citySimulation.step();
+        this.citySimulation.stop();
+    }
+
     @Test
     public void gathersSimulationMetadata() throws InterruptedException, ExecutionException, EndSimulationException {
         this.citySimulation.step(); // necessary to 'start' simulation as there is no startup hook
@@ -0,0 +1,67 @@
+package uk.ac.cam.eeci.energyagents.test;
+
+import org.junit.Test;
+import uk.ac.cam.eeci.energyagents.CounterBasedRandom;
+import uk.ac.cam.eeci.energyagents.RandomNumberGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TestCounterBasedRandom {
+
+    private final static long SEED = 24124123111L;
+    private final static int NUMBER_DRAWS = 10000;
+
+    private List<Double> draw(RandomNumberGenerator random, int numberDraws) {
+        List<Double> numbers = new ArrayList<>();
+        for (int i = 0; i < numberDraws; i++) {
+            numbers.add(random.nextDouble());
+        }
+        return numbers;
+    }
+
+    @Test
+    public void isDeterministic() {
+        assertThat(this.draw(new CounterBasedRandom(SEED, 7), 100),
+                is(equalTo(this.draw(new CounterBasedRandom(SEED, 7), 100))));
+    }
+
+    @Test
+    public void streamsOfAgentsDiffer() {
+        assertThat(this.draw(new CounterBasedRandom(SEED, 7), 100),
+                is(not(equalTo(this.draw(new CounterBasedRandom(SEED, 8), 100)))));
+    }
+
+    @Test
+    public void streamsOfSeedsDiffer() {
+        assertThat(this.draw(new CounterBasedRandom(SEED, 7), 100),
+                is(not(equalTo(this.draw(new CounterBasedRandom(SEED + 1, 7), 100)))));
+    }
+
+    @Test
+    public void countsDraws() {
+        CounterBasedRandom random = new CounterBasedRandom(SEED, 7);
+        this.draw(random, 42);
+        assertThat(random.getCounter(), is(equalTo(42L)));
+    }
+
+    @Test
+    public void drawsUniformlyBetweenZeroAndOne() {
+        List<Double> numbers = this.draw(new CounterBasedRandom(SEED, 7), NUMBER_DRAWS);
+        double mean = numbers.stream().mapToDouble(Double::doubleValue).average().getAsDouble();
+        long lowerQuarter = numbers.stream().filter(number -> number < 0.25).count();
+        assertThat(numbers, everyItem(is(both(greaterThanOrEqualTo(0.0)).and(lessThan(1.0)))));
+        assertThat(mean, is(closeTo(0.5, 0.01)));
+        assertThat((double) lowerQuarter / NUMBER_DRAWS, is(closeTo(0.25, 0.01)));
+    }
+
+    @Test
+    public void seedOnlyDrawsTheStreamOfFirstAgent() {
+        assertThat(this.draw(new CounterBasedRandom(SEED), 100),
+                is(equalTo(this.draw(new CounterBasedRandom(SEED, 0), 100))));
+    }
+
+}
@@ -4,19 +4,26 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import uk.ac.cam.eeci.energyagents.DataLogger;
+import uk.ac.cam.eeci.energyagents.DataPoint;
+import uk.ac.cam.eeci.energyagents.DataPointReference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 import java.io.File;
 import java.io.IOException;
 import java.sql.*;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 public class TestDataLogger {
 
     private final static String MOCK_SQL_INPUT_TABLE_NAME_1 = "table1";
     private final static String MOCK_SQL_INPUT_TABLE_NAME_2 = "table2";
+    private final static ZonedDateTime INITIAL_TIME = ZonedDateTime.of(2017, 2, 21, 10, 10, 0, 0, ZoneId.of("Europe/Paris"));
 
     private File tempOutputFile;
     private File tempInputFile;
@@ -24,6 +31,7 @@ public class TestDataLogger {
 
     @Before
     public void setUp() throws IOException, SQLException, ClassNotFoundException {
+        SimulationContext.getDefault().enterMain();
         this.tempOutputFile = File.createTempFile("energy-agents-data-logger", ".db");
         this.tempInputFile = File.createTempFile("energy-agents-input-mock", ".db");
         this.createInputDatabaseMock();
@@ -96,5 +104,138 @@ public class TestDataLogger {
         assertThat(tableNames, hasItems(MOCK_SQL_INPUT_TABLE_NAME_1, MOCK_SQL_INPUT_TABLE_NAME_2));
     }
 
+    @Test
+    public void writesAllValuesOfLargeDataPoints() throws IOException, SQLException, ExecutionException,
+            InterruptedException {
+        int numberSources = 250; // more rows per time step than fit into one insert statement
+        int numberSteps = 3;
+        Map<Integer, Integer> sources = new HashMap<>();
+        for (int i = 0; i < numberSources; i++) {
+            sources.put(i, i);
+        }
+        DataPointReference<Integer, Double> dataPoint = new DataPointReference<>(
+                new DataPoint<Integer, Double>("large", sources, source -> CompletableFuture.completedFuture(0.5 * source)));
+        this.dataLogger = new DataLogger(Collections.singleton(dataPoint), this.tempInputFile.getAbsolutePath(),
+                this.tempOutputFile.getCanonicalPath());
+        for (int step = 0; step < numberSteps; step++) {
+            dataPoint.step(INITIAL_TIME.plusMinutes(10 * step)).get();
+        }
+        this.dataLogger.write(new HashMap<>()).get();
+
+        try (Connection conn = DriverManager.getConnection(
+                String.format("jdbc:sqlite:%s", this.tempOutputFile.getCanonicalPath()));
+             Statement stat = conn.createStatement();
+             ResultSet rs = stat.executeQuery("select count(*), sum(value), sum(id = 2 and value = 1.0) from large;")) {
+            assertThat(rs.getInt(1), is(equalTo(numberSources * numberSteps)));
+            assertThat(rs.getDouble(2), is(closeTo(numberSteps * 0.5 * numberSources * (numberSources - 1) / 2, 1e-6)));
+            assertThat(rs.getInt(3), is(equalTo(numberSteps)));
+        }
+    }
+
+    @Test
+    public void writesAllOfManyDataPoints() throws IOException, SQLException, ExecutionException,
+            InterruptedException {
+        int numberDataPoints = 5; // more than are requested at a time
+        Set<DataPointReference> dataPoints = new HashSet<>();
+        for (int i = 0; i < numberDataPoints; i++) {
+            double value = i;
+            dataPoints.add(new DataPointReference<>(new DataPoint<Integer, Double>(
+                    String.format("dataPoint%d", i), Collections.singletonMap(0, 0),
+                    source -> CompletableFuture.completedFuture(value))));
+        }
+        this.dataLogger = new DataLogger(dataPoints, this.tempInputFile.getAbsolutePath(),
+                this.tempOutputFile.getCanonicalPath());
+        for (DataPointReference dataPoint : dataPoints) {
+            dataPoint.step(INITIAL_TIME).get();
+        }
+        this.dataLogger.write(new HashMap<>()).get();
+
+        try (Connection conn = DriverManager.getConnection(
+                String.format("jdbc:sqlite:%s", this.tempOutputFile.getCanonicalPath()));
+             Statement stat = conn.createStatement()) {
+            for (int i = 0; i < numberDataPoints; i++) {
+                try (ResultSet rs = stat.executeQuery(String.format("select value from dataPoint%d;", i))) {
+                    assertThat(rs.getDouble(1), is(equalTo((double) i)));
+                }
+            }
+        }
+    }
 
+    @Test
+    public void indexesDataPointTables() throws IOException, SQLException, ExecutionException, InterruptedException {
+        DataPointReference<Integer, Double> dataPoint = new DataPointReference<>(new DataPoint<Integer, Double>(
+                "small", Collections.singletonMap(0, 0), source -> CompletableFuture.completedFuture(1.0)));
+        this.dataLogger = new DataLogger(Collections.singleton(dataPoint), this.tempInputFile.getAbsolutePath(),
+                this.tempOutputFile.getCanonicalPath());
+        dataPoint.step(INITIAL_TIME).get();
+        this.dataLogger.write(new HashMap<>()).get();
+
+        try (Connection conn = DriverManager.getConnection(
+                String.format("jdbc:sqlite:%s", this.tempOutputFile.getCanonicalPath()));
+             Statement stat = conn.createStatement();
+             ResultSet rs = stat.executeQuery("select tbl_name from sqlite_master where type='index';")) {
+            List<String> indexedTables = new ArrayList<>();
+            while (rs.next()) {
+                indexedTables.add(rs.getString(1));
+            }
+            assertThat(indexedTables, contains("small"));
+        }
+    }
+
+    @Test
+    public void writesDoubleDataPointsToConvertibleBinaryFiles() throws IOException, SQLException,
+            ExecutionException, InterruptedException {
+        int numberSources = 250;
+        int numberSteps = 3;
+        Map<Integer, Integer> sources = new HashMap<>();
+        for (int i = 0; i < numberSources; i++) {
+            sources.put(i, i);
+        }
+        DataPointReference<Integer, Double> dataPoint = new DataPointReference<>(
+                new DataPoint<Integer, Double>("large", sources, source -> CompletableFuture.completedFuture(0.5 * source)));
+        String outputFilename = this.tempOutputFile.getCanonicalPath();
+        this.dataLogger = new DataLogger(Collections.singleton(dataPoint), this.tempInputFile.getAbsolutePath(),
+                outputFilename, 1, true); // one chunk per time step
+        for (int step = 0; step < numberSteps; step++) {
+            this.dataLogger.step(INITIAL_TIME.plusMinutes(10 * step)).get();
+        }
+        this.dataLogger.write(new HashMap<>()).get();
+        File binaryFile = new File(DataLogger.binaryFilename(outputFilename, "large"));
+        binaryFile.deleteOnExit();
+
+        assertTrue(binaryFile.exists());
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", outputFilename));
+             Statement stat = conn.createStatement();
+             ResultSet rs = stat.executeQuery("select count(*) from sqlite_master where name = 'large';")) {
+            assertThat(rs.getInt(1), is(equalTo(0)));
+        }
+        DataLogger.convertBinaryOutput(binaryFile.getCanonicalPath(), outputFilename);
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", outputFilename));
+             Statement stat = conn.createStatement();
+             ResultSet rs = stat.executeQuery("select count(*), sum(value), sum(id = 2 and value = 1.0), " +
+                     "max(timestamp) from large;")) {
+            assertThat(rs.getInt(1), is(equalTo(numberSources * numberSteps)));
+            assertThat(rs.getDouble(2), is(closeTo(numberSteps * 0.5 * numberSources * (numberSources - 1) / 2, 1e-6)));
+            assertThat(rs.getInt(3), is(equalTo(numberSteps)));
+            assertThat(rs.getLong(4), is(equalTo(INITIAL_TIME.plusMinutes(20).toInstant().toEpochMilli())));
+        }
+    }
+
+    @Test
+    public void streamsBinaryOutputWithoutFlushInterval() throws IOException, ExecutionException, InterruptedException {
+        DataPointReference<Integer, Double> dataPoint = new DataPointReference<>(new DataPoint<Integer, Double>(
+                "binary", Collections.singletonMap(0, 0), source -> CompletableFuture.completedFuture(1.0)));
+        String outputFilename = this.tempOutputFile.getCanonicalPath();
+        this.dataLogger = new DataLogger(Collections.singleton(dataPoint), this.tempInputFile.getAbsolutePath(),
+                outputFilename, 0, true);
+        File binaryFile = new File(DataLogger.binaryFilename(outputFilename, "binary"));
+        binaryFile.deleteOnExit();
+        // the second flush waits for the first chunk to be written
+        for (int step = 0; step < 2 * DataLogger.DEFAULT_BINARY_FLUSH_INTERVAL; step++) {
+            this.dataLogger.step(INITIAL_TIME.plusMinutes(10 * step)).get();
+        }
+
+        assertTrue(binaryFile.exists());
+        this.dataLogger.write(new HashMap<>()).get();
+    }
 }
@@ -2,7 +2,10 @@ package uk.ac.cam.eeci.energyagents.test;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
 import uk.ac.cam.eeci.energyagents.DataPoint;
+import uk.ac.cam.eeci.energyagents.DoubleDataPoint;
 import uk.ac.cam.eeci.energyagents.TimeSeries;
 
 import static org.junit.Assert.*;
@@ -11,13 +14,26 @@ import static org.hamcrest.Matchers.*;
 import java.time.Duration;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
+@RunWith(Parameterized.class)
 public class TestDataPoint {
 
+    @Parameterized.Parameters(name = "primitive: {0}")
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { false }, { true }
+        });
+    }
+
+    @Parameterized.Parameter
+    public boolean primitive;
+
     private static class DataPointValueSource {
 
         private Double value;
@@ -49,11 +65,25 @@ public class TestDataPoint {
         this.indexedSources.put(1, this.source1);
         this.indexedSources.put(2, this.source2);
 
-        this.dataPoint = new DataPoint<>(
-                DATA_POINT_NAME,
-                this.indexedSources,
-                DataPointValueSource::getDataPointValue
-        );
+        this.dataPoint = this.createDataPoint(DATA_POINT_NAME, this.indexedSources);
+    }
+
+    private DataPoint<DataPointValueSource, Double> createDataPoint(String name,
+                                                                    Map<Integer, DataPointValueSource> sources) {
+        if (this.primitive) {
+            return new DoubleDataPoint<>(name, sources, DataPointValueSource::getDataPointValue);
+        }
+        return new DataPoint<>(name, sources, DataPointValueSource::getDataPointValue);
+    }
+
+    private DataPoint<DataPointValueSource, Double> createDataPoint(String name,
+                                                                    Map<Integer, DataPointValueSource> sources,
+                                                                    int interval) {
+        if (this.primitive) {
+            return new DoubleDataPoint<>(name, sources, DataPointValueSource::getDataPointValue, interval,
+                    DoubleDataPoint.Reduction.LAST);
+        }
+        return new DataPoint<>(name, sources, DataPointValueSource::getDataPointValue, interval);
     }
 
     @Test
@@ -69,6 +99,19 @@ public class TestDataPoint {
         assertThat(record.get(2).size(), is(equalTo(0)));
     }
 
+    @Test
+    public void drainedRecordIsRemovedFromDataPoint() throws ExecutionException, InterruptedException {
+        this.dataPoint.step(INITIAL_TIME).get();
+        this.dataPoint.step(INITIAL_TIME.plus(TIME_STEP_SIZE)).get();
+        Map<Integer, TimeSeries<Double>> drained = this.dataPoint.drainRecord();
+        this.dataPoint.step(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(2))).get();
+        Map<Integer, TimeSeries<Double>> record = this.dataPoint.getRecord();
+
+        assertThat(drained.get(1).size(), is(equalTo(2)));
+        assertThat(record.get(1).size(), is(equalTo(1)));
+        assertThat(record.get(1).getIndex().get(0), is(equalTo(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(2)))));
+    }
+
     @Test
     public void recordContainsEntryForEachSource() throws ExecutionException, InterruptedException {
         this.dataPoint.step(INITIAL_TIME).get();
@@ -137,14 +180,30 @@ public class TestDataPoint {
         Map<Integer, DataPointValueSource> arbitrarilyIndexedSources = new HashMap<>();
         arbitrarilyIndexedSources.put(100023, this.source2);
         arbitrarilyIndexedSources.put(56, this.source1);
-        DataPoint<DataPointValueSource, Double> secondDataPoint = new DataPoint<>(
+        DataPoint<DataPointValueSource, Double> secondDataPoint = this.createDataPoint(
                 "testDataPoint2",
-                arbitrarilyIndexedSources,
-                DataPointValueSource::getDataPointValue
+                arbitrarilyIndexedSources
         );
 
         assertThat(secondDataPoint.getRecord().keySet(), containsInAnyOrder(100023, 56));
     }
 
+    @Test
+    public void recordsLastValueOfEachInterval() throws ExecutionException, InterruptedException {
+        this.dataPoint = this.createDataPoint(DATA_POINT_NAME, this.indexedSources, 3);
+        for (int i = 0; i < 7; i++) {
+            this.source1.value = (double) i;
+            this.dataPoint.step(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(i))).get();
+        }
+        TimeSeries<Double> timeSeries = this.dataPoint.getRecord().get(1);
 
+        assertThat(timeSeries.getValues(), contains(2.0, 5.0));
+        assertThat(timeSeries.getIndex(), contains(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(2)),
+                INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(5))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveInterval() {
+        this.createDataPoint(DATA_POINT_NAME, this.indexedSources, 0);
+    }
 }
@@ -0,0 +1,64 @@
+package uk.ac.cam.eeci.energyagents.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.energyagents.DistrictAccumulator;
+import uk.ac.cam.eeci.energyagents.DistrictAccumulator.Statistic;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TestDistrictAccumulator {
+
+    private final static double EPSILON = 1e-9;
+    private final static ZonedDateTime TIME = ZonedDateTime.of(2017, 2, 21, 10, 10, 0, 0, ZoneId.of("Europe/Paris"));
+    private final static Duration TIME_STEP_SIZE = Duration.ofMinutes(10);
+
+    private DistrictAccumulator accumulator;
+
+    @Before
+    public void setUp() {
+        this.accumulator = new DistrictAccumulator();
+        this.accumulator.record(TIME, 20, 0);
+        this.accumulator.record(TIME, 18, 500);
+        this.accumulator.record(TIME, 22, 1000);
+    }
+
+    @Test
+    public void aggregatesAirTemperatures() {
+        assertThat(this.accumulator.getAirTemperature(Statistic.SUM), is(closeTo(60, EPSILON)));
+        assertThat(this.accumulator.getAirTemperature(Statistic.MEAN), is(closeTo(20, EPSILON)));
+        assertThat(this.accumulator.getAirTemperature(Statistic.MIN), is(closeTo(18, EPSILON)));
+        assertThat(this.accumulator.getAirTemperature(Statistic.MAX), is(closeTo(22, EPSILON)));
+        assertThat(this.accumulator.getAirTemperature(Statistic.MEDIAN), is(closeTo(20, EPSILON)));
+    }
+
+    @Test
+    public void aggregatesThermalPowers() {
+        assertThat(this.accumulator.getThermalPower(Statistic.MEAN), is(closeTo(500, EPSILON)));
+        assertThat(this.accumulator.getThermalPower(Statistic.PERCENTILE_90), is(closeTo(900, EPSILON)));
+    }
+
+    @Test
+    public void countsHeatedDwellings() {
+        assertThat(this.accumulator.getNumberHeated(), is(equalTo(2)));
+    }
+
+    @Test
+    public void startsOverWithNewTimeStep() {
+        this.accumulator.record(TIME.plus(TIME_STEP_SIZE), 15, 0);
+        assertThat(this.accumulator.getNumberDwellings(), is(equalTo(1L)));
+        assertThat(this.accumulator.getAirTemperature(Statistic.MEAN), is(closeTo(15, EPSILON)));
+        assertThat(this.accumulator.getNumberHeated(), is(equalTo(0)));
+    }
+
+    @Test
+    public void namesStatisticsOfQuantities() {
+        assertThat(Statistic.MEAN.nameOf("temperature"), is(equalTo("averageTemperature")));
+        assertThat(Statistic.PERCENTILE_90.nameOf("thermalPower"), is(equalTo("percentile90ThermalPower")));
+    }
+}
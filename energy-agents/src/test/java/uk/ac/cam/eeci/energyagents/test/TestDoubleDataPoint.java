@@ -0,0 +1,163 @@
+package uk.ac.cam.eeci.energyagents.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.energyagents.DataPoint;
+import uk.ac.cam.eeci.energyagents.DoubleDataPoint;
+import uk.ac.cam.eeci.energyagents.DoubleTimeSeries;
+import uk.ac.cam.eeci.energyagents.TimeSeries;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class TestDoubleDataPoint {
+
+    private final static ZonedDateTime INITIAL_TIME = ZonedDateTime.of(2017, 3, 26, 0, 0, 0, 0, ZoneId.of("Europe/Paris"));
+    private final static Duration TIME_STEP_SIZE = Duration.ofMinutes(30);
+    private final static int NUMBER_STEPS = 200; // crosses the DST switch and grows the buffer
+
+    private Map<Integer, Double> sources;
+    private DoubleDataPoint<Double> doubleDataPoint;
+    private DataPoint<Double, Double> dataPoint;
+
+    @Before
+    public void setUp() {
+        this.sources = new HashMap<>();
+        this.sources.put(7, 1.5);
+        this.sources.put(3, -2.25);
+        this.sources.put(11, 8.0);
+        this.doubleDataPoint = new DoubleDataPoint<>("doubles", this.sources, CompletableFuture::completedFuture);
+        this.dataPoint = new DataPoint<>("objects", this.sources, CompletableFuture::completedFuture);
+    }
+
+    private void step(DataPoint<Double, Double> dataPoint, int numberSteps, int firstStep)
+            throws ExecutionException, InterruptedException {
+        for (int i = firstStep; i < firstStep + numberSteps; i++) {
+            dataPoint.step(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(i))).get();
+        }
+    }
+
+    @Test
+    public void recordEqualsRecordOfBoxedDataPoint() throws ExecutionException, InterruptedException {
+        this.step(this.doubleDataPoint, NUMBER_STEPS, 0);
+        this.step(this.dataPoint, NUMBER_STEPS, 0);
+
+        assertThat(this.doubleDataPoint.getRecord(), is(equalTo(this.dataPoint.getRecord())));
+    }
+
+    @Test
+    public void recordKnowsConstantTimeStepSize() throws ExecutionException, InterruptedException {
+        this.step(this.doubleDataPoint, NUMBER_STEPS, 0);
+
+        assertThat(this.doubleDataPoint.getRecord().get(7).getConstantTimeStepSize(),
+                is(equalTo(Optional.of(TIME_STEP_SIZE))));
+    }
+
+    @Test
+    public void providesUnboxedValues() throws ExecutionException, InterruptedException {
+        this.step(this.doubleDataPoint, 3, 0);
+        DoubleTimeSeries timeSeries = (DoubleTimeSeries) this.doubleDataPoint.getRecord().get(3);
+
+        assertThat(timeSeries.getDouble(2), is(equalTo(-2.25)));
+    }
+
+    @Test
+    public void drainedRecordIsNotOverwritten() throws ExecutionException, InterruptedException {
+        this.step(this.doubleDataPoint, 2, 0);
+        Map<Integer, TimeSeries<Double>> drained = this.doubleDataPoint.drainRecord();
+        this.step(this.doubleDataPoint, 5, 2);
+
+        assertThat(drained.get(11).getValues(), contains(8.0, 8.0));
+        assertThat(this.doubleDataPoint.getRecord().get(11).getIndex().get(0),
+                is(equalTo(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(2)))));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void recordIsReadOnly() throws ExecutionException, InterruptedException {
+        this.step(this.doubleDataPoint, 1, 0);
+        this.doubleDataPoint.getRecord().get(7).add(INITIAL_TIME, 1.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsVaryingTimeStepSize() {
+        this.doubleDataPoint.step(INITIAL_TIME).join();
+        this.doubleDataPoint.step(INITIAL_TIME.plus(TIME_STEP_SIZE)).join();
+        try {
+            this.doubleDataPoint.step(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(3))).join();
+        } catch (RuntimeException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private List<Double> reduceOverIntervals(DoubleDataPoint.Reduction reduction)
+            throws ExecutionException, InterruptedException {
+        Map<Integer, Double> values = new HashMap<>();
+        DoubleDataPoint<Integer> dataPoint = new DoubleDataPoint<>("reduced", Collections.singletonMap(0, 0),
+                source -> CompletableFuture.completedFuture(values.get(source)), 3, reduction);
+        double[] series = new double[]{1, 5, 3, 2, 2, 8, 4};
+        for (int i = 0; i < series.length; i++) {
+            values.put(0, series[i]);
+            dataPoint.step(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(i))).get();
+        }
+        return dataPoint.getRecord().get(0).getValues();
+    }
+
+    @Test
+    public void reducesIntervalsToMean() throws ExecutionException, InterruptedException {
+        assertThat(this.reduceOverIntervals(DoubleDataPoint.Reduction.MEAN), contains(3.0, 4.0));
+    }
+
+    @Test
+    public void reducesIntervalsToMaximum() throws ExecutionException, InterruptedException {
+        assertThat(this.reduceOverIntervals(DoubleDataPoint.Reduction.MAX), contains(5.0, 8.0));
+    }
+
+    @Test
+    public void reducesIntervalsToSum() throws ExecutionException, InterruptedException {
+        assertThat(this.reduceOverIntervals(DoubleDataPoint.Reduction.SUM), contains(9.0, 12.0));
+    }
+
+    @Test
+    public void reducesIntervalsToLastValue() throws ExecutionException, InterruptedException {
+        assertThat(this.reduceOverIntervals(DoubleDataPoint.Reduction.LAST), contains(3.0, 8.0));
+    }
+
+    @Test
+    public void recordsIntervalsWithTimeOfTheirLastStep() throws ExecutionException, InterruptedException {
+        DoubleDataPoint<Double> dataPoint = new DoubleDataPoint<>("reduced", this.sources,
+                CompletableFuture::completedFuture, 4, DoubleDataPoint.Reduction.MEAN);
+        this.step(dataPoint, 12, 0);
+        TimeSeries<Double> timeSeries = dataPoint.getRecord().get(7);
+
+        assertThat(timeSeries.getIndex().get(0), is(equalTo(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(3)))));
+        assertThat(timeSeries.getConstantTimeStepSize(), is(equalTo(Optional.of(TIME_STEP_SIZE.multipliedBy(4)))));
+    }
+
+    @Test
+    public void carriesIncompleteIntervalOverDrain() throws ExecutionException, InterruptedException {
+        Map<Integer, Double> values = new HashMap<>();
+        DoubleDataPoint<Integer> dataPoint = new DoubleDataPoint<>("reduced", Collections.singletonMap(0, 0),
+                source -> CompletableFuture.completedFuture(values.get(source)), 2, DoubleDataPoint.Reduction.SUM);
+        double[] series = new double[]{1, 2, 3, 4};
+        List<Double> drained = new ArrayList<>();
+        for (int i = 0; i < series.length; i++) {
+            values.put(0, series[i]);
+            dataPoint.step(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(i))).get();
+            drained.addAll(dataPoint.drainRecord().get(0).getValues()); // drains in the middle of intervals
+        }
+
+        assertThat(drained, contains(3.0, 7.0));
+    }
+}
@@ -1,9 +1,10 @@
 package uk.ac.cam.eeci.energyagents.test;
 
-import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
 import org.junit.Before;
 import org.junit.Test;
 import uk.ac.cam.eeci.energyagents.*;
+import uk.ac.cam.eeci.energyagents.strategy.NoHeatingStrategy;
 
 import java.time.Duration;
 import java.time.ZoneId;
@@ -16,6 +17,8 @@ import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
@@ -28,23 +31,42 @@ public class TestDwelling {
     private final static double INITIAL_DWELLING_TEMPERATURE = 22;
     private final static ZonedDateTime INITIAL_TIME = ZonedDateTime.of(2017, 3, 13, 17, 40, 0, 0, ZoneId.of("Europe/Paris"));
     private final static Duration TIME_STEP_SIZE = Duration.ofHours(1);
+    private final static double GOLDEN_EPSILON = 1e-12;
+    // outputs of the original, non-restructured solver
+    private final static double[] GOLDEN_AIR_TEMPERATURES = new double[]{
+            21.048562787170788, 20.715097721624915, 20.44148403465657, 20.21961293404401, 21.940701039383598,
+            20.18717430249023, 20.050219222022804, 19.921356363369163, 20.999999999999996, 21.73101630772883,
+            20.073037152204662, 19.88408315222449, 20.0, 21.0, 21.252724500823597, 19.267501813960212,
+            18.999999999999993, 20.0, 20.021737896632693, 17.868928307308895, 17.999999999999996, 18.661219967717166,
+            18.362604731191826, 16.1704614870965, 17.50280070671367, 17.267392477014223, 17.070220497066632,
+            15.018272246040967, 16.524322921730068, 16.489561337721035, 16.446033327767946, 14.6089871620842,
+            16.332324448710697, 16.508252655293497, 16.72638133566264, 15.077165102710849, 16.95734669895964,
+            17.253222075445972, 17.549950783620115, 15.93517661783546, 17.80458299917784, 18.04520053389355,
+            18.244688357776827, 16.49485536232036, 18.19704975697718, 17.999999999999996, 18.196859268501623,
+            16.229719887173243
+    };
+    private final static double[] GOLDEN_THERMAL_POWERS = new double[]{
+            0.0, 0.0, 0.0, 0.0, 1500.0, 0.0, 0.0, 0.0, 955.7183211912492, 1500.0, 0.0, 0.0, 272.72133531294685,
+            1236.6018674012737, 1500.0, 0.0, 131.94504452053042, 1276.6470565688041, 1500.0, 0.0, 602.1862730302249,
+            1500.0, 1500.0, 0.0, 1500.0, 1500.0, 1500.0, 0.0, 1500.0, 1500.0, 1500.0, 0.0, 1500.0, 1500.0, 1500.0,
+            0.0, 1500.0, 1500.0, 1500.0, 0.0, 1500.0, 1500.0, 1500.0, 0.0, 1500.0, 1306.4764050897263, 1500.0, 0.0
+    };
     private Dwelling dwelling;
     private DwellingReference dwellingReference;
     private HeatingControlStrategyReference controlStrategy = mock(HeatingControlStrategyReference.class);
     private EnvironmentReference environment = mock(EnvironmentReference.class);
     private PersonReference person = mock(PersonReference.class);
-    private Set<PersonReference> personInSet;
 
     @Before
     public void setUp() {
-        this.personInSet = new HashSet<>();
-        this.personInSet.add(this.person);
         when(this.controlStrategy.heatingSetPoint(any(), any()))
                 .thenReturn(CompletableFuture.completedFuture(Optional.of(21.9)));
         when(this.environment.getCurrentTemperature())
                 .thenReturn(CompletableFuture.completedFuture(INITIAL_DWELLING_TEMPERATURE));
-        when(this.person.getCurrentMetabolicRate())
-                .thenReturn(CompletableFuture.completedFuture(2.0));
+        when(this.controlStrategy.heatingOffUntil(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(this.environment.getUpcomingTemperatures(anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(new double[0]));
         double floorArea = 100;
         this.dwelling = new Dwelling(165000 * floorArea, 2.5 * floorArea, floorArea,
                 3, 0.19, 0.26, 0.12, 0.40, 1.95,
@@ -61,23 +83,34 @@ public class TestDwelling {
 
     @Test
     public void testWhenPersonEntersDwellingItIsHandedOverToControlStrategy() {
-        this.dwelling.enter(this.person);
+        this.dwelling.enter(this.person, Person.Activity.HOME, 2.0);
+        this.dwelling.step();
+        verify(this.controlStrategy, atLeastOnce()).heatingSetPoint(eq(INITIAL_TIME),
+                argThat(occupancy -> occupancy.getNumberOfPeople(Person.Activity.HOME) == 1));
+    }
+
+    @Test
+    public void testWhenPersonChangesActivityItIsHandedOverToControlStrategy() {
+        this.dwelling.enter(this.person, Person.Activity.HOME, 2.0);
+        this.dwelling.changeActivity(this.person, Person.Activity.SLEEP_AT_HOME, 1.0);
         this.dwelling.step();
-        verify(this.controlStrategy, atLeastOnce()).heatingSetPoint(INITIAL_TIME, this.personInSet);
+        verify(this.controlStrategy, atLeastOnce()).heatingSetPoint(eq(INITIAL_TIME),
+                argThat(occupancy -> occupancy.getNumberOfPeople(Person.Activity.SLEEP_AT_HOME) == 1 &&
+                        occupancy.getNumberOfPeople(Person.Activity.HOME) == 0));
     }
 
     @Test
     public void testDwellingIsEmptyAtStartup() {
         this.dwelling.step();
-        verify(this.controlStrategy, atLeastOnce()).heatingSetPoint(INITIAL_TIME, new HashSet<>());
+        verify(this.controlStrategy, atLeastOnce()).heatingSetPoint(eq(INITIAL_TIME), argThat(Occupancy::isEmpty));
     }
 
     @Test
     public void testWhenPersonLeavesItIsNotHandedOverToControlStrategy() {
-        this.dwelling.enter(this.person);
+        this.dwelling.enter(this.person, Person.Activity.HOME, 2.0);
         this.dwelling.leave(this.person);
         this.dwelling.step();
-        verify(this.controlStrategy, atLeastOnce()).heatingSetPoint(INITIAL_TIME, new HashSet<>());
+        verify(this.controlStrategy, atLeastOnce()).heatingSetPoint(eq(INITIAL_TIME), argThat(Occupancy::isEmpty));
     }
 
     @Test
@@ -135,16 +168,182 @@ public class TestDwelling {
         this.dwelling.step();
         this.dwelling.step();
         verify(this.controlStrategy, times(1)).heatingSetPoint(
-                INITIAL_TIME.plus(TIME_STEP_SIZE),
-                new HashSet<>()
+                eq(INITIAL_TIME.plus(TIME_STEP_SIZE)),
+                argThat(Occupancy::isEmpty)
         );
     }
 
     @Test
     public void canAccessTemperatureThroughReference() throws ExecutionException, InterruptedException {
-        Reference.pool.setCurrentExecutor(Reference.pool.main);
+        SimulationContext.getDefault().enterMain();
         double temp = this.dwellingReference.getCurrentAirTemperature().get();
         assertThat(temp, is(closeTo(INITIAL_DWELLING_TEMPERATURE, EPSILON)));
     }
 
+    private void becomeDormantUntil(ZonedDateTime heatingOffUntil) {
+        when(this.controlStrategy.heatingSetPoint(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+        when(this.controlStrategy.heatingOffUntil(any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(heatingOffUntil)));
+        double[] upcomingTemperatures = new double[10];
+        Arrays.fill(upcomingTemperatures, INITIAL_DWELLING_TEMPERATURE - 5);
+        when(this.environment.getUpcomingTemperatures(anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(upcomingTemperatures));
+    }
+
+    @Test
+    public void doesNotAskControlStrategyWhileDormant() {
+        this.becomeDormantUntil(HeatingControlStrategy.FOREVER);
+        this.dwelling.step();
+        this.dwelling.step();
+        this.dwelling.step();
+        verify(this.controlStrategy, times(1)).heatingSetPoint(any(), any());
+    }
+
+    @Test
+    public void coolsDownWhileDormant() {
+        this.becomeDormantUntil(HeatingControlStrategy.FOREVER);
+        this.dwelling.step();
+        double temperatureBeforeDormancy = this.dwelling.getCurrentAirTemperature();
+        this.dwelling.step();
+        this.dwelling.step();
+        assertThat(this.dwelling.getCurrentAirTemperature(), is(lessThan(temperatureBeforeDormancy)));
+    }
+
+    @Test
+    public void reportsToDistrictWhileDormant() {
+        DwellingDistrict district = new DwellingDistrict(Collections.singleton(this.dwellingReference));
+        district.startAggregation();
+        this.becomeDormantUntil(HeatingControlStrategy.FOREVER);
+        this.dwelling.step();
+        this.dwelling.step();
+        double reportedTemperature = district.getAirTemperature(DistrictAccumulator.Statistic.MEAN);
+        this.dwelling.step();
+        assertThat(district.getAirTemperature(DistrictAccumulator.Statistic.MEAN), is(lessThan(reportedTemperature)));
+        assertThat(district.getAirTemperature(DistrictAccumulator.Statistic.MEAN),
+                is(equalTo(this.dwelling.getCurrentAirTemperature())));
+        verify(this.controlStrategy, times(1)).heatingSetPoint(any(), any());
+    }
+
+    @Test
+    public void wakesUpWhenPersonEnters() {
+        this.becomeDormantUntil(HeatingControlStrategy.FOREVER);
+        this.dwelling.step();
+        this.dwelling.enter(this.person, Person.Activity.HOME, 2.0);
+        this.dwelling.step();
+        verify(this.controlStrategy, times(1)).heatingSetPoint(eq(INITIAL_TIME.plus(TIME_STEP_SIZE)),
+                argThat(occupancy -> occupancy.getNumberOfPeople(Person.Activity.HOME) == 1));
+    }
+
+    @Test
+    public void wakesUpWhenHeatingMayBeSwitchedOn() {
+        this.becomeDormantUntil(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(2)));
+        this.dwelling.step();
+        this.dwelling.step();
+        this.dwelling.step();
+        verify(this.controlStrategy, times(2)).heatingSetPoint(any(), any());
+        verify(this.controlStrategy, times(1)).heatingSetPoint(eq(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(2))),
+                any());
+    }
+
+    @Test
+    public void wakesUpAtFirstTimeStepAfterHeatingMayBeSwitchedOn() {
+        this.becomeDormantUntil(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(3).dividedBy(2)));
+        this.dwelling.step();
+        this.dwelling.step();
+        this.dwelling.step();
+        verify(this.controlStrategy, times(2)).heatingSetPoint(any(), any());
+        verify(this.controlStrategy, times(1)).heatingSetPoint(eq(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(2))),
+                any());
+    }
+
+    @Test
+    public void fastForwardsDormantDwellingLikeSteppingIt() throws ExecutionException, InterruptedException {
+        SimulationContext.getDefault().enterMain();
+        int numberSteps = 500;
+        TimeSeries<Double> temperatureTimeSeries = new TimeSeries<>();
+        for (int i = 0; i <= numberSteps; i++) {
+            temperatureTimeSeries.add(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(i)),
+                    10 + 8 * Math.sin(2 * Math.PI * i / 24.0));
+        }
+        HeatingControlStrategy stepping = new HeatingControlStrategy() { // makes no promise, hence never dormant
+            @Override
+            public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp, Occupancy occupancy) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+        };
+        EnvironmentReference steppingEnvironment = new EnvironmentReference(
+                new Environment(temperatureTimeSeries, TIME_STEP_SIZE));
+        EnvironmentReference fastForwardingEnvironment = new EnvironmentReference(
+                new Environment(temperatureTimeSeries, TIME_STEP_SIZE));
+        DwellingReference steppingDwelling = this.createDwelling(stepping, steppingEnvironment);
+        DwellingReference fastForwardingDwelling = this.createDwelling(new NoHeatingStrategy(),
+                fastForwardingEnvironment);
+
+        for (int i = 0; i < numberSteps; i++) {
+            steppingDwelling.step().get();
+            fastForwardingDwelling.step().get();
+            steppingEnvironment.step().get();
+            fastForwardingEnvironment.step().get();
+            if (i % 7 == 0 || i == numberSteps - 1) {
+                assertThat(fastForwardingDwelling.getCurrentAirTemperature().get(),
+                        is(closeTo(steppingDwelling.getCurrentAirTemperature().get(), 1e-9)));
+            }
+        }
+    }
+
+    @Test
+    public void reproducesGoldenOutputs() throws ExecutionException, InterruptedException {
+        SimulationContext.getDefault().enterMain();
+        int numberSteps = GOLDEN_AIR_TEMPERATURES.length;
+        TimeSeries<Double> temperatureTimeSeries = new TimeSeries<>();
+        for (int i = 0; i <= numberSteps; i++) {
+            temperatureTimeSeries.add(INITIAL_TIME.plus(TIME_STEP_SIZE.multipliedBy(i)),
+                    5 + 10 * Math.sin(i / 5.0));
+        }
+        int[] numberCalls = new int[1];
+        HeatingControlStrategy strategy = new HeatingControlStrategy() {
+            @Override
+            public CompletableFuture<Optional<Double>> heatingSetPoint(ZonedDateTime timeStamp, Occupancy occupancy) {
+                int step = numberCalls[0]++;
+                return CompletableFuture.completedFuture(step % 4 == 3 ? Optional.empty() : Optional.of(18.0 + step % 5));
+            }
+        };
+        EnvironmentReference environment = new EnvironmentReference(
+                new Environment(temperatureTimeSeries, TIME_STEP_SIZE));
+        double floorArea = 100;
+        Dwelling dwelling = new Dwelling(165000 * floorArea, 2.5 * floorArea, floorArea,
+                3, 0.19, 0.26, 0.12, 0.40, 1.95,
+                0.91, 0.65, 1500,
+                INITIAL_DWELLING_TEMPERATURE, INITIAL_TIME, TIME_STEP_SIZE,
+                new HeatingControlStrategyReference(strategy), environment);
+        DwellingReference dwellingReference = new DwellingReference(dwelling);
+
+        for (int i = 0; i < numberSteps; i++) {
+            if (i == 10) {
+                dwelling.enter(this.person, Person.Activity.HOME, 150.0);
+            } else if (i == 20) {
+                dwelling.changeActivity(this.person, Person.Activity.SLEEP_AT_HOME, 80.0);
+            } else if (i == 30) {
+                dwelling.leave(this.person);
+            }
+            dwellingReference.step().get();
+            environment.step().get();
+            double airTemperature = dwellingReference.getCurrentAirTemperature().get();
+            double thermalPower = dwellingReference.getCurrentThermalPower().get();
+            assertThat(airTemperature, is(closeTo(GOLDEN_AIR_TEMPERATURES[i], GOLDEN_EPSILON)));
+            assertThat(thermalPower, is(closeTo(GOLDEN_THERMAL_POWERS[i],
+                    GOLDEN_EPSILON * Math.max(1, GOLDEN_THERMAL_POWERS[i]))));
+        }
+    }
+
+    private DwellingReference createDwelling(HeatingControlStrategy strategy, EnvironmentReference environment) {
+        double floorArea = 100;
+        return new DwellingReference(new Dwelling(165000 * floorArea, 2.5 * floorArea, floorArea,
+                3, 0.19, 0.26, 0.12, 0.40, 1.95,
+                0.91, 0.65, Double.POSITIVE_INFINITY,
+                INITIAL_DWELLING_TEMPERATURE, INITIAL_TIME, TIME_STEP_SIZE,
+                new HeatingControlStrategyReference(strategy), environment));
+    }
+
 }
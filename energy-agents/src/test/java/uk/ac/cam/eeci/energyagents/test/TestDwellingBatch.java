@@ -0,0 +1,114 @@
+package uk.ac.cam.eeci.energyagents.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.energyagents.*;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestDwellingBatch {
+
+    private final static int NUMBER_DWELLINGS = 6;
+    private final static int NUMBER_STEPS = 48;
+    private final static double INITIAL_DWELLING_TEMPERATURE = 18;
+    private final static ZonedDateTime INITIAL_TIME = ZonedDateTime.of(2017, 3, 13, 17, 40, 0, 0, ZoneId.of("Europe/Paris"));
+    private final static Duration TIME_STEP_SIZE = Duration.ofMinutes(10);
+    private final static double[] FLOOR_AREAS = {60, 80, 100, 120, 140, 250};
+    private final static double[] MAXIMUM_HEATING_POWERS = {Double.POSITIVE_INFINITY, 500, 2000, 0, 10000, 3000};
+    private final static double[] HEATING_SET_POINTS = {21, 20, Double.NaN, 22, 19, 23};
+    private final static double[] METABOLIC_HEAT_GAINS = {0, 100, 200, 0, 300, 150};
+
+    private List<Dwelling> dwellings;
+    private List<Dwelling> batchedDwellings;
+    private EnvironmentReference environment;
+    private double externalTemperature;
+
+    @Before
+    public void setUp() {
+        this.environment = mock(EnvironmentReference.class);
+        when(this.environment.getCurrentTemperature())
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(this.externalTemperature));
+        this.dwellings = new ArrayList<>();
+        this.batchedDwellings = new ArrayList<>();
+        for (int i = 0; i < NUMBER_DWELLINGS; i++) {
+            this.dwellings.add(this.createDwelling(i));
+            this.batchedDwellings.add(this.createDwelling(i));
+        }
+    }
+
+    private Dwelling createDwelling(int i) {
+        HeatingControlStrategyReference controlStrategy = mock(HeatingControlStrategyReference.class);
+        Optional<Double> setPoint = Double.isNaN(HEATING_SET_POINTS[i]) ?
+                Optional.empty() : Optional.of(HEATING_SET_POINTS[i]);
+        when(controlStrategy.heatingSetPoint(any(), any())).thenReturn(CompletableFuture.completedFuture(setPoint));
+        double floorArea = FLOOR_AREAS[i];
+        Dwelling dwelling = new Dwelling(165000 * floorArea, 2.5 * floorArea, floorArea,
+                3, 0.19, 0.26, 0.12, 0.40, 1.95,
+                0.91, 0.65, MAXIMUM_HEATING_POWERS[i],
+                INITIAL_DWELLING_TEMPERATURE, INITIAL_TIME, TIME_STEP_SIZE, controlStrategy, this.environment);
+        dwelling.enter(mock(PersonReference.class), Person.Activity.HOME, METABOLIC_HEAT_GAINS[i]);
+        return dwelling;
+    }
+
+    private double externalTemperature(int step) {
+        return 5 + 10 * Math.sin(step / 7.0);
+    }
+
+    @Test
+    public void isIdenticalToSteppingEachDwelling() throws ExecutionException, InterruptedException {
+        DwellingBatch batch = new DwellingBatch(this.batchedDwellings);
+        for (int step = 0; step < NUMBER_STEPS; step++) {
+            this.externalTemperature = this.externalTemperature(step);
+            for (Dwelling dwelling : this.dwellings) {
+                dwelling.step().get();
+            }
+            batch.step(this.externalTemperature, METABOLIC_HEAT_GAINS, HEATING_SET_POINTS);
+            for (int i = 0; i < NUMBER_DWELLINGS; i++) {
+                assertThat(batch.getAirTemperature(i), is(equalTo(this.dwellings.get(i).getCurrentAirTemperature())));
+                assertThat(batch.getThermalPower(i), is(equalTo(this.dwellings.get(i).getCurrentThermalPower())));
+            }
+        }
+    }
+
+    @Test
+    public void handsStateBackToDwellings() throws ExecutionException, InterruptedException {
+        DwellingBatch batch = new DwellingBatch(this.batchedDwellings);
+        for (int step = 0; step < NUMBER_STEPS; step++) {
+            this.externalTemperature = this.externalTemperature(step);
+            for (Dwelling dwelling : this.dwellings) {
+                dwelling.step().get();
+            }
+            batch.step(this.externalTemperature, METABOLIC_HEAT_GAINS, HEATING_SET_POINTS);
+        }
+        batch.writeBack();
+        this.externalTemperature = this.externalTemperature(NUMBER_STEPS);
+        for (int i = 0; i < NUMBER_DWELLINGS; i++) {
+            this.dwellings.get(i).step().get();
+            this.batchedDwellings.get(i).step().get();
+            assertThat(this.batchedDwellings.get(i).getCurrentAirTemperature(),
+                    is(equalTo(this.dwellings.get(i).getCurrentAirTemperature())));
+            assertThat(this.batchedDwellings.get(i).getCurrentThermalPower(),
+                    is(equalTo(this.dwellings.get(i).getCurrentThermalPower())));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInputsOfWrongSize() {
+        DwellingBatch batch = new DwellingBatch(this.batchedDwellings);
+        batch.step(10, new double[NUMBER_DWELLINGS - 1], HEATING_SET_POINTS);
+    }
+
+}
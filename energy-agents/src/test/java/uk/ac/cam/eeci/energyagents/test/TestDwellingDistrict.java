@@ -2,6 +2,7 @@ package uk.ac.cam.eeci.energyagents.test;
 
 import org.junit.Before;
 import org.junit.Test;
+import uk.ac.cam.eeci.energyagents.DistrictAccumulator;
 import uk.ac.cam.eeci.energyagents.Dwelling;
 import uk.ac.cam.eeci.energyagents.DwellingDistrict;
 import uk.ac.cam.eeci.energyagents.DwellingReference;
@@ -49,4 +50,8 @@ public class TestDwellingDistrict {
         assertThat(values.values(), containsInAnyOrder(INITIAL_THERMAL_POWER_1, INITIAL_THERMAL_POWER_2));
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void providesNoStatisticsWithoutAggregation() {
+        this.district.getAirTemperature(DistrictAccumulator.Statistic.MEAN);
+    }
 }
@@ -84,16 +84,14 @@ public class TestDwellingWithBrokenHVAC {
 
     @Test
     public void dwellingGetsWarmerThroughMetabolicHeatGains() throws ExecutionException, InterruptedException {
-        when(this.person.getCurrentMetabolicRate()).thenReturn(50.0);
-        this.dwelling.enter(new PersonReference(this.person));
+        this.dwelling.enter(new PersonReference(this.person), Person.Activity.HOME, 50.0);
         this.dwelling.step().get();
         assertThat(this.dwelling.getCurrentAirTemperature(), is(greaterThan(INITIAL_DWELLING_TEMPERATURE)));
     }
 
     @Test
     public void dwellingDoesNotGetWarmerWithZeroMetabolicHeatGain() throws ExecutionException, InterruptedException {
-        when(this.person.getCurrentMetabolicRate()).thenReturn(0.0);
-        this.dwelling.enter(new PersonReference(this.person));
+        this.dwelling.enter(new PersonReference(this.person), Person.Activity.HOME, 0.0);
         this.dwelling.step().get();
         assertThat(this.dwelling.getCurrentAirTemperature(), is(closeTo(INITIAL_DWELLING_TEMPERATURE, EPSILON)));
     }
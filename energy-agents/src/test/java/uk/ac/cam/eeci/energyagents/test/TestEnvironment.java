@@ -38,6 +38,18 @@ public class TestEnvironment {
         assertThat(this.environment.getCurrentTemperature(), is(equalTo(25.0)));
     }
 
+    @Test
+    public void returnsUpcomingTemperatures() {
+        assertThat(this.environment.getUpcomingTemperatures(1), is(equalTo(new double[]{25.0})));
+    }
+
+    @Test
+    public void returnsNoUpcomingTemperaturesBeyondTimeSeries() {
+        assertThat(this.environment.getUpcomingTemperatures(5), is(equalTo(new double[]{25.0})));
+        this.environment.step();
+        assertThat(this.environment.getUpcomingTemperatures(5).length, is(equalTo(0)));
+    }
+
     @Test(expected=IllegalArgumentException.class)
     public void validatesTimeStepSize() {
         new Environment(this.temperatureTimeSeries, Duration.ofHours(1));
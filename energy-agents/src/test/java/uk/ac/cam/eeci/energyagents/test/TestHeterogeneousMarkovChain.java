@@ -6,6 +6,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.time.*;
 import java.lang.IllegalArgumentException;
 
@@ -16,6 +21,7 @@ import java.util.*;
 
 import uk.ac.cam.eeci.energyagents.HeterogeneousMarkovChain;
 import uk.ac.cam.eeci.energyagents.HeterogeneousMarkovChain.MarkovChain;
+import uk.ac.cam.eeci.energyagents.RandomNumberGenerator;
 
 @RunWith(Parameterized.class)
 public class TestHeterogeneousMarkovChain {
@@ -23,7 +29,7 @@ public class TestHeterogeneousMarkovChain {
     private static final int NUMBER_EXECUTIONS = 1000;
     private static final long SEED = 24124123111L;
 
-    private Random randomNumberGenerator;
+    private RandomNumberGenerator randomNumberGenerator;
     private HeterogeneousMarkovChain<State> chain;
 
     private enum State {
@@ -63,7 +69,7 @@ public class TestHeterogeneousMarkovChain {
             weekendChain.put(tsp.toLocalTime(), new MarkovChain<>(spareTimeProbabilities));
             tsp = tsp.plus(Duration.ofMinutes(10));
         } while (date.equals(tsp.toLocalDate()));
-        this.randomNumberGenerator = new Random(SEED);
+        this.randomNumberGenerator = new Random(SEED)::nextDouble;
         this.chain = new HeterogeneousMarkovChain<>(weekdayChain, weekendChain, ZoneOffset.UTC);
     }
 
@@ -106,4 +112,46 @@ public class TestHeterogeneousMarkovChain {
         double frequency = this.frequency(this.startState, beforeWork, this.startState);
         assertThat(frequency, is(equalTo(0.0)));
     }
+
+    @Test
+    public void testDistinguishesWeekendFromWeekdaysOnAnyDate() {
+        for (LocalDate monday : Arrays.asList(LocalDate.of(1969, 12, 29), LocalDate.of(2017, 2, 6))) {
+            for (int day = 0; day < 7; day++) {
+                ZonedDateTime workTime = ZonedDateTime.of(monday.plusDays(day), LocalTime.of(10, 0), ZoneOffset.UTC);
+                double frequency = this.frequency(this.startState, workTime, this.startState);
+                assertThat(frequency, is(equalTo(day < 5 ? 1.0 : 0.0)));
+            }
+        }
+    }
+
+    @Test
+    public void testConvertsTimesOfOtherTimeZones() {
+        ZonedDateTime workTime = ZonedDateTime.of(2017, 2, 10, 5, 0, 0, 0, ZoneId.of("America/New_York"));
+        double frequency = this.frequency(this.startState, workTime, this.startState);
+        assertThat(frequency, is(equalTo(1.0)));
+    }
+
+    @Test
+    public void testMovesEquallyAfterBeingWrittenAndRead() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        this.chain.writeTo(new DataOutputStream(bytes), State::ordinal);
+        HeterogeneousMarkovChain<State> readChain = HeterogeneousMarkovChain.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), index -> State.values()[index]);
+        RandomNumberGenerator otherRandomNumberGenerator = new Random(SEED)::nextDouble;
+        ZonedDateTime dateTime = ZonedDateTime.of(2017, 2, 10, 0, 0, 0, 0, ZoneOffset.UTC);
+        for (int i = 0; i < NUMBER_EXECUTIONS; i++) {
+            assertThat(readChain.move(this.startState, dateTime, otherRandomNumberGenerator),
+                    is(equalTo(this.chain.move(this.startState, dateTime, this.randomNumberGenerator))));
+            dateTime = dateTime.plus(Duration.ofMinutes(10));
+        }
+    }
+
+    @Test(expected=IOException.class)
+    public void testFailsToReadTruncatedChain() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        this.chain.writeTo(new DataOutputStream(bytes), State::ordinal);
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2);
+        HeterogeneousMarkovChain.readFrom(new DataInputStream(new ByteArrayInputStream(truncated)),
+                index -> State.values()[index]);
+    }
 }
@@ -4,6 +4,7 @@ import org.javatuples.Pair;
 import org.junit.Before;
 import org.junit.Test;
 import uk.ac.cam.eeci.energyagents.HeterogeneousMarkovChain;
+import uk.ac.cam.eeci.energyagents.RandomNumberGenerator;
 
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
@@ -15,7 +16,7 @@ public class TestMarkovChain
     private int NUMBER_EXECUTIONS = 1000;
     private long SEED = 24124123111L;
 
-    private Random randomNumberGenerator;
+    private RandomNumberGenerator randomNumberGenerator;
     private HeterogeneousMarkovChain.MarkovChain<State> chain;
 
     private enum State {
@@ -24,7 +25,7 @@ public class TestMarkovChain
 
     @Before
     public void setUp() {
-        this.randomNumberGenerator = new Random(SEED);
+        this.randomNumberGenerator = new Random(SEED)::nextDouble;
         Map<Pair<State, State>, Double> probabilities = new HashMap<>();
         probabilities.put(new Pair<>(State.A, State.A), 0.50);
         probabilities.put(new Pair<>(State.A, State.B), 0.40);
@@ -72,17 +73,54 @@ public class TestMarkovChain
         assertThat(frequency, is(both(greaterThan(0.05)).and(lessThan(0.15))));
     }
 
+    @Test
+    public void testKnowsProbabilityToStay() {
+        assertThat(this.chain.probabilityToStay(State.A), is(closeTo(0.5, 0.0001)));
+        assertThat(this.chain.probabilityToStay(State.B), is(closeTo(1.0, 0.0001)));
+    }
+
+    @Test
+    public void testMovesAwayWithRenormalisedProbabilities() {
+        List<State> chosenStates = new ArrayList<>();
+        for (int i = 0; i < NUMBER_EXECUTIONS; i++) {
+            chosenStates.add(this.chain.moveAway(State.A, this.randomNumberGenerator));
+        }
+        double frequencyB = (double)chosenStates.stream().filter(state -> state == State.B).count() / NUMBER_EXECUTIONS;
+        assertThat(chosenStates, not(hasItem(State.A)));
+        assertThat(frequencyB, is(both(greaterThan(0.75)).and(lessThan(0.85))));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCannotMoveAwayFromAbsorbingState() {
+        this.chain.moveAway(State.B, this.randomNumberGenerator);
+    }
+
     @Test
     public void testIsDeterministic() {
         List<State> chosenStates = new ArrayList<>();
         for (int i = 0; i < NUMBER_EXECUTIONS; i++) {
-            this.randomNumberGenerator = new Random(SEED);
+            this.randomNumberGenerator = new Random(SEED)::nextDouble;
             chosenStates.add(this.chain.move(State.A, this.randomNumberGenerator));
         }
 
         assertThat(chosenStates.stream().distinct().count(), is(equalTo(1L)));
     }
 
+    @Test
+    public void testOrdersNextStatesByOrdinal() {
+        assertThat(this.chain.move(State.A, new FixedRandom(0.49)), is(equalTo(State.A)));
+        assertThat(this.chain.move(State.A, new FixedRandom(0.51)), is(equalTo(State.B)));
+        assertThat(this.chain.move(State.A, new FixedRandom(0.91)), is(equalTo(State.C)));
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testFailsForUnknownState() {
+        Map<Pair<State, State>, Double> probabilities = new HashMap<>();
+        probabilities.put(new Pair<>(State.A, State.A), 1.0);
+        this.chain = new HeterogeneousMarkovChain.MarkovChain<>(probabilities);
+        this.chain.move(State.B, this.randomNumberGenerator);
+    }
+
     @Test(expected=AssertionError.class)
     public void testFailsWithTotalProbabilityViolated() {
         Map<Pair<State, State>, Double> probabilities = new HashMap<>();
@@ -90,4 +128,17 @@ public class TestMarkovChain
         probabilities.put(new Pair<>(State.A, State.B), 0.05);
         this.chain = new HeterogeneousMarkovChain.MarkovChain<>(probabilities);
     }
+
+    private static class FixedRandom implements RandomNumberGenerator {
+        private final double value;
+
+        FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return this.value;
+        }
+    }
 }
@@ -5,6 +5,7 @@ import org.junit.Test;
 import uk.ac.cam.eeci.energyagents.MarkovChainReader;
 import uk.ac.cam.eeci.energyagents.HeterogeneousMarkovChain;
 import uk.ac.cam.eeci.energyagents.Person;
+import uk.ac.cam.eeci.energyagents.RandomNumberGenerator;
 
 import java.io.*;
 import java.time.*;
@@ -25,7 +26,7 @@ public class TestMarkovFromCSV {
     private final static Duration TIME_STEP_SIZE = Duration.ofMinutes(10);
     private final static ZonedDateTime MIDNIGHT_WEEKEND = ZonedDateTime.of(2017, 2, 11, 0, 0, 0, 0, TIME_ZONE);
     private final static ZonedDateTime MIDNIGHT_WEEKDAY = ZonedDateTime.of(2017, 2, 13, 0, 0, 0, 0, TIME_ZONE);
-    private Random randomNumberGenerator;
+    private RandomNumberGenerator randomNumberGenerator;
     private HeterogeneousMarkovChain<Person.Activity> markovChain;
 
     @Before
@@ -33,7 +34,7 @@ public class TestMarkovFromCSV {
         ClassLoader classloader = Thread.currentThread().getContextClassLoader();
         InputStream is = classloader.getResourceAsStream(CSV_FILE_NAME);
         Reader in = new InputStreamReader(is);
-        this.randomNumberGenerator = new Random(SEED);
+        this.randomNumberGenerator = new Random(SEED)::nextDouble;
         this.markovChain = MarkovChainReader.readMarkovChainFromFile(in, TIME_STEP_SIZE, TIME_ZONE);
     }
 
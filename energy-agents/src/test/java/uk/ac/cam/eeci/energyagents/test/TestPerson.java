@@ -12,6 +12,7 @@ import static org.mockito.Mockito.*;
 import org.junit.Test;
 import uk.ac.cam.eeci.energyagents.HeterogeneousMarkovChain;
 import uk.ac.cam.eeci.energyagents.Person;
+import uk.ac.cam.eeci.energyagents.RandomNumberGenerator;
 import uk.ac.cam.eeci.energyagents.DwellingReference;
 import uk.ac.cam.eeci.energyagents.Person.Activity;
 
@@ -23,7 +24,7 @@ public class TestPerson {
     private static final double ACTIVE_METABOLIC_RATE = 200;
     private static final double PASSIVE_METABOLIC_RATE = 50;
     private HeterogeneousMarkovChain<Activity> markovChain = mock(HeterogeneousMarkovChain.class);
-    private Random randomNumberGenerator = mock(Random.class);
+    private RandomNumberGenerator randomNumberGenerator = mock(RandomNumberGenerator.class);
     private DwellingReference home = mock(DwellingReference.class);
     private Person person;
 
@@ -63,7 +64,7 @@ public class TestPerson {
         when(this.markovChain.move(INITIAL_ACTIVITY, INITIAL_DATETIME, this.randomNumberGenerator))
                 .thenReturn(Activity.HOME);
         person.step();
-        verify(this.home).enter(any());
+        verify(this.home).enter(any(), eq(Activity.HOME), eq(ACTIVE_METABOLIC_RATE));
     }
 
     @Test
@@ -74,7 +75,18 @@ public class TestPerson {
         when(this.markovChain.move(INITIAL_ACTIVITY, INITIAL_DATETIME, this.randomNumberGenerator))
                 .thenReturn(Activity.SLEEP_AT_HOME);
         person.step();
-        verify(this.home, times(1)).enter(any());
+        verify(this.home, times(1)).enter(any(), any(), anyDouble());
+    }
+
+    @Test
+    public void testReportsChangedActivityToHome() {
+        when(this.markovChain.move(INITIAL_ACTIVITY, INITIAL_DATETIME, this.randomNumberGenerator))
+                .thenReturn(Activity.HOME);
+        person.step();
+        when(this.markovChain.move(Activity.HOME, INITIAL_DATETIME.plus(TIME_STEP_SIZE), this.randomNumberGenerator))
+                .thenReturn(Activity.SLEEP_AT_HOME);
+        person.step();
+        verify(this.home).changeActivity(any(), eq(Activity.SLEEP_AT_HOME), eq(PASSIVE_METABOLIC_RATE));
     }
 
     @Test
@@ -126,4 +138,37 @@ public class TestPerson {
         assertThat(this.person.getCurrentMetabolicRate(), is(equalTo(PASSIVE_METABOLIC_RATE)));
     }
 
+    @Test
+    public void samplesMaximumStepsWhenActivityNeverChanges() {
+        when(this.markovChain.probabilityToStay(any(), any())).thenReturn(1.0);
+        assertThat(this.person.sampleStepsUntilChange(10), is(equalTo(10)));
+    }
+
+    @Test
+    public void samplesNoUnchangedStepWhenActivityCannotRemain() {
+        when(this.markovChain.probabilityToStay(any(), any())).thenReturn(0.0);
+        assertThat(this.person.sampleStepsUntilChange(10), is(equalTo(0)));
+    }
+
+    @Test
+    public void samplesStepsUntilChangeGeometrically() {
+        Person person = new Person(this.markovChain, ACTIVE_METABOLIC_RATE, PASSIVE_METABOLIC_RATE,
+                INITIAL_ACTIVITY, INITIAL_DATETIME, TIME_STEP_SIZE, home, new Random(12345L)::nextDouble);
+        when(this.markovChain.probabilityToStay(any(), any())).thenReturn(0.75);
+        double summedSteps = 0;
+        for (int i = 0; i < 1000; i++) {
+            summedSteps += person.sampleStepsUntilChange(1000);
+        }
+        assertThat(summedSteps / 1000, is(closeTo(3.0, 0.3))); // mean of geometric distribution: p / (1 - p)
+    }
+
+    @Test
+    public void changesActivityAfterUnchangedSteps() {
+        when(this.markovChain.moveAway(INITIAL_ACTIVITY, INITIAL_DATETIME.plus(TIME_STEP_SIZE.multipliedBy(3)),
+                this.randomNumberGenerator)).thenReturn(Activity.HOME);
+        person.stepWithChange(3);
+        assertThat(person.getCurrentActivity(), is(equalTo(Activity.HOME)));
+        verify(this.home).enter(any(), eq(Activity.HOME), eq(ACTIVE_METABOLIC_RATE));
+    }
+
 }
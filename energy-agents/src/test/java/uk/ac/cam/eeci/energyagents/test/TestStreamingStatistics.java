@@ -0,0 +1,86 @@
+package uk.ac.cam.eeci.energyagents.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.energyagents.StreamingStatistics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TestStreamingStatistics {
+
+    private final static double EPSILON = 1e-9;
+
+    private StreamingStatistics statistics;
+
+    @Before
+    public void setUp() {
+        this.statistics = new StreamingStatistics(0.1, 0.5, 0.9);
+    }
+
+    @Test
+    public void isEmptyInitially() {
+        assertThat(this.statistics.getCount(), is(equalTo(0L)));
+        assertThat(this.statistics.getSum(), is(equalTo(0.0)));
+        assertTrue(Double.isNaN(this.statistics.getMean()));
+        assertTrue(Double.isNaN(this.statistics.getMin()));
+        assertTrue(Double.isNaN(this.statistics.getQuantile(0.5)));
+    }
+
+    @Test
+    public void keepsExactSummaries() {
+        for (double value : new double[]{3, -1, 7, 2}) {
+            this.statistics.add(value);
+        }
+        assertThat(this.statistics.getCount(), is(equalTo(4L)));
+        assertThat(this.statistics.getSum(), is(closeTo(11, EPSILON)));
+        assertThat(this.statistics.getMean(), is(closeTo(2.75, EPSILON)));
+        assertThat(this.statistics.getMin(), is(closeTo(-1, EPSILON)));
+        assertThat(this.statistics.getMax(), is(closeTo(7, EPSILON)));
+    }
+
+    @Test
+    public void hasExactQuantilesOfFewValues() {
+        for (double value : new double[]{5, 1, 4, 2, 3}) {
+            this.statistics.add(value);
+        }
+        assertThat(this.statistics.getQuantile(0.5), is(closeTo(3, EPSILON)));
+        assertThat(this.statistics.getQuantile(0.9), is(closeTo(4.6, EPSILON)));
+    }
+
+    @Test
+    public void estimatesQuantilesOfManyValues() {
+        Random random = new Random(42);
+        double[] values = new double[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 20 + 3 * random.nextGaussian();
+            this.statistics.add(values[i]);
+        }
+        Arrays.sort(values);
+        for (double probability : new double[]{0.1, 0.5, 0.9}) {
+            double exact = values[(int) (probability * values.length)];
+            assertThat(this.statistics.getQuantile(probability), is(closeTo(exact, 0.1)));
+        }
+    }
+
+    @Test
+    public void forgetsValuesOnReset() {
+        for (int i = 0; i < 10; i++) {
+            this.statistics.add(i);
+        }
+        this.statistics.reset();
+        this.statistics.add(42);
+        assertThat(this.statistics.getCount(), is(equalTo(1L)));
+        assertThat(this.statistics.getMin(), is(closeTo(42, EPSILON)));
+        assertThat(this.statistics.getQuantile(0.1), is(closeTo(42, EPSILON)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsQuantileThatIsNotEstimated() {
+        this.statistics.getQuantile(0.25);
+    }
+}
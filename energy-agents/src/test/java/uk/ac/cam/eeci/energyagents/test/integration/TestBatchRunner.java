@@ -0,0 +1,133 @@
+package uk.ac.cam.eeci.energyagents.test.integration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import uk.ac.cam.eeci.energyagents.BatchRunner;
+import uk.ac.cam.eeci.energyagents.CitySimulation;
+import uk.ac.cam.eeci.energyagents.ScenarioBuilder;
+import uk.ac.cam.eeci.energyagents.test.utils.Utils;
+import uk.ac.cam.eeci.framework.Conductor;
+import uk.ac.cam.eeci.framework.SimulationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+@Category(IntegrationTest.class)
+public class TestBatchRunner {
+
+    private final static String INPUT_PATH = "test-scenario.db";
+    private final static int NUMBER_RUNS = 3;
+
+    private Path directory;
+    private File inputFile;
+
+    @Before
+    public void setUp() throws IOException {
+        Utils.resetScienceOS();
+        this.directory = Files.createTempDirectory("energy-agents-test-batch");
+        this.inputFile = this.directory.resolve("input.db").toFile();
+        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+        Path src = FileSystems.getDefault().getPath(classloader.getResource(INPUT_PATH).getPath());
+        Files.copy(src, this.inputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Utils.resetScienceOS();
+        File[] files = this.directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.deleteOnExit();
+            }
+        }
+        this.directory.toFile().deleteOnExit();
+    }
+
+    private File writeManifest(String... lines) throws IOException {
+        Path manifest = this.directory.resolve("manifest.csv");
+        Files.write(manifest, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return manifest.toFile();
+    }
+
+    @Test
+    public void readsRelativePathsOfManifest() throws IOException {
+        File manifest = this.writeManifest("# input, output", "", "input.db, output.db");
+        List<BatchRunner.Run> runs = BatchRunner.readManifest(manifest);
+
+        assertThat(runs, hasSize(1));
+        assertThat(new File(runs.get(0).getInputPath()), is(equalTo(this.inputFile.getAbsoluteFile())));
+        assertThat(new File(runs.get(0).getOutputPath()),
+                is(equalTo(this.directory.resolve("output.db").toFile().getAbsoluteFile())));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMalformedManifest() throws IOException {
+        BatchRunner.readManifest(this.writeManifest("input.db"));
+    }
+
+    @Test
+    public void concurrentRunsEqualSingleRun() throws IOException, InterruptedException, SQLException {
+        String referenceOutput = this.directory.resolve("reference.db").toString();
+        new Conductor(ScenarioBuilder.readScenario(this.inputFile.getPath(), referenceOutput)).run();
+        Utils.resetScienceOS();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < NUMBER_RUNS; i++) {
+            lines.add(String.format("input.db,output%d.db", i));
+        }
+
+        List<BatchRunner.Run> failedRuns = new BatchRunner(
+                BatchRunner.readManifest(this.writeManifest(lines.toArray(new String[0]))),
+                2,
+                citySimulation -> citySimulation.setExecutionMode(CitySimulation.ExecutionMode.FUTURES, 1)
+        ).run();
+
+        assertThat(failedRuns, is(empty()));
+        assertThat(SimulationContext.getDefault().getPool().mainExecutor().isShutdown(), is(false));
+        List<List<Object>> reference = this.readTemperatures(referenceOutput);
+        for (int i = 0; i < NUMBER_RUNS; i++) {
+            String output = this.directory.resolve(String.format("output%d.db", i)).toString();
+            assertThat(this.readTemperatures(output), is(equalTo(reference)));
+        }
+    }
+
+    @Test
+    public void failingRunDoesNotAbortBatch() throws IOException, InterruptedException {
+        List<BatchRunner.Run> failedRuns = new BatchRunner(
+                BatchRunner.readManifest(this.writeManifest("missing.db,output0.db", "input.db,output1.db")),
+                1,
+                citySimulation -> {}
+        ).run();
+
+        assertThat(failedRuns, hasSize(1));
+        assertThat(failedRuns.get(0).getInputPath(), endsWith("missing.db"));
+        assertThat(this.directory.resolve("output1.db").toFile().isFile(), is(true));
+    }
+
+    private List<List<Object>> readTemperatures(String outputPath) throws SQLException {
+        List<List<Object>> rows = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", outputPath));
+             Statement stat = conn.createStatement();
+             ResultSet rs = stat.executeQuery("select * from temperature order by 1, 2;")) {
+            int numberColumns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                List<Object> row = new ArrayList<>();
+                for (int i = 1; i <= numberColumns; i++) {
+                    row.add(rs.getObject(i));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
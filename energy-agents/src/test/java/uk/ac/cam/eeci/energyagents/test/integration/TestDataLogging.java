@@ -44,6 +44,8 @@ public class TestDataLogging {
     private File tempFile;
     private List<ZonedDateTime> timeIndex;
     private List<ZonedDateTime> timeIndexInUTC;
+    private List<DwellingReference> dwellingReferences;
+    private List<PersonReference> peopleReferences;
 
 
     @Before
@@ -89,22 +91,37 @@ public class TestDataLogging {
                 (PersonReference::getCurrentActivity)
         );
         this.tempFile = File.createTempFile("energy-agents", ".db");
+        this.dwellingReferences = dwellingReferences;
+        this.peopleReferences = peopleReferences;
+        this.conductor = this.createConductor(0);
+    }
+
+    private Conductor createConductor(int flushInterval) throws IOException {
+        return new Conductor(this.createCitySimulation(flushInterval));
+    }
+
+    private CitySimulation createCitySimulation(int flushInterval) throws IOException {
+        return this.createCitySimulation(flushInterval, this.tempFile.getCanonicalPath());
+    }
+
+    private CitySimulation createCitySimulation(int flushInterval, String outputPath) {
         DataLoggerReference dataLoggerReference = new DataLoggerReference(new DataLogger(
                 Stream.of(this.temperatureDataPoint, this.activityDataPoint, this.thermalPowerDataPoint)
                         .map(DataPointReference::new)
                         .collect(Collectors.toList()),
                 null,
-                this.tempFile.getCanonicalPath()
+                outputPath,
+                flushInterval
         ));
 
-        this.conductor = new Conductor(new CitySimulation(dwellingReferences,
-                new HashSet<>(peopleReferences),
+        return new CitySimulation(this.dwellingReferences,
+                new HashSet<>(this.peopleReferences),
                 new EnvironmentReference(this.environment),
                 dataLoggerReference,
                 INITIAL_TIME,
                 TIME_STEP_SIZE,
                 NUMBER_STEPS) {
-        });
+        };
     }
 
     @After
@@ -189,6 +206,60 @@ public class TestDataLogging {
         assertThat(values.get(1).getIndex(), is(equalTo(this.timeIndexInUTC)));
     }
 
+    @Test
+    public void writesTemperatureToDatabaseWhileRunning() throws IOException, SQLException, ClassNotFoundException {
+        this.conductor = this.createConductor(2);
+        this.conductor.run();
+        String filename = this.tempFile.getCanonicalPath();
+
+        Class.forName("org.sqlite.JDBC");
+        Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", filename));
+        Statement stat = conn.createStatement();
+
+        Map<Integer, TimeSeries<Double>> values = new HashMap<>();
+        values.put(0, new TimeSeries<>());
+        values.put(1, new TimeSeries<>());
+        ResultSet rs = stat.executeQuery(String.format("select * from %s order by timestamp;",
+                this.temperatureDataPoint.getName()));
+        while (rs.next()) {
+            values
+                    .get(rs.getInt(2))
+                    .add(Instant.ofEpochMilli(rs.getLong(1)).atZone(ZoneOffset.UTC), rs.getDouble(3));
+        }
+        rs.close();
+        conn.close();
+
+        assertThat(values.get(0).getValues(), (Every.everyItem(is(equalTo(20.0)))));
+        assertThat(values.get(1).getValues(), (Every.everyItem(is(equalTo(30.0)))));
+
+        assertThat(values.get(0).getIndex(), is(equalTo(this.timeIndexInUTC)));
+        assertThat(values.get(1).getIndex(), is(equalTo(this.timeIndexInUTC)));
+    }
+
+    @Test
+    public void failsWhenWritingWhileRunningFails() throws IOException {
+        String unwritablePath = new File(this.tempFile.getCanonicalPath() + "-missing", "output.db").getPath();
+        this.conductor = new Conductor(this.createCitySimulation(2, unwritablePath));
+        this.conductor.run();
+        assertThat(this.conductor.getFailure().isPresent(), is(true));
+    }
+
+    @Test
+    public void failsWhenWritingAtTheEndFails() throws IOException {
+        String unwritablePath = new File(this.tempFile.getCanonicalPath() + "-missing", "output.db").getPath();
+        this.conductor = new Conductor(this.createCitySimulation(0, unwritablePath));
+        this.conductor.run();
+        assertThat(this.conductor.getFailure().isPresent(), is(true));
+    }
+
+    @Test
+    public void keepsNoRecordInMemoryWhenWritingWhileRunning() throws IOException {
+        this.conductor = this.createConductor(2);
+        this.conductor.run();
+        Map<Integer, TimeSeries<Double>> temperatures = this.temperatureDataPoint.getRecord();
+        assertThat(temperatures.get(0).size(), is(equalTo(0)));
+    }
+
     @Test
     public void writesThermalPowerToDatabase() throws IOException, SQLException, ClassNotFoundException {
         this.conductor.run();
@@ -272,4 +343,41 @@ public class TestDataLogging {
                 CitySimulation.METADATA_KEY_MODEL_VERSION
         ));
     }
+
+    @Test
+    public void writesNoPerformanceTableByDefault() throws IOException, SQLException {
+        this.conductor.run();
+
+        try (Connection conn = DriverManager.getConnection(
+                String.format("jdbc:sqlite:%s", this.tempFile.getCanonicalPath()));
+             ResultSet rs = conn.getMetaData().getTables(null, null, DataLogger.PERFORMANCE_TABLE_NAME, null)) {
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void writesPerformanceMetricsToDatabase() throws IOException, SQLException {
+        CitySimulation citySimulation = this.createCitySimulation(2);
+        citySimulation.setMetricsEnabled(true);
+        new Conductor(citySimulation).run();
+
+        Map<String, Double> performance = new HashMap<>();
+        try (Connection conn = DriverManager.getConnection(
+                String.format("jdbc:sqlite:%s", this.tempFile.getCanonicalPath()));
+             Statement stat = conn.createStatement();
+             ResultSet rs = stat.executeQuery(
+                     String.format("select * from %s;", DataLogger.PERFORMANCE_TABLE_NAME))) {
+            while (rs.next()) {
+                performance.put(rs.getString(1), rs.getDouble(2));
+            }
+        }
+        assertThat(performance, hasEntry("steps", (double) NUMBER_STEPS));
+        assertThat(performance, hasKey("stepsPerSecond"));
+        assertThat(performance, hasKey("asynchronousCallsPerStep"));
+        for (SimulationMetrics.Phase phase : SimulationMetrics.Phase.values()) {
+            assertThat(performance, hasKey(String.format("%s.p99Millis", phase.name().toLowerCase())));
+        }
+        assertThat(citySimulation.getMetrics().get().getLatencies(SimulationMetrics.Phase.PEOPLE).getCount(),
+                is(equalTo((long) NUMBER_STEPS)));
+    }
 }
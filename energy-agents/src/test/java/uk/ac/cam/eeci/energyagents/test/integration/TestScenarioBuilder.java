@@ -9,6 +9,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import uk.ac.cam.eeci.energyagents.CitySimulation;
+import uk.ac.cam.eeci.energyagents.DoubleDataPoint;
+import uk.ac.cam.eeci.energyagents.MarkovChainCache;
 import uk.ac.cam.eeci.energyagents.ScenarioBuilder;
 import uk.ac.cam.eeci.energyagents.TimeSeries;
 import uk.ac.cam.eeci.energyagents.test.utils.Utils;
@@ -86,6 +88,7 @@ public class TestScenarioBuilder {
     @After
     public void tearDown() {
         this.tempOutPutFile.deleteOnExit();
+        MarkovChainCache.snapshotFileOf(this.tempInputFile.getPath()).deleteOnExit();
     }
 
     private void demandAggregatedResults() throws IOException, ClassNotFoundException, SQLException {
@@ -98,12 +101,94 @@ public class TestScenarioBuilder {
         conn.close();
     }
 
+    private void demandThermalPower() throws IOException, SQLException {
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", this.tempInputFile.getCanonicalPath()))) {
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate(String.format("update %s set %s = 1;", ScenarioBuilder.SQL_TABLES_PARAMETERS,
+                        ScenarioBuilder.SQL_COLUMNS_PAR_LOG_THERMAL_POWER));
+            }
+        }
+    }
+
+    private void demandAggregatedStatistics(String statistics) throws IOException, SQLException {
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", this.tempInputFile.getCanonicalPath()))) {
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate(String.format("alter table %s add column %s TEXT;",
+                        ScenarioBuilder.SQL_TABLES_PARAMETERS, ScenarioBuilder.SQL_COLUMNS_PAR_LOG_AGGREGATED_STATISTICS));
+                stat.executeUpdate(String.format("update %s set %s = '%s';", ScenarioBuilder.SQL_TABLES_PARAMETERS,
+                        ScenarioBuilder.SQL_COLUMNS_PAR_LOG_AGGREGATED_STATISTICS, statistics));
+            }
+        }
+    }
+
+    private void demandTemperatureReduction(int interval, String reduction)
+            throws IOException, SQLException {
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", this.tempInputFile.getCanonicalPath()))) {
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate(String.format("alter table %s add column %s INTEGER;",
+                        ScenarioBuilder.SQL_TABLES_PARAMETERS, ScenarioBuilder.SQL_COLUMNS_PAR_LOG_TEMPERATURE_INTERVAL));
+                stat.executeUpdate(String.format("alter table %s add column %s TEXT;",
+                        ScenarioBuilder.SQL_TABLES_PARAMETERS, ScenarioBuilder.SQL_COLUMNS_PAR_LOG_TEMPERATURE_REDUCTION));
+                stat.executeUpdate(String.format("update %s set %s = %d, %s = '%s';", ScenarioBuilder.SQL_TABLES_PARAMETERS,
+                        ScenarioBuilder.SQL_COLUMNS_PAR_LOG_TEMPERATURE_INTERVAL, interval,
+                        ScenarioBuilder.SQL_COLUMNS_PAR_LOG_TEMPERATURE_REDUCTION, reduction));
+            }
+        }
+    }
+
+    private void demandMarkovChainSnapshot() throws IOException, SQLException {
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", this.tempInputFile.getCanonicalPath()))) {
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate(String.format("alter table %s add column %s BOOLEAN;",
+                        ScenarioBuilder.SQL_TABLES_PARAMETERS, ScenarioBuilder.SQL_COLUMNS_PAR_MARKOV_CHAIN_SNAPSHOT));
+                stat.executeUpdate(String.format("update %s set %s = 1;", ScenarioBuilder.SQL_TABLES_PARAMETERS,
+                        ScenarioBuilder.SQL_COLUMNS_PAR_MARKOV_CHAIN_SNAPSHOT));
+            }
+        }
+    }
+
+    private void copyFirstMarkovChainIntoOthers() throws IOException, SQLException {
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", this.tempInputFile.getCanonicalPath()))) {
+            List<String> tableNames = new ArrayList<>();
+            try (Statement stat = conn.createStatement();
+                 ResultSet rs = stat.executeQuery(String.format("select %s from %s order by \"%s\";",
+                         ScenarioBuilder.SQL_COLUMNS_MARKOVS_TABLENAME, ScenarioBuilder.SQL_TABLES_MARKOV_CHAINS,
+                         ScenarioBuilder.SQL_COLUMNS_MARKOVS_INDEX))) {
+                while (rs.next()) {
+                    tableNames.add(rs.getString(1));
+                }
+            }
+            try (Statement stat = conn.createStatement()) {
+                for (String tableName : tableNames.subList(1, tableNames.size())) {
+                    stat.executeUpdate(String.format("delete from %s;", tableName));
+                    stat.executeUpdate(String.format("insert into %s select * from %s;", tableName, tableNames.get(0)));
+                }
+            }
+        }
+    }
+
+    private void demandRandomNumberGenerator(String generator) throws IOException, SQLException {
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", this.tempInputFile.getCanonicalPath()))) {
+            try (Statement stat = conn.createStatement()) {
+                stat.executeUpdate(String.format("alter table %s add column %s TEXT;",
+                        ScenarioBuilder.SQL_TABLES_PARAMETERS, ScenarioBuilder.SQL_COLUMNS_PAR_RANDOM_NUMBER_GENERATOR));
+                stat.executeUpdate(String.format("update %s set %s = '%s';", ScenarioBuilder.SQL_TABLES_PARAMETERS,
+                        ScenarioBuilder.SQL_COLUMNS_PAR_RANDOM_NUMBER_GENERATOR, generator));
+            }
+        }
+    }
 
     @Test(expected = IOException.class)
     public void throwsIOExceptionWhenInputFileDoesNotExist() throws IOException {
         ScenarioBuilder.readScenario(this.tempInputFile.getPath() + "invalid", this.tempOutPutFile.getCanonicalPath());
     }
 
+    @Test(expected = IOException.class)
+    public void throwsIOExceptionForUnknownRandomNumberGenerator() throws IOException, SQLException {
+        this.demandRandomNumberGenerator("MERSENNE_TWISTER");
+        ScenarioBuilder.readScenario(this.tempInputFile.getPath(), this.tempOutPutFile.getCanonicalPath());
+    }
+
     @Test
     public void resultContainsValidTemperatureRecord() throws ClassNotFoundException, SQLException, IOException {
         this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), this.tempOutPutFile.getCanonicalPath());
@@ -188,6 +273,259 @@ public class TestScenarioBuilder {
         assertThat(temperatureTimeSeries1, is(equalTo(temperatureTimeSeries2)));
     }
 
+    @Test
+    public void resultsOfBarrierModeEqualResultsOfFuturesMode() throws IOException, SQLException, ClassNotFoundException {
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries1 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries1 = readTemperatureRecordFromDB();
+
+        Utils.resetScienceOS();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        this.citySimulation.setExecutionMode(CitySimulation.ExecutionMode.BARRIER, 3);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries2 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries2 = readTemperatureRecordFromDB();
+
+        assertThat(activityTimeSeries1, is(equalTo(activityTimeSeries2)));
+        assertThat(temperatureTimeSeries1, is(equalTo(temperatureTimeSeries2)));
+    }
+
+    @Test
+    public void resultsOfBatchedDwellingsEqualResultsOfFuturesMode() throws IOException, SQLException, ClassNotFoundException {
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries1 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries1 = readTemperatureRecordFromDB();
+
+        Utils.resetScienceOS();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        this.citySimulation.setExecutionMode(CitySimulation.ExecutionMode.BARRIER, 3);
+        this.citySimulation.setBatchedDwellings(true);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries2 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries2 = readTemperatureRecordFromDB();
+
+        assertThat(activityTimeSeries1, is(equalTo(activityTimeSeries2)));
+        assertThat(temperatureTimeSeries1, is(equalTo(temperatureTimeSeries2)));
+    }
+
+    @Test
+    public void eventDrivenResultsAreReproducibleInBothExecutionModes()
+            throws IOException, SQLException, ClassNotFoundException {
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        this.citySimulation.setEventDriven(true);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries1 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries1 = readTemperatureRecordFromDB();
+
+        Utils.resetScienceOS();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        this.citySimulation.setExecutionMode(CitySimulation.ExecutionMode.BARRIER, 3);
+        this.citySimulation.setEventDriven(true);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries2 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries2 = readTemperatureRecordFromDB();
+
+        assertThat(activityTimeSeries1, is(equalTo(activityTimeSeries2)));
+        assertThat(temperatureTimeSeries1, is(equalTo(temperatureTimeSeries2)));
+    }
+
+    @Test
+    public void counterBasedResultsAreIndependentOfExecutionMode()
+            throws IOException, SQLException, ClassNotFoundException {
+        this.demandRandomNumberGenerator(ScenarioBuilder.RandomNumberGeneratorType.COUNTER_BASED.name());
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries1 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries1 = readTemperatureRecordFromDB();
+
+        Utils.resetScienceOS();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        this.citySimulation.setExecutionMode(CitySimulation.ExecutionMode.BARRIER, 3);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries2 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries2 = readTemperatureRecordFromDB();
+
+        assertThat(activityTimeSeries1, is(equalTo(activityTimeSeries2)));
+        assertThat(temperatureTimeSeries1, is(equalTo(temperatureTimeSeries2)));
+    }
+
+    @Test
+    public void rebalancingDoesNotChangeResults() throws IOException, SQLException, ClassNotFoundException {
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries1 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries1 = readTemperatureRecordFromDB();
+
+        Utils.resetScienceOS();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        this.citySimulation.setRebalancing(2);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries2 = readActivityRecordFromDB();
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries2 = readTemperatureRecordFromDB();
+
+        assertThat(activityTimeSeries1, is(equalTo(activityTimeSeries2)));
+        assertThat(temperatureTimeSeries1, is(equalTo(temperatureTimeSeries2)));
+    }
+
+    @Test
+    public void resultsAreReproducibleFromMarkovChainSnapshot() throws IOException, SQLException, ClassNotFoundException {
+        this.demandMarkovChainSnapshot();
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+
+        assertThat(MarkovChainCache.snapshotFileOf(this.tempInputFile.getPath()).isFile(), is(true));
+        Map<Integer, TimeSeries<String>> activityTimeSeries1 = readActivityRecordFromDB();
+
+        // ... and run again from the snapshot only
+        Utils.resetScienceOS();
+        MarkovChainCache.SHARED.clear();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<String>> activityTimeSeries2 = readActivityRecordFromDB();
+
+        assertThat(MarkovChainCache.SHARED.size(), is(greaterThan(0)));
+        assertThat(activityTimeSeries1, is(equalTo(activityTimeSeries2)));
+    }
+
+    @Test
+    public void snapshotIsNotUsedForChangedMarkovChains() throws IOException, SQLException, ClassNotFoundException {
+        this.demandMarkovChainSnapshot();
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+        long lastModified = this.tempInputFile.lastModified();
+        this.copyFirstMarkovChainIntoOthers();
+        assertThat(this.tempInputFile.setLastModified(lastModified), is(true)); // changes must be found nonetheless
+
+        // run from the outdated snapshot ...
+        Utils.resetScienceOS();
+        MarkovChainCache.SHARED.clear();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+        Map<Integer, TimeSeries<String>> activityTimeSeries1 = readActivityRecordFromDB();
+
+        // ... and without any snapshot
+        Utils.resetScienceOS();
+        MarkovChainCache.SHARED.clear();
+        assertThat(MarkovChainCache.snapshotFileOf(this.tempInputFile.getPath()).delete(), is(true));
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+        Map<Integer, TimeSeries<String>> activityTimeSeries2 = readActivityRecordFromDB();
+
+        assertThat(activityTimeSeries1, is(equalTo(activityTimeSeries2)));
+    }
+
+    @Test
+    public void corruptedSnapshotIsNotUsed() throws IOException, SQLException, ClassNotFoundException {
+        this.demandMarkovChainSnapshot();
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+        Map<Integer, TimeSeries<String>> activityTimeSeries1 = readActivityRecordFromDB();
+        File snapshotFile = MarkovChainCache.snapshotFileOf(this.tempInputFile.getPath());
+        try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+            long position = file.length() / 2;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0xff);
+        }
+
+        // run from the corrupted snapshot
+        Utils.resetScienceOS();
+        MarkovChainCache.SHARED.clear();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+        Map<Integer, TimeSeries<String>> activityTimeSeries2 = readActivityRecordFromDB();
+
+        assertThat(activityTimeSeries1, is(equalTo(activityTimeSeries2)));
+    }
+
+    @Test
+    public void aggregatedStatisticsExistWhenDemanded() throws IOException, SQLException, ClassNotFoundException {
+        this.demandAggregatedResults();
+        this.demandAggregatedStatistics("MEAN, MAX");
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+
+        assertThat(getTableNames(outputPath), hasItems(ScenarioBuilder.AVERAGE_TEMPERATURE_DATA_POINT_NAME,
+                "maxTemperature"));
+        try (Connection conn = DriverManager.getConnection(String.format("jdbc:sqlite:%s", outputPath));
+             Statement stat = conn.createStatement();
+             ResultSet rs = stat.executeQuery(String.format("select count(*), sum(m.value < a.value) from %s a " +
+                     "join maxTemperature m on a.id = m.id and a.timestamp = m.timestamp;",
+                     ScenarioBuilder.AVERAGE_TEMPERATURE_DATA_POINT_NAME))) {
+            assertThat(rs.getInt(1), is(equalTo(NUMBER_DISTRICTS * NUMBER_TIME_STEPS)));
+            assertThat(rs.getInt(2), is(equalTo(0)));
+        }
+    }
+
+    @Test
+    public void numberOfHeatedDwellingsExistsOnlyWhenStatisticsDemanded()
+            throws IOException, SQLException, ClassNotFoundException {
+        this.demandAggregatedResults();
+        this.demandThermalPower();
+        String outputPath = this.tempOutPutFile.getCanonicalPath();
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+        assertThat(getTableNames(outputPath), not(hasItem(ScenarioBuilder.NUMBER_HEATED_DWELLINGS_DATA_POINT_NAME)));
+
+        Utils.resetScienceOS();
+        this.demandAggregatedStatistics("MEAN");
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), outputPath);
+        new Conductor(this.citySimulation).run();
+        assertThat(getTableNames(outputPath), hasItem(ScenarioBuilder.NUMBER_HEATED_DWELLINGS_DATA_POINT_NAME));
+    }
+
+    @Test(expected = IOException.class)
+    public void throwsIOExceptionForUnknownStatistic() throws IOException, SQLException, ClassNotFoundException {
+        this.demandAggregatedResults();
+        this.demandAggregatedStatistics("MEAN, MODE");
+        ScenarioBuilder.readScenario(this.tempInputFile.getPath(), this.tempOutPutFile.getCanonicalPath());
+    }
+
+    @Test
+    public void temperatureRecordIsReducedOverDemandedInterval() throws IOException, SQLException, ClassNotFoundException {
+        int interval = 2;
+        this.demandTemperatureReduction(interval, DoubleDataPoint.Reduction.MAX.name());
+        this.citySimulation = ScenarioBuilder.readScenario(this.tempInputFile.getPath(), this.tempOutPutFile.getCanonicalPath());
+        new Conductor(this.citySimulation).run();
+
+        Map<Integer, TimeSeries<Double>> temperatureTimeSeries = readTemperatureRecordFromDB();
+
+        assertThat(temperatureTimeSeries.size(), is(equalTo(NUMBER_DWELLINGS)));
+        for (TimeSeries<Double> timeSeries : temperatureTimeSeries.values()) {
+            assertThat(timeSeries.size(), is(equalTo(NUMBER_TIME_STEPS / interval)));
+            assertThat(timeSeries.getIndex().get(0), is(equalTo(TIME_INDEX[interval - 1])));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void throwsIOExceptionForUnknownReduction() throws IOException, SQLException {
+        this.demandTemperatureReduction(2, "MEDIAN");
+        ScenarioBuilder.readScenario(this.tempInputFile.getPath(), this.tempOutPutFile.getCanonicalPath());
+    }
+
     @Test
     public void temperatureAverageExistsWhenAggregatedResultsDemanded() throws IOException, SQLException, ClassNotFoundException {
         this.demandAggregatedResults();
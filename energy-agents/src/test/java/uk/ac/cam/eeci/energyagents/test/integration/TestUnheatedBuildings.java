@@ -94,7 +94,7 @@ public class TestUnheatedBuildings {
             int dwellingReference = randomNumberGenerator.nextInt(dwellings.size());
             Person p = new Person(MarkovChainReader.readMarkovChainFromFile(in, TIME_STEP_SIZE, TIME_ZONE),
                     ACTIVE_METABOLIC_RATE, PASSIVE_METABOLIC_RATE, Person.Activity.NOT_AT_HOME, INITIAL_TIME,
-                    TIME_STEP_SIZE, this.dwellingReferences.get(dwellingReference), new Random(SEED));
+                    TIME_STEP_SIZE, this.dwellingReferences.get(dwellingReference), new Random(SEED)::nextDouble);
             PersonReference pRef = new PersonReference(p);
             people.add(pRef);
         }
@@ -2,6 +2,7 @@ package uk.ac.cam.eeci.energyagents.test.strategy;
 
 import org.junit.Before;
 import org.junit.runners.Parameterized;
+import uk.ac.cam.eeci.energyagents.Occupancy;
 import uk.ac.cam.eeci.energyagents.Person;
 import uk.ac.cam.eeci.energyagents.PersonReference;
 import uk.ac.cam.eeci.energyagents.test.utils.Utils;
@@ -10,12 +11,8 @@ import uk.ac.cam.eeci.energyagents.HeatingControlStrategy;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 public class StrategyTestBase {
 
@@ -28,7 +25,7 @@ public class StrategyTestBase {
     HeatingControlStrategy strategy;
     PersonReference person1 = mock(PersonReference.class);
     PersonReference person2 = mock(PersonReference.class);
-    Set<PersonReference> people;
+    Occupancy people;
 
 
     @Parameterized.Parameters
@@ -49,14 +46,8 @@ public class StrategyTestBase {
 
     @Before
     public void setUp() {
-        this.people = new HashSet<>();
-        this.people.add(person1);
-        this.people.add(person2);
-        CompletableFuture<Person.Activity> activityPerson1 = new CompletableFuture<>();
-        CompletableFuture<Person.Activity> activityPerson2 = new CompletableFuture<>();
-        activityPerson1.complete(this.activityPerson1);
-        activityPerson2.complete(this.activityPerson2);
-        when(this.person1.getCurrentActivity()).thenReturn(activityPerson1);
-        when(this.person2.getCurrentActivity()).thenReturn(activityPerson2);
+        this.people = new Occupancy();
+        this.people.enter(person1, this.activityPerson1, 100.0);
+        this.people.enter(person2, this.activityPerson2, 100.0);
     }
 }
@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import uk.ac.cam.eeci.energyagents.Occupancy;
 import uk.ac.cam.eeci.energyagents.strategy.ClimateChangingControlStrategy;
 
 import static org.junit.Assert.*;
@@ -27,7 +28,7 @@ public class TestClimateChangingControlStrategy extends StrategyTestBase {
 
     @Test
     public void returnsConstantHeatingSetPointWhenEmpty() throws ExecutionException, InterruptedException {
-        double heatingSetPoint = this.strategy.heatingSetPoint(this.timeStamp, new HashSet<>()).get().get();
+        double heatingSetPoint = this.strategy.heatingSetPoint(this.timeStamp, new Occupancy()).get().get();
         assertThat(heatingSetPoint, is(closeTo(HEATING_SET_POINT, EPSILON)));
     }
 
@@ -4,9 +4,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import uk.ac.cam.eeci.energyagents.HeatingControlStrategy;
+import uk.ac.cam.eeci.energyagents.Occupancy;
 import uk.ac.cam.eeci.energyagents.strategy.NoHeatingStrategy;
 
-import java.util.HashSet;
+import java.time.ZonedDateTime;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
@@ -25,7 +27,7 @@ public class TestNoHeatingControlStrategy extends StrategyTestBase {
 
     @Test
     public void returnsNoHeatingSetPointWhenEmpty() throws ExecutionException, InterruptedException {
-        Optional<Double> heatingSetPoint = this.strategy.heatingSetPoint(this.timeStamp, new HashSet<>()).get();
+        Optional<Double> heatingSetPoint = this.strategy.heatingSetPoint(this.timeStamp, new Occupancy()).get();
         assertThat(heatingSetPoint.isPresent(), is(equalTo(false)));
     }
 
@@ -35,4 +37,10 @@ public class TestNoHeatingControlStrategy extends StrategyTestBase {
         assertThat(heatingSetPoint.isPresent(), is(equalTo(false)));
     }
 
+    @Test
+    public void heatingStaysOffForever() throws ExecutionException, InterruptedException {
+        Optional<ZonedDateTime> heatingOffUntil = this.strategy.heatingOffUntil(this.timeStamp, this.people).get();
+        assertThat(heatingOffUntil, is(equalTo(Optional.of(HeatingControlStrategy.FOREVER))));
+    }
+
 }
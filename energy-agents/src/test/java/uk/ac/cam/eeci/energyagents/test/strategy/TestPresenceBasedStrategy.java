@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import uk.ac.cam.eeci.energyagents.Occupancy;
 import uk.ac.cam.eeci.energyagents.Person;
 import uk.ac.cam.eeci.energyagents.HeatingControlStrategy;
 import uk.ac.cam.eeci.energyagents.PersonReference;
@@ -12,16 +13,13 @@ import uk.ac.cam.eeci.energyagents.strategy.PresenceBasedStrategy;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.CompletableFuture;
+import java.util.Optional;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.*;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 import static uk.ac.cam.eeci.energyagents.test.utils.Utils.cartesian;
 
 @RunWith(Parameterized.class)
@@ -38,7 +36,7 @@ public class TestPresenceBasedStrategy {
     HeatingControlStrategy strategy;
     PersonReference person1 = mock(PersonReference.class);
     PersonReference person2 = mock(PersonReference.class);
-    Set<PersonReference> people;
+    Occupancy people;
 
 
     @Parameterized.Parameters
@@ -52,21 +50,31 @@ public class TestPresenceBasedStrategy {
 
     @Before
     public void setUp() {
-        this.people = new HashSet<>();
-        this.people.add(person1);
-        this.people.add(person2);
+        this.people = new Occupancy();
         this.strategy = new PresenceBasedStrategy(SET_POINT_WHILE_ACTIVE_AT_HOME, SET_POINT_WHILE_SLEEPING_AT_HOME);
     }
 
     @Test
     public void noSetPointWhenNoOneAtHome() throws ExecutionException, InterruptedException {
-        assertThat(this.strategy.heatingSetPoint(this.timeStamp, new HashSet<>()).get().isPresent(), is(equalTo(false)));
+        assertThat(this.strategy.heatingSetPoint(this.timeStamp, this.people).get().isPresent(), is(equalTo(false)));
+    }
+
+    @Test
+    public void heatingStaysOffWhileNoOneAtHome() throws ExecutionException, InterruptedException {
+        assertThat(this.strategy.heatingOffUntil(this.timeStamp, this.people).get(),
+                is(equalTo(Optional.of(HeatingControlStrategy.FOREVER))));
+    }
+
+    @Test
+    public void heatingMaySwitchOnWhileSomeoneAtHome() throws ExecutionException, InterruptedException {
+        this.people.enter(person1, Person.Activity.SLEEP_AT_HOME, 100.0);
+        assertThat(this.strategy.heatingOffUntil(this.timeStamp, this.people).get().isPresent(), is(equalTo(false)));
     }
 
     @Test(expected=IllegalStateException.class)
     public void raisesErrorWithPeopleAtHomeThatAreNotAtHome() throws Throwable {
-        when(this.person1.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.NOT_AT_HOME));
-        when(this.person2.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.HOME));
+        this.people.enter(this.person1, Person.Activity.NOT_AT_HOME, 100.0);
+        this.people.enter(this.person2, Person.Activity.HOME, 100.0);
         try {
             this.strategy.heatingSetPoint(this.timeStamp, this.people).join();
         }
@@ -77,32 +85,31 @@ public class TestPresenceBasedStrategy {
 
     @Test
     public void activeSetPointWhenOnePersonHomeAndActive() throws ExecutionException, InterruptedException {
-        when(this.person1.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.HOME));
-        this.people.remove(this.person2);
+        this.people.enter(this.person1, Person.Activity.HOME, 100.0);
         assertThat(this.strategy.heatingSetPoint(this.timeStamp, this.people).get().get(),
                 is(equalTo(SET_POINT_WHILE_ACTIVE_AT_HOME)));
     }
 
     @Test
     public void activeSetPointWhenTwoPersonHome() throws ExecutionException, InterruptedException {
-        when(this.person1.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.HOME));
-        when(this.person2.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.HOME));
+        this.people.enter(this.person1, Person.Activity.HOME, 100.0);
+        this.people.enter(this.person2, Person.Activity.HOME, 100.0);
         assertThat(this.strategy.heatingSetPoint(this.timeStamp, this.people).get().get(),
                 is(equalTo(SET_POINT_WHILE_ACTIVE_AT_HOME)));
     }
 
     @Test
     public void activeSetPointEvenWhenSomePersonSleep() throws ExecutionException, InterruptedException {
-        when(this.person1.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.SLEEP_AT_HOME));
-        when(this.person2.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.HOME));
+        this.people.enter(this.person1, Person.Activity.SLEEP_AT_HOME, 100.0);
+        this.people.enter(this.person2, Person.Activity.HOME, 100.0);
         assertThat(this.strategy.heatingSetPoint(this.timeStamp, this.people).get().get(),
                 is(equalTo(SET_POINT_WHILE_ACTIVE_AT_HOME)));
     }
 
     @Test
     public void sleepSetPointWhenAllPersonSleep() throws ExecutionException, InterruptedException {
-        when(this.person1.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.SLEEP_AT_HOME));
-        when(this.person2.getCurrentActivity()).thenReturn(CompletableFuture.completedFuture(Person.Activity.SLEEP_AT_HOME));
+        this.people.enter(this.person1, Person.Activity.SLEEP_AT_HOME, 100.0);
+        this.people.enter(this.person2, Person.Activity.SLEEP_AT_HOME, 100.0);
         assertThat(this.strategy.heatingSetPoint(this.timeStamp, this.people).get().get(),
                 is(equalTo(SET_POINT_WHILE_SLEEPING_AT_HOME)));
     }
@@ -4,6 +4,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
+import uk.ac.cam.eeci.energyagents.Occupancy;
 import uk.ac.cam.eeci.energyagents.Person;
 import uk.ac.cam.eeci.energyagents.PersonReference;
 import uk.ac.cam.eeci.energyagents.test.utils.Utils;
@@ -11,14 +12,12 @@ import uk.ac.cam.eeci.energyagents.HeatingControlStrategy;
 import uk.ac.cam.eeci.energyagents.strategy.TimeScheduleControlStrategy;
 
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 import java.time.Duration;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.*;
@@ -42,7 +41,7 @@ public class TestTimeScheduleControlStrategy {
     private HeatingControlStrategy strategy;
     private PersonReference person1 = mock(PersonReference.class);
     private PersonReference person2 = mock(PersonReference.class);
-    private Set<PersonReference> people;
+    private Occupancy people;
 
     @Parameterized.Parameters
     public static Collection<Object[]> data() {
@@ -75,13 +74,9 @@ public class TestTimeScheduleControlStrategy {
     }
 
     private void setUpPeopleAndTheirActivities() {
-        this.people = new HashSet<>();
-        this.people.add(person1);
-        this.people.add(person2);
-        CompletableFuture<Person.Activity> activityPerson1 = CompletableFuture.completedFuture(this.activityPerson1);
-        CompletableFuture<Person.Activity> activityPerson2 = CompletableFuture.completedFuture(this.activityPerson2);
-        when(this.person1.getCurrentActivity()).thenReturn(activityPerson1);
-        when(this.person2.getCurrentActivity()).thenReturn(activityPerson2);
+        this.people = new Occupancy();
+        this.people.enter(person1, this.activityPerson1, 100.0);
+        this.people.enter(person2, this.activityPerson2, 100.0);
     }
 
     @Test(expected=IllegalArgumentException.class)
@@ -167,4 +162,33 @@ public class TestTimeScheduleControlStrategy {
         assertThat(this.strategy.heatingSetPoint(SATURDAY_PM.plus(Duration.ofDays(1)), this.people).get(),
                 is(equalTo(Optional.of(WEEKEND_SET_POINT))));
     }
+
+    @Test
+    public void heatingMaySwitchOnWithinTimeSlot() throws ExecutionException, InterruptedException {
+        assertThat(this.strategy.heatingOffUntil(MONDAY_AM, this.people).get(), is(equalTo(Optional.empty())));
+    }
+
+    @Test
+    public void heatingStaysOffUntilNextTimeSlot() throws ExecutionException, InterruptedException {
+        assertThat(this.strategy.heatingOffUntil(MONDAY_NOON, this.people).get(),
+                is(equalTo(Optional.of(MONDAY_NOON.plusHours(1)))));
+    }
+
+    @Test
+    public void heatingStaysOffAtMostUntilNextDay() throws ExecutionException, InterruptedException {
+        List<TimeScheduleControlStrategy.TimeSlot> timeSlots = new ArrayList<>();
+        timeSlots.add(new TimeScheduleControlStrategy.TimeSlot(
+                WEEKEND, LocalTime.of(8, 0), LocalTime.of(10, 0), WEEKEND_SET_POINT
+        ));
+        this.strategy = new TimeScheduleControlStrategy(timeSlots, TIME_ZONE);
+        assertThat(this.strategy.heatingOffUntil(MONDAY_NOON, this.people).get(),
+                is(equalTo(Optional.of(MONDAY_NOON.plusHours(12)))));
+    }
+
+    @Test
+    public void heatingStaysOffForeverWithoutTimeSlots() throws ExecutionException, InterruptedException {
+        this.strategy = new TimeScheduleControlStrategy(new ArrayList<>(), TIME_ZONE);
+        assertThat(this.strategy.heatingOffUntil(MONDAY_NOON, this.people).get(),
+                is(equalTo(Optional.of(HeatingControlStrategy.FOREVER))));
+    }
 }
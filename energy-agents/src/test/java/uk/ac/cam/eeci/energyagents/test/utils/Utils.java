@@ -1,7 +1,6 @@
 package uk.ac.cam.eeci.energyagents.test.utils;
 
-import uk.ac.cam.eeci.framework.Reference;
-import uk.ac.cam.eeci.framework.WorkerPool;
+import uk.ac.cam.eeci.framework.SimulationContext;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,8 +13,8 @@ import java.util.stream.Stream;
 public class Utils {
 
     public static void resetScienceOS() {
-        Reference.pool = new WorkerPool(4);
-        Reference.pool.setCurrentExecutor(Reference.pool.main);
+        SimulationContext.setDefault(new SimulationContext(4));
+        SimulationContext.getDefault().enterMain();
     }
 
     /**
@@ -1,5 +1,6 @@
 package uk.ac.cam.eeci.framework;
 
+import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
 import static java.lang.Thread.sleep;
@@ -7,26 +8,77 @@ import static java.lang.Thread.sleep;
 public class Conductor implements Runnable {
 
     private ISimulation sim;
+    private final SimulationContext context;
+    private final boolean shutDownPool;
+    private volatile Throwable failure;
 
-    static {
-        Reference.pool.setCurrentExecutor(Reference.pool.main);
+    public Conductor(ISimulation sim) {
+        this(sim, SimulationContext.getDefault(), true);
     }
 
-    public Conductor(ISimulation sim) {
+    /**
+     * @param sim the simulation to run
+     * @param shutDownPool whether to shut down the worker pool at the end of the simulation; must be false
+     *                     when the pool is shared with other simulations
+     */
+    public Conductor(ISimulation sim, boolean shutDownPool) {
+        this(sim, SimulationContext.getDefault(), shutDownPool);
+    }
+
+    /**
+     * @param sim the simulation to run
+     * @param context the context of the simulation
+     * @param shutDownPool whether to shut down the worker pool of the context at the end of the simulation;
+     *                     must be false when the context is shared with other simulations
+     */
+    public Conductor(ISimulation sim, SimulationContext context, boolean shutDownPool) {
         this.sim = sim;
+        this.context = context;
+        this.shutDownPool = shutDownPool;
     }
 
     public void run() {
+        if (this.context.getPool().currentExecutor() == null) {
+            this.context.enterMain(); // the conducting thread is the main thread of the simulation
+        }
         try {
-            int i;
             while (true) {
                 sim.step();
             }
-        } catch (InterruptedException | ExecutionException e) {
+        } catch (InterruptedException e) {
+            this.failure = e;
+            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            this.failure = e;
             e.printStackTrace();
         } catch (EndSimulationException e) {
+            // regular end of the simulation
+        } finally {
+            // an aborted simulation is stopped as well, so that its resources are released
+            this.stopSimulation();
+        }
+    }
+
+    private void stopSimulation() {
+        try {
             sim.stop();
-            Reference.pool.shutdown();
+        } catch (RuntimeException e) {
+            if (this.failure == null) {
+                this.failure = e;
+            }
+            e.printStackTrace();
+        } finally {
+            if (this.shutDownPool) {
+                this.context.shutdown();
+            }
         }
     }
+
+    /**
+     * @return the reason for which the simulation has been aborted or has failed to stop, if it has
+     */
+    public Optional<Throwable> getFailure() {
+        return Optional.ofNullable(this.failure);
+    }
 }
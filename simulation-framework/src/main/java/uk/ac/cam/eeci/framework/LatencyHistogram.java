@@ -0,0 +1,93 @@
+package uk.ac.cam.eeci.framework;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies with buckets of powers of two nanoseconds.
+ * <br><br>
+ * Recording is lock free and allocation free, hence cheap enough for the hot path of a simulation.
+ * Percentiles are estimated to the upper bound of their bucket, i.e. they are off by at most a factor
+ * of two, but never exceed the maximum. The histogram may be read while it is being recorded to.
+ */
+public class LatencyHistogram {
+
+    private final static int NUMBER_BUCKETS = 64;
+    private final static double NANOS_PER_MILLI = 1e6;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(NUMBER_BUCKETS);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * @param nanos the latency to record [ns]; negative latencies are recorded as 0
+     */
+    public void record(long nanos) {
+        long latency = Math.max(0, nanos);
+        this.buckets.incrementAndGet(bucketOf(latency));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(latency);
+        this.max.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * @return the number of recorded latencies
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * @return the mean of all recorded latencies [ms], or 0 if none has been recorded
+     */
+    public double getMeanMillis() {
+        long count = this.count.get();
+        return count == 0 ? 0 : this.sum.get() / NANOS_PER_MILLI / count;
+    }
+
+    /**
+     * @return the maximum of all recorded latencies [ms], or 0 if none has been recorded
+     */
+    public double getMaxMillis() {
+        return this.max.get() / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @param quantile the quantile in [0, 1], e.g. 0.99 for the 99th percentile
+     * @return an estimate of the quantile of all recorded latencies [ms], or 0 if none has been recorded
+     */
+    public double getQuantileMillis(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException(String.format("Quantile must be in [0, 1], but is %f.", quantile));
+        }
+        long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long cumulative = 0;
+        for (int bucket = 0; bucket < NUMBER_BUCKETS; bucket++) {
+            cumulative += this.buckets.get(bucket);
+            if (cumulative >= rank) {
+                return Math.min(upperBoundOf(bucket), this.max.get()) / NANOS_PER_MILLI;
+            }
+        }
+        return this.getMaxMillis();
+    }
+
+    private static int bucketOf(long nanos) {
+        return nanos == 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos) - 1;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        return bucket >= 62 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+    }
+}
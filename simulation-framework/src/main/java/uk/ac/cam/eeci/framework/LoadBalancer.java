@@ -0,0 +1,172 @@
+package uk.ac.cam.eeci.framework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Evens out the load of the workers of a {@link WorkerPool} with the {@link WorkerPool.Scheduler#SHARDED}
+ * scheduler by migrating referents between workers.
+ * <br><br>
+ * While profiling, references measure the time their referents are busy on their executor. Rebalancing
+ * then reassigns whole groups of references with equal affinity keys, see {@link Reference#affinityKey},
+ * to the workers such that the busiest worker is as little busy as possible. References sharing their
+ * affinity key hence stay on the same worker.
+ * <br><br>
+ * Rebalancing must happen while the pool is quiescent, i.e. while no task of any of the references is
+ * queued or running, as otherwise a referent could be run by two workers at once.
+ */
+public class LoadBalancer {
+
+    /**
+     * The load of the workers before and after rebalancing.
+     */
+    public static class Report {
+
+        private final long[] loadsBefore;
+        private final long[] loadsAfter;
+        private final long profiledNanos;
+        private final int numberMigrations;
+
+        private Report(long[] loadsBefore, long[] loadsAfter, long profiledNanos, int numberMigrations) {
+            this.loadsBefore = loadsBefore;
+            this.loadsAfter = loadsAfter;
+            this.profiledNanos = profiledNanos;
+            this.numberMigrations = numberMigrations;
+        }
+
+        /**
+         * @return the ratio of the maximum and the mean load of the workers before rebalancing; 1 when balanced
+         */
+        public double getImbalanceBefore() {
+            return imbalance(this.loadsBefore);
+        }
+
+        /**
+         * @return the ratio of the maximum and the mean load of the workers after rebalancing; 1 when balanced
+         */
+        public double getImbalanceAfter() {
+            return imbalance(this.loadsAfter);
+        }
+
+        /**
+         * @return the share of the profiled wall clock time each worker has been busy before rebalancing
+         */
+        public double[] getUtilisationBefore() {
+            return Arrays.stream(this.loadsBefore)
+                    .mapToDouble(load -> this.profiledNanos > 0 ? (double) load / this.profiledNanos : 0)
+                    .toArray();
+        }
+
+        /**
+         * @return the number of references that have been moved to another worker
+         */
+        public int getNumberMigrations() {
+            return this.numberMigrations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("imbalance %.2f before and %.2f after migrating %d referents, utilisation %s",
+                    this.getImbalanceBefore(), this.getImbalanceAfter(), this.numberMigrations,
+                    Arrays.toString(Arrays.stream(this.getUtilisationBefore())
+                            .mapToObj(u -> String.format("%.2f", u)).toArray()));
+        }
+
+        private static double imbalance(long[] loads) {
+            long max = Arrays.stream(loads).max().orElse(0);
+            double mean = Arrays.stream(loads).average().orElse(0);
+            return mean > 0 ? max / mean : 1;
+        }
+    }
+
+    private final SimulationContext context;
+    private final List<Reference<?>> references;
+    private long startOfProfiling;
+
+    /**
+     * @param context the context of the references
+     * @param references the references that may be migrated; others stay where they are
+     */
+    public LoadBalancer(SimulationContext context, Collection<? extends Reference<?>> references) {
+        this.context = context;
+        this.references = new ArrayList<>(references);
+    }
+
+    /**
+     * Starts measuring the time referents are busy. Must be called while the pool is quiescent.
+     */
+    public void startProfiling() {
+        this.references.forEach(Reference::resetBusyNanos);
+        this.startOfProfiling = System.nanoTime();
+        this.context.setProfiling(true);
+    }
+
+    /**
+     * Stops profiling and migrates referents to even out the load of the workers. Referents are only
+     * migrated if that reduces the load of the busiest worker. Must be called while the pool is quiescent.
+     *
+     * @return the load of the workers before and after rebalancing
+     */
+    public Report rebalance() {
+        this.context.setProfiling(false);
+        long profiledNanos = System.nanoTime() - this.startOfProfiling;
+        ExecutorService[] workers = this.context.getPool().poolpool;
+        Map<ExecutorService, Integer> indexOfWorker = new IdentityHashMap<>();
+        for (int i = 0; i < workers.length; i++) {
+            indexOfWorker.put(workers[i], i);
+        }
+        long[] loadsBefore = new long[workers.length];
+        Map<Object, List<Reference<?>>> groups = new LinkedHashMap<>();
+        Map<Object, Long> loadOfGroup = new LinkedHashMap<>();
+        for (Reference<?> reference : this.references) {
+            Integer worker = indexOfWorker.get(reference.executor);
+            if (worker == null) {
+                continue; // not run by one of the workers, e.g. with the work stealing scheduler
+            }
+            loadsBefore[worker] += reference.getBusyNanos();
+            groups.computeIfAbsent(reference.affinityKey, key -> new ArrayList<>()).add(reference);
+            loadOfGroup.merge(reference.affinityKey, reference.getBusyNanos(), Long::sum);
+        }
+        if (workers.length < 2 || groups.isEmpty()) {
+            return new Report(loadsBefore, loadsBefore, profiledNanos, 0);
+        }
+        // longest processing time first: each group goes to the currently least loaded worker
+        List<Object> keys = new ArrayList<>(groups.keySet());
+        keys.sort(Comparator.comparing(loadOfGroup::get).reversed());
+        long[] loadsAfter = new long[workers.length];
+        PriorityQueue<Integer> leastLoaded = new PriorityQueue<>(
+                Comparator.<Integer>comparingLong(worker -> loadsAfter[worker]).thenComparing(worker -> worker));
+        for (int i = 0; i < workers.length; i++) {
+            leastLoaded.add(i);
+        }
+        Map<Object, Integer> workerOfGroup = new LinkedHashMap<>();
+        for (Object key : keys) {
+            int worker = leastLoaded.poll();
+            workerOfGroup.put(key, worker);
+            loadsAfter[worker] += loadOfGroup.get(key);
+            leastLoaded.add(worker);
+        }
+        if (Arrays.stream(loadsAfter).max().getAsLong() >= Arrays.stream(loadsBefore).max().getAsLong()) {
+            return new Report(loadsBefore, loadsBefore, profiledNanos, 0);
+        }
+        int numberMigrations = 0;
+        for (Map.Entry<Object, List<Reference<?>>> group : groups.entrySet()) {
+            ExecutorService worker = workers[workerOfGroup.get(group.getKey())];
+            for (Reference<?> reference : group.getValue()) {
+                if (reference.executor != worker) {
+                    reference.executor = worker;
+                    numberMigrations += 1;
+                }
+            }
+        }
+        return new Report(loadsBefore, loadsAfter, profiledNanos, numberMigrations);
+    }
+}
@@ -0,0 +1,120 @@
+package uk.ac.cam.eeci.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A serial executor that runs its tasks one after another on a shared pool of workers.
+ * <br><br>
+ * A mailbox is never run by more than one worker at the same time, hence all tasks of a
+ * mailbox are serialised just like on a single threaded executor. Idle mailboxes do not
+ * occupy any thread.
+ */
+class Mailbox extends AbstractExecutorService {
+
+    private final static int MAX_TASKS_PER_RUN = 64; // bounds the time a busy mailbox holds on to a worker
+
+    private final WorkerPool pool;
+    private final Executor workers;
+    private final Queue<Runnable> tasks;
+    private final AtomicBoolean scheduled;
+    private volatile boolean shutdown;
+
+    /**
+     * @param pool the pool this mailbox belongs to
+     * @param workers the shared workers on which the mailbox is run
+     */
+    Mailbox(WorkerPool pool, Executor workers) {
+        this.pool = pool;
+        this.workers = workers;
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean(false);
+        this.shutdown = false;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (this.shutdown) {
+            throw new RejectedExecutionException("Mailbox has been shut down.");
+        }
+        this.tasks.add(task);
+        this.scheduleIfNecessary();
+    }
+
+    /**
+     * @return the number of tasks waiting in this mailbox
+     */
+    int size() {
+        return this.tasks.size();
+    }
+
+    private void scheduleIfNecessary() {
+        if (!this.tasks.isEmpty() && this.scheduled.compareAndSet(false, true)) {
+            this.workers.execute(this::runTasks);
+        }
+    }
+
+    private void runTasks() {
+        ExecutorService previousExecutor = this.pool.currentExecutor();
+        this.pool.setCurrentExecutor(this);
+        try {
+            for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+                Runnable task = this.tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                task.run();
+            }
+        } finally {
+            this.pool.setCurrentExecutor(previousExecutor);
+            this.scheduled.set(false);
+            this.scheduleIfNecessary();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        this.shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        this.shutdown = true;
+        List<Runnable> pendingTasks = new ArrayList<>();
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            pendingTasks.add(task);
+        }
+        return pendingTasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return this.shutdown && this.tasks.isEmpty() && !this.scheduled.get();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!this.isTerminated()) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+}
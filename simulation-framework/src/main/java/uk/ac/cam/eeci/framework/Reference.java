@@ -1,18 +1,153 @@
 package uk.ac.cam.eeci.framework;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
 /**
  * Created by daniel on 08/02/17.
  */
 public class Reference<T> {
-    public static WorkerPool pool = new WorkerPool(4);
+    public final SimulationContext context;
+    public final Object    affinityKey;
     public ExecutorService executor;
     public T               referent;
+    private long           busyNanos; // only touched by the executor of the referent, or when quiescent
 
+    /**
+     * Creates a reference within the default context, see {@link SimulationContext#getDefault()}.
+     */
     public Reference(T referent) {
-        executor = pool.executorFor(referent);
+        this(referent, SimulationContext.getDefault());
+    }
+
+    /**
+     * @param referent the referent
+     * @param context the context on whose workers the referent is run
+     */
+    public Reference(T referent, SimulationContext context) {
+        this(referent, context, referent);
+    }
+
+    /**
+     * Creates a reference that is placed next to all other references with an equal affinity key,
+     * see {@link WorkerPool#executorFor(Object, Object)}. Calls between references sharing their
+     * executor are run inline.
+     *
+     * @param referent the referent
+     * @param context the context on whose workers the referent is run
+     * @param affinityKey the key determining the placement of the referent; the referent itself when null
+     */
+    public Reference(T referent, SimulationContext context, Object affinityKey) {
+        this.context = context;
+        this.affinityKey = affinityKey != null ? affinityKey : referent;
+        executor = context.getPool().executorFor(referent, this.affinityKey);
         this.referent = referent;
     }
 
+    /**
+     * Runs the supplier on the executor of the referent and hands the result back to the executor
+     * of the caller.
+     * <br><br>
+     * Whenever caller and referent share the same executor, the supplier is run inline and an
+     * already completed future is returned, saving both executor hops.
+     */
+    protected <R> CompletableFuture<R> supply(Supplier<R> supplier) {
+        if (this.isCalledFromOwnExecutor()) {
+            CompletableFuture<R> result = new CompletableFuture<>();
+            try {
+                result.complete(supplier.get());
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+            return result;
+        }
+        this.context.countAsynchronousCall();
+        Supplier<R> task = this.context.isProfiling() ? this.timed(supplier) : supplier;
+        return CompletableFuture.supplyAsync(task, this.executor)
+                .thenApplyAsync(i -> i, this.context.getPool().currentExecutor());
+    }
+
+    /**
+     * Runs the runnable on the executor of the referent and returns to the executor of the caller
+     * afterwards.
+     * <br><br>
+     * Whenever caller and referent share the same executor, the runnable is run inline.
+     */
+    protected CompletableFuture<Void> run(Runnable runnable) {
+        return this.supply(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Starts the asynchronous operation on the executor of the referent and hands its result back to
+     * the executor of the caller.
+     * <br><br>
+     * Whenever caller and referent share the same executor, the operation is started inline.
+     */
+    protected <R> CompletableFuture<R> compose(Supplier<CompletableFuture<R>> operation) {
+        if (this.isCalledFromOwnExecutor()) {
+            CompletableFuture<R> started;
+            try {
+                started = operation.get();
+            } catch (Throwable ex) {
+                started = new CompletableFuture<>();
+                started.completeExceptionally(ex);
+            }
+            return returnToCaller(started);
+        }
+        this.context.countAsynchronousCall();
+        Supplier<CompletableFuture<R>> task = this.context.isProfiling() ? this.timed(operation) : operation;
+        return CompletableFuture.completedFuture(null).thenComposeAsync(p -> task.get(), this.executor)
+                .thenApplyAsync(i -> i, this.context.getPool().currentExecutor());
+    }
+
+    /**
+     * Makes sure the future completes on the executor of the caller.
+     * <br><br>
+     * Futures that are already completed are returned as they are, as their dependent stages run
+     * on the calling thread anyhow.
+     */
+    protected <R> CompletableFuture<R> returnToCaller(CompletableFuture<R> future) {
+        if (future.isDone()) {
+            return future;
+        }
+        this.context.countAsynchronousCall();
+        return future.thenApplyAsync(i -> i, this.context.getPool().currentExecutor());
+    }
+
+    private <R> Supplier<R> timed(Supplier<R> supplier) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return supplier.get();
+            } finally {
+                this.busyNanos += System.nanoTime() - start;
+            }
+        };
+    }
+
+    /**
+     * @return the time the referent has been busy on its executor while the context has been profiling [ns];
+     *         calls that have been run inline are accounted to their caller
+     */
+    long getBusyNanos() {
+        return this.busyNanos;
+    }
+
+    void resetBusyNanos() {
+        this.busyNanos = 0;
+    }
+
+    /**
+     * @return true if the calling thread currently runs on the executor of the referent, or if it
+     *         calls all references directly, see {@link WorkerPool#DIRECT}
+     */
+    protected boolean isCalledFromOwnExecutor() {
+        ExecutorService current = this.context.getPool().currentExecutor();
+        return current == WorkerPool.DIRECT || (this.executor != null && current == this.executor);
+    }
+
 }
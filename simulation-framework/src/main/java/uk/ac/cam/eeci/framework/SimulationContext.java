@@ -0,0 +1,136 @@
+package uk.ac.cam.eeci.framework;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The runtime of a simulation, owning the {@link WorkerPool} on which the referents of all
+ * {@link Reference}s of the simulation are run.
+ * <br><br>
+ * Contexts are independent of each other, hence several simulations can run concurrently in one
+ * process, each with its own thread budget. References created without an explicit context belong
+ * to the default context, which is created with four workers on first use.
+ */
+public class SimulationContext {
+
+    private final static int DEFAULT_NUMBER_WORKERS = 4;
+    private static SimulationContext defaultContext;
+
+    private final WorkerPool pool;
+    private final LongAdder asynchronousCalls;
+    private volatile boolean countingCalls;
+    private volatile boolean profiling;
+
+    /**
+     * @param numberWorkers the number of worker threads
+     */
+    public SimulationContext(int numberWorkers) {
+        this(numberWorkers, WorkerPool.Scheduler.SHARDED);
+    }
+
+    /**
+     * @param numberWorkers the number of worker threads
+     * @param scheduler the way in which referents are mapped onto the worker threads
+     */
+    public SimulationContext(int numberWorkers, WorkerPool.Scheduler scheduler) {
+        this(new WorkerPool(numberWorkers, scheduler));
+    }
+
+    /**
+     * @param pool the worker pool owned by this context
+     */
+    public SimulationContext(WorkerPool pool) {
+        this.pool = pool;
+        this.asynchronousCalls = new LongAdder();
+        this.countingCalls = false;
+        this.profiling = false;
+    }
+
+    /**
+     * @return the context of all references created without an explicit context
+     */
+    public static synchronized SimulationContext getDefault() {
+        if (defaultContext == null) {
+            defaultContext = new SimulationContext(DEFAULT_NUMBER_WORKERS);
+        }
+        return defaultContext;
+    }
+
+    /**
+     * Replaces the default context. The previous default context is not shut down.
+     *
+     * @param context the new default context
+     */
+    public static synchronized void setDefault(SimulationContext context) {
+        defaultContext = context;
+    }
+
+    /**
+     * @return the worker pool owned by this context
+     */
+    public WorkerPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Makes the calling thread the main thread of this context, i.e. results of references are handed
+     * back to the main executor of the pool.
+     */
+    public void enterMain() {
+        this.pool.setCurrentExecutor(this.pool.main);
+    }
+
+    /**
+     * Makes the calling thread call all references of this context directly, see {@link WorkerPool#DIRECT}.
+     */
+    public void enterDirect() {
+        this.pool.setCurrentExecutor(WorkerPool.DIRECT);
+    }
+
+    /**
+     * Waits until all tasks submitted to this context have been run, see {@link WorkerPool#awaitQuiescence()}.
+     */
+    public void awaitQuiescence() throws InterruptedException, ExecutionException {
+        this.pool.awaitQuiescence();
+    }
+
+    /**
+     * Starts counting the calls to references that hop to another executor, see
+     * {@link #getAsynchronousCalls()}. Counting is off by default, as it is a shared hot spot.
+     */
+    public void startCountingCalls() {
+        this.countingCalls = true;
+    }
+
+    /**
+     * @return the number of calls to references that have been handed to another executor since
+     *         counting has been started; calls that are run inline are not counted
+     */
+    public long getAsynchronousCalls() {
+        return this.asynchronousCalls.sum();
+    }
+
+    void countAsynchronousCall() {
+        if (this.countingCalls) {
+            this.asynchronousCalls.increment();
+        }
+    }
+
+    /**
+     * @param profiling whether references measure the time their referents are busy, see {@link LoadBalancer}
+     */
+    void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    boolean isProfiling() {
+        return this.profiling;
+    }
+
+    /**
+     * Shuts down the worker pool of this context.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+}
@@ -1,31 +1,94 @@
 package uk.ac.cam.eeci.framework;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by daniel on 08/02/17.
  */
 public class WorkerPool {
+
+    /**
+     * The ways in which referents can be mapped onto threads.
+     */
+    public enum Scheduler {
+        /**
+         * Each referent is pinned to one of N single threaded executors.
+         */
+        SHARDED,
+        /**
+         * Each affinity key gets its own serial mailbox, shared by all referents placed by that key.
+         * Mailboxes are run by N workers which steal ready mailboxes from each other whenever they
+         * are idle.
+         */
+        WORK_STEALING
+    }
+
+    /**
+     * Runs tasks directly on the calling thread. Threads that have it set as their current executor
+     * call all {@link Reference}s inline, hence they can step referents directly, as long as no other
+     * thread touches the same referents at the same time.
+     */
+    public final static ExecutorService DIRECT = new DirectExecutor();
+
     public ExecutorService[] poolpool;
     public ExecutorService main;
+    private final Scheduler scheduler;
+    private final ForkJoinPool workStealingPool;
+    private final Map<Object, MailboxReference> mailboxes; // guarded by itself
+    private final ReferenceQueue<Mailbox> collectedMailboxes;
     private ThreadLocal<ExecutorService> currentExec = new ThreadLocal<>();
     // each object has a unique thread, but each thread serves many objects.
 
 
     public WorkerPool(int N) {
+        this(N, Scheduler.SHARDED);
+    }
+
+    /**
+     * @param N the number of worker threads
+     * @param scheduler the way in which referents are mapped onto the worker threads
+     */
+    public WorkerPool(int N, Scheduler scheduler) {
         int i;
-        poolpool = new ExecutorService[N];
+        this.scheduler = scheduler;
         main = Executors.newSingleThreadExecutor();
         main.execute(() -> {
             currentExec.set(main);
         });
-        for(i=0; i<N; ++i) {
-            poolpool[i] = Executors.newSingleThreadExecutor();
-            ExecutorService p = poolpool[i];
-            p.execute(() -> {
-                currentExec.set(p);
-            });
+        switch (scheduler) {
+            case SHARDED:
+                workStealingPool = null;
+                mailboxes = null;
+                collectedMailboxes = null;
+                poolpool = new ExecutorService[N];
+                for(i=0; i<N; ++i) {
+                    // a plain thread pool executor, as opposed to the one of Executors, exposes its queue
+                    poolpool[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+                    ExecutorService p = poolpool[i];
+                    p.execute(() -> {
+                        currentExec.set(p);
+                    });
+                }
+                break;
+            case WORK_STEALING:
+                // async mode: mailboxes are event style tasks that are never joined
+                workStealingPool = new ForkJoinPool(N, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+                mailboxes = new HashMap<>();
+                collectedMailboxes = new ReferenceQueue<>();
+                poolpool = new ExecutorService[0];
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown scheduler %s.", scheduler));
         }
     }
 
@@ -35,6 +98,30 @@ public class WorkerPool {
         for(i=0; i<poolpool.length; ++i) {
             poolpool[i].shutdown();
         }
+        if (workStealingPool != null) {
+            workStealingPool.shutdown();
+        }
+    }
+
+    /**
+     * Waits until all tasks submitted to the workers and to the main executor before the call
+     * have been run. Must not be called from one of the workers; when called from the main
+     * executor, the main executor is not waited for.
+     */
+    public void awaitQuiescence() throws InterruptedException, ExecutionException {
+        if (workStealingPool != null) {
+            while (!workStealingPool.awaitQuiescence(1, TimeUnit.SECONDS)) {
+                if (workStealingPool.isShutdown()) {
+                    break;
+                }
+            }
+        }
+        for (ExecutorService executor : poolpool) {
+            executor.submit(() -> {}).get(); // executors are first in, first out
+        }
+        if (currentExecutor() != main) {
+            main.submit(() -> {}).get();
+        }
     }
 
     public ExecutorService currentExecutor() {
@@ -45,12 +132,82 @@ public class WorkerPool {
     }
 
     public ExecutorService executorFor(Object obj) {
-        int poolNumber = obj.hashCode()%poolpool.length;
+        return(executorFor(obj, obj));
+    }
+
+    /**
+     * Places a referent by an affinity key: with the {@link Scheduler#SHARDED} scheduler, referents
+     * with equal keys are pinned to the same thread. With the {@link Scheduler#WORK_STEALING} scheduler,
+     * referents with equal keys share the same mailbox. In both cases, all references to one referent
+     * get the same executor as long as they use the same key, hence calls to the referent are serialised.
+     *
+     * @param obj the referent
+     * @param affinityKey the key determining the thread of the referent
+     */
+    public ExecutorService executorFor(Object obj, Object affinityKey) {
+        if (scheduler == Scheduler.WORK_STEALING) {
+            return(mailboxOf(affinityKey));
+        }
+        int poolNumber = Math.floorMod(affinityKey.hashCode(), poolpool.length);
         return(poolpool[poolNumber]);
     }
 
+    /**
+     * Mailboxes are held weakly, but every reference holds on to its mailbox. Hence the mailbox of an
+     * affinity key lives exactly as long as any reference placed by an equal key, no matter which
+     * instance of the key has been used first, and a pool outliving many scenarios does not pile up
+     * their mailboxes.
+     */
+    private Mailbox mailboxOf(Object affinityKey) {
+        synchronized (mailboxes) {
+            MailboxReference collected;
+            while ((collected = (MailboxReference) collectedMailboxes.poll()) != null) {
+                mailboxes.remove(collected.affinityKey, collected);
+            }
+            MailboxReference cached = mailboxes.get(affinityKey);
+            Mailbox mailbox = cached != null ? cached.get() : null;
+            if (mailbox == null) {
+                mailbox = new Mailbox(this, workStealingPool);
+                mailboxes.put(affinityKey, new MailboxReference(affinityKey, mailbox, collectedMailboxes));
+            }
+            return(mailbox);
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting for each worker; a single number of all waiting tasks with the
+     *         {@link Scheduler#WORK_STEALING} scheduler
+     */
+    public int[] getQueueDepths() {
+        if (scheduler == Scheduler.WORK_STEALING) {
+            long queued = workStealingPool.getQueuedSubmissionCount() + workStealingPool.getQueuedTaskCount();
+            return(new int[] {(int) Math.min(Integer.MAX_VALUE, queued)});
+        }
+        int[] depths = new int[poolpool.length];
+        for (int i = 0; i < poolpool.length; i++) {
+            depths[i] = ((ThreadPoolExecutor) poolpool[i]).getQueue().size();
+        }
+        return(depths);
+    }
+
     public ExecutorService mainExecutor() {
         return(main);
     }
 
+    /**
+     * @return the way in which referents are mapped onto threads
+     */
+    public Scheduler getScheduler() {
+        return(scheduler);
+    }
+
+    private static class MailboxReference extends WeakReference<Mailbox> {
+
+        private final Object affinityKey;
+
+        private MailboxReference(Object affinityKey, Mailbox mailbox, ReferenceQueue<Mailbox> queue) {
+            super(mailbox, queue);
+            this.affinityKey = affinityKey;
+        }
+    }
 }
@@ -3,6 +3,12 @@ package uk.ac.cam.eeci.framework.test;
 import org.junit.Before;
 import org.junit.Test;
 import uk.ac.cam.eeci.framework.Conductor;
+import uk.ac.cam.eeci.framework.ISimulation;
+import uk.ac.cam.eeci.framework.SimulationContext;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertTrue;
 
 public class TestGameOfLife {
 
@@ -10,6 +16,8 @@ public class TestGameOfLife {
 
     @Before
     public void setUp() {
+        SimulationContext.setDefault(new SimulationContext(4));
+        SimulationContext.getDefault().enterMain();
         this.conductor = new Conductor(new Simulation());
     }
 
@@ -18,4 +26,29 @@ public class TestGameOfLife {
         this.conductor.run();
     }
 
+    @Test
+    public void testConductorStopsFailedSimulation() {
+        FailingSimulation simulation = new FailingSimulation();
+        SimulationContext context = new SimulationContext(1);
+        Conductor conductor = new Conductor(simulation, context, true);
+        conductor.run();
+        assertTrue(conductor.getFailure().isPresent());
+        assertTrue(simulation.stopped);
+    }
+
+    private static class FailingSimulation implements ISimulation {
+
+        private boolean stopped = false;
+
+        @Override
+        public void step() throws ExecutionException {
+            throw new ExecutionException(new RuntimeException("failing step"));
+        }
+
+        @Override
+        public void stop() {
+            this.stopped = true;
+        }
+    }
+
 }
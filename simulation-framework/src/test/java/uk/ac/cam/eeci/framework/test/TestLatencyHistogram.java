@@ -0,0 +1,61 @@
+package uk.ac.cam.eeci.framework.test;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.framework.LatencyHistogram;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestLatencyHistogram {
+
+    private final static double EPSILON = 1e-9;
+
+    private LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+        this.histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void isZeroWhenEmpty() {
+        assertEquals(0, this.histogram.getCount());
+        assertEquals(0, this.histogram.getMeanMillis(), EPSILON);
+        assertEquals(0, this.histogram.getMaxMillis(), EPSILON);
+        assertEquals(0, this.histogram.getQuantileMillis(0.99), EPSILON);
+    }
+
+    @Test
+    public void keepsExactCountMeanAndMaximum() {
+        this.histogram.record(1_000_000);
+        this.histogram.record(3_000_000);
+        assertEquals(2, this.histogram.getCount());
+        assertEquals(2.0, this.histogram.getMeanMillis(), EPSILON);
+        assertEquals(3.0, this.histogram.getMaxMillis(), EPSILON);
+    }
+
+    @Test
+    public void estimatesQuantilesWithinAFactorOfTwo() {
+        for (int i = 1; i <= 100; i++) {
+            this.histogram.record(i * 1_000_000L);
+        }
+        double median = this.histogram.getQuantileMillis(0.5);
+        double p99 = this.histogram.getQuantileMillis(0.99);
+        assertTrue(median >= 50 && median <= 100);
+        assertTrue(p99 >= 99 && p99 <= 100);
+        assertEquals(100, this.histogram.getQuantileMillis(1.0), EPSILON);
+    }
+
+    @Test
+    public void recordsNegativeLatenciesAsZero() {
+        this.histogram.record(-5);
+        assertEquals(1, this.histogram.getCount());
+        assertEquals(0, this.histogram.getMaxMillis(), EPSILON);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidQuantile() {
+        this.histogram.getQuantileMillis(1.5);
+    }
+}
@@ -0,0 +1,149 @@
+package uk.ac.cam.eeci.framework.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.framework.LoadBalancer;
+import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
+import uk.ac.cam.eeci.framework.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestLoadBalancer {
+
+    private final static int NUMBER_WORKERS = 2;
+    private final static int NUMBER_GROUPS = 4;
+
+    private SimulationContext context;
+
+    private static class Worker {
+
+        private int calls = 0;
+
+        int work() {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.calls += 1;
+            return this.calls;
+        }
+    }
+
+    private static class WorkerReference extends Reference<Worker> {
+
+        WorkerReference(Worker referent, SimulationContext context, Object affinityKey) {
+            super(referent, context, affinityKey);
+        }
+
+        CompletableFuture<Integer> work() {
+            return this.supply(this.referent::work);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.context = new SimulationContext(NUMBER_WORKERS, WorkerPool.Scheduler.SHARDED);
+        this.context.enterMain();
+    }
+
+    @After
+    public void tearDown() {
+        this.context.shutdown();
+    }
+
+    private List<WorkerReference> createGroupsOnFirstWorker() {
+        List<WorkerReference> references = new ArrayList<>();
+        for (int group = 0; group < NUMBER_GROUPS; group++) {
+            Integer key = group * NUMBER_WORKERS; // all keys are placed onto the first worker
+            references.add(new WorkerReference(new Worker(), this.context, key));
+            references.add(new WorkerReference(new Worker(), this.context, key));
+        }
+        return references;
+    }
+
+    private void workOn(List<WorkerReference> references) throws ExecutionException, InterruptedException {
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+        for (WorkerReference reference : references) {
+            calls.add(reference.work());
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[calls.size()])).get();
+    }
+
+    @Test
+    public void migratesGroupsToIdleWorkers() throws ExecutionException, InterruptedException {
+        List<WorkerReference> references = this.createGroupsOnFirstWorker();
+        LoadBalancer loadBalancer = new LoadBalancer(this.context, references);
+        loadBalancer.startProfiling();
+        this.workOn(references);
+        this.context.awaitQuiescence();
+
+        LoadBalancer.Report report = loadBalancer.rebalance();
+
+        assertEquals(NUMBER_WORKERS, report.getImbalanceBefore(), 1e-9);
+        assertTrue(report.getImbalanceAfter() < report.getImbalanceBefore());
+        assertTrue(report.getNumberMigrations() > 0);
+        ExecutorService first = this.context.getPool().poolpool[0];
+        assertTrue(references.stream().anyMatch(reference -> reference.executor != first));
+    }
+
+    @Test
+    public void keepsGroupsTogether() throws ExecutionException, InterruptedException {
+        List<WorkerReference> references = this.createGroupsOnFirstWorker();
+        LoadBalancer loadBalancer = new LoadBalancer(this.context, references);
+        loadBalancer.startProfiling();
+        this.workOn(references);
+        this.context.awaitQuiescence();
+
+        loadBalancer.rebalance();
+
+        for (int i = 0; i < references.size(); i += 2) {
+            assertSame(references.get(i).executor, references.get(i + 1).executor);
+        }
+    }
+
+    @Test
+    public void migratedReferentsKeepWorking() throws ExecutionException, InterruptedException {
+        List<WorkerReference> references = this.createGroupsOnFirstWorker();
+        LoadBalancer loadBalancer = new LoadBalancer(this.context, references);
+        loadBalancer.startProfiling();
+        this.workOn(references);
+        this.context.awaitQuiescence();
+        loadBalancer.rebalance();
+
+        this.workOn(references);
+
+        for (WorkerReference reference : references) {
+            assertEquals(2, reference.referent.calls);
+        }
+    }
+
+    @Test
+    public void doesNotMigrateBalancedWorkers() throws ExecutionException, InterruptedException {
+        WorkerReference first = new WorkerReference(new Worker(), this.context, 0);
+        WorkerReference second = new WorkerReference(new Worker(), this.context, 1);
+        assertNotSame(first.executor, second.executor);
+        List<WorkerReference> references = new ArrayList<>();
+        references.add(first);
+        references.add(second);
+        LoadBalancer loadBalancer = new LoadBalancer(this.context, references);
+        loadBalancer.startProfiling();
+        this.workOn(references);
+        this.context.awaitQuiescence();
+
+        LoadBalancer.Report report = loadBalancer.rebalance();
+
+        assertEquals(0, report.getNumberMigrations());
+    }
+}
@@ -0,0 +1,252 @@
+package uk.ac.cam.eeci.framework.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.eeci.framework.Reference;
+import uk.ac.cam.eeci.framework.SimulationContext;
+import uk.ac.cam.eeci.framework.WorkerPool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestReference {
+
+    private SimulationContext context;
+
+    private static class Counter {
+        private int value = 0;
+        private int overlapping = 0;
+        private int maxOverlapping = 0;
+
+        int increment() {
+            this.value += 1;
+            return this.value;
+        }
+
+        synchronized int incrementOverlapping() { // counts calls that are in progress at the same time
+            this.overlapping += 1;
+            this.maxOverlapping = Math.max(this.maxOverlapping, this.overlapping);
+            return 0;
+        }
+
+        synchronized void leave() {
+            this.overlapping -= 1;
+        }
+
+        int fail() {
+            throw new IllegalStateException("failed deliberately");
+        }
+    }
+
+    private static class CounterReference extends Reference<Counter> {
+
+        CounterReference(Counter referent, SimulationContext context) {
+            super(referent, context);
+        }
+
+        CounterReference(Counter referent, SimulationContext context, Object affinityKey) {
+            super(referent, context, affinityKey);
+        }
+
+        CompletableFuture<Integer> increment() {
+            return this.supply(this.referent::increment);
+        }
+
+        CompletableFuture<Integer> incrementSlowly() {
+            return this.supply(() -> {
+                this.referent.incrementOverlapping();
+                try {
+                    Thread.sleep(0, 100000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                this.referent.leave();
+                return this.referent.increment();
+            });
+        }
+
+        CompletableFuture<Integer> fail() {
+            return this.supply(this.referent::fail);
+        }
+
+        CompletableFuture<Integer> incrementLater() {
+            return this.compose(() -> CompletableFuture.completedFuture(this.referent.increment()));
+        }
+
+        boolean calledFromOwnExecutor() {
+            return this.isCalledFromOwnExecutor();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        this.context = new SimulationContext(1); // all referents share the one worker
+    }
+
+    @After
+    public void tearDown() {
+        this.context.shutdown();
+    }
+
+    @Test
+    public void runsInlineWhenSharingTheExecutor() throws ExecutionException, InterruptedException {
+        CounterReference caller = new CounterReference(new Counter(), this.context);
+        CounterReference callee = new CounterReference(new Counter(), this.context);
+        Thread workerThread = CompletableFuture.supplyAsync(Thread::currentThread, caller.executor).get();
+        CompletableFuture<Boolean> inline = CompletableFuture.supplyAsync(() -> {
+            CompletableFuture<Integer> result = callee.increment();
+            return result.isDone() && Thread.currentThread() == workerThread;
+        }, caller.executor);
+        assertTrue(inline.get());
+        assertEquals(1, callee.referent.value);
+    }
+
+    @Test
+    public void composesInlineWhenSharingTheExecutor() throws ExecutionException, InterruptedException {
+        CounterReference caller = new CounterReference(new Counter(), this.context);
+        CounterReference callee = new CounterReference(new Counter(), this.context);
+        CompletableFuture<Boolean> inline = CompletableFuture.supplyAsync(
+                () -> callee.incrementLater().isDone(), caller.executor);
+        assertTrue(inline.get());
+        assertEquals(1, callee.referent.value);
+    }
+
+    @Test
+    public void hopsWhenCalledFromOtherExecutor() throws ExecutionException, InterruptedException {
+        CounterReference callee = new CounterReference(new Counter(), this.context);
+        Integer value = CompletableFuture.supplyAsync(() -> {
+            assertFalse(callee.calledFromOwnExecutor());
+            return callee.increment();
+        }, this.context.getPool().main).thenCompose(f -> f).get();
+        assertEquals(1, (int) value);
+    }
+
+    @Test
+    public void contextsHaveIndependentWorkers() throws ExecutionException, InterruptedException {
+        SimulationContext otherContext = new SimulationContext(1);
+        CounterReference reference = new CounterReference(new Counter(), this.context);
+        CounterReference otherReference = new CounterReference(new Counter(), otherContext);
+        Thread worker = CompletableFuture.supplyAsync(Thread::currentThread, reference.executor).get();
+        Thread otherWorker = CompletableFuture.supplyAsync(Thread::currentThread, otherReference.executor).get();
+        otherContext.shutdown();
+        assertNotSame(worker, otherWorker);
+        Integer value = CompletableFuture.supplyAsync(reference::increment, this.context.getPool().main)
+                .thenCompose(f -> f).get();
+        assertEquals(1, (int) value); // unaffected by the shutdown of the other context
+    }
+
+    @Test
+    public void placesReferentsWithEqualAffinityKeysNextToEachOther() throws ExecutionException, InterruptedException {
+        SimulationContext context = new SimulationContext(4);
+        try {
+            for (int key = -8; key < 8; key++) {
+                CounterReference caller = new CounterReference(new Counter(), context, key);
+                CounterReference callee = new CounterReference(new Counter(), context, Integer.valueOf(key));
+                assertSame(caller.executor, callee.executor);
+                assertTrue(CompletableFuture.supplyAsync(() -> callee.increment().isDone(), caller.executor).get());
+            }
+        } finally {
+            context.shutdown();
+        }
+    }
+
+    @Test
+    public void placesByReferentWithoutAffinityKey() {
+        Counter counter = new Counter();
+        CounterReference reference = new CounterReference(counter, this.context, null);
+        assertSame(counter, reference.affinityKey);
+    }
+
+    @Test
+    public void runsInlineWhenCallingDirectly() {
+        CounterReference callee = new CounterReference(new Counter(), this.context);
+        this.context.getPool().setCurrentExecutor(WorkerPool.DIRECT);
+        try {
+            assertTrue(callee.calledFromOwnExecutor());
+            assertTrue(callee.increment().isDone());
+            assertEquals(1, callee.referent.value);
+        } finally {
+            this.context.getPool().setCurrentExecutor(null);
+        }
+    }
+
+    @Test
+    public void keepsExceptionsOfInlineCalls() throws InterruptedException {
+        CounterReference caller = new CounterReference(new Counter(), this.context);
+        CounterReference callee = new CounterReference(new Counter(), this.context);
+        try {
+            CompletableFuture.supplyAsync(callee::fail, caller.executor).get().get();
+        } catch (ExecutionException e) {
+            assertSame(IllegalStateException.class, e.getCause().getClass());
+            return;
+        }
+        throw new AssertionError("expected the exception of the referent");
+    }
+
+    @Test
+    public void serialisesCallsThroughSeveralReferencesWhenStealingWork() throws ExecutionException, InterruptedException {
+        SimulationContext context = new SimulationContext(4, WorkerPool.Scheduler.WORK_STEALING);
+        try {
+            Counter counter = new Counter();
+            CounterReference reference = new CounterReference(counter, context);
+            CounterReference otherReference = new CounterReference(counter, context);
+            assertSame(reference.executor, otherReference.executor);
+            int numberCalls = 200;
+            CompletableFuture<?> calls = CompletableFuture.supplyAsync(() -> {
+                List<CompletableFuture<Integer>> results = new ArrayList<>();
+                for (int i = 0; i < numberCalls; i++) {
+                    results.add(reference.incrementSlowly());
+                    results.add(otherReference.incrementSlowly());
+                }
+                return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]));
+            }, context.getPool().main).thenCompose(f -> f);
+            calls.get();
+            assertEquals(2 * numberCalls, counter.value);
+            assertEquals(1, counter.maxOverlapping);
+        } finally {
+            context.shutdown();
+        }
+    }
+
+    @Test
+    public void sharesMailboxesOfEqualAffinityKeysWhenStealingWork() {
+        SimulationContext context = new SimulationContext(4, WorkerPool.Scheduler.WORK_STEALING);
+        try {
+            CounterReference reference = new CounterReference(new Counter(), context, 1);
+            CounterReference sameKey = new CounterReference(new Counter(), context, Integer.valueOf(1));
+            CounterReference otherKey = new CounterReference(new Counter(), context, 2);
+            assertSame(reference.executor, sameKey.executor);
+            assertNotSame(reference.executor, otherKey.executor);
+        } finally {
+            context.shutdown();
+        }
+    }
+
+    @Test
+    public void keepsMailboxOfAffinityKeyWhileEqualKeysAreInUse() {
+        SimulationContext context = new SimulationContext(4, WorkerPool.Scheduler.WORK_STEALING);
+        try {
+            CounterReference first = new CounterReference(new Counter(), context, new String("group"));
+            CounterReference second = new CounterReference(new Counter(), context, new String("group"));
+            WeakReference<Object> firstKey = new WeakReference<>(first.affinityKey);
+            first = null;
+            for (int i = 0; i < 100 && firstKey.get() != null; i++) {
+                System.gc();
+            }
+            CounterReference third = new CounterReference(new Counter(), context, new String("group"));
+            assertSame(second.executor, third.executor);
+        } finally {
+            context.shutdown();
+        }
+    }
+}
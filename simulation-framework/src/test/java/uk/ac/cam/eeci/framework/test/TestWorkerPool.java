@@ -0,0 +1,104 @@
+package uk.ac.cam.eeci.framework.test;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import uk.ac.cam.eeci.framework.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(Parameterized.class)
+public class TestWorkerPool {
+
+    private final static int NUMBER_WORKERS = 4;
+    private final static int NUMBER_REFERENTS = 20;
+    private final static int NUMBER_TASKS = 2000;
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][] {
+                { WorkerPool.Scheduler.SHARDED }, { WorkerPool.Scheduler.WORK_STEALING }
+        });
+    }
+
+    @Parameterized.Parameter
+    public WorkerPool.Scheduler scheduler;
+
+    private WorkerPool pool;
+
+    private static class Counter {
+        private int value = 0; // deliberately not thread safe
+        private final List<Integer> order = new ArrayList<>();
+    }
+
+    @Before
+    public void setUp() {
+        this.pool = new WorkerPool(NUMBER_WORKERS, this.scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    @Test
+    public void serialisesTasksOfEachReferent() throws ExecutionException, InterruptedException {
+        List<Counter> counters = new ArrayList<>();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < NUMBER_REFERENTS; i++) {
+            Counter counter = new Counter();
+            counters.add(counter);
+            ExecutorService executor = this.pool.executorFor(counter);
+            for (int j = 0; j < NUMBER_TASKS; j++) {
+                final int taskNumber = j;
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    counter.value += 1;
+                    counter.order.add(taskNumber);
+                }, executor));
+            }
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture[tasks.size()])).get();
+        for (Counter counter : counters) {
+            assertEquals(NUMBER_TASKS, counter.value);
+            for (int j = 0; j < NUMBER_TASKS; j++) {
+                assertEquals(j, (int) counter.order.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void awaitsQuiescence() throws ExecutionException, InterruptedException {
+        List<Counter> counters = new ArrayList<>();
+        for (int i = 0; i < NUMBER_REFERENTS; i++) {
+            Counter counter = new Counter();
+            counters.add(counter);
+            ExecutorService executor = this.pool.executorFor(counter);
+            for (int j = 0; j < NUMBER_TASKS; j++) {
+                executor.execute(() -> counter.value += 1);
+            }
+        }
+        this.pool.awaitQuiescence();
+        for (Counter counter : counters) {
+            assertEquals(NUMBER_TASKS, counter.value);
+        }
+    }
+
+    @Test
+    public void knowsCurrentExecutorInsideTask() throws ExecutionException, InterruptedException {
+        ExecutorService executor = this.pool.executorFor(new Counter());
+        ExecutorService current = CompletableFuture.supplyAsync(this.pool::currentExecutor, executor).get();
+        assertSame(executor, current);
+    }
+
+}
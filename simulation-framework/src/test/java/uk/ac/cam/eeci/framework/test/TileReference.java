@@ -14,31 +14,31 @@ public class TileReference extends Reference<Tile> {
     }
 
     CompletableFuture<Void> step() {
-        return CompletableFuture.runAsync(() -> referent.step(), executor).thenRunAsync(() ->{}, pool.currentExecutor());
+        return CompletableFuture.runAsync(() -> referent.step(), executor).thenRunAsync(() ->{}, context.getPool().currentExecutor());
     }
 
     CompletableFuture<Void> update() {
-        return CompletableFuture.runAsync(() -> referent.update(), executor).thenRunAsync(() ->{}, pool.currentExecutor());
+        return CompletableFuture.runAsync(() -> referent.update(), executor).thenRunAsync(() ->{}, context.getPool().currentExecutor());
     }
 
     CompletableFuture<Void> setLeftTile(TileReference tile) {
-        return CompletableFuture.runAsync(() -> referent.setLeftTile(tile), executor).thenRunAsync(() ->{}, pool.currentExecutor());
+        return CompletableFuture.runAsync(() -> referent.setLeftTile(tile), executor).thenRunAsync(() ->{}, context.getPool().currentExecutor());
     }
 
     CompletableFuture<Void> setRightTile(TileReference tile) {
-        return CompletableFuture.runAsync(() -> referent.setRightTile(tile), executor).thenRunAsync(() ->{}, pool.currentExecutor());
+        return CompletableFuture.runAsync(() -> referent.setRightTile(tile), executor).thenRunAsync(() ->{}, context.getPool().currentExecutor());
     }
 
     CompletableFuture<Void> printState(int xOrigin, int yOrigin) {
-        return CompletableFuture.runAsync(() -> referent.printState(xOrigin, yOrigin), executor).thenRunAsync(() ->{}, pool.currentExecutor());
+        return CompletableFuture.runAsync(() -> referent.printState(xOrigin, yOrigin), executor).thenRunAsync(() ->{}, context.getPool().currentExecutor());
     }
 
     CompletableFuture<boolean []> getLeftBoundary() {
-        return CompletableFuture.supplyAsync(() -> referent.getLeftBoundary(), executor).thenApplyAsync((i) ->{return(i);}, pool.currentExecutor());
+        return CompletableFuture.supplyAsync(() -> referent.getLeftBoundary(), executor).thenApplyAsync((i) ->{return(i);}, context.getPool().currentExecutor());
     }
 
     CompletableFuture<boolean []> getRightBoundary() {
-        return CompletableFuture.supplyAsync(() -> referent.getRightBoundary(), executor).thenApplyAsync((i) ->{return(i);}, pool.currentExecutor());
+        return CompletableFuture.supplyAsync(() -> referent.getRightBoundary(), executor).thenApplyAsync((i) ->{return(i);}, context.getPool().currentExecutor());
     }
 
 }